@@ -0,0 +1,140 @@
+package com.syos.benchmarks;
+
+import com.syos.benchmarks.support.FakeHttp;
+import com.syos.web.concurrency.SessionManager;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of authentication on an /api/* call
+ * principal: AuthFilter resolves the user once, the servlet reads it lookups times.
+ * sessionLookups: the previous filter, with the servlet going back to the HttpSession each time.
+ * source SESSION_MANAGER is a login session (principal kept by SessionManager); SESSION_ATTRIBUTES
+ * a session without a SessionManager ID, whose principal is built from its attributes per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuthFilterBenchmark {
+
+    /**
+     * How often the servlet asks who the user is
+     */
+    @Param({"1", "3"})
+    public int lookups;
+
+    @Param({"SESSION_MANAGER", "SESSION_ATTRIBUTES"})
+    public String source;
+
+    private AuthFilter filter;
+    private Filter legacyFilter;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private FilterChain servlet;
+    private FilterChain legacyServlet;
+
+    /**
+     * AuthFilter as it was: checks the session and passes the request on
+     */
+    private static class LegacyAuthFilter implements Filter {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            HttpServletRequest req = (HttpServletRequest) request;
+            String path = req.getRequestURI().substring(req.getContextPath().length());
+            boolean isPublic = path.equals("/") || path.equals("/index.html") || path.equals("/api/login")
+                    || path.equals("/api/register") || path.equals("/api/google-login");
+            if (isPublic) {
+                chain.doFilter(request, response);
+                return;
+            }
+            HttpSession session = req.getSession(false);
+            if (session == null || session.getAttribute("username") == null) {
+                throw new IllegalStateException("Not authenticated");
+            }
+            chain.doFilter(request, response);
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws ReflectiveOperationException {
+        filter = new AuthFilter();
+        legacyFilter = new LegacyAuthFilter();
+        Map<String, Object> attributes = new HashMap<>(Map.of(
+                "username", "cashier-1", "roleId", 2, "fullName", "Benchmark Cashier"));
+        if ("SESSION_MANAGER".equals(source)) {
+            attributes.put("sessionId", "bench-session");
+            registerSession("bench-session", new SessionManager.SessionData("cashier-1", "2", "Benchmark Cashier"));
+        }
+        HttpSession session = FakeHttp.session(attributes);
+        request = FakeHttp.request("/api/bills", session);
+        response = FakeHttp.response();
+        servlet = (req, resp) -> {
+            for (int i = 0; i < lookups; i++) {
+                UserPrincipal principal = AuthFilter.getPrincipal((HttpServletRequest) req);
+                blackhole.consume(principal.getUserId());
+            }
+        };
+        legacyServlet = (req, resp) -> {
+            for (int i = 0; i < lookups; i++) {
+                HttpSession current = ((HttpServletRequest) req).getSession(false);
+                if (current == null || current.getAttribute("username") == null) {
+                    throw new IllegalStateException("Not authenticated");
+                }
+                blackhole.consume(current.getAttribute("username"));
+            }
+        };
+    }
+
+    /**
+     * What SessionManager.createSession keeps in memory, without its INSERT (no database here)
+     */
+    @SuppressWarnings("unchecked")
+    private static void registerSession(String sessionId, SessionManager.SessionData data)
+            throws ReflectiveOperationException {
+        Field sessions = SessionManager.class.getDeclaredField("activeSessions");
+        sessions.setAccessible(true);
+        ((Map<String, SessionManager.SessionData>) sessions.get(null)).put(sessionId, data);
+    }
+
+    @Benchmark
+    public void principal() throws IOException, ServletException {
+        request.removeAttribute(AuthFilter.PRINCIPAL_ATTRIBUTE);    // A new request
+        filter.doFilter(request, response, servlet);
+    }
+
+    @Benchmark
+    public void sessionLookups() throws IOException, ServletException {
+        request.removeAttribute(AuthFilter.PRINCIPAL_ATTRIBUTE);
+        legacyFilter.doFilter(request, response, legacyServlet);
+    }
+}
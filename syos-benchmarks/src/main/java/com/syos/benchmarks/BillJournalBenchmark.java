@@ -0,0 +1,99 @@
+package com.syos.benchmarks;
+
+import com.syos.benchmarks.support.QuietConsole;
+import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.concurrency.BillJournal;
+import com.syos.web.concurrency.BillRequest;
+import com.syos.web.concurrency.RequestQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cost of the write-ahead journal on the enqueue path
+ * Each operation journals a bill (ON), queues it, takes one off and acknowledges it, as
+ * BillQueueService does around a bill. With several threads appending, the flusher forces
+ * their records together; syncs vs appends is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class BillJournalBenchmark {
+
+    @Param({"OFF", "ON"})
+    public String journal;
+
+    private final AtomicLong ids = new AtomicLong();
+    private RequestQueue<BillRequest> queue;
+    private BillJournal billJournal;
+    private CreateBillRequest billRequest;
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        QuietConsole.silence();
+        queue = new RequestQueue<>(10_000);
+        billRequest = new CreateBillRequest();
+        billRequest.setItems(Collections.singletonList(new CreateBillRequest.BillItemRequest("P001", 2)));
+        billRequest.setPaymentMethod("CASH");
+        if ("ON".equals(journal)) {
+            dir = Files.createTempDirectory("bill-journal");
+            billJournal = new BillJournal(dir, 64 * 1024 * 1024);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (billJournal != null) {
+            BillJournal.JournalStats stats = billJournal.getStats();
+            billJournal.close();
+            QuietConsole.restore();
+            System.out.println("journal: " + stats.appends + " appends, " + stats.syncs + " syncs");
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        } else {
+            QuietConsole.restore();
+        }
+    }
+
+    @Benchmark
+    public BillRequest enqueue() throws Exception {
+        BillRequest request = new BillRequest("req-" + ids.incrementAndGet(), billRequest,
+                "cashier-1", "CASHIER", 30_000, billJournal != null);
+        if (billJournal != null) {
+            billJournal.append(request);
+        }
+        queue.enqueue(request);
+
+        BillRequest taken = queue.dequeue();
+        if (billJournal != null) {
+            billJournal.acknowledge(taken.getRequestId());
+        }
+        return taken;
+    }
+}
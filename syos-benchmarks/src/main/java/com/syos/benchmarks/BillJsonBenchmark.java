@@ -0,0 +1,84 @@
+package com.syos.benchmarks;
+
+import com.google.gson.Gson;
+import com.syos.web.application.dto.BillDTO;
+import com.syos.web.application.dto.BillItemDTO;
+import com.syos.web.presentation.util.GsonConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a created bill with the servlets' Gson (LocalDate/LocalDateTime adapters included)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BillJsonBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int items;
+
+    private Gson gson;
+    private BillDTO bill;
+
+    @Setup
+    public void setUp() {
+        gson = GsonConfig.getGson();
+
+        List<BillItemDTO> lines = new ArrayList<>(items);
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            BigDecimal unitPrice = new BigDecimal(100 + i).setScale(2);
+            BigDecimal total = unitPrice.multiply(BigDecimal.valueOf(2));
+            lines.add(new BillItemDTO((long) i + 1, String.format("BENCH%04d", i), "Benchmark Product " + i,
+                    2, unitPrice, total));
+            subtotal = subtotal.add(total);
+        }
+
+        bill = new BillDTO();
+        bill.setBillNumber("BILL-20260101-000001");
+        bill.setBillDate(LocalDateTime.of(2026, 1, 1, 10, 30));
+        bill.setUserId("customer-1");
+        bill.setCashierName("Benchmark Customer");
+        bill.setPaymentMethod("CARD");
+        bill.setChannel("ONLINE");
+        bill.setOrderStatus("PENDING");
+        bill.setPaymentStatus("PAID");
+        bill.setTrackingNumber("TRK-000001");
+        bill.setEstimatedDeliveryDate(LocalDate.of(2026, 1, 4));
+        bill.setDeliveryAddress("12 Galle Road");
+        bill.setDeliveryCity("Colombo");
+        bill.setDeliveryPostalCode("00300");
+        bill.setDeliveryPhone("0771234567");
+        bill.setSubtotal(subtotal);
+        bill.setDiscountAmount(BigDecimal.ZERO);
+        bill.setTotalAmount(subtotal);
+        bill.setAmountPaid(subtotal);
+        bill.setChangeAmount(BigDecimal.ZERO);
+        bill.setItems(lines);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(bill);
+    }
+}
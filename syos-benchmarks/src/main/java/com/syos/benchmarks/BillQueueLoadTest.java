@@ -0,0 +1,226 @@
+package com.syos.benchmarks;
+
+import com.syos.benchmarks.support.InMemoryBillDao;
+import com.syos.benchmarks.support.InMemoryProductDao;
+import com.syos.benchmarks.support.NoOpConnection;
+import com.syos.benchmarks.support.QuietConsole;
+import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.application.dto.StockAllocationDTO;
+import com.syos.web.application.usecases.CreateBillUseCase;
+import com.syos.web.concurrency.BillQueueResponse;
+import com.syos.web.concurrency.BillQueueService;
+import com.syos.web.db.Db;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test: concurrent cashiers submitting bills through BillQueueService, per execution mode
+ * Each cashier submits a bill and waits for it (like ApiBillsServlet), then submits the next.
+ * The database is simulated: a pool of Db.MAX_POOL_SIZE connections, every bill holds its
+ * connection for dbMillis, as if blocked on JDBC, and every commit for commitMillis more,
+ * as if waiting for the log flush. With batch sizes above 1 (WORKERS mode) several bills
+ * share a commit (syos.billing.batch.size).
+ * Not a JMH benchmark - it measures end-to-end latency under a closed-loop load.
+ *
+ * Run: java -cp target/benchmarks.jar com.syos.benchmarks.BillQueueLoadTest
+ *      [modes=WORKERS,TASKS] [cashiers=50,200,1000] [seconds=10] [dbMillis=5] [basketSize=5]
+ *      [commitMillis=2] [batchSizes=1]
+ */
+public class BillQueueLoadTest {
+
+    private static final int CATALOG_SIZE = 500;
+    private static final int WORKERS = 20;
+    private static final int QUEUE_SIZE = 1000;
+
+    /**
+     * BillDao stand-in that waits for a pooled connection and holds it for dbMillis
+     */
+    private static class PooledBillDao extends InMemoryBillDao {
+        private final Semaphore pool = new Semaphore(Db.MAX_POOL_SIZE);
+        private final long dbMillis;
+        private final long commitMillis;
+
+        PooledBillDao(List<String> productCodes, long dbMillis, long commitMillis) {
+            super(productCodes);
+            this.dbMillis = dbMillis;
+            this.commitMillis = commitMillis;
+        }
+
+        @Override
+        public Connection beginTransaction() {
+            pool.acquireUninterruptibly();
+            return NoOpConnection.create(pool::release, () -> pause(commitMillis));
+        }
+
+        private static void pause(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public List<StockAllocationDTO> deductStockForBasket(Connection conn, Map<String, Integer> quantities,
+                                                             String billNumber, String userId, String location)
+                throws SQLException {
+            try {
+                Thread.sleep(dbMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted", e);
+            }
+            return super.deductStockForBasket(conn, quantities, billNumber, userId, location);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = (args.length > 0 ? args[0] : "WORKERS,TASKS").split(",");
+        int[] cashierCounts = Arrays.stream((args.length > 1 ? args[1] : "50,200,1000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long dbMillis = args.length > 3 ? Long.parseLong(args[3]) : 5;
+        int basketSize = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        long commitMillis = args.length > 5 ? Long.parseLong(args[5]) : 2;
+        int[] batchSizes = Arrays.stream((args.length > 6 ? args[6] : "1").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+
+        PrintStream out = System.out;
+        out.printf("📊 %ds per run, %dms per bill + %dms per commit, %d connections, basket of %d%n",
+                seconds, dbMillis, commitMillis, Db.MAX_POOL_SIZE, basketSize);
+        out.printf("%-8s %6s %9s %12s %10s %10s %10s %9s%n",
+                "mode", "batch", "cashiers", "bills/s", "mean ms", "p50 ms", "p99 ms", "errors");
+
+        for (String mode : modes) {
+            for (int batchSize : batchSizes) {
+                for (int cashiers : cashierCounts) {
+                    QuietConsole.silence();
+                    Result result;
+                    try {
+                        System.setProperty("syos.billing.batch.size", String.valueOf(batchSize));
+                        result = run(BillQueueService.ExecutionMode.valueOf(mode.trim()),
+                                cashiers, seconds, dbMillis, commitMillis, basketSize);
+                    } finally {
+                        System.clearProperty("syos.billing.batch.size");
+                        QuietConsole.restore();
+                    }
+                    out.printf("%-8s %6d %9d %12.1f %10.2f %10.2f %10.2f %9d%n", mode.trim(), batchSize, cashiers,
+                            result.throughput, result.mean, result.p50, result.p99, result.errors);
+                }
+            }
+        }
+    }
+
+    private static class Result {
+        double throughput;
+        double mean;
+        double p50;
+        double p99;
+        long errors;
+    }
+
+    private static Result run(BillQueueService.ExecutionMode mode, int cashiers, int seconds,
+                              long dbMillis, long commitMillis, int basketSize) throws InterruptedException {
+        InMemoryProductDao productDao = new InMemoryProductDao(CATALOG_SIZE);
+        List<String> codes = productDao.getProductCodes();
+        CreateBillUseCase useCase = new CreateBillUseCase(new PooledBillDao(codes, dbMillis, commitMillis), productDao);
+        BillQueueService service = new BillQueueService(QUEUE_SIZE, WORKERS, mode, Db.MAX_POOL_SIZE, useCase);
+
+        // Warm up for a fifth of the run, then record
+        long warmupNanos = TimeUnit.SECONDS.toNanos(seconds) / 5;
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+        AtomicLong errors = new AtomicLong();
+        List<long[]> samples = new ArrayList<>();
+        int[] sampleCounts = new int[cashiers];
+        CountDownLatch done = new CountDownLatch(cashiers);
+
+        for (int c = 0; c < cashiers; c++) {
+            int cashier = c;
+            long[] own = new long[1024];
+            samples.add(own);
+            CreateBillRequest request = basket(codes, cashier, basketSize);
+
+            Thread thread = new Thread(() -> {
+                long[] latencies = own;
+                int count = 0;
+                try {
+                    while (System.nanoTime() < end) {
+                        long t0 = System.nanoTime();
+                        BillQueueResponse response = service.submitBillRequest(request, "cashier-" + cashier)
+                                .get(30, TimeUnit.SECONDS);
+                        long t1 = System.nanoTime();
+                        if (!response.isSuccess()) {
+                            errors.incrementAndGet();
+                        } else if (t0 >= measureFrom && t1 <= end) {
+                            if (count == latencies.length) {
+                                latencies = Arrays.copyOf(latencies, count * 2);
+                            }
+                            latencies[count++] = t1 - t0;
+                        }
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                } finally {
+                    synchronized (samples) {
+                        samples.set(cashier, latencies);
+                        sampleCounts[cashier] = count;
+                    }
+                    done.countDown();
+                }
+            }, "Cashier-" + (cashier + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        done.await(seconds + 60L, TimeUnit.SECONDS);
+        service.shutdown();
+
+        long[] all;
+        synchronized (samples) {
+            all = new long[Arrays.stream(sampleCounts).sum()];
+            int offset = 0;
+            for (int c = 0; c < cashiers; c++) {
+                System.arraycopy(samples.get(c), 0, all, offset, sampleCounts[c]);
+                offset += sampleCounts[c];
+            }
+        }
+        Arrays.sort(all);
+
+        Result result = new Result();
+        result.errors = errors.get();
+        result.throughput = all.length / (double) seconds;
+        if (all.length > 0) {
+            result.mean = Arrays.stream(all).average().orElse(0) / 1_000_000.0;
+            result.p50 = all[all.length / 2] / 1_000_000.0;
+            result.p99 = all[Math.min(all.length - 1, (int) Math.ceil(all.length * 0.99) - 1)] / 1_000_000.0;
+        }
+        return result;
+    }
+
+    private static CreateBillRequest basket(List<String> codes, int cashier, int basketSize) {
+        List<CreateBillRequest.BillItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < basketSize; i++) {
+            items.add(new CreateBillRequest.BillItemRequest(codes.get((cashier * 31 + i * 7) % codes.size()), 1));
+        }
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(items);
+        request.setChannel("IN_STORE");
+        request.setPaymentMethod("CASH");
+        request.setAmountPaid(new BigDecimal("10000000.00"));
+        return request;
+    }
+}
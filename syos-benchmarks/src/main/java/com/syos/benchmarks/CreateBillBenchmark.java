@@ -0,0 +1,99 @@
+package com.syos.benchmarks;
+
+import com.syos.benchmarks.support.InMemoryBillDao;
+import com.syos.benchmarks.support.InMemoryProductDao;
+import com.syos.benchmarks.support.QuietConsole;
+import com.syos.web.application.dto.BillDTO;
+import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.application.usecases.CreateBillUseCase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CreateBillUseCase end to end (lookup, pricing, bill number, items, stock) over the
+ * in-memory DAO stand-ins - the application's own cost per bill, without MySQL round trips
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CreateBillBenchmark {
+
+    private static final int CATALOG_SIZE = 500;
+
+    @Param({"1", "10", "50"})
+    public int basketSize;
+
+    @Param({"IN_STORE", "ONLINE"})
+    public String channel;
+
+    private CreateBillUseCase useCase;
+    private CreateBillRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        QuietConsole.silence();
+
+        InMemoryProductDao productDao = new InMemoryProductDao(CATALOG_SIZE);
+        List<String> codes = productDao.getProductCodes();
+        useCase = new CreateBillUseCase(new InMemoryBillDao(codes), productDao);
+
+        List<CreateBillRequest.BillItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < basketSize; i++) {
+            // Spread baskets over the catalog so discounted and full-price lines mix
+            items.add(new CreateBillRequest.BillItemRequest(codes.get((i * 7) % CATALOG_SIZE), 1 + i % 3));
+        }
+
+        request = new CreateBillRequest();
+        request.setItems(items);
+        request.setChannel(channel);
+        if ("ONLINE".equals(channel)) {
+            request.setPaymentMethod("CARD");
+            request.setDeliveryAddress("12 Galle Road");
+            request.setDeliveryCity("Colombo");
+            request.setDeliveryPostalCode("00300");
+            request.setDeliveryPhone("0771234567");
+        } else {
+            request.setPaymentMethod("CASH");
+            request.setAmountPaid(new BigDecimal("10000000.00"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        QuietConsole.restore();
+    }
+
+    @Benchmark
+    public BillDTO createBill() {
+        return useCase.execute(request, "cashier-1", "CASHIER");
+    }
+
+    /**
+     * Several cashiers at once: shared bill number allocator and stock counters
+     */
+    @Benchmark
+    @Threads(4)
+    public BillDTO createBillConcurrent() {
+        return useCase.execute(request, "cashier-1", "CASHIER");
+    }
+}
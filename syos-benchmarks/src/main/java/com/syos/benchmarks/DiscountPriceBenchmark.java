@@ -0,0 +1,73 @@
+package com.syos.benchmarks;
+
+import com.syos.web.domain.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product.getDiscountedPrice - runs for every line of every bill and every browse entry
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiscountPriceBenchmark {
+
+    private Product noDiscount;
+    private Product openDiscount;
+    private Product datedDiscount;
+    private Product expiredDiscount;
+
+    @Setup
+    public void setUp() {
+        noDiscount = new Product("BENCH0001", "No Discount", new BigDecimal("249.99"));
+
+        openDiscount = new Product("BENCH0002", "Open Discount", new BigDecimal("249.99"));
+        openDiscount.setDiscountPercentage(new BigDecimal("12.5"));
+
+        LocalDate today = LocalDate.now();
+        datedDiscount = new Product("BENCH0003", "Dated Discount", new BigDecimal("249.99"));
+        datedDiscount.setDiscountPercentage(new BigDecimal("12.5"));
+        datedDiscount.setDiscountStartDate(today.minusDays(7));
+        datedDiscount.setDiscountEndDate(today.plusDays(7));
+
+        expiredDiscount = new Product("BENCH0004", "Expired Discount", new BigDecimal("249.99"));
+        expiredDiscount.setDiscountPercentage(new BigDecimal("12.5"));
+        expiredDiscount.setDiscountStartDate(today.minusDays(30));
+        expiredDiscount.setDiscountEndDate(today.minusDays(1));
+    }
+
+    @Benchmark
+    public BigDecimal noDiscount() {
+        return noDiscount.getDiscountedPrice();
+    }
+
+    @Benchmark
+    public BigDecimal openDiscount() {
+        return openDiscount.getDiscountedPrice();
+    }
+
+    @Benchmark
+    public BigDecimal datedDiscount() {
+        return datedDiscount.getDiscountedPrice();
+    }
+
+    @Benchmark
+    public BigDecimal expiredDiscount() {
+        return expiredDiscount.getDiscountedPrice();
+    }
+}
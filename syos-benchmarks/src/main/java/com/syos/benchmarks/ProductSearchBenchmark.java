@@ -0,0 +1,99 @@
+package com.syos.benchmarks;
+
+import com.syos.web.application.query.ProductSearchIndex;
+import com.syos.web.domain.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead through ProductSearchIndex vs the old contains scan, on a generated catalog
+ * Sample mode so the JSON result carries p50/p99 per query.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "milk", "bread", "butter", "cheese", "yogurt", "rice", "flour", "sugar", "salt", "pepper",
+            "tea", "coffee", "juice", "water", "soda", "chocolate", "biscuit", "cake", "noodles", "pasta",
+            "chicken", "fish", "beef", "egg", "apple", "banana", "mango", "orange", "onion", "potato",
+            "tomato", "carrot", "soap", "shampoo", "toothpaste", "detergent", "oil", "ghee", "honey", "jam"
+    };
+    private static final String[] ADJECTIVES = {
+            "fresh", "organic", "premium", "classic", "family", "mini", "large", "instant", "spicy", "sweet"
+    };
+    private static final String[] CATEGORIES = {
+            "Dairy", "Bakery", "Beverages", "Grains", "Meat & Fish", "Fruits", "Vegetables", "Household", "Snacks"
+    };
+    private static final int SUGGESTIONS = 8;
+
+    @Param({"100000"})
+    public int productCount;
+
+    @Param({"m", "ch", "mil", "fresh mi", "organic tea", "hou", "zzz"})
+    public String query;
+
+    private List<Product> catalog;
+    private ProductSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        catalog = generateCatalog(productCount);
+        index = new ProductSearchIndex();
+        index.sync(catalog);
+    }
+
+    @Benchmark
+    public List<Product> index() {
+        return index.search(query, SUGGESTIONS);
+    }
+
+    /**
+     * What browse did before: lowercase every name and filter the whole catalog
+     */
+    @Benchmark
+    public int containsScan() {
+        String needle = query.toLowerCase();
+        int found = 0;
+        for (Product product : catalog) {
+            if (product.getName().toLowerCase().contains(needle)) found++;
+        }
+        return found;
+    }
+
+    private static List<Product> generateCatalog(int count) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + (random.nextInt(990) + 10) + "g";
+            name = name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+
+            Product product = new Product(String.format("BENCH%06d", i), name, new BigDecimal("100.00"));
+            product.setCategoryName(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            products.add(product);
+        }
+        return products;
+    }
+}
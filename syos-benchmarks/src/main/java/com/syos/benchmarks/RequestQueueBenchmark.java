@@ -0,0 +1,103 @@
+package com.syos.benchmarks;
+
+import com.syos.benchmarks.support.QuietConsole;
+import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.concurrency.BillRequest;
+import com.syos.web.concurrency.RequestQueue;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestQueue submit/dequeue throughput
+ * roundTrip: one thread enqueues and dequeues (per-operation cost).
+ * handoff: one producer thread, one consumer thread; "transferred" counts requests that
+ * actually crossed. Each side only calls the blocking method when it cannot block, so an
+ * iteration can always end.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class RequestQueueBenchmark {
+
+    @Param({"100", "1000"})
+    public int capacity;
+
+    private RequestQueue<BillRequest> queue;
+    private BillRequest request;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        QuietConsole.silence();
+        request = new BillRequest(new CreateBillRequest(), "cashier-1", "CASHIER");
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        queue = new RequestQueue<>(capacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        QuietConsole.restore();
+    }
+
+    /**
+     * Successful transfers per consumer thread
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Transfers {
+        public long transferred;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            transferred = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("roundTrip")
+    public BillRequest roundTrip() throws InterruptedException {
+        queue.enqueue(request);
+        return queue.dequeue();
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public void submit() throws InterruptedException {
+        if (queue.remainingCapacity() > 0) {
+            queue.enqueue(request);
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public BillRequest take(Transfers transfers) throws InterruptedException {
+        if (queue.isEmpty()) {
+            return null;
+        }
+        transfers.transferred++;
+        return queue.dequeue();
+    }
+}
@@ -0,0 +1,181 @@
+package com.syos.benchmarks;
+
+import com.syos.web.infrastructure.persistence.dao.BillDao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-line stock deduction vs deduct_stock_for_basket, against the configured MySQL database
+ * Needs shelf stock for at least 50 products. Every iteration runs in its own transaction and
+ * is rolled back, so stock is left unchanged.
+ * Not a JMH benchmark - each iteration is a database round trip.
+ *
+ * Run: java -cp target/benchmarks.jar com.syos.benchmarks.StockDeductionBenchmark [warmup=20] [iterations=200]
+ */
+public class StockDeductionBenchmark {
+
+    private static final int[] BASKET_SIZES = {1, 10, 50};
+    private static final String LOCATION = "SHELF";
+    private static final String BILL_NUMBER = "BENCH-STOCK-DEDUCTION";
+    private static final String USER_ID = "benchmark";
+
+    private interface DeductionPath {
+        void deduct(Connection conn, Map<String, Integer> basket) throws SQLException;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        BillDao billDao = new BillDao();
+        List<String> productCodes = findStockedProducts(billDao, BASKET_SIZES[BASKET_SIZES.length - 1]);
+
+        DeductionPath perLine = (conn, basket) -> {
+            for (Map.Entry<String, Integer> line : basket.entrySet()) {
+                deductLine(conn, line.getKey(), line.getValue());
+            }
+        };
+        DeductionPath setBased = (conn, basket) ->
+                billDao.deductStockForBasket(conn, basket, BILL_NUMBER, USER_ID, LOCATION);
+
+        System.out.println("📊 Stock deduction benchmark (" + iterations + " iterations, " + warmup + " warmup)");
+        System.out.printf("%-8s %-12s %12s %12s %12s%n", "basket", "path", "mean ms", "p50 ms", "p99 ms");
+
+        for (int size : BASKET_SIZES) {
+            Map<String, Integer> basket = new LinkedHashMap<>();
+            for (String code : productCodes.subList(0, size)) {
+                basket.put(code, 1);
+            }
+
+            report(size, "per-line", run(billDao, perLine, basket, warmup, iterations));
+            report(size, "basket", run(billDao, setBased, basket, warmup, iterations));
+        }
+    }
+
+    /**
+     * The per-line path deduct_stock_for_basket replaced: FEFO batches of one product, locked and
+     * deducted on the bill's connection (deduct_stock_for_sale_v2 commits on its own, so it can't be
+     * rolled back and isn't used here)
+     */
+    private static void deductLine(Connection conn, String productCode, int quantity) throws SQLException {
+        String select = "SELECT il.id, il.batch_id, il.quantity " +
+                "FROM inventory_locations il " +
+                "JOIN stock_batches sb ON il.batch_id = sb.batch_id " +
+                "WHERE il.product_code = ? AND il.location = ? AND il.quantity > 0 " +
+                "ORDER BY sb.expiry_date ASC, sb.purchase_date ASC " +
+                "FOR UPDATE";
+
+        String update = "UPDATE inventory_locations SET quantity = quantity - ?, version = version + 1 WHERE id = ?";
+
+        String movement = "INSERT INTO stock_movements " +
+                "(product_code, batch_id, quantity, from_location, to_location, movement_type, " +
+                "user_id, bill_number, previous_quantity, new_quantity) " +
+                "VALUES (?, ?, ?, ?, 'CUSTOMER', 'SALE', ?, ?, ?, ?)";
+
+        int remaining = quantity;
+
+        try (PreparedStatement selectStmt = conn.prepareStatement(select);
+             PreparedStatement updateStmt = conn.prepareStatement(update);
+             PreparedStatement movementStmt = conn.prepareStatement(movement)) {
+
+            selectStmt.setString(1, productCode);
+            selectStmt.setString(2, LOCATION);
+
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                while (remaining > 0 && rs.next()) {
+                    int available = rs.getInt("quantity");
+                    int deduct = Math.min(available, remaining);
+
+                    updateStmt.setInt(1, deduct);
+                    updateStmt.setLong(2, rs.getLong("id"));
+                    updateStmt.addBatch();
+
+                    movementStmt.setString(1, productCode);
+                    movementStmt.setInt(2, rs.getInt("batch_id"));
+                    movementStmt.setInt(3, deduct);
+                    movementStmt.setString(4, LOCATION);
+                    movementStmt.setString(5, USER_ID);
+                    movementStmt.setString(6, BILL_NUMBER);
+                    movementStmt.setInt(7, available);
+                    movementStmt.setInt(8, available - deduct);
+                    movementStmt.addBatch();
+
+                    remaining -= deduct;
+                }
+            }
+
+            if (remaining > 0) {
+                throw new SQLException("Insufficient stock for sale: " + productCode, "45000");
+            }
+
+            updateStmt.executeBatch();
+            movementStmt.executeBatch();
+        }
+    }
+
+    /**
+     * Times each iteration in its own rolled back transaction
+     *
+     * @return Sorted durations in nanoseconds
+     */
+    private static long[] run(BillDao billDao, DeductionPath path, Map<String, Integer> basket,
+                              int warmup, int iterations) throws SQLException {
+        long[] durations = new long[iterations];
+
+        for (int i = 0; i < warmup + iterations; i++) {
+            try (Connection conn = billDao.beginTransaction()) {
+                long start = System.nanoTime();
+                path.deduct(conn, basket);
+                long elapsed = System.nanoTime() - start;
+                conn.rollback();
+
+                if (i >= warmup) {
+                    durations[i - warmup] = elapsed;
+                }
+            }
+        }
+
+        Arrays.sort(durations);
+        return durations;
+    }
+
+    private static void report(int basketSize, String path, long[] sorted) {
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+        double p50 = sorted[sorted.length / 2] / 1_000_000.0;
+        double p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1_000_000.0;
+        System.out.printf("%-8d %-12s %12.3f %12.3f %12.3f%n", basketSize, path, mean, p50, p99);
+    }
+
+    private static List<String> findStockedProducts(BillDao billDao, int count) throws SQLException {
+        String sql = "SELECT product_code FROM inventory_locations " +
+                "WHERE location = ? AND quantity > 0 " +
+                "GROUP BY product_code ORDER BY product_code LIMIT ?";
+
+        List<String> codes = new ArrayList<>();
+        try (Connection conn = billDao.beginTransaction();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, LOCATION);
+            stmt.setInt(2, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    codes.add(rs.getString("product_code"));
+                }
+            }
+            conn.rollback();
+        }
+
+        if (codes.size() < count) {
+            throw new IllegalStateException("Benchmark needs shelf stock for " + count +
+                    " products, found " + codes.size());
+        }
+        return codes;
+    }
+}
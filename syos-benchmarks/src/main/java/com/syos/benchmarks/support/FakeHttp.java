@@ -0,0 +1,91 @@
+package com.syos.benchmarks.support;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Servlet request, session and response stand-ins for benchmarking filters without a container
+ * Only attributes, the session and the request path are supported; anything else fails loudly.
+ */
+public final class FakeHttp {
+
+    private FakeHttp() {}
+
+    /**
+     * A session holding the given attributes
+     */
+    public static HttpSession session(Map<String, Object> attributes) {
+        Map<String, Object> values = new HashMap<>(attributes);
+        return (HttpSession) Proxy.newProxyInstance(
+                FakeHttp.class.getClassLoader(),
+                new Class<?>[]{HttpSession.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return values.get((String) args[0]);
+                        case "getId":
+                            return "bench-session";
+                        default:
+                            return common(proxy, method.getName(), args, "HttpSession");
+                    }
+                });
+    }
+
+    /**
+     * A request for path (no context path), in the given session (may be null)
+     */
+    public static HttpServletRequest request(String path, HttpSession session) {
+        Map<String, Object> attributes = new HashMap<>();
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                FakeHttp.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getSession":
+                            return session;
+                        case "getRequestURI":
+                            return path;
+                        case "getContextPath":
+                            return "";
+                        case "getAttribute":
+                            return attributes.get((String) args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove((String) args[0]);
+                            return null;
+                        default:
+                            return common(proxy, method.getName(), args, "HttpServletRequest");
+                    }
+                });
+    }
+
+    /**
+     * A response that must not be written to (the benchmarked requests are authenticated)
+     */
+    public static HttpServletResponse response() {
+        return (HttpServletResponse) Proxy.newProxyInstance(
+                FakeHttp.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> common(proxy, method.getName(), args, "HttpServletResponse"));
+    }
+
+    private static Object common(Object proxy, String method, Object[] args, String type) {
+        switch (method) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "Fake" + type;
+            default:
+                throw new UnsupportedOperationException("Not available on the stand-in: " + type + "." + method);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.syos.benchmarks.support;
+
+import com.syos.web.application.dto.BillItemDTO;
+import com.syos.web.application.dto.StockAllocationDTO;
+import com.syos.web.concurrency.BillNumberAllocator;
+import com.syos.web.infrastructure.persistence.dao.BillDao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BillDao stand-in: the write path of CreateBillUseCase against in-memory state
+ * Bill numbers come from a real BillNumberAllocator over an in-memory block source;
+ * stock is deducted atomically per product, allocations come back in product code order
+ * like deduct_stock_for_basket. Bills are counted, not kept, so long runs don't grow the heap.
+ */
+public class InMemoryBillDao extends BillDao {
+
+    private final BillNumberAllocator billNumbers;
+    private final Map<String, AtomicInteger> stock = new ConcurrentHashMap<>();
+    private final AtomicLong nextBillItemId = new AtomicLong(1);
+    private final LongAdder billsCreated = new LongAdder();
+    private final LongAdder itemsWritten = new LongAdder();
+
+    public InMemoryBillDao(List<String> productCodes) {
+        AtomicLong reserved = new AtomicLong();
+        this.billNumbers = new BillNumberAllocator(
+                (day, blockSize) -> reserved.addAndGet(blockSize),
+                100,
+                Clock.system(BillNumberAllocator.BUSINESS_ZONE)
+        );
+        for (String code : productCodes) {
+            stock.put(code, new AtomicInteger(Integer.MAX_VALUE / 2));
+        }
+    }
+
+    @Override
+    public Connection beginTransaction() {
+        return NoOpConnection.create();
+    }
+
+    @Override
+    public String findUserFullName(Connection conn, String userId) {
+        return "Benchmark Cashier";
+    }
+
+    @Override
+    public String createBill(Connection conn, String userId, String userType, String channel, String paymentMethod,
+                             BigDecimal subtotal, BigDecimal discountAmount, BigDecimal totalAmount,
+                             BigDecimal amountPaid, BigDecimal changeAmount,
+                             String deliveryAddress, String deliveryCity, String deliveryPostalCode,
+                             String deliveryPhone, String paymentMethodDetails, String orderStatus,
+                             String paymentStatus, String trackingNumber, LocalDate estimatedDeliveryDate,
+                             LocalDateTime transactionDate) throws SQLException {
+        String billNumber = billNumbers.next();
+        billsCreated.increment();
+        return billNumber;
+    }
+
+    @Override
+    public List<Long> addBillItems(Connection conn, String billNumber, List<BillItemDTO> items) {
+        List<Long> ids = new ArrayList<>(items.size());
+        long first = nextBillItemId.getAndAdd(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ids.add(first + i);
+        }
+        itemsWritten.add(items.size());
+        return ids;
+    }
+
+    @Override
+    public List<StockAllocationDTO> deductStockForBasket(Connection conn, Map<String, Integer> quantities,
+                                                         String billNumber, String userId, String location)
+            throws SQLException {
+        List<StockAllocationDTO> allocations = new ArrayList<>(quantities.size());
+        for (Map.Entry<String, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            AtomicInteger available = stock.get(line.getKey());
+            if (available == null) {
+                throw new SQLException("Unknown product: " + line.getKey());
+            }
+            available.addAndGet(-line.getValue());
+            allocations.add(new StockAllocationDTO(line.getKey(), 1, line.getValue()));
+        }
+        return allocations;
+    }
+
+    public long getBillsCreated() {
+        return billsCreated.sum();
+    }
+
+    public long getItemsWritten() {
+        return itemsWritten.sum();
+    }
+}
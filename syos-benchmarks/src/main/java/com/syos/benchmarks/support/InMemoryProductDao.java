@@ -0,0 +1,51 @@
+package com.syos.benchmarks.support;
+
+import com.syos.web.domain.model.Product;
+import com.syos.web.infrastructure.persistence.dao.ProductDao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProductDao stand-in over a generated catalog (every third product has an open-ended discount)
+ * Only the lookup used by CreateBillUseCase is implemented.
+ */
+public class InMemoryProductDao extends ProductDao {
+
+    private final Map<String, Product> products = new LinkedHashMap<>();
+
+    public InMemoryProductDao(int productCount) {
+        for (int i = 0; i < productCount; i++) {
+            String code = String.format("BENCH%04d", i);
+            Product product = new Product(code, "Benchmark Product " + i,
+                    new BigDecimal(100 + i % 900).setScale(2), null, 1 + i % 5,
+                    1_000_000, 1_000_000, 1_000_000);
+            if (i % 3 == 0) {
+                product.setDiscountPercentage(new BigDecimal("12.5"));
+            }
+            products.put(code, product);
+        }
+    }
+
+    public List<String> getProductCodes() {
+        return new ArrayList<>(products.keySet());
+    }
+
+    @Override
+    public Map<String, Product> findByProductCodes(Connection conn, Collection<String> productCodes) {
+        Map<String, Product> found = new HashMap<>();
+        for (String code : productCodes) {
+            Product product = products.get(code);
+            if (product != null) {
+                found.put(code, product);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,66 @@
+package com.syos.benchmarks.support;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JDBC connection stand-in for the in-memory DAOs
+ * Transaction calls (setAutoCommit, commit, rollback, savepoints, close) do nothing; anything that
+ * would need a real database fails loudly instead of silently returning nulls.
+ */
+public final class NoOpConnection {
+
+    private NoOpConnection() {}
+
+    public static Connection create() {
+        return create(() -> {});
+    }
+
+    /**
+     * @param onClose Runs once, on the first close (e.g. to hand a simulated pool slot back)
+     */
+    public static Connection create(Runnable onClose) {
+        return create(onClose, () -> {});
+    }
+
+    /**
+     * @param onCommit Runs on every commit (e.g. to simulate the log flush)
+     */
+    public static Connection create(Runnable onClose, Runnable onCommit) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                NoOpConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "commit":
+                            onCommit.run();
+                            return null;
+                        case "setAutoCommit":
+                        case "rollback":
+                        case "setSavepoint":
+                        case "releaseSavepoint":
+                            return null;
+                        case "close":
+                            if (closed.compareAndSet(false, true)) {
+                                onClose.run();
+                            }
+                            return null;
+                        case "getAutoCommit":
+                            return false;
+                        case "isClosed":
+                            return closed.get();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "NoOpConnection";
+                        default:
+                            throw new UnsupportedOperationException(
+                                    "Not available on the in-memory stand-in: Connection." + method.getName());
+                    }
+                });
+    }
+}
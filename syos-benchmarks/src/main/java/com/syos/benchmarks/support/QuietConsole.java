@@ -0,0 +1,30 @@
+package com.syos.benchmarks.support;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Sends System.out to nowhere while a benchmark runs
+ * The billing path logs every bill and queue operation; in Tomcat that goes to a log file,
+ * here it would measure the terminal. The strings are still built, only the write is dropped.
+ */
+public final class QuietConsole {
+
+    private static PrintStream original;
+
+    private QuietConsole() {}
+
+    public static synchronized void silence() {
+        if (original == null) {
+            original = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+    }
+
+    public static synchronized void restore() {
+        if (original != null) {
+            System.setOut(original);
+            original = null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.syos.web.application.dto;
+
+/**
+ * DTO for the rating summary of a product (average and number of reviews)
+ */
+public class ProductRatingDTO {
+    private String productCode;
+    private double averageRating;
+    private int reviewCount;
+
+    public ProductRatingDTO() {
+    }
+
+    public ProductRatingDTO(String productCode, double averageRating, int reviewCount) {
+        this.productCode = productCode;
+        this.averageRating = averageRating;
+        this.reviewCount = reviewCount;
+    }
+
+    // Getters and Setters
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(int reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+}
@@ -0,0 +1,44 @@
+package com.syos.web.application.dto;
+
+/**
+ * DTO for one batch allocation made when stock is deducted for a sale
+ */
+public class StockAllocationDTO {
+    private String productCode;
+    private int batchId;
+    private int quantity;
+
+    public StockAllocationDTO() {
+    }
+
+    public StockAllocationDTO(String productCode, int batchId, int quantity) {
+        this.productCode = productCode;
+        this.batchId = batchId;
+        this.quantity = quantity;
+    }
+
+    // Getters and Setters
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public void setProductCode(String productCode) {
+        this.productCode = productCode;
+    }
+
+    public int getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(int batchId) {
+        this.batchId = batchId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
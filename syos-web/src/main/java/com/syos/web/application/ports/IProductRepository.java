@@ -71,4 +71,10 @@ public interface IProductRepository {
      * @return Total number of products
      */
     int count();
+
+    /**
+     * Tell the catalog cache that products, prices, discounts or stock changed
+     * Call after the change has been committed
+     */
+    void invalidateCatalog();
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.syos.web.application.query;
+
+import com.syos.web.domain.model.Product;
+
+import java.util.List;
+
+/**
+ * One page of browse results
+ */
+public class ProductPage {
+    private final List<Product> products;
+    private final int totalItems;
+    private final String nextCursor;
+
+    public ProductPage(List<Product> products, int totalItems, String nextCursor) {
+        this.products = products;
+        this.totalItems = totalItems;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Number of products matching the filters (all pages)
+     */
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    /**
+     * Cursor for the next page, null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
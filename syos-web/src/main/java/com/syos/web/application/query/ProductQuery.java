@@ -0,0 +1,88 @@
+package com.syos.web.application.query;
+
+import java.math.BigDecimal;
+
+/**
+ * Product browse query: filters, sort order and page
+ * Pages either by cursor (after, from the previous page's nextCursor) or by page number
+ */
+public class ProductQuery {
+    private Integer categoryId;
+    private String search;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private ProductSort sort = ProductSort.CATALOG;
+    private int limit = 20;
+    private int page = 1;
+    private String after;
+
+    public Integer getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public String getSearch() {
+        return search;
+    }
+
+    public void setSearch(String search) {
+        this.search = search;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public ProductSort getSort() {
+        return sort;
+    }
+
+    public void setSort(ProductSort sort) {
+        this.sort = sort != null ? sort : ProductSort.CATALOG;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        if (page <= 0) {
+            throw new IllegalArgumentException("Page must be positive");
+        }
+        this.page = page;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+}
@@ -0,0 +1,403 @@
+package com.syos.web.application.query;
+
+import com.syos.web.concurrency.ProductCatalogCache;
+import com.syos.web.domain.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Product browse over sorted in-memory indexes of the cached catalog
+ * Each (category, sort order) gets a pre-sorted array built once per catalog snapshot,
+ * so a page is a binary search to the cursor plus a scan of about one page -
+ * the cost does not grow with the catalog size.
+ * A price range is a binary search on the price-sorted view. For other sort orders a narrow
+ * range (under a quarter of the view) is cut from that view and sorted on its own; a wider
+ * one is filtered while scanning, which stays within a few pages because most products match.
+ * Offset pages (page=N) of a filtered scan still walk past the earlier pages; cursors do not.
+ * Text search goes through ProductSearchIndex and only sorts the matching products.
+ * Indexes are rebuilt when the snapshot changes or the day changes (discount windows).
+ */
+public class ProductQueryEngine {
+
+    /**
+     * Current catalog (ProductCatalogCache in production)
+     */
+    public interface CatalogSource {
+        List<Product> getProducts() throws SQLException;
+    }
+
+    // A price range this many times smaller than the view is sorted on its own rather than scanned for
+    private static final int NARROW_RANGE_FACTOR = 4;
+
+    private static ProductQueryEngine instance;
+
+    private final CatalogSource source;
+    private final Clock clock;
+    private final Object buildLock = new Object();
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    private volatile Index index;
+
+    public ProductQueryEngine(CatalogSource source, Clock clock) {
+        this.source = source;
+        this.clock = clock;
+    }
+
+    public static synchronized ProductQueryEngine getInstance() {
+        if (instance == null) {
+            ProductCatalogCache cache = ProductCatalogCache.getInstance();
+            instance = new ProductQueryEngine(cache::getProducts, Clock.systemDefaultZone());
+        }
+        return instance;
+    }
+
+    /**
+     * Run a browse query
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order
+     */
+    public ProductPage execute(ProductQuery query) throws SQLException {
+        Index current = currentIndex();
+        ProductSort sort = query.getSort();
+
+        String search = query.getSearch() != null && !query.getSearch().isEmpty()
+                ? query.getSearch() : null;
+        Entry[] view = search != null
+                ? searchView(current, query.getCategoryId(), search, sort)
+                : current.view(query.getCategoryId(), sort);
+        BigDecimal minPrice = query.getMinPrice();
+        BigDecimal maxPrice = query.getMaxPrice();
+        boolean filtered = minPrice != null || maxPrice != null;
+
+        // Narrow price range, other sort order: sort just that slice of the price-sorted view
+        if (filtered && search == null && sort != ProductSort.PRICE_ASC && sort != ProductSort.PRICE_DESC) {
+            Entry[] byPrice = current.view(query.getCategoryId(), ProductSort.PRICE_ASC);
+            int[] range = priceRange(byPrice, minPrice, maxPrice);
+            if ((range[1] - range[0]) * NARROW_RANGE_FACTOR < byPrice.length) {
+                view = Arrays.copyOfRange(byPrice, range[0], range[1]);
+                Arrays.sort(view, SORTS.get(sort));
+                filtered = false;
+            }
+        }
+
+        int start = 0;
+        int end = view.length;
+
+        if (query.getAfter() != null) {
+            Entry cursor = decodeCursor(query.getAfter(), sort);
+            start = firstIndex(view, 0, view.length, e -> SORTS.get(sort).compare(e, cursor) > 0);
+        }
+
+        // Sorted by price: the price range is a contiguous slice of the view
+        if (sort == ProductSort.PRICE_ASC) {
+            if (minPrice != null) start = Math.max(start, firstIndex(view, 0, end, e -> e.price.compareTo(minPrice) >= 0));
+            if (maxPrice != null) end = firstIndex(view, start, end, e -> e.price.compareTo(maxPrice) > 0);
+            filtered = false;
+        } else if (sort == ProductSort.PRICE_DESC) {
+            if (maxPrice != null) start = Math.max(start, firstIndex(view, 0, end, e -> e.price.compareTo(maxPrice) <= 0));
+            if (minPrice != null) end = firstIndex(view, start, end, e -> e.price.compareTo(minPrice) < 0);
+            filtered = false;
+        }
+
+        int skip = query.getAfter() == null ? (query.getPage() - 1) * query.getLimit() : 0;
+        int limit = query.getLimit();
+
+        // Every entry in [start, end) matches: jump straight to the offset page
+        if (!filtered) {
+            start = (int) Math.min(end, (long) start + skip);
+            skip = 0;
+        }
+
+        List<Product> products = new ArrayList<>(Math.min(limit, 64));
+        Entry last = null;
+        boolean hasMore = false;
+
+        for (int i = start; i < end; i++) {
+            Entry entry = view[i];
+            if (filtered && !inPriceRange(entry, minPrice, maxPrice)) continue;
+
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (products.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            products.add(entry.product);
+            last = entry;
+        }
+
+        int totalItems = countMatches(current, query.getCategoryId(), view, search != null, minPrice, maxPrice);
+        String nextCursor = hasMore ? encodeCursor(last, sort) : null;
+
+        return new ProductPage(products, totalItems, nextCursor);
+    }
+
+    /**
+     * Typeahead suggestions, best match first
+     */
+    public List<Product> suggest(String prefix, int limit) throws SQLException {
+        currentIndex();
+        return searchIndex.search(prefix, limit);
+    }
+
+    /**
+     * Products matching the search text, in the requested order (relevance carried on the entries)
+     */
+    private Entry[] searchView(Index current, Integer categoryId, String search, ProductSort sort) {
+        Map<String, Integer> hits = searchIndex.match(search);
+
+        List<Entry> entries = new ArrayList<>(hits.size());
+        for (Map.Entry<String, Integer> hit : hits.entrySet()) {
+            Entry entry = current.byCode.get(hit.getKey());
+            if (entry == null) continue;  // Search index already moved on to a newer snapshot
+            if (categoryId != null && !categoryId.equals(entry.product.getCategoryId())) continue;
+            entries.add(entry.withRelevance(hit.getValue()));
+        }
+
+        Entry[] view = entries.toArray(new Entry[0]);
+        Arrays.sort(view, SORTS.get(sort));
+        return view;
+    }
+
+    private int countMatches(Index current, Integer categoryId, Entry[] view,
+                             boolean searched, BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return view.length;
+        }
+
+        if (!searched) {
+            // Price range only: two binary searches on the price-sorted view
+            int[] range = priceRange(current.view(categoryId, ProductSort.PRICE_ASC), minPrice, maxPrice);
+            return range[1] - range[0];
+        }
+
+        int count = 0;
+        for (Entry entry : view) {
+            if (inPriceRange(entry, minPrice, maxPrice)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * [from, to) of the products within the price range in a PRICE_ASC view
+     */
+    private static int[] priceRange(Entry[] byPrice, BigDecimal minPrice, BigDecimal maxPrice) {
+        int from = minPrice == null ? 0 : firstIndex(byPrice, 0, byPrice.length, e -> e.price.compareTo(minPrice) >= 0);
+        int to = maxPrice == null ? byPrice.length : firstIndex(byPrice, from, byPrice.length, e -> e.price.compareTo(maxPrice) > 0);
+        return new int[]{from, to};
+    }
+
+    private static boolean inPriceRange(Entry entry, BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice != null && entry.price.compareTo(minPrice) < 0) return false;
+        return maxPrice == null || entry.price.compareTo(maxPrice) <= 0;
+    }
+
+    /**
+     * First index in [from, to) where the predicate holds (predicate must be false...true along the view)
+     */
+    private static int firstIndex(Entry[] view, int from, int to, Predicate<Entry> predicate) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (predicate.test(view[mid])) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private Index currentIndex() throws SQLException {
+        List<Product> catalog = source.getProducts();
+        LocalDate today = LocalDate.now(clock);
+
+        Index current = index;
+        if (current != null && current.catalog == catalog && current.day.equals(today)) {
+            return current;
+        }
+
+        synchronized (buildLock) {
+            current = index;
+            if (current == null || current.catalog != catalog || !current.day.equals(today)) {
+                searchIndex.sync(catalog);
+                current = new Index(catalog, today);
+                index = current;
+            }
+            return current;
+        }
+    }
+
+    // ==================== CURSORS ====================
+
+    /**
+     * Opaque cursor: sort order, sort key and product code of the last product on the page
+     */
+    static String encodeCursor(Entry last, ProductSort sort) {
+        String key;
+        switch (sort) {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                key = last.price.toPlainString();
+                break;
+            case NAME_ASC:
+                key = last.nameKey;
+                break;
+            case DISCOUNT_DESC:
+                key = last.discount.toPlainString();
+                break;
+            case RELEVANCE:
+                key = Integer.toString(last.relevance);
+                break;
+            default:
+                key = "";
+        }
+        String raw = sort.name() + "\n" + key + "\n" + last.code;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Entry decodeCursor(String cursor, ProductSort sort) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (parts.length != 3 || !parts[0].equals(sort.name())) {
+            throw new IllegalArgumentException("Invalid cursor for sort order " + sort);
+        }
+
+        try {
+            String key = parts[1];
+            String code = parts[2];
+            switch (sort) {
+                case PRICE_ASC:
+                case PRICE_DESC:
+                    return new Entry(null, code, new BigDecimal(key), "", BigDecimal.ZERO, 0);
+                case NAME_ASC:
+                    return new Entry(null, code, BigDecimal.ZERO, key, BigDecimal.ZERO, 0);
+                case DISCOUNT_DESC:
+                    return new Entry(null, code, BigDecimal.ZERO, "", new BigDecimal(key), 0);
+                case RELEVANCE:
+                    return new Entry(null, code, BigDecimal.ZERO, "", BigDecimal.ZERO, Integer.parseInt(key));
+                default:
+                    return new Entry(null, code, BigDecimal.ZERO, "", BigDecimal.ZERO, 0);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // ==================== INDEX ====================
+
+    private static final Comparator<Entry> BY_CODE = Comparator.comparing(e -> e.code);
+
+    private static final Map<ProductSort, Comparator<Entry>> SORTS = Map.of(
+            ProductSort.CATALOG, BY_CODE,
+            ProductSort.PRICE_ASC, Comparator.<Entry, BigDecimal>comparing(e -> e.price).thenComparing(BY_CODE),
+            ProductSort.PRICE_DESC, Comparator.<Entry, BigDecimal>comparing(e -> e.price).reversed().thenComparing(BY_CODE),
+            ProductSort.NAME_ASC, Comparator.<Entry, String>comparing(e -> e.nameKey).thenComparing(BY_CODE),
+            ProductSort.DISCOUNT_DESC, Comparator.<Entry, BigDecimal>comparing(e -> e.discount).reversed().thenComparing(BY_CODE),
+            ProductSort.RELEVANCE, Comparator.comparingInt((Entry e) -> e.relevance).reversed().thenComparing(BY_CODE)
+    );
+
+    /**
+     * Sort keys of one product, computed once per index (relevance only on search results)
+     */
+    static final class Entry {
+        final Product product;
+        final String code;
+        final BigDecimal price;
+        final String nameKey;
+        final BigDecimal discount;
+        final int relevance;
+
+        Entry(Product product, String code, BigDecimal price, String nameKey, BigDecimal discount, int relevance) {
+            this.product = product;
+            this.code = code;
+            this.price = price;
+            this.nameKey = nameKey;
+            this.discount = discount;
+            this.relevance = relevance;
+        }
+
+        Entry withRelevance(int score) {
+            return new Entry(product, code, price, nameKey, discount, score);
+        }
+
+        static Entry of(Product product) {
+            BigDecimal price = product.hasActiveDiscount() ? product.getDiscountedPrice() : product.getUnitPrice();
+            return new Entry(
+                    product,
+                    product.getProductCode(),
+                    price != null ? price : BigDecimal.ZERO,
+                    product.getName() != null ? product.getName().toLowerCase(Locale.ROOT) : "",
+                    product.getDiscountPercentage() != null ? product.getDiscountPercentage() : BigDecimal.ZERO,
+                    0
+            );
+        }
+    }
+
+    /**
+     * Sorted views over one catalog snapshot; views are built on first use
+     */
+    private static final class Index {
+        private static final Integer ALL = Integer.MIN_VALUE;
+
+        final List<Product> catalog;
+        final LocalDate day;
+        final Map<String, Entry> byCode = new HashMap<>();
+        private final Map<Integer, Entry[]> byCategory = new HashMap<>();
+        private final Map<String, Entry[]> views = new ConcurrentHashMap<>();
+
+        Index(List<Product> catalog, LocalDate day) {
+            this.catalog = catalog;
+            this.day = day;
+
+            Map<Integer, List<Entry>> grouped = new HashMap<>();
+            List<Entry> all = new ArrayList<>(catalog.size());
+            for (Product product : catalog) {
+                if (product.isDeleted()) continue;
+                Entry entry = Entry.of(product);
+                all.add(entry);
+                byCode.put(entry.code, entry);
+                if (product.getCategoryId() != null) {
+                    grouped.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            byCategory.put(ALL, all.toArray(new Entry[0]));
+            grouped.forEach((id, entries) -> byCategory.put(id, entries.toArray(new Entry[0])));
+        }
+
+        Entry[] view(Integer categoryId, ProductSort sort) {
+            Integer key = categoryId != null ? categoryId : ALL;
+            Entry[] base = byCategory.get(key);
+            if (base == null) {
+                return new Entry[0];
+            }
+
+            return views.computeIfAbsent(key + ":" + sort, k -> {
+                Entry[] sorted = base.clone();
+                Arrays.sort(sorted, SORTS.get(sort));
+                return sorted;
+            });
+        }
+    }
+}
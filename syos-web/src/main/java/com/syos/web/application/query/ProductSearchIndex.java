@@ -0,0 +1,531 @@
+package com.syos.web.application.query;
+
+import com.syos.web.domain.model.Product;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Inverted index over product names and category names for customer search
+ * Tokens (lowercase runs of letters and digits) map to the products that contain them.
+ * The token dictionary is sorted, so a prefix ("mil" → milk, millet) is one range of it,
+ * and each posting list is kept in rank order so typeahead can stop after the best few.
+ * Kept in step with the catalog snapshot by re-indexing only the products that were
+ * added, removed or renamed since the last snapshot. Posting lists are immutable arrays
+ * swapped in per token (copy-on-write), so searches never lock.
+ */
+public class ProductSearchIndex {
+
+    // Relevance: each query term scores its best match, the scores add up
+    private static final int EXACT_NAME = 100;
+    private static final int PREFIX_NAME = 60;
+    private static final int EXACT_CATEGORY = 40;
+    private static final int PREFIX_CATEGORY = 20;
+    private static final int NAME_STARTS_WITH_QUERY = 50;
+    private static final int MAX_POSITION_PENALTY = 9;  // later words in the name score a little less
+    private static final int CATEGORY_SLOT = MAX_POSITION_PENALTY + 1;
+
+    /**
+     * Best first: relevance, then shorter names, then product code
+     */
+    private static final Comparator<Hit> RANKING = Comparator.<Hit>comparingInt(h -> h.score).reversed()
+            .thenComparingInt(h -> h.document.nameKey.length())
+            .thenComparing(h -> h.document.code);
+
+    /**
+     * RANKING's tie-breaks: shorter names, then product code
+     */
+    private static final Comparator<Document> DOCUMENT_ORDER = (a, b) -> {
+        int byLength = Integer.compare(a.nameKey.length(), b.nameKey.length());
+        return byLength != 0 ? byLength : a.code.compareTo(b.code);
+    };
+
+    /**
+     * Posting list order: where the token sits in the product (its score), then DOCUMENT_ORDER
+     */
+    private static final Comparator<Posting> POSTING_ORDER = (a, b) ->
+            a.slot != b.slot ? Integer.compare(a.slot, b.slot) : DOCUMENT_ORDER.compare(a.document, b.document);
+
+    private static final Posting[] NO_POSTINGS = new Posting[0];
+
+    private final ConcurrentSkipListMap<String, Posting[]> postings = new ConcurrentSkipListMap<>();
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+    private final Object syncLock = new Object();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private int nextId;
+    private volatile List<Product> syncedCatalog;
+
+    /**
+     * Bring the index in line with a catalog snapshot (deleted products are not searchable)
+     * Only products whose name or category name changed are re-tokenized.
+     */
+    public void sync(List<Product> catalog) {
+        if (catalog == syncedCatalog) return;
+
+        synchronized (syncLock) {
+            if (catalog == syncedCatalog) return;
+
+            // Collect the changes per token first, then rebuild each touched posting list once
+            List<Document> created = new ArrayList<>();
+            Map<String, Set<Document>> removed = new HashMap<>();
+
+            Set<String> live = new HashSet<>(catalog.size() * 2);
+            for (Product product : catalog) {
+                if (product.isDeleted()) continue;
+                live.add(product.getProductCode());
+
+                Document existing = documents.get(product.getProductCode());
+                if (existing != null && existing.sameText(product)) {
+                    existing.product = product;  // Price, stock etc. changed, tokens did not
+                    continue;
+                }
+                if (existing != null) {
+                    collectRemoved(existing, removed);
+                }
+
+                Document document = new Document(product, allocateId());
+                documents.put(document.code, document);
+                created.add(document);
+            }
+
+            Iterator<Document> it = documents.values().iterator();
+            while (it.hasNext()) {
+                Document document = it.next();
+                if (!live.contains(document.code)) {
+                    it.remove();
+                    collectRemoved(document, removed);
+                }
+            }
+
+            // In tie-break order once, so each token only has to group its additions by slot
+            created.sort(DOCUMENT_ORDER);
+            Map<String, List<Posting>> added = new HashMap<>();
+            for (Document document : created) {
+                for (String token : document.distinctTokens) {
+                    added.computeIfAbsent(token, t -> new ArrayList<>()).add(new Posting(document, document.slotOf(token)));
+                }
+            }
+
+            Set<String> touched = new HashSet<>(added.keySet());
+            touched.addAll(removed.keySet());
+            for (String token : touched) {
+                rebuildPosting(token, added.getOrDefault(token, List.of()), removed.getOrDefault(token, Set.of()));
+            }
+
+            syncedCatalog = catalog;
+        }
+    }
+
+    private void collectRemoved(Document document, Map<String, Set<Document>> removed) {
+        for (String token : document.distinctTokens) {
+            removed.computeIfAbsent(token, t -> new HashSet<>()).add(document);
+        }
+        freeIds.add(document.id);
+    }
+
+    /**
+     * Dense document ids keep the per-query bitsets small (caller holds syncLock)
+     */
+    private int allocateId() {
+        Integer id = freeIds.poll();
+        return id != null ? id : nextId++;
+    }
+
+    /**
+     * Merge the sorted survivors of a posting list with its additions (already in DOCUMENT_ORDER)
+     */
+    private void rebuildPosting(String token, List<Posting> added, Set<Document> removed) {
+        Posting[] current = postings.getOrDefault(token, NO_POSTINGS);
+        Posting[] fresh = groupBySlot(added);
+
+        Posting[] merged = new Posting[current.length + fresh.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < current.length || j < fresh.length) {
+            if (i < current.length && removed.contains(current[i].document)) {
+                i++;
+            } else if (j == fresh.length
+                    || (i < current.length && POSTING_ORDER.compare(current[i], fresh[j]) <= 0)) {
+                merged[size++] = current[i++];
+            } else {
+                merged[size++] = fresh[j++];
+            }
+        }
+
+        if (size == 0) {
+            postings.remove(token);
+        } else {
+            postings.put(token, Arrays.copyOf(merged, size));
+        }
+    }
+
+    /**
+     * Stable counting sort on the slot, which turns DOCUMENT_ORDER into POSTING_ORDER
+     */
+    private static Posting[] groupBySlot(List<Posting> added) {
+        int[] starts = new int[CATEGORY_SLOT + 2];
+        for (Posting posting : added) {
+            starts[posting.slot + 1]++;
+        }
+        for (int slot = 1; slot < starts.length; slot++) {
+            starts[slot] += starts[slot - 1];
+        }
+
+        Posting[] grouped = new Posting[added.size()];
+        for (Posting posting : added) {
+            grouped[starts[posting.slot]++] = posting;
+        }
+        return grouped;
+    }
+
+    /**
+     * Best matches for a typeahead query, best first
+     * Every query term must match the start of a word in the name or category;
+     * the last term is usually still being typed.
+     */
+    public List<Product> search(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        List<String> terms = tokenize(query);
+
+        // Bounded heap with the weakest of the current top results at the head
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        ObjIntConsumer<Document> collector = (document, score) -> {
+            if (top.size() == limit) {
+                if (!ranksAbove(document, score, top.peek())) return;
+                top.poll();
+            }
+            top.add(new Hit(document, score));
+        };
+
+        if (terms.size() == 1) {
+            collectTopRanked(terms.get(0), top, limit, collector);
+        } else {
+            forEachMatch(terms, collector);
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(RANKING);
+
+        List<Product> products = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            products.add(hit.document.product);
+        }
+        return products;
+    }
+
+    /**
+     * Every matching product code with its relevance score
+     */
+    public Map<String, Integer> match(String query) {
+        Map<String, Integer> matches = new HashMap<>();
+        forEachMatch(tokenize(query), (document, score) -> matches.put(document.code, score));
+        return matches;
+    }
+
+    /**
+     * Same order as RANKING, without allocating a Hit for candidates that lose
+     */
+    private static boolean ranksAbove(Document document, int score, Hit other) {
+        if (score != other.score) return score > other.score;
+        int length = document.nameKey.length();
+        int otherLength = other.document.nameKey.length();
+        if (length != otherLength) return length < otherLength;
+        return document.code.compareTo(other.document.code) < 0;
+    }
+
+    /**
+     * One-word query: merge the ranked posting lists of every token with the prefix, best bound
+     * first, and stop once no product left in any list can beat the current top results
+     */
+    private void collectTopRanked(String term, PriorityQueue<Hit> top, int limit, ObjIntConsumer<Document> collector) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+        for (Map.Entry<String, Posting[]> list : prefixRange(term).entrySet()) {
+            cursors.add(new Cursor(list.getValue(), list.getKey().equals(term)));
+        }
+
+        List<String> terms = List.of(term);
+        Set<Document> seen = new HashSet<>();
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            Document document = cursor.document();
+
+            if (top.size() == limit && !ranksAbove(document, cursor.bound, top.peek())) break;
+
+            // A product sits in the list of every word it has with this prefix - score it once
+            if (seen.add(document)) {
+                collector.accept(document, score(document, terms, term));
+            }
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+    }
+
+    /**
+     * Walk the postings of the most selective term; products must also be in the bitsets
+     * of the other terms before they are scored
+     */
+    private void forEachMatch(List<String> terms, ObjIntConsumer<Document> consumer) {
+        if (terms.isEmpty()) return;
+
+        List<NavigableMap<String, Posting[]>> ranges = new ArrayList<>(terms.size());
+        int driver = -1;
+        long driverSize = Long.MAX_VALUE;
+        for (int t = 0; t < terms.size(); t++) {
+            NavigableMap<String, Posting[]> range = prefixRange(terms.get(t));
+            long size = 0;
+            for (Posting[] list : range.values()) {
+                size += list.length;
+            }
+            if (size == 0) return;
+            ranges.add(range);
+            if (size < driverSize) {
+                driver = t;
+                driverSize = size;
+            }
+        }
+
+        List<BitSet> filters = new ArrayList<>(terms.size() - 1);
+        for (int t = 0; t < terms.size(); t++) {
+            if (t == driver) continue;
+            BitSet ids = new BitSet();
+            for (Posting[] list : ranges.get(t).values()) {
+                for (Posting posting : list) {
+                    ids.set(posting.document.id);
+                }
+            }
+            filters.add(ids);
+        }
+
+        String driverTerm = terms.get(driver);
+        NavigableMap<String, Posting[]> driverRange = ranges.get(driver);
+        String phrase = String.join(" ", terms);
+        boolean singleToken = driverRange.size() == 1;
+        for (Map.Entry<String, Posting[]> list : driverRange.entrySet()) {
+            String token = list.getKey();
+            for (Posting posting : list.getValue()) {
+                Document document = posting.document;
+                if (!inAll(filters, document.id)) continue;
+                // Score a product only under the first of its words with this prefix
+                if (!singleToken && !token.equals(document.firstTokenStartingWith(driverTerm))) continue;
+
+                int score = score(document, terms, phrase);
+                if (score > 0) {
+                    consumer.accept(document, score);
+                }
+            }
+        }
+    }
+
+    private static boolean inAll(List<BitSet> filters, int id) {
+        for (BitSet filter : filters) {
+            if (!filter.get(id)) return false;
+        }
+        return true;
+    }
+
+    private NavigableMap<String, Posting[]> prefixRange(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    /**
+     * Relevance of a document for the query terms (0 = some term does not match)
+     */
+    private static int score(Document document, List<String> terms, String phrase) {
+        int total = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (int i = 0; i < document.nameTokens.length; i++) {
+                String token = document.nameTokens[i];
+                int score = token.equals(term) ? EXACT_NAME : token.startsWith(term) ? PREFIX_NAME : 0;
+                if (score > 0) {
+                    best = Math.max(best, score - Math.min(i, MAX_POSITION_PENALTY));
+                }
+            }
+            for (String token : document.categoryTokens) {
+                int score = token.equals(term) ? EXACT_CATEGORY : token.startsWith(term) ? PREFIX_CATEGORY : 0;
+                best = Math.max(best, score);
+            }
+            if (best == 0) return 0;
+            total += best;
+        }
+
+        if (document.nameKey.startsWith(phrase)) {
+            total += NAME_STARTS_WITH_QUERY;
+        }
+        return total;
+    }
+
+    /**
+     * Lowercase runs of letters and digits ("Coca-Cola 1.5L" → coca, cola, 1, 5l)
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    public int getProductCount() {
+        return documents.size();
+    }
+
+    public int getTokenCount() {
+        return postings.size();
+    }
+
+    /**
+     * Tokens of one product; identity equality, so a replaced document is a different one
+     */
+    private static final class Document {
+        final int id;
+        final String code;
+        final String name;
+        final String categoryName;
+        final String[] nameTokens;
+        final String[] categoryTokens;
+        final String[] distinctTokens;
+        final String nameKey;  // name tokens joined by single spaces
+        volatile Product product;
+
+        Document(Product product, int id) {
+            this.id = id;
+            this.code = product.getProductCode();
+            this.name = product.getName();
+            this.categoryName = product.getCategoryName();
+            this.nameTokens = tokenize(name).toArray(new String[0]);
+            this.categoryTokens = tokenize(categoryName).toArray(new String[0]);
+            this.nameKey = String.join(" ", nameTokens);
+
+            Set<String> distinct = new LinkedHashSet<>(List.of(nameTokens));
+            distinct.addAll(List.of(categoryTokens));
+            this.distinctTokens = distinct.toArray(new String[0]);
+            this.product = product;
+        }
+
+        boolean sameText(Product other) {
+            return Objects.equals(name, other.getName()) && Objects.equals(categoryName, other.getCategoryName());
+        }
+
+        /**
+         * First position of a token in the name (capped like the score penalty); CATEGORY_SLOT if only in the category
+         */
+        int slotOf(String token) {
+            for (int i = 0; i < nameTokens.length; i++) {
+                if (nameTokens[i].equals(token)) return Math.min(i, MAX_POSITION_PENALTY);
+            }
+            return CATEGORY_SLOT;
+        }
+
+        String firstTokenStartingWith(String prefix) {
+            for (String token : nameTokens) {
+                if (token.startsWith(prefix)) return token;
+            }
+            for (String token : categoryTokens) {
+                if (token.startsWith(prefix)) return token;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A product in one token's posting list
+     */
+    private static final class Posting {
+        final Document document;
+        final int slot;
+
+        Posting(Document document, int slot) {
+            this.document = document;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Position in one ranked posting list; bound = the best score any product left in the list
+     * can reach through this token (never rises along the list, so lists merge by bound)
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        final Posting[] postings;
+        final boolean exact;
+        int index;
+        int bound;
+
+        Cursor(Posting[] postings, boolean exact) {
+            this.postings = postings;
+            this.exact = exact;
+            this.bound = bound();
+        }
+
+        Document document() {
+            return postings[index].document;
+        }
+
+        boolean advance() {
+            if (++index == postings.length) return false;
+            bound = bound();
+            return true;
+        }
+
+        private int bound() {
+            int slot = postings[index].slot;
+            if (slot == CATEGORY_SLOT) {
+                return exact ? EXACT_CATEGORY : PREFIX_CATEGORY;
+            }
+            // The starts-with bonus needs the first word to match; a later word only beats
+            // the first one (and so carries the bonus) when it is the exact word
+            int best = (exact ? EXACT_NAME : PREFIX_NAME) - slot;
+            return slot == 0 || exact ? best + NAME_STARTS_WITH_QUERY : best;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            if (bound != other.bound) return Integer.compare(other.bound, bound);
+            Document document = document();
+            Document otherDocument = other.document();
+            int byLength = Integer.compare(document.nameKey.length(), otherDocument.nameKey.length());
+            return byLength != 0 ? byLength : document.code.compareTo(otherDocument.code);
+        }
+    }
+
+    private static final class Hit {
+        final Document document;
+        final int score;
+
+        Hit(Document document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
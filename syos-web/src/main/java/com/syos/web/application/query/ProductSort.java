@@ -0,0 +1,38 @@
+package com.syos.web.application.query;
+
+/**
+ * Sort orders for product browse
+ * Every order ends with product_code so the order is total (needed for keyset pagination)
+ */
+public enum ProductSort {
+    CATALOG(null),             // product_code ascending (catalog order)
+    PRICE_ASC("price_asc"),    // current price, discount applied
+    PRICE_DESC("price_desc"),
+    NAME_ASC("name_asc"),      // case-insensitive
+    DISCOUNT_DESC("discount_desc"),
+    RELEVANCE("relevance");    // search score; same as catalog order without a search
+
+    private final String param;
+
+    ProductSort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * Sort from the sortBy request parameter; unknown or missing values keep catalog order
+     */
+    public static ProductSort fromParam(String sortBy) {
+        if (sortBy != null) {
+            for (ProductSort sort : values()) {
+                if (sortBy.equals(sort.param)) {
+                    return sort;
+                }
+            }
+        }
+        return CATALOG;
+    }
+}
@@ -3,15 +3,23 @@ package com.syos.web.application.usecases;
 import com.syos.web.application.dto.BillDTO;
 import com.syos.web.application.dto.BillItemDTO;
 import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.application.dto.StockAllocationDTO;
+import com.syos.web.concurrency.BillNumberAllocator;
+import com.syos.web.concurrency.LockConflicts;
 import com.syos.web.domain.model.Product;
 import com.syos.web.infrastructure.persistence.dao.BillDao;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -20,6 +28,46 @@ import java.util.UUID;
  */
 public class CreateBillUseCase {
 
+    /**
+     * One bill of a batch (see executeBatch); afterwards it holds either the bill or the error
+     */
+    public static class BatchItem {
+        private final CreateBillRequest request;
+        private final String userId;
+        private final String userType;
+        private final String requestId;
+        private BillDTO bill;
+        private RuntimeException error;
+
+        /**
+         * @param requestId Recorded with the bill to create it at most once, or null
+         */
+        public BatchItem(CreateBillRequest request, String userId, String userType, String requestId) {
+            this.request = request;
+            this.userId = userId;
+            this.userType = userType;
+            this.requestId = requestId;
+        }
+
+        public BillDTO getBill() {
+            return bill;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+
+        public void complete(BillDTO bill) {
+            this.bill = bill;
+            this.error = null;
+        }
+
+        public void fail(RuntimeException error) {
+            this.bill = null;
+            this.error = error;
+        }
+    }
+
     private final BillDao billDao;
     private final ProductDao productDao;
 
@@ -39,184 +87,351 @@ public class CreateBillUseCase {
      * 🆕 Execute bill creation (SUPPORTS BOTH CASHIER AND CUSTOMER)
      */
     public BillDTO execute(CreateBillRequest request, String userId, String userType) {
-        request.validate();
-
-        try {
-            // Determine channel
-            String channel = request.getChannel() != null ? request.getChannel() : "IN_STORE";
-
-            System.out.println("🔍 DEBUG CreateBillUseCase.execute:");
-            System.out.println("   User ID: '" + userId + "'");
-            System.out.println("   User Type: '" + userType + "'");
-            System.out.println("   Channel from request: '" + request.getChannel() + "'");
-            System.out.println("   Channel (after default): '" + channel + "'");
-            System.out.println("   Payment Method: '" + request.getPaymentMethod() + "'");
-
-            // Log which type of bill we're creating
-            System.out.println("🔨 Creating " + channel + " bill for " + userType + ": " + userId);
+        return execute(request, userId, userType, null);
+    }
 
-            // Calculate totals WITH DISCOUNTS
-            BigDecimal subtotal = BigDecimal.ZERO;
-            BigDecimal totalDiscount = BigDecimal.ZERO;
-            List<BillItemDTO> billItems = new ArrayList<>();
+    /**
+     * Execute bill creation at most once per request ID (journaled requests, which may be replayed)
+     * The request ID is stored in the bill's transaction; a replay of a request that already
+     * committed returns the existing bill instead of creating another one. So does a replay that
+     * ran alongside the original and lost the race for the request ID (duplicate key).
+     *
+     * @param requestId Queue request ID, or null to skip the check
+     */
+    public BillDTO execute(CreateBillRequest request, String userId, String userType, String requestId) {
+        request.validate();
 
-            for (CreateBillRequest.BillItemRequest item : request.getItems()) {
-                var productOpt = productDao.findByProductCode(item.getProductCode());
+        // One connection and one transaction for lookup, bill, items and stock
+        try (Connection conn = billDao.beginTransaction()) {
+            try {
+                BillDTO bill = createOnce(conn, request, userId, userType, requestId);
+                conn.commit();
+                return bill;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (requestId != null && BillDao.isDuplicateKey(e)) {
+                    BillDTO existing = findCommitted(conn, requestId);
+                    if (existing != null) {
+                        return existing;
+                    }
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("SQL Error in CreateBillUseCase: " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Failed to create bill: " + e.getMessage(), e);
+        }
+    }
 
-                if (productOpt.isEmpty()) {
-                    throw new IllegalArgumentException("Product not found: " + item.getProductCode());
+    /**
+     * Create several bills in one transaction: one commit (one log flush) for all of them
+     * Each bill runs inside its own savepoint, so one that fails (no stock, bad request) is
+     * rolled back alone and gets its error while the rest still commit. Throws if the
+     * transaction itself fails, e.g. a deadlock, which rolls back every bill in it; then
+     * none of the batch was created and each can be run again on its own.
+     */
+    public void executeBatch(List<BatchItem> items) {
+        // Lost the race for their request ID to a concurrent replay: answered after the batch
+        List<BatchItem> duplicates = new ArrayList<>();
+        try (Connection conn = billDao.beginTransaction()) {
+            try {
+                for (BatchItem item : items) {
+                    try {
+                        item.request.validate();
+                    } catch (RuntimeException e) {
+                        item.fail(e);
+                        continue;
+                    }
+
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        item.complete(createOnce(conn, item.request, item.userId, item.userType, item.requestId));
+                        conn.releaseSavepoint(savepoint);
+                    } catch (SQLException e) {
+                        if (LockConflicts.classify(e) == LockConflicts.Kind.DEADLOCK) {
+                            throw e;    // The whole transaction is gone, savepoints included
+                        }
+                        conn.rollback(savepoint);
+                        item.fail(new RuntimeException("Failed to create bill: " + e.getMessage(), e));
+                        if (item.requestId != null && BillDao.isDuplicateKey(e)) {
+                            duplicates.add(item);
+                        }
+                    } catch (RuntimeException e) {
+                        conn.rollback(savepoint);
+                        item.fail(e);
+                    }
+                }
+                conn.commit();
+                System.out.println("📦 Committed " + items.size() + " bills in one transaction");
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                RuntimeException rolledBack = e instanceof RuntimeException ? (RuntimeException) e
+                        : new RuntimeException("Failed to create bill batch: " + e.getMessage(), e);
+                for (BatchItem item : items) {
+                    item.fail(rolledBack);
                 }
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("SQL Error in CreateBillUseCase batch: " + e.getMessage());
+            throw new RuntimeException("Failed to create bill batch: " + e.getMessage(), e);
+        }
+
+        // The batch's snapshot predates the other commit; a new transaction sees that bill
+        for (BatchItem item : duplicates) {
+            try {
+                item.complete(execute(item.request, item.userId, item.userType, item.requestId));
+            } catch (RuntimeException e) {
+                item.fail(e);
+            }
+        }
+    }
 
-                Product product = productOpt.get();
+    /**
+     * Create the bill, or return the one this request ID already created (transaction open)
+     */
+    private BillDTO createOnce(Connection conn, CreateBillRequest request, String userId,
+                               String userType, String requestId) throws SQLException {
+        if (requestId != null) {
+            BillDTO existing = findExisting(conn, requestId);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        BillDTO bill = createBill(conn, request, userId, userType);
+        if (requestId != null) {
+            billDao.recordBillRequest(conn, requestId, bill.getBillNumber());
+        }
+        return bill;
+    }
 
-                // Check if product is deleted
-                if (product.isDeleted()) {
-                    throw new IllegalArgumentException("Product is no longer available: " + item.getProductCode());
-                }
+    private BillDTO findExisting(Connection conn, String requestId) throws SQLException {
+        String existing = billDao.findBillNumberByRequestId(conn, requestId);
+        if (existing == null) {
+            return null;
+        }
+        System.out.println("♻️ Request " + requestId + " already created bill " + existing);
+        return billDao.getBillByNumber(conn, existing);
+    }
 
-                // Check stock availability - USE WEBSITE for ONLINE, SHELF for IN_STORE
-                int availableStock = "ONLINE".equals(channel) ?
-                        product.getWebsiteQuantity() : product.getShelfQuantity();
+    /**
+     * Bill committed for this request ID by another transaction (ours was just rolled back,
+     * so the next statement starts a new one that sees it), or null
+     */
+    private BillDTO findCommitted(Connection conn, String requestId) throws SQLException {
+        BillDTO existing = findExisting(conn, requestId);
+        conn.commit();
+        return existing;
+    }
 
-                if (availableStock < item.getQuantity()) {
-                    throw new IllegalArgumentException(
-                            "Insufficient stock for " + product.getName() +
-                                    ". Available: " + availableStock + ", Requested: " + item.getQuantity()
-                    );
-                }
+    /**
+     * Validate, price and persist the bill on the transaction's connection
+     */
+    private BillDTO createBill(Connection conn, CreateBillRequest request,
+                               String userId, String userType) throws SQLException {
+        // Determine channel
+        String channel = request.getChannel() != null ? request.getChannel() : "IN_STORE";
+
+        System.out.println("🔍 DEBUG CreateBillUseCase.execute:");
+        System.out.println("   User ID: '" + userId + "'");
+        System.out.println("   User Type: '" + userType + "'");
+        System.out.println("   Channel from request: '" + request.getChannel() + "'");
+        System.out.println("   Channel (after default): '" + channel + "'");
+        System.out.println("   Payment Method: '" + request.getPaymentMethod() + "'");
+
+        // Log which type of bill we're creating
+        System.out.println("🔨 Creating " + channel + " bill for " + userType + ": " + userId);
+
+        // Calculate totals WITH DISCOUNTS
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal totalDiscount = BigDecimal.ZERO;
+        List<BillItemDTO> billItems = new ArrayList<>();
+
+        // All products in one query instead of one per line
+        List<String> productCodes = new ArrayList<>();
+        for (CreateBillRequest.BillItemRequest item : request.getItems()) {
+            productCodes.add(item.getProductCode());
+        }
+        Map<String, Product> products = productDao.findByProductCodes(conn, productCodes);
 
-                // Use discounted price if active discount exists
-                BigDecimal priceAtSale = product.hasActiveDiscount() ?
-                        product.getDiscountedPrice() : product.getUnitPrice();
-
-                // Calculate item discount amount
-                BigDecimal itemDiscount = BigDecimal.ZERO;
-                if (product.hasActiveDiscount()) {
-                    BigDecimal originalItemTotal = product.getUnitPrice()
-                            .multiply(BigDecimal.valueOf(item.getQuantity()));
-                    BigDecimal discountedItemTotal = priceAtSale
-                            .multiply(BigDecimal.valueOf(item.getQuantity()));
-                    itemDiscount = originalItemTotal.subtract(discountedItemTotal);
-
-                    System.out.println("🎯 Discount applied to " + product.getName() + ": " +
-                            product.getDiscountPercentage() + "% off (Rs. " + itemDiscount + ")");
-                }
+        for (CreateBillRequest.BillItemRequest item : request.getItems()) {
+            Product product = products.get(item.getProductCode());
 
-                BigDecimal itemTotal = priceAtSale.multiply(BigDecimal.valueOf(item.getQuantity()));
-                subtotal = subtotal.add(itemTotal);
-                totalDiscount = totalDiscount.add(itemDiscount);
-
-                billItems.add(new BillItemDTO(
-                        null,
-                        item.getProductCode(),
-                        product.getName(),
-                        item.getQuantity(),
-                        priceAtSale,
-                        itemTotal
-                ));
+            if (product == null) {
+                throw new IllegalArgumentException("Product not found: " + item.getProductCode());
             }
 
-            BigDecimal totalAmount = subtotal;
+            // Check if product is deleted
+            if (product.isDeleted()) {
+                throw new IllegalArgumentException("Product is no longer available: " + item.getProductCode());
+            }
 
-            // Calculate change for cash payments
-            BigDecimal amountPaid = request.getAmountPaid();
-            BigDecimal changeAmount = BigDecimal.ZERO;
+            // Check stock availability - USE WEBSITE for ONLINE, SHELF for IN_STORE
+            int availableStock = "ONLINE".equals(channel) ?
+                    product.getWebsiteQuantity() : product.getShelfQuantity();
 
-            if (amountPaid != null) {
-                if (amountPaid.compareTo(totalAmount) < 0) {
-                    throw new IllegalArgumentException(
-                            "Amount paid (Rs. " + amountPaid + ") is less than total amount (Rs. " + totalAmount + ")"
-                    );
-                }
-                changeAmount = amountPaid.subtract(totalAmount);
-            } else {
-                amountPaid = totalAmount; // For card/digital payments
+            if (availableStock < item.getQuantity()) {
+                throw new IllegalArgumentException(
+                        "Insufficient stock for " + product.getName() +
+                                ". Available: " + availableStock + ", Requested: " + item.getQuantity()
+                );
             }
 
-            // 🆕 Generate tracking number for online orders
-            String trackingNumber = null;
-            LocalDate estimatedDeliveryDate = null;
-            if ("ONLINE".equals(channel)) {
-                trackingNumber = generateTrackingNumber();
-                estimatedDeliveryDate = LocalDate.now().plusDays(5); // 5 days delivery
+            // Use discounted price if active discount exists
+            BigDecimal priceAtSale = product.hasActiveDiscount() ?
+                    product.getDiscountedPrice() : product.getUnitPrice();
+
+            // Calculate item discount amount
+            BigDecimal itemDiscount = BigDecimal.ZERO;
+            if (product.hasActiveDiscount()) {
+                BigDecimal originalItemTotal = product.getUnitPrice()
+                        .multiply(BigDecimal.valueOf(item.getQuantity()));
+                BigDecimal discountedItemTotal = priceAtSale
+                        .multiply(BigDecimal.valueOf(item.getQuantity()));
+                itemDiscount = originalItemTotal.subtract(discountedItemTotal);
+
+                System.out.println("🎯 Discount applied to " + product.getName() + ": " +
+                        product.getDiscountPercentage() + "% off (Rs. " + itemDiscount + ")");
             }
 
-            // 🆕 Determine order and payment status
-            String orderStatus = "ONLINE".equals(channel) ?
-                    (request.getOrderStatus() != null ? request.getOrderStatus() : "PENDING") :
-                    null;
-
-            String paymentStatus = "ONLINE".equals(channel) ?
-                    (request.getPaymentStatus() != null ? request.getPaymentStatus() : "PENDING") :
-                    null;
-
-            // 🆕 Create bill with customer order support
-            String billNumber = billDao.createBill(
-                    userId,
-                    userType,
-                    channel,
-                    request.getPaymentMethod(),
-                    subtotal,
-                    totalDiscount,
-                    totalAmount,
-                    amountPaid,
-                    changeAmount,
-                    // Customer order fields
-                    request.getDeliveryAddress(),
-                    request.getDeliveryCity(),
-                    request.getDeliveryPostalCode(),
-                    request.getDeliveryPhone(),
-                    request.getPaymentMethodDetails(),
-                    orderStatus,
-                    paymentStatus,
-                    trackingNumber,
-                    estimatedDeliveryDate
-            );
-
-            System.out.println("✅ Bill created: " + billNumber + " | Channel: " + channel);
-
-            // Add items and deduct stock
-            for (int i = 0; i < request.getItems().size(); i++) {
-                CreateBillRequest.BillItemRequest requestItem = request.getItems().get(i);
-                BillItemDTO billItem = billItems.get(i);
-
-                billDao.addBillItem(
-                        billNumber,
-                        requestItem.getProductCode(),
-                        requestItem.getQuantity(),
-                        billItem.getUnitPrice(),
-                        BigDecimal.ZERO
-                );
+            BigDecimal itemTotal = priceAtSale.multiply(BigDecimal.valueOf(item.getQuantity()));
+            subtotal = subtotal.add(itemTotal);
+            totalDiscount = totalDiscount.add(itemDiscount);
+
+            billItems.add(new BillItemDTO(
+                    null,
+                    item.getProductCode(),
+                    product.getName(),
+                    item.getQuantity(),
+                    priceAtSale,
+                    itemTotal
+            ));
+        }
 
-                // Deduct from correct location based on channel
-                String deductionLocation = "ONLINE".equals(channel) ? "WEBSITE" : "SHELF";
+        BigDecimal totalAmount = subtotal;
 
-                int batchIdUsed = billDao.deductStockForSale(
-                        requestItem.getProductCode(),
-                        requestItem.getQuantity(),
-                        billNumber,
-                        userId,
-                        deductionLocation
-                );
+        // Calculate change for cash payments
+        BigDecimal amountPaid = request.getAmountPaid();
+        BigDecimal changeAmount = BigDecimal.ZERO;
 
-                System.out.println("Product " + requestItem.getProductCode() +
-                        " deducted from " + deductionLocation + " batch_id: " + batchIdUsed);
+        if (amountPaid != null) {
+            if (amountPaid.compareTo(totalAmount) < 0) {
+                throw new IllegalArgumentException(
+                        "Amount paid (Rs. " + amountPaid + ") is less than total amount (Rs. " + totalAmount + ")"
+                );
             }
+            changeAmount = amountPaid.subtract(totalAmount);
+        } else {
+            amountPaid = totalAmount; // For card/digital payments
+        }
 
-            BillDTO finalBill = billDao.getBillByNumber(billNumber);
+        // 🆕 Generate tracking number for online orders
+        String trackingNumber = null;
+        LocalDate estimatedDeliveryDate = null;
+        if ("ONLINE".equals(channel)) {
+            trackingNumber = generateTrackingNumber();
+            estimatedDeliveryDate = LocalDate.now().plusDays(5); // 5 days delivery
+        }
 
-            // Log discount summary
-            if (totalDiscount.compareTo(BigDecimal.ZERO) > 0) {
-                System.out.println("💰 Total discount saved: Rs. " + totalDiscount);
-            }
+        // 🆕 Determine order and payment status
+        String orderStatus = "ONLINE".equals(channel) ?
+                (request.getOrderStatus() != null ? request.getOrderStatus() : "PENDING") :
+                null;
+
+        String paymentStatus = "ONLINE".equals(channel) ?
+                (request.getPaymentStatus() != null ? request.getPaymentStatus() : "PENDING") :
+                null;
+
+        LocalDateTime transactionDate = LocalDateTime.now(BillNumberAllocator.BUSINESS_ZONE).withNano(0);
+
+        // 🆕 Create bill with customer order support
+        String billNumber = billDao.createBill(
+                conn,
+                userId,
+                userType,
+                channel,
+                request.getPaymentMethod(),
+                subtotal,
+                totalDiscount,
+                totalAmount,
+                amountPaid,
+                changeAmount,
+                // Customer order fields
+                request.getDeliveryAddress(),
+                request.getDeliveryCity(),
+                request.getDeliveryPostalCode(),
+                request.getDeliveryPhone(),
+                request.getPaymentMethodDetails(),
+                orderStatus,
+                paymentStatus,
+                trackingNumber,
+                estimatedDeliveryDate,
+                transactionDate
+        );
+
+        System.out.println("✅ Bill created: " + billNumber + " | Channel: " + channel);
+
+        // Add all items in one batch
+        List<Long> billItemIds = billDao.addBillItems(conn, billNumber, billItems);
+
+        // Deduct from correct location based on channel
+        String deductionLocation = "ONLINE".equals(channel) ? "WEBSITE" : "SHELF";
+
+        // Whole basket in one procedure call (rows locked in product code order)
+        Map<String, Integer> basket = new LinkedHashMap<>();
+        for (CreateBillRequest.BillItemRequest requestItem : request.getItems()) {
+            basket.merge(requestItem.getProductCode(), requestItem.getQuantity(), Integer::sum);
+        }
 
-            return finalBill;
+        List<StockAllocationDTO> allocations = billDao.deductStockForBasket(
+                conn, basket, billNumber, userId, deductionLocation);
 
-        } catch (SQLException e) {
-            System.err.println("SQL Error in CreateBillUseCase: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to create bill: " + e.getMessage(), e);
+        for (StockAllocationDTO allocation : allocations) {
+            System.out.println("Product " + allocation.getProductCode() + " x" + allocation.getQuantity() +
+                    " deducted from " + deductionLocation + " batch_id: " + allocation.getBatchId());
         }
+
+        // Build the result from what was just written instead of reading the bill back
+        List<BillItemDTO> savedItems = new ArrayList<>();
+        for (int i = 0; i < billItems.size(); i++) {
+            BillItemDTO item = billItems.get(i);
+            savedItems.add(new BillItemDTO(
+                    i < billItemIds.size() ? billItemIds.get(i) : null,
+                    item.getProductCode(),
+                    item.getProductName(),
+                    item.getQuantity(),
+                    item.getUnitPrice(),
+                    item.getTotalPrice()
+            ));
+        }
+
+        BillDTO finalBill = new BillDTO();
+        finalBill.setBillNumber(billNumber);
+        finalBill.setBillDate(transactionDate);
+        finalBill.setTotalAmount(totalAmount);
+        finalBill.setUserId(userId);
+        finalBill.setCashierName(billDao.findUserFullName(conn, userId));
+        finalBill.setChannel(channel);
+        finalBill.setSubtotal(subtotal);
+        finalBill.setDiscountAmount(totalDiscount);
+        finalBill.setAmountPaid(amountPaid);
+        finalBill.setChangeAmount(changeAmount);
+        finalBill.setOrderStatus(orderStatus);
+        finalBill.setPaymentStatus(paymentStatus);
+        finalBill.setTrackingNumber(trackingNumber);
+        finalBill.setEstimatedDeliveryDate(estimatedDeliveryDate);
+        finalBill.setItems(savedItems);
+
+        // Log discount summary
+        if (totalDiscount.compareTo(BigDecimal.ZERO) > 0) {
+            System.out.println("💰 Total discount saved: Rs. " + totalDiscount);
+        }
+
+        return finalBill;
     }
 
     /**
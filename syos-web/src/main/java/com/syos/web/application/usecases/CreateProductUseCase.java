@@ -53,6 +53,7 @@ public class CreateProductUseCase {
 
         // Step 5: Save to repository
         Product savedProduct = productRepository.save(product);
+        productRepository.invalidateCatalog();
 
         // Step 6: Convert to DTO and return
         return new ProductDTO(
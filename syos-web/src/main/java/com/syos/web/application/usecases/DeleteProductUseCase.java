@@ -31,6 +31,10 @@ public class DeleteProductUseCase {
         }
 
         // Step 3: Perform soft delete
-        return productRepository.deleteByProductCode(productCode);
+        boolean deleted = productRepository.deleteByProductCode(productCode);
+        if (deleted) {
+            productRepository.invalidateCatalog();
+        }
+        return deleted;
     }
 }
\ No newline at end of file
@@ -57,6 +57,7 @@ public class ReceiveStockUseCase {
         } catch (SQLException e) {
             throw new RuntimeException("Failed to add to inventory location: " + e.getMessage(), e);
         }
+        productRepository.invalidateCatalog();
 
         // Step 7: Convert to DTO and return
         return new StockBatchDTO(
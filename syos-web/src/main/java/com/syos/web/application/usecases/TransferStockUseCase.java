@@ -35,7 +35,9 @@ public class TransferStockUseCase {
 
         // Step 3: Call stored procedure to transfer stock using FEFO
         try {
-            return callTransferStockProcedure(request);
+            TransferStockResponse response = callTransferStockProcedure(request);
+            productRepository.invalidateCatalog();
+            return response;
         } catch (SQLException e) {
             throw new RuntimeException("Failed to transfer stock: " + e.getMessage(), e);
         }
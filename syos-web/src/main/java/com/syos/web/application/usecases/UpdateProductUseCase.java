@@ -54,6 +54,7 @@ public class UpdateProductUseCase {
 
         // Step 5: Save updated product
         Product updatedProduct = productRepository.update(product);
+        productRepository.invalidateCatalog();
 
         // Step 6: Convert to DTO and return
         return new ProductDTO(
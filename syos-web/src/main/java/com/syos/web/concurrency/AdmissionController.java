@@ -0,0 +1,95 @@
+package com.syos.web.concurrency;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a bill can still be answered within the caller's budget
+ * Predicted wait = rounds of work ahead (queue depth / parallelism, plus its own round)
+ * x average service time, tracked as an exponentially weighted moving average of
+ * observed processing times.
+ */
+public class AdmissionController {
+
+    private static final double SMOOTHING = 0.2;      // Weight of the newest sample
+    private static final int MAX_RETRY_AFTER_SECONDS = 60;
+
+    private final int parallelism;
+    private double averageServiceMillis;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    /**
+     * @param parallelism          Bills processed at once (workers, or the TASKS concurrency limit)
+     * @param initialServiceMillis Service time assumed until the first bills are measured
+     */
+    public AdmissionController(int parallelism, long initialServiceMillis) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        this.averageServiceMillis = initialServiceMillis;
+    }
+
+    public synchronized void recordServiceTime(long millis) {
+        averageServiceMillis += SMOOTHING * (millis - averageServiceMillis);
+    }
+
+    public synchronized long getAverageServiceMillis() {
+        return Math.round(averageServiceMillis);
+    }
+
+    /**
+     * Time until a bill submitted now would be done
+     */
+    public long predictWaitMillis(int queueDepth) {
+        long rounds = queueDepth / parallelism + 1;
+        return rounds * getAverageServiceMillis();
+    }
+
+    /**
+     * @throws AdmissionRejectedException if the predicted wait exceeds the budget
+     */
+    public void check(int queueDepth, long budgetMillis) {
+        long predicted = predictWaitMillis(queueDepth);
+        if (predicted > budgetMillis) {
+            reject("Predicted wait " + predicted + "ms exceeds " + budgetMillis + "ms", predicted);
+        }
+    }
+
+    /**
+     * @throws AdmissionRejectedException always, with a Retry-After of about the predicted wait
+     */
+    public void reject(String reason, long predictedWaitMillis) {
+        rejected.incrementAndGet();
+        int retryAfter = (int) Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1, (predictedWaitMillis + 999) / 1000));
+        throw new AdmissionRejectedException(reason, predictedWaitMillis, retryAfter);
+    }
+
+    public void recordAdmitted() {
+        admitted.incrementAndGet();
+    }
+
+    public void recordAbandoned() {
+        abandoned.incrementAndGet();
+    }
+
+    public AdmissionStats getStats() {
+        return new AdmissionStats(admitted.get(), rejected.get(), abandoned.get(), getAverageServiceMillis());
+    }
+
+    public static class AdmissionStats {
+        public final long admitted;
+        public final long rejected;
+        public final long abandoned;          // Skipped by workers: the caller had already given up
+        public final long averageServiceMillis;
+
+        public AdmissionStats(long admitted, long rejected, long abandoned, long averageServiceMillis) {
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.abandoned = abandoned;
+            this.averageServiceMillis = averageServiceMillis;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.syos.web.concurrency;
+
+/**
+ * A bill was not queued because it could not be processed within the caller's budget
+ * (servlets answer 503 with Retry-After)
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long predictedWaitMillis;
+    private final int retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long predictedWaitMillis, int retryAfterSeconds) {
+        super(message);
+        this.predictedWaitMillis = predictedWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getPredictedWaitMillis() {
+        return predictedWaitMillis;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
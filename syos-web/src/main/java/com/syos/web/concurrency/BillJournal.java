@@ -0,0 +1,441 @@
+package com.syos.web.concurrency;
+
+import com.google.gson.Gson;
+import com.syos.web.application.dto.CreateBillRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of queued bill requests (append-only, memory-mapped segment files)
+ * A request is written (ENQUEUE) before it goes on the queue and acknowledged (ACK) once its
+ * future completes. Appenders copy into the mapped segment and wait while one flusher thread
+ * forces everything written so far: requests that arrive during a flush share the next one
+ * (group commit), so a rush costs a few msyncs rather than one per bill.
+ * ACKs are not waited for; a lost ACK only means a replay, which CreateBillUseCase turns
+ * into a no-op by request ID.
+ * On open, ENQUEUEs without an ACK are returned by getPending() for replay. Segments whose
+ * requests are all acknowledged are deleted, oldest first.
+ */
+public class BillJournal implements AutoCloseable {
+
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    private static final int HEADER_BYTES = 9;      // length, CRC32 of type + payload, type
+    private static final String PREFIX = "bills-";
+    private static final String SUFFIX = ".journal";
+
+    /**
+     * A journaled request that was never acknowledged
+     */
+    public static class Entry {
+        public final String requestId;
+        public final String userId;
+        public final String userType;
+        public final CreateBillRequest billRequest;
+
+        public Entry(String requestId, String userId, String userType, CreateBillRequest billRequest) {
+            this.requestId = requestId;
+            this.userId = userId;
+            this.userType = userType;
+            this.billRequest = billRequest;
+        }
+    }
+
+    private static class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int pending;            // ENQUEUEs in this segment not yet acknowledged
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final Gson gson = new Gson();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();    // Flusher: something to force
+    private final Condition flushed = lock.newCondition();    // Appenders: their record is durable
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();   // Oldest first, last is active
+    private final Map<String, Segment> unacked = new HashMap<>();
+    private final List<Entry> pending;
+    private final Thread flusher;
+
+    private long nextSegment;
+    private int writeOffset;         // In the active segment
+    private int flushFrom;           // First byte of the active segment not yet forced
+    private long writeSequence;      // Bytes appended since open
+    private long flushedSequence;
+    private boolean closed;
+
+    private long appends;
+    private long acks;
+    private long syncs;
+
+    /**
+     * Open the journal in dir, reading back what earlier runs left unacknowledged
+     *
+     * @param segmentBytes Size of each mapped segment file
+     */
+    public BillJournal(Path dir, int segmentBytes) throws IOException {
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment too small: " + segmentBytes);
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+
+        this.pending = recover();
+        segments.addLast(newSegment());
+
+        this.flusher = new Thread(this::runFlusher, "BillJournalFlusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        System.out.println("✅ BillJournal opened at " + dir + ": " + pending.size() + " requests to replay");
+    }
+
+    /**
+     * Requests journaled by an earlier run and never acknowledged, oldest first
+     */
+    public List<Entry> getPending() {
+        return pending;
+    }
+
+    /**
+     * Journal a request; returns once it is on disk
+     */
+    public void append(BillRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, request.getRequestId());
+        writeString(out, request.getUserId());
+        writeString(out, request.getUserType());
+        writeString(out, gson.toJson(request.getBillRequest()));
+        byte[] record = record(ENQUEUE, bytes.toByteArray());
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Bill journal is closed");
+            }
+            write(record);
+            Segment active = segments.peekLast();
+            active.pending++;
+            unacked.put(request.getRequestId(), active);
+            appends++;
+
+            long target = writeSequence;
+            while (flushedSequence < target) {
+                if (closed) {
+                    throw new IOException("Bill journal closed before the request was flushed");
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark a request done (processed, failed or handed back); it will not be replayed
+     */
+    public void acknowledge(String requestId) {
+        byte[] record;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            writeString(new DataOutputStream(bytes), requestId);
+            record = record(ACK, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);   // In-memory stream
+        }
+
+        lock.lock();
+        try {
+            Segment segment = unacked.remove(requestId);
+            if (segment == null || closed) {
+                return;
+            }
+            write(record);
+            segment.pending--;
+            acks++;
+            deleteAcknowledgedSegments();
+        } catch (IOException e) {
+            // Worst case the request is replayed, and the replay finds its bill
+            System.err.println("⚠️ Bill journal ACK failed for " + requestId + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append a record to the active segment, rolling to a new one if it doesn't fit (lock held)
+     */
+    private void write(byte[] record) throws IOException {
+        if (record.length > segmentBytes) {
+            throw new IOException("Journal record of " + record.length + " bytes exceeds the segment size");
+        }
+        Segment active = segments.peekLast();
+        if (writeOffset + record.length > segmentBytes) {
+            // Rare: force the whole full segment here (the flusher may still be forcing part of it), then carry on in a new one
+            active.buffer.force(0, writeOffset);
+            flushedSequence = writeSequence;
+            flushed.signalAll();
+            active = newSegment();
+            segments.addLast(active);
+        }
+        active.buffer.put(writeOffset, record);
+        writeOffset += record.length;
+        writeSequence += record.length;
+        written.signal();
+    }
+
+    private void runFlusher() {
+        lock.lock();
+        try {
+            while (!closed) {
+                if (flushedSequence == writeSequence) {
+                    written.awaitUninterruptibly();
+                    continue;
+                }
+                Segment active = segments.peekLast();
+                int from = flushFrom;
+                int to = writeOffset;
+                long target = writeSequence;
+                flushFrom = to;
+
+                // Appenders keep writing while the pages are forced; they go in the next batch
+                lock.unlock();
+                try {
+                    active.buffer.force(from, to - from);
+                } finally {
+                    lock.lock();
+                }
+                flushedSequence = Math.max(flushedSequence, target);
+                syncs++;
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the oldest segments once every request in them is acknowledged (lock held)
+     * Oldest first, so an ACK is never deleted while the ENQUEUE it answers is still kept.
+     */
+    private void deleteAcknowledgedSegments() {
+        while (segments.size() > 1 && segments.peekFirst().pending == 0) {
+            Segment segment = segments.removeFirst();
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not delete journal segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        Path path = dir.resolve(String.format("%s%016d%s", PREFIX, nextSegment++, SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        writeOffset = 0;
+        flushFrom = 0;
+        return new Segment(path, channel, buffer);
+    }
+
+    /**
+     * Read every segment left by earlier runs; a torn or corrupt record ends its segment
+     */
+    private List<Entry> recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            nextSegment = Math.max(nextSegment,
+                    Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            Segment segment = new Segment(file, channel, buffer);
+            segments.addLast(segment);
+
+            int offset = 0;
+            while (offset + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || offset + HEADER_BYTES + length > buffer.capacity()) {
+                    break;
+                }
+                byte type = buffer.get(offset + 8);
+                byte[] payload = new byte[length];
+                buffer.get(offset + HEADER_BYTES, payload);
+                if (buffer.getInt(offset + 4) != crc(type, payload)) {
+                    System.err.println("⚠️ Corrupt journal record in " + file + " at " + offset + ", rest skipped");
+                    break;
+                }
+
+                ByteBuffer in = ByteBuffer.wrap(payload);
+                String requestId = readString(in);
+                if (type == ENQUEUE) {
+                    String userId = readString(in);
+                    String userType = readString(in);
+                    CreateBillRequest billRequest = gson.fromJson(readString(in), CreateBillRequest.class);
+                    entries.put(requestId, new Entry(requestId, userId, userType, billRequest));
+                    unacked.put(requestId, segment);
+                    segment.pending++;
+                } else if (type == ACK) {
+                    entries.remove(requestId);
+                    Segment owner = unacked.remove(requestId);
+                    if (owner != null) {
+                        owner.pending--;
+                    }
+                }
+                offset += HEADER_BYTES + length;
+            }
+        }
+
+        // Everything in them acknowledged; the new active segment keeps the rest from being dropped early
+        while (!segments.isEmpty() && segments.peekFirst().pending == 0) {
+            Segment segment = segments.removeFirst();
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    private static byte[] record(byte type, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length);
+        record.putInt(crc(type, payload));
+        record.put(type);
+        record.put(payload);
+        return record.array();
+    }
+
+    private static int crc(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public JournalStats getStats() {
+        lock.lock();
+        try {
+            return new JournalStats(appends, acks, syncs, unacked.size(), segments.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force what is left and stop the flusher
+     * Unacknowledged requests stay in the journal for the next start.
+     */
+    @Override
+    public void close() {
+        int left;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Segment active = segments.peekLast();
+            if (writeOffset > flushFrom) {
+                active.buffer.force(flushFrom, writeOffset - flushFrom);
+                flushFrom = writeOffset;
+            }
+            flushedSequence = writeSequence;
+            left = unacked.size();
+            written.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not close journal segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+        System.out.println("✅ BillJournal closed: " + left + " requests left to replay");
+    }
+
+    public static class JournalStats {
+        public final long appends;
+        public final long acks;
+        public final long syncs;          // Forced flushes; appends / syncs = requests per group commit
+        public final int unacknowledged;
+        public final int segments;
+
+        public JournalStats(long appends, long acks, long syncs, int unacknowledged, int segments) {
+            this.appends = appends;
+            this.acks = acks;
+            this.syncs = syncs;
+            this.unacknowledged = unacknowledged;
+            this.segments = segments;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.infrastructure.persistence.dao.BillSequenceDao;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out bill numbers (format: BILL-YYYYMMDD-XXXXXX) without a database round trip per bill
+ * Reserves a block of numbers per day from the database, then serves the block
+ * from an AtomicLong; only an exhausted block or a new day goes back to the database.
+ * Numbers left in a block at shutdown are skipped, never reused.
+ */
+public class BillNumberAllocator {
+
+    /**
+     * Source of number blocks (BillSequenceDao in production)
+     */
+    public interface BlockSource {
+        /**
+         * @return the highest number of the newly reserved block
+         */
+        long reserve(LocalDate day, int blockSize) throws SQLException;
+    }
+
+    public static final ZoneId BUSINESS_ZONE = ZoneId.of("Asia/Colombo");
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static BillNumberAllocator instance;
+
+    private final BlockSource source;
+    private final int blockSize;
+    private final Clock clock;
+    private final AtomicReference<Block> current = new AtomicReference<>();
+    private final Object reserveLock = new Object();
+
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong blocksReserved = new AtomicLong();
+
+    public BillNumberAllocator(BlockSource source, int blockSize, Clock clock) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.source = source;
+        this.blockSize = blockSize;
+        this.clock = clock;
+    }
+
+    public static synchronized BillNumberAllocator getInstance() {
+        if (instance == null) {
+            BillSequenceDao sequenceDao = new BillSequenceDao();
+            instance = new BillNumberAllocator(
+                    sequenceDao::reserveBlock,
+                    Integer.getInteger("syos.billNumber.blockSize", 100),
+                    Clock.system(BUSINESS_ZONE)
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Next unique bill number for the current Asia/Colombo business day
+     */
+    public String next() throws SQLException {
+        while (true) {
+            LocalDate today = LocalDate.now(clock.withZone(BUSINESS_ZONE));
+            Block block = current.get();
+
+            if (block != null && block.day.equals(today)) {
+                long number = block.cursor.getAndIncrement();
+                if (number <= block.last) {
+                    allocated.incrementAndGet();
+                    return format(today, number);
+                }
+            }
+
+            // Block exhausted or the day rolled over - one thread reserves, the rest retry
+            synchronized (reserveLock) {
+                Block latest = current.get();
+                if (latest == block || latest == null || !latest.day.equals(today)) {
+                    long last = source.reserve(today, blockSize);
+                    current.set(new Block(today, last - blockSize + 1, last));
+                    blocksReserved.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    static String format(LocalDate day, long number) {
+        return "BILL-" + day.format(DAY_FORMAT) + "-" + String.format("%06d", number);
+    }
+
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    public long getBlocksReserved() {
+        return blocksReserved.get();
+    }
+
+    /**
+     * A contiguous range of numbers reserved for one day
+     */
+    private static final class Block {
+        final LocalDate day;
+        final AtomicLong cursor;
+        final long last;
+
+        Block(LocalDate day, long first, long last) {
+            this.day = day;
+            this.cursor = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+}
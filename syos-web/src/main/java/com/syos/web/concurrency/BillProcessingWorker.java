@@ -4,6 +4,14 @@ import com.syos.web.application.usecases.CreateBillUseCase;
 import com.syos.web.infrastructure.persistence.dao.BillDao;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Worker thread that processes bill requests from the queue
  * Demonstrates explicit multithreading for assignment
@@ -11,19 +19,72 @@ import com.syos.web.infrastructure.persistence.dao.ProductDao;
  */
 public class BillProcessingWorker implements Runnable {
 
-    private final RequestQueue<BillRequest> queue;
+    /**
+     * What became of a processed request
+     */
+    public enum Outcome {
+        COMPLETED,   // Bill created
+        FAILED,      // Bill rejected or errored
+        CONFLICT,    // Failed on a stock row lock conflict (see LockConflicts)
+        SKIPPED      // Caller had already given up
+    }
+
+    private final WorkQueue<BillRequest> queue;
     private final String workerName;
     private volatile boolean running = true;
     private final CreateBillUseCase createBillUseCase;
+    private final RetryPolicy retryPolicy;
+    private final QueueTelemetry telemetry;
+    private final AtomicInteger active = new AtomicInteger();
+    private final int batchSize;
+    private final long batchWaitNanos;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedBills = new LongAdder();
+    private final LongAdder batchFallbacks = new LongAdder();
+
+    public BillProcessingWorker(WorkQueue<BillRequest> queue, String workerName) {
+        this(queue, workerName, new CreateBillUseCase(new BillDao(), new ProductDao()));
+    }
+
+    public BillProcessingWorker(WorkQueue<BillRequest> queue, String workerName,
+                                CreateBillUseCase createBillUseCase) {
+        this(queue, workerName, createBillUseCase, RetryPolicy.forBilling());
+    }
+
+    /**
+     * @param retryPolicy Retries bills that fail on a stock row lock conflict
+     */
+    public BillProcessingWorker(WorkQueue<BillRequest> queue, String workerName,
+                                CreateBillUseCase createBillUseCase, RetryPolicy retryPolicy) {
+        this(queue, workerName, createBillUseCase, retryPolicy, new QueueTelemetry());
+    }
 
-    public BillProcessingWorker(RequestQueue<BillRequest> queue, String workerName) {
+    /**
+     * @param telemetry Records wait, processing time and outcome of every request, under workerName
+     */
+    public BillProcessingWorker(WorkQueue<BillRequest> queue, String workerName,
+                                CreateBillUseCase createBillUseCase, RetryPolicy retryPolicy,
+                                QueueTelemetry telemetry) {
+        this(queue, workerName, createBillUseCase, retryPolicy, telemetry, 1, 0);
+    }
+
+    /**
+     * @param batchSize       Bills to commit together in one transaction (1 = each on its own)
+     * @param batchWaitMillis How long to wait for more bills once the first of a batch is taken
+     */
+    public BillProcessingWorker(WorkQueue<BillRequest> queue, String workerName,
+                                CreateBillUseCase createBillUseCase, RetryPolicy retryPolicy,
+                                QueueTelemetry telemetry, int batchSize, long batchWaitMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
         this.queue = queue;
         this.workerName = workerName;
-
-        // Initialize use case
-        BillDao billDao = new BillDao();
-        ProductDao productDao = new ProductDao();
-        this.createBillUseCase = new CreateBillUseCase(billDao, productDao);
+        this.createBillUseCase = createBillUseCase;
+        this.retryPolicy = retryPolicy;
+        this.telemetry = telemetry;
+        this.batchSize = batchSize;
+        this.batchWaitNanos = TimeUnit.MILLISECONDS.toNanos(batchWaitMillis);
 
         System.out.println("✅ Worker thread created: " + workerName);
     }
@@ -37,62 +98,254 @@ public class BillProcessingWorker implements Runnable {
                 // Get next request from queue (blocks if empty)
                 BillRequest request = queue.dequeue();
 
-                // 🆕 Log which type of request we're processing
-                String requestType = request.getUserType();
-                System.out.println("⚙️ [" + workerName + "] Processing " + requestType + " request: " +
-                        request.getRequestId());
+                if (batchSize > 1) {
+                    processBatch(collectBatch(request));
+                } else {
+                    process(request, workerName);
+                }
+
+            } catch (InterruptedException e) {
+                System.out.println("⚠️ [" + workerName + "] Interrupted");
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        System.out.println("🛑 Worker thread stopped: " + workerName);
+    }
 
-                long startTime = System.currentTimeMillis();
+    /**
+     * Run one request through CreateBillUseCase and complete its future
+     * Also used by BillQueueService in TASKS and SHARDED modes.
+     */
+    public Outcome process(BillRequest request, String workerName) {
+        long waitMillis = System.currentTimeMillis() - request.getTimestamp();
+        long start = System.nanoTime();
 
-                try {
-                    // 🆕 UPDATED - Pass userType to use case
-                    var billDTO = createBillUseCase.execute(
-                            request.getBillRequest(),
-                            request.getUserId(),
-                            request.getUserType()  // 🆕 NEW parameter
-                    );
+        Outcome outcome;
+        active.incrementAndGet();
+        try {
+            outcome = execute(request, workerName);
+        } finally {
+            active.decrementAndGet();
+        }
 
-                    long processingTime = System.currentTimeMillis() - startTime;
+        telemetry.recordProcessed(this.workerName, request.getUserType(), outcome, waitMillis,
+                outcome == Outcome.SKIPPED ? 0 : System.nanoTime() - start);
+        return outcome;
+    }
 
-                    // Complete the request with success
-                    BillQueueResponse response = BillQueueResponse.success(
-                            "Bill created successfully",
-                            billDTO,
-                            processingTime
-                    );
+    private Outcome execute(BillRequest request, String workerName) {
+        // The caller timed out or went away: don't create a bill nobody will see
+        if (request.isAbandoned(System.currentTimeMillis())) {
+            request.completeExceptionally(new CancellationException("Caller stopped waiting"));
+            System.out.println("⏭️ [" + workerName + "] Skipped abandoned request: " + request.getRequestId());
+            return Outcome.SKIPPED;
+        }
+
+        // 🆕 Log which type of request we're processing
+        String requestType = request.getUserType();
+        System.out.println("⚙️ [" + workerName + "] Processing " + requestType + " request: " +
+                request.getRequestId());
+
+        long startTime = System.currentTimeMillis();
+
+        try {
+            // 🆕 UPDATED - Pass userType to use case
+            // A deadlock rolls back the whole transaction, so a conflict retries the whole bill,
+            // for as long as the caller is still waiting
+            // Journal replays and Idempotency-Key retries: create their bill at most once
+            var billDTO = retryPolicy.execute(
+                    () -> request.isIdempotent()
+                            ? createBillUseCase.execute(
+                                    request.getBillRequest(),
+                                    request.getUserId(),
+                                    request.getUserType(),
+                                    request.getRequestId())
+                            : createBillUseCase.execute(
+                                    request.getBillRequest(),
+                                    request.getUserId(),
+                                    request.getUserType()  // 🆕 NEW parameter
+                            ),
+                    () -> !request.isAbandoned(System.currentTimeMillis())
+            );
 
-                    request.complete(response);
+            long processingTime = System.currentTimeMillis() - startTime;
 
-                    // 🆕 Enhanced logging
-                    System.out.println("✅ [" + workerName + "] " + requestType + " request completed: " +
-                            request.getRequestId() + " (" + processingTime + "ms)");
+            // Complete the request with success
+            BillQueueResponse response = BillQueueResponse.success(
+                    "Bill created successfully",
+                    billDTO,
+                    processingTime
+            );
 
-                } catch (Exception e) {
-                    long processingTime = System.currentTimeMillis() - startTime;
+            request.complete(response);
 
-                    // Complete the request with error
-                    BillQueueResponse response = BillQueueResponse.error(
-                            e.getMessage(),
-                            processingTime
-                    );
+            // 🆕 Enhanced logging
+            System.out.println("✅ [" + workerName + "] " + requestType + " request completed: " +
+                    request.getRequestId() + " (" + processingTime + "ms)");
+            return Outcome.COMPLETED;
 
-                    request.complete(response);
+        } catch (Exception e) {
+            long processingTime = System.currentTimeMillis() - startTime;
 
-                    System.err.println("❌ [" + workerName + "] " + requestType + " request failed: " +
-                            request.getRequestId() + " - " + e.getMessage());
+            // Complete the request with error
+            BillQueueResponse response = BillQueueResponse.error(
+                    e.getMessage(),
+                    processingTime
+            );
+
+            request.complete(response);
+
+            System.err.println("❌ [" + workerName + "] " + requestType + " request failed: " +
+                    request.getRequestId() + " - " + e.getMessage());
+            return LockConflicts.isConflict(e) ? Outcome.CONFLICT : Outcome.FAILED;
+        }
+    }
+
+    /**
+     * The first request plus whatever else arrives within the batch wait, up to batchSize
+     */
+    private List<BillRequest> collectBatch(BillRequest first) {
+        List<BillRequest> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        long deadline = System.nanoTime() + batchWaitNanos;
+        try {
+            while (batch.size() < batchSize) {
+                BillRequest next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
                 }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Finish what was taken; the loop stops at the next dequeue
+            Thread.currentThread().interrupt();
+        }
+        return batch;
+    }
 
-            } catch (InterruptedException e) {
-                System.out.println("⚠️ [" + workerName + "] Interrupted");
-                Thread.currentThread().interrupt();
-                break;
+    /**
+     * Create the bills of a batch in one transaction and complete each future on its own
+     * A bill that fails is rolled back alone (CreateBillUseCase.executeBatch) and gets its
+     * error; one that hit a lock conflict, or every bill if the whole transaction failed,
+     * is run again by itself through process(), with the usual retries.
+     *
+     * @return Outcome of each request, in batch order
+     */
+    public List<Outcome> processBatch(List<BillRequest> batch) {
+        Outcome[] outcomes = new Outcome[batch.size()];
+        List<Integer> live = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).isAbandoned(now)) {
+                outcomes[i] = process(batch.get(i), workerName);
+            } else {
+                live.add(i);
             }
         }
+        if (live.size() == 1) {
+            outcomes[live.get(0)] = process(batch.get(live.get(0)), workerName);
+        } else if (live.size() > 1) {
+            executeBatch(batch, live, outcomes);
+        }
+        return Arrays.asList(outcomes);
+    }
 
-        System.out.println("🛑 Worker thread stopped: " + workerName);
+    private void executeBatch(List<BillRequest> batch, List<Integer> live, Outcome[] outcomes) {
+        List<CreateBillUseCase.BatchItem> items = new ArrayList<>(live.size());
+        for (int i : live) {
+            BillRequest request = batch.get(i);
+            items.add(new CreateBillUseCase.BatchItem(request.getBillRequest(), request.getUserId(),
+                    request.getUserType(), request.isIdempotent() ? request.getRequestId() : null));
+        }
+
+        System.out.println("📦 [" + workerName + "] Processing " + live.size() + " requests in one transaction");
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        active.addAndGet(live.size());
+        try {
+            createBillUseCase.executeBatch(items);
+        } catch (RuntimeException e) {
+            // Nothing was committed: each bill goes again on its own
+            batchFallbacks.increment();
+            System.err.println("⚠️ [" + workerName + "] Batch failed, processing its " + live.size() +
+                    " requests one by one: " + e.getMessage());
+            active.addAndGet(-live.size());
+            for (int i : live) {
+                outcomes[i] = process(batch.get(i), workerName);
+            }
+            return;
+        }
+        active.addAndGet(-live.size());
+        batches.increment();
+        batchedBills.add(live.size());
+
+        // The bills shared one transaction: each is charged its share of the time
+        long shareNanos = (System.nanoTime() - start) / live.size();
+        long shareMillis = TimeUnit.NANOSECONDS.toMillis(shareNanos);
+
+        for (int k = 0; k < live.size(); k++) {
+            BillRequest request = batch.get(live.get(k));
+            CreateBillUseCase.BatchItem item = items.get(k);
+            Outcome outcome;
+            if (item.getBill() != null) {
+                request.complete(BillQueueResponse.success("Bill created successfully", item.getBill(), shareMillis));
+                outcome = Outcome.COMPLETED;
+            } else if (LockConflicts.isConflict(item.getError())) {
+                outcomes[live.get(k)] = process(request, workerName);
+                continue;
+            } else {
+                request.complete(BillQueueResponse.error(item.getError().getMessage(), shareMillis));
+                System.err.println("❌ [" + workerName + "] " + request.getUserType() + " request failed: " +
+                        request.getRequestId() + " - " + item.getError().getMessage());
+                outcome = Outcome.FAILED;
+            }
+            outcomes[live.get(k)] = outcome;
+            telemetry.recordProcessed(workerName, request.getUserType(), outcome,
+                    startMillis - request.getTimestamp(), shareNanos);
+        }
+    }
+
+    /**
+     * Requests being processed right now (more than one when TASKS mode shares this worker)
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    public RetryPolicy.RetryStats getRetryStats() {
+        return retryPolicy.getStats();
+    }
+
+    public BatchStats getBatchStats() {
+        return new BatchStats(batches.sum(), batchedBills.sum(), batchFallbacks.sum());
     }
 
     public void stop() {
         running = false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Micro-batching statistics (all zero unless batchSize > 1)
+     */
+    public static class BatchStats {
+        public final long batches;          // Transactions that committed more than one bill
+        public final long bills;            // Bills in those transactions
+        public final long fallbacks;        // Batches that failed as a whole and ran one by one
+
+        public BatchStats(long batches, long bills, long fallbacks) {
+            this.batches = batches;
+            this.bills = bills;
+            this.fallbacks = fallbacks;
+        }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0.0 : (double) bills / batches;
+        }
+
+        public BatchStats plus(BatchStats other) {
+            return new BatchStats(batches + other.batches, bills + other.bills, fallbacks + other.fallbacks);
+        }
+    }
+}
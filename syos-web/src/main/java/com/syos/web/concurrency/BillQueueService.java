@@ -1,10 +1,27 @@
 package com.syos.web.concurrency;
 
 import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.application.usecases.CreateBillUseCase;
+import com.syos.web.db.Db;
+import com.syos.web.infrastructure.persistence.dao.BillDao;
+import com.syos.web.infrastructure.persistence.dao.ProductDao;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
  * Service that manages the bill processing queue and worker threads
@@ -13,38 +30,225 @@ import java.util.concurrent.CompletableFuture;
  */
 public class BillQueueService {
 
+    /**
+     * How dequeued requests are run
+     */
+    public enum ExecutionMode {
+        WORKERS,   // Fixed pool of BillProcessingWorker threads
+        TASKS,     // One thread per request (virtual where the JVM has them), bounded by a semaphore
+        SHARDED    // One worker per shard; bills go to the shard owning their hottest product
+    }
+
+    /**
+     * How long callers wait for a bill unless they say otherwise (the servlets' response timeout)
+     */
+    public static final long DEFAULT_BUDGET_MS = 30_000;
+
+    /**
+     * Retry-After for bills turned away because the service is shutting down (e.g. a redeploy)
+     */
+    static final int SHUTDOWN_RETRY_AFTER_SECONDS = 5;
+
+    private static final long DRAIN_POLL_MS = 20;
+    private static final Pattern IDEMPOTENCY_KEY = Pattern.compile("[A-Za-z0-9._:-]{1,64}");
+
     private static BillQueueService instance;
 
-    private final RequestQueue<BillRequest> queue;
+    private final FairRequestQueue<BillRequest> queue;
     private final List<Thread> workerThreads;
     private final List<BillProcessingWorker> workers;
     private final int numWorkers;
+    private final ExecutionMode mode;
+    private final int maxConcurrency;
+    private final CreateBillUseCase createBillUseCase;
+    private final AdmissionController admission;
+    private final RetryPolicy retryPolicy;      // Shared by all workers; each shard has its own
+    private final QueueTelemetry telemetry = new QueueTelemetry();
+    private final BillJournal journal;          // null when journaling is off
+    private final IdempotencyCache idempotency =
+            new IdempotencyCache(Integer.getInteger("syos.billing.idempotency.maxEntries", 10_000));
+
+    // TASKS mode only
+    private final Semaphore permits;
+    private final ExecutorService taskExecutor;
+    private volatile boolean dispatching = true;
+
+    // Shutdown
+    private volatile boolean accepting = true;
+    private volatile boolean closed;             // Workers stopped; anything still queued is rejected
+
+    // Bills accepted and not yet answered, wherever they are (queued, handed to a thread, processing)
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private ShutdownReport shutdownReport;
+
+    // SHARDED mode only
+    private final List<Shard> shards;
+    private final ShardRouter router;
 
     private BillQueueService(int queueSize, int numWorkers) {
-        this.queue = new RequestQueue<>(queueSize);
+        this(queueSize, numWorkers, ExecutionMode.WORKERS, numWorkers,
+                new CreateBillUseCase(new BillDao(), new ProductDao()));
+    }
+
+    /**
+     * @param numWorkers     Worker threads in WORKERS mode, shards (one worker each) in SHARDED mode
+     * @param maxConcurrency Requests processed at once in TASKS mode (normally the connection pool size)
+     */
+    public BillQueueService(int queueSize, int numWorkers, ExecutionMode mode, int maxConcurrency,
+                            CreateBillUseCase createBillUseCase) {
+        this(queueSize, numWorkers, mode, maxConcurrency, createBillUseCase, openJournal());
+    }
+
+    /**
+     * @param journal Write-ahead journal for queued bills (null for none); its pending requests are replayed
+     */
+    public BillQueueService(int queueSize, int numWorkers, ExecutionMode mode, int maxConcurrency,
+                            CreateBillUseCase createBillUseCase, BillJournal journal) {
+        this.queue = newBillQueue(queueSize);
+        this.journal = journal;
         this.numWorkers = numWorkers;
+        this.mode = mode;
+        this.maxConcurrency = maxConcurrency;
+        this.createBillUseCase = createBillUseCase;
+        this.admission = new AdmissionController(
+                mode == ExecutionMode.TASKS ? maxConcurrency : numWorkers,
+                Long.getLong("syos.billing.initialServiceMs", 200L));
+        this.retryPolicy = RetryPolicy.forBilling();
         this.workerThreads = new ArrayList<>();
         this.workers = new ArrayList<>();
+        this.shards = new ArrayList<>();
 
-        // Start worker threads
-        startWorkers();
+        if (mode == ExecutionMode.TASKS) {
+            this.permits = new Semaphore(maxConcurrency);
+            this.taskExecutor = newTaskExecutor();
+            this.router = null;
+            startDispatcher();
+            System.out.println("✅ BillQueueService initialized in TASKS mode: up to " + maxConcurrency +
+                    " bills at once, queue capacity: " + queueSize);
+        } else if (mode == ExecutionMode.SHARDED) {
+            this.permits = null;
+            this.taskExecutor = null;
+            this.router = new ShardRouter(numWorkers,
+                    Integer.getInteger("syos.billing.shard.maxTrackedProducts", ShardRouter.DEFAULT_MAX_TRACKED_PRODUCTS));
+            startShards(Math.max(1, queueSize / numWorkers));
+            System.out.println("✅ BillQueueService initialized in SHARDED mode: " + numWorkers +
+                    " shards, queue capacity: " + queueSize);
+        } else {
+            this.permits = null;
+            this.taskExecutor = null;
+            this.router = null;
+            startWorkers();
+            System.out.println("✅ BillQueueService initialized with " + numWorkers + " workers, queue capacity: " + queueSize);
+        }
 
-        System.out.println("✅ BillQueueService initialized with " + numWorkers + " workers, queue capacity: " + queueSize);
+        if (journal != null) {
+            replayJournal();
+        }
     }
 
+    /**
+     * Write-ahead journal from syos.billing.journalDir (off when unset),
+     * in segments of syos.billing.journalSegmentMb (default 64)
+     */
+    static BillJournal openJournal() {
+        String dir = System.getProperty("syos.billing.journalDir");
+        if (dir == null || dir.isBlank()) {
+            return null;
+        }
+        try {
+            return new BillJournal(Paths.get(dir), Integer.getInteger("syos.billing.journalSegmentMb", 64) * 1024 * 1024);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open bill journal in " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queue the bills an earlier run accepted but never finished (e.g. a crash mid-rush)
+     * Nobody is waiting for them any more, so they have no deadline; their original request IDs
+     * let CreateBillUseCase skip the ones that did commit before the crash.
+     */
+    private void replayJournal() {
+        List<BillJournal.Entry> entries = journal.getPending();
+        if (entries.isEmpty()) {
+            return;
+        }
+        Thread replay = new Thread(() -> {
+            System.out.println("♻️ Replaying " + entries.size() + " journaled bill requests");
+            for (BillJournal.Entry entry : entries) {
+                BillRequest request = new BillRequest(entry.requestId, entry.billRequest,
+                        entry.userId, entry.userType, 0, true);
+                request.getFuture().whenComplete((response, error) -> journal.acknowledge(request.getRequestId()));
+                track(request);
+                try {
+                    queue.enqueue(request);
+                } catch (InterruptedException e) {
+                    request.cancel();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }, "BillJournalReplay");
+        replay.setDaemon(true);
+        replay.start();
+    }
+
+    /**
+     * Shared service, configured from system properties
+     * (syos.billing.executionMode WORKERS|TASKS|SHARDED, .queueSize, .workers, .maxConcurrency)
+     */
     public static synchronized BillQueueService getInstance() {
         if (instance == null) {
-            instance = new BillQueueService(1000, 20);
-            // Queue size: 1000 requests (handles both cashier + customer)
-            // Workers: 20 threads (processes both types)
+            ExecutionMode mode = ExecutionMode.valueOf(
+                    System.getProperty("syos.billing.executionMode", "WORKERS"));
+            if (mode == ExecutionMode.WORKERS) {
+                instance = new BillQueueService(
+                        Integer.getInteger("syos.billing.queueSize", 1000),
+                        Integer.getInteger("syos.billing.workers", 20));
+                // Queue size: 1000 requests (handles both cashier + customer)
+                // Workers: 20 threads (processes both types)
+            } else {
+                instance = new BillQueueService(
+                        Integer.getInteger("syos.billing.queueSize", 1000),
+                        Integer.getInteger("syos.billing.workers", 20),
+                        mode,
+                        Integer.getInteger("syos.billing.maxConcurrency", Db.MAX_POOL_SIZE),
+                        new CreateBillUseCase(new BillDao(), new ProductDao()));
+            }
         }
         return instance;
     }
 
+    /**
+     * CASHIER and CUSTOMER lanes sharing queueSize, so an online rush can't starve the tills
+     * (syos.billing.cashierCapacity, .cashierWeight, .customerWeight, .maxWaitMs;
+     * defaults: half the queue each, 4:1 for cashiers, online orders jump ahead after 5 seconds)
+     */
+    static FairRequestQueue<BillRequest> newBillQueue(int queueSize) {
+        int cashierCapacity = Integer.getInteger("syos.billing.cashierCapacity", queueSize / 2);
+        return new FairRequestQueue<>(
+                List.of(
+                        new FairRequestQueue.Lane("CASHIER", cashierCapacity,
+                                Integer.getInteger("syos.billing.cashierWeight", 4)),
+                        new FairRequestQueue.Lane("CUSTOMER", queueSize - cashierCapacity,
+                                Integer.getInteger("syos.billing.customerWeight", 1))
+                ),
+                BillRequest::getUserType,
+                Long.getLong("syos.billing.maxWaitMs", 5000L)
+        );
+    }
+
+    /**
+     * WORKERS mode; with syos.billing.batch.size > 1 each worker commits up to that many bills
+     * per transaction, waiting at most syos.billing.batch.waitMs (default 2) for them
+     */
     private void startWorkers() {
+        int batchSize = Integer.getInteger("syos.billing.batch.size", 1);
+        long batchWaitMillis = Long.getLong("syos.billing.batch.waitMs", 2L);
         for (int i = 0; i < numWorkers; i++) {
             String workerName = "BillWorker-" + (i + 1);
-            BillProcessingWorker worker = new BillProcessingWorker(queue, workerName);
+            BillProcessingWorker worker = new BillProcessingWorker(
+                    queue, workerName, createBillUseCase, retryPolicy, telemetry, batchSize, batchWaitMillis);
+            telemetry.registerWorker(workerName, 1);
             Thread thread = new Thread(worker, workerName);
 
             workers.add(worker);
@@ -54,6 +258,135 @@ public class BillQueueService {
         }
     }
 
+    /**
+     * TASKS mode: one dispatcher takes a permit, then a request, and hands it to its own thread
+     * Requests wait in the queue (not in the executor) while all permits are taken,
+     * so queue stats still show the backlog.
+     */
+    private void startDispatcher() {
+        BillProcessingWorker processor = new BillProcessingWorker(
+                queue, "BillDispatcher", createBillUseCase, retryPolicy, telemetry);
+        telemetry.registerWorker("BillDispatcher", maxConcurrency);
+        workers.add(processor);
+
+        Thread dispatcher = new Thread(() -> {
+            System.out.println("🚀 Bill dispatcher started");
+            while (dispatching) {
+                try {
+                    permits.acquire();
+                    BillRequest request;
+                    try {
+                        request = queue.dequeue();
+                    } catch (InterruptedException e) {
+                        permits.release();
+                        throw e;
+                    }
+                    dispatch(processor, request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            System.out.println("🛑 Bill dispatcher stopped");
+        }, "BillDispatcher");
+
+        workerThreads.add(dispatcher);
+        dispatcher.start();
+    }
+
+    private void dispatch(BillProcessingWorker processor, BillRequest request) {
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    processor.process(request, Thread.currentThread().getName());
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            request.complete(BillQueueResponse.error("Bill processing is shutting down", 0));
+        }
+    }
+
+    /**
+     * SHARDED mode: a router moves each bill from the lanes to the queue of the shard that owns
+     * its hottest product, and each shard's single worker runs its bills one after another.
+     * Bills sharing a hot product no longer lock the same stock rows from different workers.
+     * A bill is still one transaction on one shard; its other products may belong elsewhere.
+     * The router blocks while the target shard queue is full, which backs up the lanes and
+     * so shows up in admission control.
+     */
+    private void startShards(int shardQueueSize) {
+        for (int i = 0; i < numWorkers; i++) {
+            String shardName = "BillShard-" + (i + 1);
+            BillProcessingWorker processor = new BillProcessingWorker(
+                    queue, shardName, createBillUseCase, RetryPolicy.forBilling(), telemetry);
+            telemetry.registerWorker(shardName, 1);
+            workers.add(processor);
+
+            Shard shard = new Shard(i, new RequestQueue<>(shardQueueSize), processor);
+            shards.add(shard);
+
+            Thread thread = new Thread(() -> runShard(shard, shardName), shardName);
+            workerThreads.add(thread);
+            thread.start();
+        }
+
+        Thread routerThread = new Thread(() -> {
+            System.out.println("🚀 Bill router started");
+            while (dispatching) {
+                try {
+                    BillRequest request = queue.dequeue();
+                    Shard shard = shards.get(router.shardFor(request.getBillRequest()));
+                    shard.routed.incrementAndGet();
+                    shard.queue.enqueue(request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            System.out.println("🛑 Bill router stopped");
+        }, "BillRouter");
+
+        workerThreads.add(routerThread);
+        routerThread.start();
+    }
+
+    private void runShard(Shard shard, String shardName) {
+        System.out.println("🚀 Shard worker started: " + shardName);
+        while (dispatching) {
+            try {
+                BillRequest request = shard.queue.dequeue();
+                shard.record(shard.processor.process(request, shardName));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        System.out.println("🛑 Shard worker stopped: " + shardName);
+    }
+
+    /**
+     * Virtual thread per task when the JVM supports it (Java 21+), otherwise a cached pool of
+     * daemon platform threads; the semaphore keeps either at maxConcurrency
+     */
+    static ExecutorService newTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) factory.invoke(null);
+            System.out.println("✅ Bill tasks run on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "BillTask-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
     /**
      * Submit a bill request for processing (CASHIER - default)
      * Returns a CompletableFuture that will be completed when processing is done
@@ -69,44 +402,339 @@ public class BillQueueService {
      */
     public CompletableFuture<BillQueueResponse> submitBillRequest(
             CreateBillRequest billRequest, String userId, String userType) {
+        return submitBillRequest(billRequest, userId, userType, DEFAULT_BUDGET_MS);
+    }
 
-        BillRequest request = new BillRequest(billRequest, userId, userType);
+    /**
+     * Submit a bill the caller will wait at most budgetMillis for
+     * Fails fast with AdmissionRejectedException when the predicted wait exceeds the budget,
+     * when no queue slot frees up in time, or when the service is shutting down;
+     * workers skip the bill if the caller gives up.
+     */
+    public CompletableFuture<BillQueueResponse> submitBillRequest(
+            CreateBillRequest billRequest, String userId, String userType, long budgetMillis) {
+        return submit(UUID.randomUUID().toString(), billRequest, userId, userType, budgetMillis, false);
+    }
+
+    /**
+     * Submit a bill at most once per client Idempotency-Key (null for none)
+     * A repeated key gets the bill already queued or created under it instead of a new one.
+     * Keys are per user, so two users can't see each other's bills through one.
+     */
+    public CompletableFuture<BillQueueResponse> submitBillRequest(
+            CreateBillRequest billRequest, String userId, String userType, long budgetMillis,
+            String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return submitBillRequest(billRequest, userId, userType, budgetMillis);
+        }
+        if (!IDEMPOTENCY_KEY.matcher(idempotencyKey).matches()) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1-64 letters, digits, '.', '_', ':' or '-'");
+        }
+        String requestId = userId + ":" + idempotencyKey;
+        return idempotency.submit(requestId,
+                () -> enqueue(requestId, billRequest, userId, userType, budgetMillis, true));
+    }
+
+    private CompletableFuture<BillQueueResponse> submit(String requestId, CreateBillRequest billRequest,
+                                                        String userId, String userType, long budgetMillis,
+                                                        boolean idempotent) {
+        return enqueue(requestId, billRequest, userId, userType, budgetMillis, idempotent).getFuture();
+    }
+
+    private BillRequest enqueue(String requestId, CreateBillRequest billRequest,
+                                String userId, String userType, long budgetMillis, boolean idempotent) {
+        if (!accepting) {
+            throw shuttingDown("Bill processing is shutting down");
+        }
+        admission.check(backlog(), budgetMillis);
+        BillRequest request = new BillRequest(requestId, billRequest,
+                userId, userType, budgetMillis, idempotent || journal != null);
+        journal(request);
+        track(request);
 
         try {
-            // Add to queue (blocks if queue is full)
-            queue.enqueue(request);
+            // Wait for a slot only as long as still leaves time to process the bill
+            long enqueueTimeout = Math.max(0, budgetMillis - admission.getAverageServiceMillis());
+            if (!queue.offer(request, enqueueTimeout, TimeUnit.MILLISECONDS)) {
+                forget(request);
+                admission.reject("Queue full for " + enqueueTimeout + "ms", admission.predictWaitMillis(backlog()));
+            }
+            if (closed) {
+                // Queued just as shutdown swept the queue: nobody will take it now
+                rejectWaiting();
+            }
+            admission.recordAdmitted();
+            request.getFuture().whenComplete((response, error) -> {
+                if (response != null) {
+                    admission.recordServiceTime(response.getProcessingTimeMs());
+                } else if (error instanceof CancellationException) {
+                    admission.recordAbandoned();
+                }
+            });
 
             System.out.println("📨 [" + userType + "] Request submitted: " + request.getRequestId() +
                     " | Queue size: " + queue.size() + "/" + (queue.size() + queue.remainingCapacity()));
 
-            return request.getFuture();
+            return request;
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            CompletableFuture<BillQueueResponse> future = new CompletableFuture<>();
-            future.completeExceptionally(new RuntimeException("Request submission interrupted"));
-            return future;
+            // Never queued; completing it also acknowledges it in the journal
+            request.completeExceptionally(new RuntimeException("Request submission interrupted"));
+            return request;
+        }
+    }
+
+    /**
+     * Write the request to the journal (if on) before it is queued; acknowledge it when done
+     */
+    private void journal(BillRequest request) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(request);
+        } catch (IOException e) {
+            throw new IllegalStateException("Bill journal unavailable: " + e.getMessage(), e);
         }
+        request.getFuture().whenComplete((response, error) -> journal.acknowledge(request.getRequestId()));
+    }
+
+    /**
+     * The request was journaled but never queued: it must not be replayed
+     */
+    private void forget(BillRequest request) {
+        // Never queued: nobody will complete it
+        request.cancel();
+        if (journal != null) {
+            journal.acknowledge(request.getRequestId());
+        }
+    }
+
+    /**
+     * Count the bill as outstanding until a worker is done with it (counted before it is queued,
+     * so a bill between the queue and a worker is never missed by the shutdown drain; a caller
+     * giving up does not end it, the worker may still be writing the bill)
+     */
+    private void track(BillRequest request) {
+        outstanding.incrementAndGet();
+        request.getOutcome().whenComplete((response, error) -> outstanding.decrementAndGet());
+    }
+
+    public IdempotencyCache.IdempotencyStats getIdempotencyStats() {
+        return idempotency.getStats();
+    }
+
+    /**
+     * Write-ahead journal counters, or null when journaling is off
+     */
+    public BillJournal.JournalStats getJournalStats() {
+        return journal == null ? null : journal.getStats();
+    }
+
+    /**
+     * Bills waiting: in the lanes, plus in the shard queues in SHARDED mode
+     */
+    private int backlog() {
+        int waiting = queue.size();
+        for (Shard shard : shards) {
+            waiting += shard.queue.size();
+        }
+        return waiting;
+    }
+
+    /**
+     * Bills being processed right now
+     */
+    private int inFlight() {
+        int active = 0;
+        for (BillProcessingWorker worker : workers) {
+            active += worker.getActive();
+        }
+        return active;
     }
 
     /**
      * Get queue statistics
      */
     public QueueStats getStats() {
+        int remaining = queue.remainingCapacity();
+        for (Shard shard : shards) {
+            remaining += shard.queue.remainingCapacity();
+        }
+
+        int inFlight = 0;
+        if (mode == ExecutionMode.TASKS) {
+            inFlight = maxConcurrency - permits.availablePermits();
+        } else {
+            inFlight = inFlight();
+        }
+
         return new QueueStats(
-                queue.size(),
-                queue.remainingCapacity(),
-                numWorkers
+                backlog(),
+                remaining,
+                mode == ExecutionMode.TASKS ? maxConcurrency : numWorkers,
+                mode.name(),
+                inFlight
         );
     }
 
     /**
-     * Shutdown the service
+     * Wait and processing time, throughput, worker utilisation and outcomes by user type,
+     * all from memory
      */
-    public void shutdown() {
-        System.out.println("🛑 Shutting down BillQueueService...");
+    public QueueTelemetry.Snapshot getTelemetry() {
+        return telemetry.getSnapshot(oldestWaitMillis());
+    }
 
+    /**
+     * Age of the oldest bill not yet picked up by a worker
+     */
+    private long oldestWaitMillis() {
+        long oldest = 0;
+        for (FairRequestQueue.LaneStats lane : queue.getLaneStats()) {
+            oldest = Math.max(oldest, lane.oldestWaitMillis);
+        }
+        long now = System.currentTimeMillis();
+        for (Shard shard : shards) {
+            BillRequest head = shard.queue.peek();
+            if (head != null) {
+                oldest = Math.max(oldest, now - head.getTimestamp());
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Micro-batching across all workers (WORKERS mode with syos.billing.batch.size > 1)
+     */
+    public BillProcessingWorker.BatchStats getBatchStats() {
+        BillProcessingWorker.BatchStats stats = new BillProcessingWorker.BatchStats(0, 0, 0);
+        for (BillProcessingWorker worker : workers) {
+            stats = stats.plus(worker.getBatchStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Lock conflict retries across all workers (and shards)
+     */
+    public RetryPolicy.RetryStats getRetryStats() {
+        RetryPolicy.RetryStats stats = retryPolicy.getStats();
+        for (Shard shard : shards) {
+            stats = stats.plus(shard.processor.getRetryStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Routing and outcomes of each shard (empty unless in SHARDED mode)
+     */
+    public List<ShardStats> getShardStats() {
+        List<ShardStats> stats = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            RetryPolicy.RetryStats retries = shard.processor.getRetryStats();
+            stats.add(new ShardStats(
+                    shard.index,
+                    shard.queue.size(),
+                    shard.routed.get(),
+                    shard.completed.get(),
+                    shard.failed.get(),
+                    shard.conflicts.get(),
+                    shard.skipped.get(),
+                    retries.retries,
+                    retries.gaveUp
+            ));
+        }
+        return stats;
+    }
+
+    public AdmissionController.AdmissionStats getAdmissionStats() {
+        return admission.getStats();
+    }
+
+    /**
+     * Depth, capacity and throughput of each lane
+     */
+    public List<FairRequestQueue.LaneStats> getLaneStats() {
+        return queue.getLaneStats();
+    }
+
+    /**
+     * Shutdown the service, draining for syos.billing.drainTimeoutMs (default 10 seconds)
+     */
+    public ShutdownReport shutdown() {
+        return shutdown(Long.getLong("syos.billing.drainTimeoutMs", 10_000L));
+    }
+
+    /**
+     * Graceful shutdown
+     * 1. Stop admitting bills (callers get AdmissionRejectedException: 503 + Retry-After)
+     * 2. Let the workers finish queued and in-flight bills until the drain deadline
+     * 3. Stop the workers and fail whatever is still queued with a retryable AdmissionRejectedException,
+     *    so no caller is left waiting for a future that never completes
+     * Calling it again returns the first report.
+     */
+    public synchronized ShutdownReport shutdown(long drainTimeoutMillis) {
+        if (shutdownReport != null) {
+            return shutdownReport;
+        }
+        long start = System.currentTimeMillis();
+        accepting = false;
+
+        int pending = outstanding.get();
+        System.out.println("🛑 Shutting down BillQueueService: draining " + pending +
+                " bills (up to " + drainTimeoutMillis + "ms)...");
+
+        long deadline = start + drainTimeoutMillis;
+        while (outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        stopWorkers();
+
+        closed = true;
+        int rejected = rejectWaiting();
+        int drained = Math.max(0, pending - rejected);
+
+        // Bills still in flight stay unacknowledged and are replayed (idempotently) next start
+        if (journal != null) {
+            journal.close();
+        }
+
+        shutdownReport = new ShutdownReport(drained, rejected, System.currentTimeMillis() - start);
+        System.out.println("✅ BillQueueService shutdown complete: " + drained + " drained, " +
+                rejected + " rejected (" + shutdownReport.elapsedMillis + "ms)");
+        return shutdownReport;
+    }
+
+    /**
+     * Fail every bill still queued (lanes and shards) with a retryable rejection
+     */
+    private int rejectWaiting() {
+        List<BillRequest> waiting = new ArrayList<>();
+        queue.drainTo(waiting);
+        for (Shard shard : shards) {
+            shard.queue.drainTo(waiting);
+        }
+        for (BillRequest request : waiting) {
+            request.completeExceptionally(shuttingDown("Bill processing shut down before this bill was processed"));
+        }
+        return waiting.size();
+    }
+
+    private static AdmissionRejectedException shuttingDown(String message) {
+        return new AdmissionRejectedException(message, 0, SHUTDOWN_RETRY_AFTER_SECONDS);
+    }
+
+    private void stopWorkers() {
         // Stop all workers
+        dispatching = false;
         for (BillProcessingWorker worker : workers) {
             worker.stop();
         }
@@ -125,18 +753,118 @@ public class BillQueueService {
             }
         }
 
-        System.out.println("✅ BillQueueService shutdown complete");
+        if (taskExecutor != null) {
+            taskExecutor.shutdown();
+            try {
+                taskExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Shut down the shared service, if it was ever started (application shutdown)
+     *
+     * @return What happened to the bills still waiting, or null if there was no service
+     */
+    public static synchronized ShutdownReport shutdownInstance() {
+        if (instance == null) {
+            return null;
+        }
+        ShutdownReport report = instance.shutdown();
+        instance = null;
+        return report;
+    }
+
+    private static class Shard {
+        final int index;
+        final RequestQueue<BillRequest> queue;
+        final BillProcessingWorker processor;
+        final AtomicLong routed = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong conflicts = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+
+        Shard(int index, RequestQueue<BillRequest> queue, BillProcessingWorker processor) {
+            this.index = index;
+            this.queue = queue;
+            this.processor = processor;
+        }
+
+        void record(BillProcessingWorker.Outcome outcome) {
+            switch (outcome) {
+                case COMPLETED:
+                    completed.incrementAndGet();
+                    break;
+                case CONFLICT:
+                    conflicts.incrementAndGet();
+                    failed.incrementAndGet();
+                    break;
+                case FAILED:
+                    failed.incrementAndGet();
+                    break;
+                default:
+                    skipped.incrementAndGet();
+            }
+        }
+    }
+
+    public static class ShardStats {
+        public final int shard;
+        public final int depth;
+        public final long routed;
+        public final long completed;
+        public final long failed;          // Includes conflicts
+        public final long conflicts;       // Failed on a stock row lock conflict, after retries
+        public final long skipped;
+        public final long retries;         // Lock conflicts retried
+        public final long gaveUp;          // Lock conflicts still failing after the last attempt
+
+        public ShardStats(int shard, int depth, long routed, long completed,
+                          long failed, long conflicts, long skipped, long retries, long gaveUp) {
+            this.shard = shard;
+            this.depth = depth;
+            this.routed = routed;
+            this.completed = completed;
+            this.failed = failed;
+            this.conflicts = conflicts;
+            this.skipped = skipped;
+            this.retries = retries;
+            this.gaveUp = gaveUp;
+        }
+    }
+
+    public static class ShutdownReport {
+        public final int drained;         // Queued or in flight at shutdown, and finished
+        public final int rejected;        // Still queued at the drain deadline, failed with a retryable error
+        public final long elapsedMillis;
+
+        public ShutdownReport(int drained, int rejected, long elapsedMillis) {
+            this.drained = drained;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+        }
     }
 
     public static class QueueStats {
         public final int queueSize;
         public final int remainingCapacity;
         public final int numWorkers;
+        public final String executionMode;
+        public final int inFlight;
 
         public QueueStats(int queueSize, int remainingCapacity, int numWorkers) {
+            this(queueSize, remainingCapacity, numWorkers, ExecutionMode.WORKERS.name(), 0);
+        }
+
+        public QueueStats(int queueSize, int remainingCapacity, int numWorkers, String executionMode, int inFlight) {
             this.queueSize = queueSize;
             this.remainingCapacity = remainingCapacity;
             this.numWorkers = numWorkers;
+            this.executionMode = executionMode;
+            this.inFlight = inFlight;
         }
     }
-}
\ No newline at end of file
+}
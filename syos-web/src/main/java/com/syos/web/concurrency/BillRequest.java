@@ -3,6 +3,7 @@ package com.syos.web.concurrency;
 import com.syos.web.application.dto.CreateBillRequest;
 
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -16,16 +17,38 @@ public class BillRequest {
     private final String userId;
     private final String userType;  // 🆕 NEW: "CASHIER" or "CUSTOMER"
     private final long timestamp;
+    private final long deadline;    // Caller stops waiting at this time (0 = no deadline)
+    private final boolean idempotent;  // Request ID recorded with the bill: created at most once
     private final CompletableFuture<BillQueueResponse> future;
+    private final CompletableFuture<BillQueueResponse> outcome;  // Not cancelled with the caller's future
 
     // 🆕 UPDATED constructor with userType
     public BillRequest(CreateBillRequest billRequest, String userId, String userType) {
-        this.requestId = UUID.randomUUID().toString();
+        this(billRequest, userId, userType, 0);
+    }
+
+    /**
+     * @param budgetMillis How long the caller waits for the result (0 = no limit)
+     */
+    public BillRequest(CreateBillRequest billRequest, String userId, String userType, long budgetMillis) {
+        this(UUID.randomUUID().toString(), billRequest, userId, userType, budgetMillis, false);
+    }
+
+    /**
+     * @param requestId Journaled requests keep their ID across a restart, keyed ones are "userId:Idempotency-Key"
+     * @param idempotent Record requestId with the bill, and return the existing bill if it is already there
+     */
+    public BillRequest(String requestId, CreateBillRequest billRequest, String userId, String userType,
+                       long budgetMillis, boolean idempotent) {
+        this.requestId = requestId;
         this.billRequest = billRequest;
         this.userId = userId;
         this.userType = userType;  // 🆕 NEW
         this.timestamp = System.currentTimeMillis();
+        this.deadline = budgetMillis > 0 ? timestamp + budgetMillis : 0;
+        this.idempotent = idempotent;
         this.future = new CompletableFuture<>();
+        this.outcome = new CompletableFuture<>();
     }
 
     // Getters
@@ -50,15 +73,40 @@ public class BillRequest {
         return timestamp;
     }
 
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * Nobody is waiting for the result any more: cancelled/answered, or past the caller's deadline
+     */
+    public boolean isAbandoned(long nowMillis) {
+        return future.isDone() || (deadline > 0 && nowMillis > deadline);
+    }
+
     public CompletableFuture<BillQueueResponse> getFuture() {
         return future;
     }
 
+    /**
+     * What became of the bill once no worker will touch it any more
+     * Unlike getFuture(), a caller giving up does not complete this: a bill already being
+     * created when the caller's future was cancelled still reports how it ended.
+     */
+    public CompletableFuture<BillQueueResponse> getOutcome() {
+        return outcome;
+    }
+
     /**
      * Complete the request with result
      */
     public void complete(BillQueueResponse response) {
         future.complete(response);
+        outcome.complete(response);
     }
 
     /**
@@ -66,5 +114,14 @@ public class BillRequest {
      */
     public void completeExceptionally(Throwable ex) {
         future.completeExceptionally(ex);
+        outcome.completeExceptionally(ex);
+    }
+
+    /**
+     * The request will never reach a worker (not queued, or dropped on the way)
+     */
+    public void cancel() {
+        future.cancel(false);
+        outcome.completeExceptionally(new CancellationException("Bill request was not queued"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,337 @@
+package com.syos.web.concurrency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Multi-lane request queue with weighted fair dequeue
+ * Each lane (e.g. CASHIER, CUSTOMER) is bounded on its own, so a flood in one lane only
+ * blocks that lane's producers. Consumers take from the non-empty lanes by smooth weighted
+ * round robin (4:1 interleaves four cashier bills per online order rather than bursting);
+ * a lane head that has waited longer than maxWait is taken first, so no lane starves.
+ */
+public class FairRequestQueue<T> implements WorkQueue<T> {
+
+    /**
+     * Lane configuration
+     */
+    public static class Lane {
+        public final String name;
+        public final int capacity;
+        public final int weight;
+
+        public Lane(String name, int capacity, int weight) {
+            if (capacity <= 0 || weight <= 0) {
+                throw new IllegalArgumentException("Lane capacity and weight must be positive: " + name);
+            }
+            this.name = name;
+            this.capacity = capacity;
+            this.weight = weight;
+        }
+    }
+
+    public static class LaneStats {
+        public final String name;
+        public final int capacity;
+        public final int weight;
+        public final int depth;
+        public final long enqueued;
+        public final long dequeued;
+        public final long aged;              // Taken ahead of the weights because they waited too long
+        public final long oldestWaitMillis;
+
+        public LaneStats(String name, int capacity, int weight, int depth,
+                         long enqueued, long dequeued, long aged, long oldestWaitMillis) {
+            this.name = name;
+            this.capacity = capacity;
+            this.weight = weight;
+            this.depth = depth;
+            this.enqueued = enqueued;
+            this.dequeued = dequeued;
+            this.aged = aged;
+            this.oldestWaitMillis = oldestWaitMillis;
+        }
+    }
+
+    private static class Entry<T> {
+        final T item;
+        final long enqueuedNanos;
+
+        Entry(T item, long enqueuedNanos) {
+            this.item = item;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private static class LaneState<T> {
+        final Lane lane;
+        final ArrayDeque<Entry<T>> items = new ArrayDeque<>();
+        final Condition notFull;
+        long credit;
+        long enqueued;
+        long dequeued;
+        long aged;
+
+        LaneState(Lane lane, Condition notFull) {
+            this.lane = lane;
+            this.notFull = notFull;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final List<LaneState<T>> lanes = new ArrayList<>();
+    private final Map<String, LaneState<T>> lanesByName = new LinkedHashMap<>();
+    private final Function<T, String> laneOf;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoTime;
+    private int count;
+
+    /**
+     * @param lanes         Lane configuration; items whose lane is not listed go to the first lane
+     * @param laneOf        Lane name of an item
+     * @param maxWaitMillis Wait after which a lane head is taken ahead of the weights
+     */
+    public FairRequestQueue(List<Lane> lanes, Function<T, String> laneOf, long maxWaitMillis) {
+        this(lanes, laneOf, maxWaitMillis, System::nanoTime);
+    }
+
+    FairRequestQueue(List<Lane> lanes, Function<T, String> laneOf, long maxWaitMillis, LongSupplier nanoTime) {
+        if (lanes.isEmpty()) {
+            throw new IllegalArgumentException("At least one lane is required");
+        }
+        for (Lane lane : lanes) {
+            LaneState<T> state = new LaneState<>(lane, lock.newCondition());
+            this.lanes.add(state);
+            this.lanesByName.put(lane.name, state);
+        }
+        this.laneOf = laneOf;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.nanoTime = nanoTime;
+
+        StringBuilder summary = new StringBuilder();
+        for (Lane lane : lanes) {
+            summary.append(summary.length() == 0 ? "" : ", ")
+                    .append(lane.name).append(" (capacity ").append(lane.capacity)
+                    .append(", weight ").append(lane.weight).append(")");
+        }
+        System.out.println("✅ FairRequestQueue initialized: " + summary + ", max wait " + maxWaitMillis + "ms");
+    }
+
+    @Override
+    public void enqueue(T item) throws InterruptedException {
+        LaneState<T> lane = laneFor(item);
+        lock.lockInterruptibly();
+        try {
+            while (lane.items.size() >= lane.lane.capacity) {
+                lane.notFull.await();
+            }
+            add(lane, item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+        LaneState<T> lane = laneFor(item);
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (lane.items.size() >= lane.lane.capacity) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = lane.notFull.awaitNanos(remaining);
+            }
+            add(lane, item);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lock held, lane has room
+     */
+    private void add(LaneState<T> lane, T item) {
+        lane.items.addLast(new Entry<>(item, nanoTime.getAsLong()));
+        lane.enqueued++;
+        count++;
+        notEmpty.signal();
+    }
+
+    @Override
+    public T dequeue() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the next item by aging and weights (lock held, not empty)
+     */
+    private T take() {
+        LaneState<T> lane = nextLane();
+        Entry<T> entry = lane.items.pollFirst();
+        lane.dequeued++;
+        count--;
+        lane.notFull.signal();
+        return entry.item;
+    }
+
+    /**
+     * Lane to serve next (lock held, at least one lane non-empty)
+     */
+    private LaneState<T> nextLane() {
+        long now = nanoTime.getAsLong();
+
+        // Aging: the longest-waiting head past maxWait goes first
+        LaneState<T> oldest = null;
+        for (LaneState<T> lane : lanes) {
+            Entry<T> head = lane.items.peekFirst();
+            if (head != null && now - head.enqueuedNanos >= maxWaitNanos
+                    && (oldest == null || head.enqueuedNanos < oldest.items.peekFirst().enqueuedNanos)) {
+                oldest = lane;
+            }
+        }
+        if (oldest != null) {
+            oldest.aged++;
+            return oldest;
+        }
+
+        // Smooth weighted round robin over the non-empty lanes
+        LaneState<T> best = null;
+        long totalWeight = 0;
+        for (LaneState<T> lane : lanes) {
+            if (lane.items.isEmpty()) {
+                lane.credit = 0;  // An idle lane doesn't bank a burst for later
+                continue;
+            }
+            lane.credit += lane.lane.weight;
+            totalWeight += lane.lane.weight;
+            if (best == null || lane.credit > best.credit) {
+                best = lane;
+            }
+        }
+        best.credit -= totalWeight;
+        return best;
+    }
+
+    /**
+     * Move every waiting item to the collection, lane by lane in FIFO order
+     */
+    @Override
+    public int drainTo(Collection<? super T> target) {
+        lock.lock();
+        try {
+            int moved = 0;
+            for (LaneState<T> lane : lanes) {
+                Entry<T> entry;
+                while ((entry = lane.items.pollFirst()) != null) {
+                    target.add(entry.item);
+                    lane.dequeued++;
+                    moved++;
+                }
+                lane.notFull.signalAll();
+            }
+            count -= moved;
+            return moved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private LaneState<T> laneFor(T item) {
+        LaneState<T> lane = lanesByName.get(laneOf.apply(item));
+        return lane != null ? lane : lanes.get(0);
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Free slots across all lanes
+     */
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            int remaining = 0;
+            for (LaneState<T> lane : lanes) {
+                remaining += lane.lane.capacity - lane.items.size();
+            }
+            return remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<LaneStats> getLaneStats() {
+        lock.lock();
+        try {
+            long now = nanoTime.getAsLong();
+            List<LaneStats> stats = new ArrayList<>(lanes.size());
+            for (LaneState<T> lane : lanes) {
+                Entry<T> head = lane.items.peekFirst();
+                stats.add(new LaneStats(
+                        lane.lane.name,
+                        lane.lane.capacity,
+                        lane.lane.weight,
+                        lane.items.size(),
+                        lane.enqueued,
+                        lane.dequeued,
+                        lane.aged,
+                        head == null ? 0 : TimeUnit.NANOSECONDS.toMillis(now - head.enqueuedNanos)
+                ));
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.syos.web.concurrency;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Verifies Google sign-in ID tokens against a locally held copy of Google's signing keys
+ * The keys (JWKS) are refreshed in the background, so a login never waits for the
+ * certificate endpoint; a failed refresh keeps the previous keys. A token signed with a key
+ * we have not seen yet (Google rotated early) triggers one extra refresh, at most once a minute.
+ * Tokens that already passed are remembered by SHA-256 hash for a short time (never past
+ * their own expiry), so a retried login skips the parse and signature check.
+ */
+public class GoogleTokenVerifier {
+
+    /**
+     * Loads Google's JWKS document (the certificate endpoint, or a file for offline use)
+     */
+    public interface KeySource {
+        String load() throws IOException;
+    }
+
+    private static final List<String> ISSUERS = List.of("accounts.google.com", "https://accounts.google.com");
+    private static final long CLOCK_SKEW_SECONDS = 300;
+    private static final long UNKNOWN_KEY_REFRESH_MILLIS = 60_000;
+    private static final long NEVER = Long.MIN_VALUE;
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    private static GoogleTokenVerifier instance;
+
+    private final List<String> audience;
+    private final KeySource keySource;
+    private final long tokenTtlMillis;
+    private final int maxTokens;
+    private final LongSupplier clock;
+    private final Object refreshLock = new Object();
+    private final ScheduledExecutorService refresher;
+    private volatile Map<String, PublicKey> keys;
+    private final AtomicLong lastUnknownKeyRefresh = new AtomicLong(NEVER);
+
+    // SHA-256 of the token -> payload that passed verification
+    private final ConcurrentHashMap<String, Verified> verified = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong keyRefreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    private static class Verified {
+        final GoogleIdToken.Payload payload;
+        final long expiresAt;
+
+        Verified(GoogleIdToken.Payload payload, long expiresAt) {
+            this.payload = payload;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param clientId              OAuth client ID the tokens must be issued for
+     * @param refreshIntervalMillis Key refresh interval; 0 disables the scheduler (keys load on first use)
+     * @param tokenTtlMillis        How long a verified token is remembered
+     * @param maxTokens             Verified tokens remembered at most
+     */
+    public GoogleTokenVerifier(String clientId, KeySource keySource, long refreshIntervalMillis,
+                               long tokenTtlMillis, int maxTokens) {
+        this(clientId, keySource, refreshIntervalMillis, tokenTtlMillis, maxTokens, System::currentTimeMillis);
+    }
+
+    GoogleTokenVerifier(String clientId, KeySource keySource, long refreshIntervalMillis,
+                        long tokenTtlMillis, int maxTokens, LongSupplier clock) {
+        this.audience = Collections.singletonList(clientId);
+        this.keySource = keySource;
+        this.tokenTtlMillis = tokenTtlMillis;
+        this.maxTokens = maxTokens;
+        this.clock = clock;
+
+        if (refreshIntervalMillis > 0) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "GoogleKeysRefresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // First load right away, before the first Google login comes in
+            refresher.scheduleWithFixedDelay(this::scheduledRefresh,
+                    0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.refresher = null;
+        }
+    }
+
+    /**
+     * Shared verifier: syos.google.clientId, syos.google.certsFile (offline) or syos.google.certsUrl,
+     * syos.google.certsRefreshMinutes (60), syos.google.tokenCacheSeconds (60), syos.google.maxCachedTokens (10000)
+     */
+    public static synchronized GoogleTokenVerifier getInstance() {
+        if (instance == null) {
+            String certsFile = System.getProperty("syos.google.certsFile");
+            KeySource source = certsFile != null
+                    ? fileSource(Path.of(certsFile))
+                    : urlSource(System.getProperty("syos.google.certsUrl", "https://www.googleapis.com/oauth2/v3/certs"));
+            instance = new GoogleTokenVerifier(
+                    System.getProperty("syos.google.clientId",
+                            "997091192220-ulfhf1i9i9uc7qikfupkbgb4u67pjk28.apps.googleusercontent.com"),
+                    source,
+                    Long.getLong("syos.google.certsRefreshMinutes", 60L) * 60_000L,
+                    Long.getLong("syos.google.tokenCacheSeconds", 60L) * 1000L,
+                    Integer.getInteger("syos.google.maxCachedTokens", 10_000));
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the key refresh (call on application shutdown)
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    public static KeySource fileSource(Path file) {
+        return () -> Files.readString(file, StandardCharsets.UTF_8);
+    }
+
+    public static KeySource urlSource(String url) {
+        HttpTransport transport = new NetHttpTransport();
+        return () -> {
+            HttpRequest request = transport.createRequestFactory().buildGetRequest(new GenericUrl(url));
+            request.setConnectTimeout(5_000);
+            request.setReadTimeout(5_000);
+            return request.execute().parseAsString();
+        };
+    }
+
+    /**
+     * The token's payload, or null if it is malformed, not for this client, expired or not signed by Google
+     */
+    public GoogleIdToken.Payload verify(String credential) throws IOException {
+        long now = clock.getAsLong();
+        String hash = hash(credential);
+        Verified cached = verified.get(hash);
+        if (cached != null && cached.expiresAt > now) {
+            hits.incrementAndGet();
+            return cached.payload;
+        }
+        misses.incrementAndGet();
+
+        GoogleIdToken idToken;
+        try {
+            idToken = GoogleIdToken.parse(JSON_FACTORY, credential);
+        } catch (IOException | IllegalArgumentException e) {    // Not a JWT at all
+            rejected.incrementAndGet();
+            return null;
+        }
+        if (!idToken.verifyIssuer(ISSUERS) || !idToken.verifyAudience(audience)
+                || !idToken.verifyTime(now, CLOCK_SKEW_SECONDS) || !signedByGoogle(idToken)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+
+        GoogleIdToken.Payload payload = idToken.getPayload();
+        Long expiresAtSeconds = payload.getExpirationTimeSeconds();
+        long expiresAt = Math.min(now + tokenTtlMillis,
+                expiresAtSeconds != null ? expiresAtSeconds * 1000L : now);
+        remember(hash, new Verified(payload, expiresAt), now);
+        return payload;
+    }
+
+    /**
+     * Reload the keys now; on failure the previous keys stay in use
+     */
+    public void refreshKeys() throws IOException {
+        synchronized (refreshLock) {
+            keys = parseKeys(keySource.load());
+            keyRefreshes.incrementAndGet();
+        }
+    }
+
+    public VerifierStats getStats() {
+        Map<String, PublicKey> current = keys;
+        return new VerifierStats(hits.get(), misses.get(), rejected.get(), keyRefreshes.get(),
+                refreshFailures.get(), current != null ? current.size() : 0, verified.size());
+    }
+
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private boolean signedByGoogle(GoogleIdToken idToken) throws IOException {
+        String keyId = idToken.getHeader().getKeyId();
+        PublicKey key = currentKeys().get(keyId);
+        if (key == null) {
+            // Possibly a key Google started using after our last refresh
+            refreshForUnknownKey();
+            key = keys.get(keyId);
+        }
+        if (key == null) {
+            return false;
+        }
+        try {
+            return idToken.verifySignature(key);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private Map<String, PublicKey> currentKeys() throws IOException {
+        Map<String, PublicKey> current = keys;
+        if (current != null) {
+            return current;
+        }
+        // Not loaded yet (scheduler disabled, or the first load failed): load on this request
+        synchronized (refreshLock) {
+            if (keys == null) {
+                refreshKeys();
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Reload the keys for a token with an unknown kid, unless that was done in the last minute
+     * (otherwise tokens with made-up kids would hit the certificate endpoint on every login)
+     */
+    private void refreshForUnknownKey() {
+        long now = clock.getAsLong();
+        long last = lastUnknownKeyRefresh.get();
+        if (last != NEVER && now - last < UNKNOWN_KEY_REFRESH_MILLIS) {
+            return;
+        }
+        if (!lastUnknownKeyRefresh.compareAndSet(last, now)) {
+            return;     // Another request is refreshing
+        }
+        try {
+            refreshKeys();
+        } catch (IOException | RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            System.err.println("Failed to refresh Google signing keys for an unknown key ID: " + e.getMessage());
+        }
+    }
+
+    private void scheduledRefresh() {
+        try {
+            refreshKeys();
+        } catch (IOException | RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            System.err.println("Failed to refresh Google signing keys: " + e.getMessage());
+        }
+    }
+
+    private void remember(String hash, Verified entry, long now) {
+        if (verified.size() >= maxTokens) {
+            verified.values().removeIf(v -> v.expiresAt <= now);
+            if (verified.size() >= maxTokens) {
+                return;
+            }
+        }
+        verified.put(hash, entry);
+    }
+
+    /**
+     * kid -> RSA key from a JWKS document ({"keys": [{"kid", "kty", "n", "e"}, ...]})
+     */
+    static Map<String, PublicKey> parseKeys(String jwks) throws IOException {
+        try {
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            Map<String, PublicKey> parsed = new HashMap<>();
+            for (JsonElement element : JsonParser.parseString(jwks).getAsJsonObject().getAsJsonArray("keys")) {
+                JsonObject key = element.getAsJsonObject();
+                if (!"RSA".equals(key.get("kty").getAsString())) {
+                    continue;
+                }
+                BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(key.get("n").getAsString()));
+                BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(key.get("e").getAsString()));
+                parsed.put(key.get("kid").getAsString(),
+                        factory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+            if (parsed.isEmpty()) {
+                throw new IOException("No RSA keys in Google key set");
+            }
+            return Collections.unmodifiableMap(parsed);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new IOException("Invalid Google key set: " + e.getMessage(), e);
+        }
+    }
+
+    private static String hash(String credential) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(credential.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Verification counters for monitoring
+     */
+    public static class VerifierStats {
+        public final long hits;
+        public final long misses;
+        public final long rejected;
+        public final long keyRefreshes;
+        public final long refreshFailures;
+        public final int keyCount;
+        public final int cachedTokens;
+
+        public VerifierStats(long hits, long misses, long rejected, long keyRefreshes,
+                             long refreshFailures, int keyCount, int cachedTokens) {
+            this.hits = hits;
+            this.misses = misses;
+            this.rejected = rejected;
+            this.keyRefreshes = keyRefreshes;
+            this.refreshFailures = refreshFailures;
+            this.keyCount = keyCount;
+            this.cachedTokens = cachedTokens;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.syos.web.concurrency;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bill submissions by Idempotency-Key: in flight and recently completed, least recently used dropped first
+ * A repeated key attaches to the bill already queued, or gets its result back once it is done,
+ * instead of creating a second bill. Every caller gets its own copy of the shared future, so one
+ * timing out doesn't fail the others; the queued bill is cancelled only when all of them gave up.
+ * A submission that created no bill (rejected, cancelled, failed) is forgotten, so a retry runs again.
+ * That is decided by what the worker did, not by the callers: if they all gave up while the bill
+ * was being created, a retry waits for that bill instead of starting a second one.
+ * Only the most recent maxEntries keys are kept here; older keys are caught by bill_requests
+ * (CreateBillUseCase), which holds the key of every bill created.
+ */
+public class IdempotencyCache {
+
+    private static class Entry {
+        final CompletableFuture<BillQueueResponse> result = new CompletableFuture<>();  // The bill's outcome
+        final AtomicInteger waiting = new AtomicInteger();
+        volatile BillRequest source;
+
+        /**
+         * No bill was created: the next request with this key is processed again
+         */
+        boolean failed() {
+            return result.isCompletedExceptionally() || (result.isDone() && !result.join().isSuccess());
+        }
+
+        /**
+         * Every caller gave up, but the worker has not finished with the bill (it may be creating it)
+         */
+        boolean abandoned() {
+            BillRequest queued = source;
+            return queued != null && queued.getFuture().isCancelled() && !result.isDone();
+        }
+
+        CompletableFuture<BillQueueResponse> attach() {
+            waiting.incrementAndGet();
+            CompletableFuture<BillQueueResponse> copy = result.copy();
+            copy.whenComplete((response, error) -> {
+                if (error instanceof CancellationException && waiting.decrementAndGet() == 0) {
+                    BillRequest queued = source;
+                    if (queued != null) {
+                        // Last caller gave up: let the worker skip the bill if it has not started it
+                        queued.getFuture().cancel(false);
+                    }
+                }
+            });
+            return copy;
+        }
+
+        void bind(BillRequest queued) {
+            source = queued;
+            queued.getOutcome().whenComplete((response, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            });
+        }
+    }
+
+    private final int maxEntries;
+    private final Executor resubmitter;
+    private final Map<String, Entry> entries;
+
+    private long submitted;
+    private long attached;      // Duplicate while the first was still in flight
+    private long replayed;      // Duplicate after the first completed
+
+    public IdempotencyCache(int maxEntries) {
+        this(maxEntries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param resubmitter Runs the retry of an abandoned bill that created nothing (not on the worker that finished it)
+     */
+    IdempotencyCache(int maxEntries, Executor resubmitter) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.resubmitter = resubmitter;
+        // Access order: a retried key becomes the most recently used; bills in flight are never dropped
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdempotencyCache.this.maxEntries && eldest.getValue().result.isDone();
+            }
+        };
+    }
+
+    /**
+     * The result for this key: the existing submission's if there is one, otherwise submitter's
+     * Exceptions from submitter (e.g. AdmissionRejectedException) are thrown to this caller
+     * and the key is forgotten (when resubmitting an abandoned bill they fail the returned future).
+     */
+    public CompletableFuture<BillQueueResponse> submit(String key, Supplier<BillRequest> submitter) {
+        Entry entry;
+        boolean first = false;
+        boolean abandoned = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.failed()) {
+                entry = new Entry();
+                entries.put(key, entry);
+                first = true;
+                submitted++;
+            } else if (entry.result.isDone()) {
+                replayed++;
+            } else {
+                abandoned = entry.abandoned();
+                attached++;
+            }
+        }
+
+        if (abandoned) {
+            // The worker may skip the bill or may be committing it: wait to see which, then
+            // replay that bill or submit again
+            System.out.println("🔁 Idempotency-Key repeated after its callers gave up, waiting for the bill: " + key);
+            return entry.result.handle((response, error) -> null)
+                    .thenComposeAsync(ignored -> submit(key, submitter), resubmitter);
+        }
+
+        CompletableFuture<BillQueueResponse> caller = entry.attach();
+        if (first) {
+            try {
+                entry.bind(submitter.get());
+            } catch (RuntimeException e) {
+                forget(key, entry);
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            System.out.println("🔁 Idempotency-Key repeated, returning the existing bill request: " + key);
+        }
+        return caller;
+    }
+
+    private synchronized void forget(String key, Entry entry) {
+        entries.remove(key, entry);
+    }
+
+    public synchronized IdempotencyStats getStats() {
+        return new IdempotencyStats(entries.size(), submitted, attached, replayed);
+    }
+
+    /**
+     * Idempotency statistics
+     */
+    public static class IdempotencyStats {
+        public final int entries;
+        public final long submitted;
+        public final long attached;
+        public final long replayed;
+
+        public IdempotencyStats(int entries, long submitted, long attached, long replayed) {
+            this.entries = entries;
+            this.submitted = submitted;
+            this.attached = attached;
+            this.replayed = replayed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("IdempotencyStats[entries=%d, submitted=%d, attached=%d, replayed=%d]",
+                    entries, submitted, attached, replayed);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.syos.web.concurrency;
+
+import java.sql.SQLException;
+
+/**
+ * Recognises failures caused by two bills fighting over the same stock rows
+ * MySQL deadlock (1213), lock wait timeout (1205), serialization failure (SQLSTATE 40001)
+ * and the stored procedures' version check ("Concurrent modification detected", SQLSTATE 45000).
+ * Other 45000 errors (e.g. insufficient stock) are business failures, not conflicts.
+ */
+public final class LockConflicts {
+
+    /**
+     * Kind of lock conflict
+     */
+    public enum Kind {
+        DEADLOCK,            // 1213 / 40001: MySQL rolled the transaction back
+        LOCK_WAIT_TIMEOUT,   // 1205: gave up waiting for a row lock
+        VERSION_CONFLICT     // inventory_locations.version changed underneath the procedure
+    }
+
+    public static final int DEADLOCK = 1213;
+    public static final int LOCK_WAIT_TIMEOUT = 1205;
+    static final String VERSION_CONFLICT_MESSAGE = "Concurrent modification";
+
+    private LockConflicts() {}
+
+    /**
+     * True if the error, or anything in its cause chain, is a lock conflict
+     */
+    public static boolean isConflict(Throwable error) {
+        return classify(error) != null;
+    }
+
+    /**
+     * Kind of conflict in the error's cause chain, or null if it is not one
+     */
+    public static Kind classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                if (sql.getErrorCode() == DEADLOCK || "40001".equals(sql.getSQLState())) {
+                    return Kind.DEADLOCK;
+                }
+                if (sql.getErrorCode() == LOCK_WAIT_TIMEOUT) {
+                    return Kind.LOCK_WAIT_TIMEOUT;
+                }
+            }
+            if (t.getMessage() != null && t.getMessage().contains(VERSION_CONFLICT_MESSAGE)) {
+                return Kind.VERSION_CONFLICT;
+            }
+        }
+        return null;
+    }
+}
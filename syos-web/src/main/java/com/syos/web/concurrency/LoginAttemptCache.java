@@ -0,0 +1,222 @@
+package com.syos.web.concurrency;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Failed logins per user and client IP, so repeated bad passwords are refused
+ * before BCrypt runs (each check costs a login thread tens of milliseconds)
+ * After maxFailures failures within the window, that user/IP pair is blocked until
+ * the window ends; a successful login clears it. Other IPs can still log in as the user.
+ * Attempts still being checked count against the limit too, so a burst of parallel
+ * guesses cannot all get past the check before the first failure is recorded.
+ * When maxEntries pairs are tracked, new pairs are refused until one expires rather than
+ * let through uncounted (raise syos.login.maxTracked if legitimate traffic hits that).
+ */
+public class LoginAttemptCache {
+
+    /**
+     * Failures of one user/IP since windowStart, plus attempts in progress (immutable, replaced on update)
+     */
+    private static class Failures {
+        final int count;
+        final int inFlight;
+        final long windowStart;
+
+        Failures(int count, int inFlight, long windowStart) {
+            this.count = count;
+            this.inFlight = inFlight;
+            this.windowStart = windowStart;
+        }
+    }
+
+    private final int maxFailures;
+    private final long windowMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Failures> failures = new ConcurrentHashMap<>();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong refusedWhenFull = new AtomicLong();
+    private volatile long nextPurge = Long.MIN_VALUE;     // No tracked pair can expire before this
+
+    /**
+     * @param maxFailures  Failed attempts allowed per window
+     * @param windowMillis How long failures are remembered (and the block lasts)
+     * @param maxEntries   User/IP pairs tracked at most; beyond that new pairs are refused
+     */
+    public LoginAttemptCache(int maxFailures, long windowMillis, int maxEntries) {
+        this(maxFailures, windowMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    LoginAttemptCache(int maxFailures, long windowMillis, int maxEntries, LongSupplier clock) {
+        if (maxFailures < 1 || windowMillis <= 0 || maxEntries < 1) {
+            throw new IllegalArgumentException("maxFailures, windowMillis and maxEntries must be positive");
+        }
+        this.maxFailures = maxFailures;
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * syos.login.maxFailures (5), syos.login.failureWindowSeconds (300), syos.login.maxTracked (10000)
+     */
+    public static LoginAttemptCache fromSystemProperties() {
+        return new LoginAttemptCache(
+                Integer.getInteger("syos.login.maxFailures", 5),
+                Long.getLong("syos.login.failureWindowSeconds", 300L) * 1000L,
+                Integer.getInteger("syos.login.maxTracked", 10_000));
+    }
+
+    /**
+     * Reserve a password check for this user/IP
+     * @return The attempt, to be settled once the password was checked; null if the pair is blocked
+     */
+    public Attempt tryBeginAttempt(String userId, String ip) {
+        String key = key(userId, ip);
+        long now = clock.getAsLong();
+        if (failures.size() >= maxEntries && !failures.containsKey(key)) {
+            if (now >= nextPurge) {
+                purge(now);
+            }
+            if (failures.size() >= maxEntries) {
+                // Refuse rather than stop counting: otherwise spraying usernames switches throttling off
+                refusedWhenFull.incrementAndGet();
+                blocked.incrementAndGet();
+                return null;
+            }
+        }
+
+        AtomicBoolean allowed = new AtomicBoolean();
+        failures.compute(key, (k, entry) -> {
+            int count = entry == null || expired(entry, now) ? 0 : entry.count;
+            int inFlight = entry == null ? 0 : entry.inFlight;
+            long windowStart = entry == null || expired(entry, now) ? now : entry.windowStart;
+            if (count + inFlight >= maxFailures) {
+                return entry;
+            }
+            allowed.set(true);
+            return new Failures(count, inFlight + 1, windowStart);
+        });
+
+        if (!allowed.get()) {
+            blocked.incrementAndGet();
+            return null;
+        }
+        return new Attempt(key);
+    }
+
+    /**
+     * Suggested Retry-After for a blocked user/IP: until the window ends, or a second
+     * if it is only waiting for attempts still in progress
+     */
+    public long retryAfterMillis(String userId, String ip) {
+        Failures entry = failures.get(key(userId, ip));
+        long now = clock.getAsLong();
+        if (entry == null && failures.size() >= maxEntries) {
+            return Math.max(1000, nextPurge - now);     // Refused because the cache is full
+        }
+        if (entry == null || expired(entry, now) || entry.count < maxFailures) {
+            return 1000;
+        }
+        return Math.max(1000, entry.windowStart + windowMillis - now);
+    }
+
+    public AttemptStats getStats() {
+        return new AttemptStats(failures.size(), blocked.get(), refusedWhenFull.get());
+    }
+
+    /**
+     * Drop expired pairs and note when the next one can expire, so a full cache is not
+     * scanned again on every attempt (pairs added later expire later)
+     */
+    private synchronized void purge(long now) {
+        if (now < nextPurge) {
+            return;
+        }
+        failures.values().removeIf(entry -> entry.inFlight == 0 && expired(entry, now));
+
+        long next = now + windowMillis;
+        for (Failures entry : failures.values()) {
+            // A pair still being checked may settle and expire any moment; look again in a second
+            long expiresAt = entry.inFlight > 0 ? now + 1000 : entry.windowStart + windowMillis;
+            next = Math.min(next, expiresAt);
+        }
+        nextPurge = Math.max(next, now + 1);
+    }
+
+    private boolean expired(Failures entry, long now) {
+        return entry.windowStart + windowMillis <= now;
+    }
+
+    private static String key(String userId, String ip) {
+        return userId + "|" + ip;
+    }
+
+    /**
+     * A reserved password check; only the first of succeeded/failed/cancelled counts
+     */
+    public final class Attempt {
+        private final String key;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Attempt(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Right password: the pair's failures are cleared
+         */
+        public void succeeded() {
+            settle(0, true);
+        }
+
+        /**
+         * Wrong password: counts towards the block
+         */
+        public void failed() {
+            settle(1, false);
+        }
+
+        /**
+         * Password not checked (validation error, pool full, timeout, server error)
+         */
+        public void cancelled() {
+            settle(0, false);
+        }
+
+        private void settle(int failed, boolean clear) {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            long now = clock.getAsLong();
+            failures.computeIfPresent(key, (k, entry) -> {
+                boolean newWindow = expired(entry, now);
+                int count = clear ? 0 : (newWindow ? 0 : entry.count) + failed;
+                int inFlight = Math.max(0, entry.inFlight - 1);
+                if (count == 0 && inFlight == 0) {
+                    return null;
+                }
+                return new Failures(count, inFlight, newWindow ? now : entry.windowStart);
+            });
+        }
+    }
+
+    /**
+     * Tracked user/IP pairs and attempts refused without checking the password
+     * (refusedWhenFull of them because no more pairs could be tracked)
+     */
+    public static class AttemptStats {
+        public final int tracked;
+        public final long blocked;
+        public final long refusedWhenFull;
+
+        public AttemptStats(int tracked, long blocked, long refusedWhenFull) {
+            this.tracked = tracked;
+            this.blocked = blocked;
+            this.refusedWhenFull = refusedWhenFull;
+        }
+    }
+}
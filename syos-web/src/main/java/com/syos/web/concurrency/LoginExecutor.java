@@ -0,0 +1,150 @@
+package com.syos.web.concurrency;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs password logins (BCrypt) on their own small pool, off the Tomcat threads
+ * One thread per core: BCrypt is pure CPU, so more threads only add contention. The queue
+ * is bounded; when it is full the login is rejected (503 + Retry-After) instead of piling
+ * up, so a burst of logins at shift change cannot slow down billing and the other APIs.
+ */
+public class LoginExecutor {
+
+    private static LoginExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    private final LoginAttemptCache attempts;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param threads   Login threads (CPU cores)
+     * @param queueSize Logins waiting at most
+     * @param attempts  Failed attempts, checked before a login is queued
+     */
+    public LoginExecutor(int threads, int queueSize, LoginAttemptCache attempts) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("threads and queueSize must be positive");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "LoginWorker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.attempts = attempts;
+    }
+
+    /**
+     * syos.login.threads (CPU cores), syos.login.queueSize (64), plus the LoginAttemptCache properties
+     */
+    public static synchronized LoginExecutor getInstance() {
+        if (instance == null) {
+            instance = new LoginExecutor(
+                    Integer.getInteger("syos.login.threads", Runtime.getRuntime().availableProcessors()),
+                    Integer.getInteger("syos.login.queueSize", 64),
+                    LoginAttemptCache.fromSystemProperties());
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the login threads (call on application shutdown)
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Run a login on the pool
+     * @throws AdmissionRejectedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> login) {
+        long queuedAt = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                queueWait.recordMicros((System.nanoTime() - queuedAt) / 1000);
+                try {
+                    future.complete(login.get());
+                } catch (RuntimeException | Error e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new AdmissionRejectedException("Too many logins in progress", 0, 1);
+        }
+        submitted.incrementAndGet();
+        return future;
+    }
+
+    /**
+     * Time spent in BCrypt.checkpw (recorded by UserDao)
+     */
+    public void recordHashMicros(long micros) {
+        hashTime.recordMicros(micros);
+    }
+
+    public LoginAttemptCache getAttempts() {
+        return attempts;
+    }
+
+    public LoginStats getStats() {
+        return new LoginStats(executor.getMaximumPoolSize(), executor.getActiveCount(),
+                executor.getQueue().size(), submitted.get(), rejected.get(),
+                queueWait.getSnapshot(), hashTime.getSnapshot(), attempts.getStats());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Login pool usage, queue wait and BCrypt time
+     */
+    public static class LoginStats {
+        public final int threads;
+        public final int active;
+        public final int queued;
+        public final long submitted;
+        public final long rejected;
+        public final LatencyHistogram.Snapshot queueWait;
+        public final LatencyHistogram.Snapshot hashTime;
+        public final LoginAttemptCache.AttemptStats attempts;
+
+        public LoginStats(int threads, int active, int queued, long submitted, long rejected,
+                          LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot hashTime,
+                          LoginAttemptCache.AttemptStats attempts) {
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.submitted = submitted;
+            this.rejected = rejected;
+            this.queueWait = queueWait;
+            this.hashTime = hashTime;
+            this.attempts = attempts;
+        }
+    }
+}
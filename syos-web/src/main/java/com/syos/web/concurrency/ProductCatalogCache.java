@@ -0,0 +1,232 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.domain.model.Product;
+import com.syos.web.infrastructure.persistence.dao.ProductDao;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process snapshot of the product catalog (ProductDao.findAll)
+ * Readers get the current immutable snapshot without locking; a refresh builds a
+ * new snapshot and swaps the reference (copy-on-write), so reads never wait for it.
+ * Refreshed on a schedule and right away when products, discounts or stock change.
+ */
+public class ProductCatalogCache {
+
+    /**
+     * Loads the full catalog (ProductDao.findAll in production)
+     */
+    public interface CatalogLoader {
+        List<Product> load() throws SQLException;
+    }
+
+    private static ProductCatalogCache instance;
+
+    private final CatalogLoader loader;
+    private final Object refreshLock = new Object();
+    private final ScheduledExecutorService refresher;
+    private volatile Snapshot snapshot;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong totalRefreshNanos = new AtomicLong();
+    private volatile long lastRefreshNanos;
+
+    /**
+     * @param refreshIntervalMillis Scheduled refresh interval; 0 disables the scheduler
+     */
+    public ProductCatalogCache(CatalogLoader loader, long refreshIntervalMillis) {
+        this.loader = loader;
+
+        if (refreshIntervalMillis > 0) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ProductCatalogRefresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::scheduledRefresh,
+                    refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.refresher = null;
+        }
+    }
+
+    /**
+     * Shared cache; refresh interval from syos.catalog.refreshMs (default 30 seconds)
+     */
+    public static synchronized ProductCatalogCache getInstance() {
+        if (instance == null) {
+            ProductDao productDao = new ProductDao();
+            instance = new ProductCatalogCache(
+                    productDao::findAll,
+                    Long.getLong("syos.catalog.refreshMs", 30_000L)
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * All products (unmodifiable); only the very first call loads from the database
+     */
+    public List<Product> getProducts() throws SQLException {
+        return current().products;
+    }
+
+    /**
+     * Product by code from the snapshot (null if not in the catalog)
+     */
+    public Product getProduct(String productCode) throws SQLException {
+        return current().byCode.get(productCode);
+    }
+
+    private Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+
+        misses.incrementAndGet();
+        synchronized (refreshLock) {
+            // Another reader may have loaded it while we waited
+            if (snapshot == null) {
+                refresh();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Catalog data changed - rebuild the snapshot now so the writer sees its own change
+     * Readers keep using the previous snapshot until the new one is swapped in
+     */
+    public void invalidate() {
+        invalidations.incrementAndGet();
+
+        synchronized (refreshLock) {
+            // Nothing cached yet, the next reader loads fresh data anyway
+            if (snapshot == null) return;
+
+            try {
+                refresh();
+            } catch (SQLException | RuntimeException | LinkageError e) {
+                refreshFailures.incrementAndGet();
+                snapshot = null;  // Don't keep serving data we know is stale
+                System.err.println("Failed to refresh product catalog: " + e.getMessage());
+            }
+        }
+    }
+
+    private void scheduledRefresh() {
+        synchronized (refreshLock) {
+            // Only keep a loaded catalog fresh, don't load one nobody asked for
+            if (snapshot == null) return;
+
+            try {
+                refresh();
+            } catch (SQLException | RuntimeException | LinkageError e) {
+                refreshFailures.incrementAndGet();
+                System.err.println("Failed to refresh product catalog: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Load and swap in a new snapshot (caller holds refreshLock)
+     */
+    private void refresh() throws SQLException {
+        long start = System.nanoTime();
+        List<Product> products = loader.load();
+
+        Map<String, Product> byCode = new LinkedHashMap<>();
+        for (Product product : products) {
+            byCode.put(product.getProductCode(), product);
+        }
+
+        snapshot = new Snapshot(List.copyOf(products), Collections.unmodifiableMap(byCode));
+
+        long elapsed = System.nanoTime() - start;
+        lastRefreshNanos = elapsed;
+        totalRefreshNanos.addAndGet(elapsed);
+        refreshes.incrementAndGet();
+    }
+
+    /**
+     * Stop the scheduled refresh
+     */
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public CacheStats getStats() {
+        long refreshCount = refreshes.get();
+        Snapshot current = snapshot;
+        return new CacheStats(
+                hits.get(),
+                misses.get(),
+                refreshCount,
+                refreshFailures.get(),
+                invalidations.get(),
+                lastRefreshNanos / 1_000_000.0,
+                refreshCount == 0 ? 0.0 : totalRefreshNanos.get() / 1_000_000.0 / refreshCount,
+                current != null ? current.products.size() : 0,
+                current != null ? System.currentTimeMillis() - current.loadedAt : -1
+        );
+    }
+
+    /**
+     * Immutable catalog snapshot
+     */
+    private static final class Snapshot {
+        final List<Product> products;
+        final Map<String, Product> byCode;
+        final long loadedAt = System.currentTimeMillis();
+
+        Snapshot(List<Product> products, Map<String, Product> byCode) {
+            this.products = products;
+            this.byCode = byCode;
+        }
+    }
+
+    /**
+     * Cache statistics
+     */
+    public static class CacheStats {
+        public final long hits;
+        public final long misses;
+        public final long refreshes;
+        public final long refreshFailures;
+        public final long invalidations;
+        public final double lastRefreshMillis;
+        public final double averageRefreshMillis;
+        public final int productCount;
+        public final long snapshotAgeMillis;
+
+        public CacheStats(long hits, long misses, long refreshes, long refreshFailures, long invalidations,
+                          double lastRefreshMillis, double averageRefreshMillis,
+                          int productCount, long snapshotAgeMillis) {
+            this.hits = hits;
+            this.misses = misses;
+            this.refreshes = refreshes;
+            this.refreshFailures = refreshFailures;
+            this.invalidations = invalidations;
+            this.lastRefreshMillis = lastRefreshMillis;
+            this.averageRefreshMillis = averageRefreshMillis;
+            this.productCount = productCount;
+            this.snapshotAgeMillis = snapshotAgeMillis;
+        }
+    }
+}
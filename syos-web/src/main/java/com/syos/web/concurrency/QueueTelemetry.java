@@ -0,0 +1,192 @@
+package com.syos.web.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live bill queue telemetry, kept in memory and updated without locks
+ * Wait (submitted to picked up) and processing time histograms, 1/5/15 minute throughput,
+ * busy share of each worker, and outcomes by user type. Fed by BillProcessingWorker.
+ */
+public class QueueTelemetry {
+
+    private static class WorkerUsage {
+        final int slots;
+        final long startNanos;
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder processed = new LongAdder();
+        final RateMeter busy;
+
+        WorkerUsage(int slots, long startNanos, LongSupplier nanoTime) {
+            this.slots = slots;
+            this.startNanos = startNanos;
+            this.busy = new RateMeter(nanoTime);
+        }
+    }
+
+    private static class Outcomes {
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+    }
+
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram processingTime = new LatencyHistogram();
+    private final RateMeter throughput;
+    private final Map<String, WorkerUsage> workers = new ConcurrentSkipListMap<>();
+    private final Map<String, Outcomes> outcomes = new ConcurrentHashMap<>();
+    private final LongSupplier nanoTime;
+
+    public QueueTelemetry() {
+        this(System::nanoTime);
+    }
+
+    QueueTelemetry(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.throughput = new RateMeter(nanoTime);
+    }
+
+    /**
+     * Track a worker from now, so it shows up (idle) before its first bill
+     *
+     * @param slots Bills it can process at once (1 for a worker thread; the limit for the TASKS dispatcher)
+     */
+    public void registerWorker(String workerName, int slots) {
+        workers.computeIfAbsent(workerName, name -> new WorkerUsage(slots, nanoTime.getAsLong(), nanoTime));
+    }
+
+    /**
+     * @param waitMillis      From submission (BillRequest timestamp) to being picked up
+     * @param processingNanos Time spent in the worker (0 for skipped requests)
+     */
+    public void recordProcessed(String workerName, String userType, BillProcessingWorker.Outcome outcome,
+                                long waitMillis, long processingNanos) {
+        waitTime.recordMillis(waitMillis);
+
+        Outcomes counts = outcomes.computeIfAbsent(userType == null ? "UNKNOWN" : userType, type -> new Outcomes());
+        if (outcome == BillProcessingWorker.Outcome.SKIPPED) {
+            counts.skipped.increment();
+            return;
+        }
+        if (outcome == BillProcessingWorker.Outcome.COMPLETED) {
+            counts.completed.increment();
+        } else {
+            counts.failed.increment();
+        }
+
+        processingTime.recordMicros(TimeUnit.NANOSECONDS.toMicros(processingNanos));
+        throughput.mark();
+
+        registerWorker(workerName, 1);
+        WorkerUsage usage = workers.get(workerName);
+        usage.busyNanos.add(processingNanos);
+        usage.busy.mark(processingNanos);
+        usage.processed.increment();
+    }
+
+    /**
+     * @param oldestWaitMillis Age of the oldest request still waiting (the queue knows, not the workers)
+     */
+    public Snapshot getSnapshot(long oldestWaitMillis) {
+        long now = nanoTime.getAsLong();
+
+        List<WorkerStats> workerStats = new ArrayList<>();
+        for (Map.Entry<String, WorkerUsage> entry : workers.entrySet()) {
+            WorkerUsage usage = entry.getValue();
+            long elapsed = Math.max(1, now - usage.startNanos) * usage.slots;
+            double busyNanosPerSecond = usage.busy.getOneMinuteRate();
+            workerStats.add(new WorkerStats(
+                    entry.getKey(),
+                    usage.slots,
+                    usage.processed.sum(),
+                    Math.min(100.0, usage.busyNanos.sum() * 100.0 / elapsed),
+                    Math.min(100.0, busyNanosPerSecond / TimeUnit.SECONDS.toNanos(1) * 100.0 / usage.slots)
+            ));
+        }
+
+        List<UserTypeStats> userTypeStats = new ArrayList<>();
+        for (Map.Entry<String, Outcomes> entry : outcomes.entrySet()) {
+            Outcomes counts = entry.getValue();
+            userTypeStats.add(new UserTypeStats(entry.getKey(),
+                    counts.completed.sum(), counts.failed.sum(), counts.skipped.sum()));
+        }
+
+        return new Snapshot(
+                waitTime.getSnapshot(),
+                processingTime.getSnapshot(),
+                throughput.getCount(),
+                throughput.getOneMinuteRate(),
+                throughput.getFiveMinuteRate(),
+                throughput.getFifteenMinuteRate(),
+                workerStats,
+                userTypeStats,
+                oldestWaitMillis
+        );
+    }
+
+    public static class WorkerStats {
+        public final String name;
+        public final int slots;
+        public final long processed;
+        public final double busyPercent;            // Since the worker started
+        public final double busyPercentOneMinute;   // Exponentially weighted over the last minute
+
+        public WorkerStats(String name, int slots, long processed, double busyPercent, double busyPercentOneMinute) {
+            this.name = name;
+            this.slots = slots;
+            this.processed = processed;
+            this.busyPercent = busyPercent;
+            this.busyPercentOneMinute = busyPercentOneMinute;
+        }
+    }
+
+    public static class UserTypeStats {
+        public final String userType;
+        public final long completed;
+        public final long failed;
+        public final long skipped;
+        public final double errorPercent;           // Failed share of processed (not skipped) requests
+
+        public UserTypeStats(String userType, long completed, long failed, long skipped) {
+            this.userType = userType;
+            this.completed = completed;
+            this.failed = failed;
+            this.skipped = skipped;
+            long processed = completed + failed;
+            this.errorPercent = processed == 0 ? 0.0 : failed * 100.0 / processed;
+        }
+    }
+
+    public static class Snapshot {
+        public final LatencyHistogram.Snapshot waitTime;
+        public final LatencyHistogram.Snapshot processingTime;
+        public final long processed;
+        public final double throughputOneMinute;        // Bills per second
+        public final double throughputFiveMinutes;
+        public final double throughputFifteenMinutes;
+        public final List<WorkerStats> workers;
+        public final List<UserTypeStats> userTypes;
+        public final long oldestWaitMillis;
+
+        public Snapshot(LatencyHistogram.Snapshot waitTime, LatencyHistogram.Snapshot processingTime,
+                        long processed, double throughputOneMinute, double throughputFiveMinutes,
+                        double throughputFifteenMinutes, List<WorkerStats> workers,
+                        List<UserTypeStats> userTypes, long oldestWaitMillis) {
+            this.waitTime = waitTime;
+            this.processingTime = processingTime;
+            this.processed = processed;
+            this.throughputOneMinute = throughputOneMinute;
+            this.throughputFiveMinutes = throughputFiveMinutes;
+            this.throughputFifteenMinutes = throughputFifteenMinutes;
+            this.workers = workers;
+            this.userTypes = userTypes;
+            this.oldestWaitMillis = oldestWaitMillis;
+        }
+    }
+}
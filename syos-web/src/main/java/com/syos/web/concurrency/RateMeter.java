@@ -0,0 +1,103 @@
+package com.syos.web.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Events per second over the last 1, 5 and 15 minutes (exponentially weighted, like load average)
+ * Marks go to a LongAdder; every 5 seconds the first caller to notice folds them into the
+ * averages, so there is no timer thread and marking never blocks.
+ */
+public class RateMeter {
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double TICK_SECONDS = 5.0;
+
+    private final LongAdder uncounted = new LongAdder();
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong lastTick;
+    private final LongSupplier nanoTime;
+
+    private static final double M1_ALPHA = alpha(1);
+    private static final double M5_ALPHA = alpha(5);
+    private static final double M15_ALPHA = alpha(15);
+
+    // Written only by the thread that won the tick
+    private volatile double m1Rate;
+    private volatile double m5Rate;
+    private volatile double m15Rate;
+    private boolean initialized;
+
+    public RateMeter() {
+        this(System::nanoTime);
+    }
+
+    RateMeter(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.lastTick = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    private static double alpha(int minutes) {
+        return 1 - Math.exp(-TICK_SECONDS / 60.0 / minutes);
+    }
+
+    public void mark() {
+        mark(1);
+    }
+
+    public void mark(long events) {
+        tickIfNecessary();
+        uncounted.add(events);
+        count.add(events);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getOneMinuteRate() {
+        tickIfNecessary();
+        return m1Rate;
+    }
+
+    public double getFiveMinuteRate() {
+        tickIfNecessary();
+        return m5Rate;
+    }
+
+    public double getFifteenMinuteRate() {
+        tickIfNecessary();
+        return m15Rate;
+    }
+
+    private void tickIfNecessary() {
+        long previous = lastTick.get();
+        long age = nanoTime.getAsLong() - previous;
+        if (age < TICK_NANOS) {
+            return;
+        }
+        long ticks = age / TICK_NANOS;
+        if (lastTick.compareAndSet(previous, previous + ticks * TICK_NANOS)) {
+            // Marks since the last tick land in the first interval; the rest were idle
+            for (long i = 0; i < ticks; i++) {
+                tick(i == 0 ? uncounted.sumThenReset() : 0);
+            }
+        }
+    }
+
+    private void tick(long events) {
+        double instant = events / TICK_SECONDS;
+        if (initialized) {
+            m1Rate += M1_ALPHA * (instant - m1Rate);
+            m5Rate += M5_ALPHA * (instant - m5Rate);
+            m15Rate += M15_ALPHA * (instant - m15Rate);
+        } else {
+            m1Rate = instant;
+            m5Rate = instant;
+            m15Rate = instant;
+            initialized = true;
+        }
+    }
+}
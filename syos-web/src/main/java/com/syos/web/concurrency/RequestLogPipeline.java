@@ -0,0 +1,442 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.db.Db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, batched pipeline behind RequestLogger
+ * Servlet threads only drop an event into a ring buffer; a small number of
+ * drainer threads coalesce the start / completion / error events of each
+ * request and write them to request_log as multi-row upserts
+ */
+public class RequestLogPipeline {
+
+    /**
+     * What to do when a ring buffer is full
+     */
+    public enum OverflowPolicy {
+        DROP_NEWEST,   // Reject the incoming event
+        DROP_OLDEST    // Evict the oldest buffered event to make room
+    }
+
+    /**
+     * Writes one coalesced batch of rows (JDBC in production, in-memory in tests)
+     */
+    public interface BatchWriter {
+        void write(List<LogRow> rows) throws SQLException;
+    }
+
+    private static final long SHUTDOWN_POLL_MS = 50;
+
+    private final Stripe[] stripes;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final OverflowPolicy overflowPolicy;
+    private final BatchWriter writer;
+    private volatile boolean running = true;
+
+    // Counters
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    public RequestLogPipeline(int capacity, int flushSize, long flushIntervalMs,
+                              int drainers, OverflowPolicy overflowPolicy, BatchWriter writer) {
+        if (capacity <= 0 || flushSize <= 0 || flushIntervalMs <= 0 || drainers <= 0) {
+            throw new IllegalArgumentException("Request log pipeline settings must be positive");
+        }
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+        this.writer = writer;
+
+        // Split the capacity across stripes; every event of a request lands on the same stripe
+        this.stripes = new Stripe[drainers];
+        int perStripe = Math.max(1, capacity / drainers);
+        for (int i = 0; i < drainers; i++) {
+            stripes[i] = new Stripe(perStripe, "RequestLogDrainer-" + (i + 1));
+        }
+        for (Stripe stripe : stripes) {
+            stripe.thread.start();
+        }
+
+        System.out.println("✅ RequestLogPipeline started: " + drainers + " drainer(s), capacity " +
+                capacity + ", flush " + flushSize + " rows / " + flushIntervalMs + "ms, " + overflowPolicy);
+    }
+
+    /**
+     * Build a pipeline writing to request_log, configured from system properties
+     * (syos.requestLog.capacity, .flushSize, .flushIntervalMs, .drainers, .overflowPolicy)
+     */
+    public static RequestLogPipeline fromSystemProperties() {
+        return new RequestLogPipeline(
+                Integer.getInteger("syos.requestLog.capacity", 8192),
+                Integer.getInteger("syos.requestLog.flushSize", 200),
+                Long.getLong("syos.requestLog.flushIntervalMs", 250L),
+                Integer.getInteger("syos.requestLog.drainers", 1),
+                OverflowPolicy.valueOf(System.getProperty("syos.requestLog.overflowPolicy", "DROP_NEWEST")),
+                new JdbcBatchWriter()
+        );
+    }
+
+    // ===================================================================
+    // Producers (servlet threads) - never block, never touch the database
+    // ===================================================================
+
+    public void requestStarted(String requestId, String requestType, String userId, String serverThread) {
+        LogEvent event = new LogEvent(requestId);
+        event.requestType = requestType;
+        event.userId = userId;
+        event.serverThread = serverThread;
+        event.status = "PROCESSING";
+        event.requestTime = event.eventTime;
+        submit(event);
+    }
+
+    public void requestFinished(String requestId, String status, long responseTimeMs) {
+        LogEvent event = new LogEvent(requestId);
+        event.status = status;
+        event.endTime = event.eventTime;
+        event.responseTimeMs = responseTimeMs;
+        submit(event);
+    }
+
+    public void requestFailed(String requestId, String errorMessage) {
+        LogEvent event = new LogEvent(requestId);
+        event.status = "FAILED";
+        event.endTime = event.eventTime;
+        event.errorMessage = errorMessage;
+        submit(event);
+    }
+
+    private void submit(LogEvent event) {
+        if (!running || event.requestId == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        ArrayBlockingQueue<LogEvent> buffer = stripeFor(event.requestId).buffer;
+        if (buffer.offer(event)) {
+            accepted.incrementAndGet();
+            return;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST && buffer.poll() != null) {
+            dropped.incrementAndGet();
+            if (buffer.offer(event)) {
+                accepted.incrementAndGet();
+                return;
+            }
+        }
+        dropped.incrementAndGet();
+    }
+
+    private Stripe stripeFor(String requestId) {
+        return stripes[Math.floorMod(requestId.hashCode(), stripes.length)];
+    }
+
+    // ===================================================================
+    // Lifecycle
+    // ===================================================================
+
+    /**
+     * Stop accepting events, flush everything still buffered and wait for the drainers
+     *
+     * @return true if every drainer finished within the timeout
+     */
+    public boolean shutdown(long timeoutMillis) {
+        running = false;
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean clean = true;
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (stripe.thread.isAlive()) {
+                clean = false;
+                stripe.thread.interrupt();
+            }
+        }
+
+        System.out.println("✅ RequestLogPipeline shut down: " + getStats());
+        return clean;
+    }
+
+    public Stats getStats() {
+        int buffered = 0;
+        for (Stripe stripe : stripes) {
+            buffered += stripe.buffer.size();
+        }
+        return new Stats(accepted.get(), dropped.get(), coalesced.get(),
+                rowsWritten.get(), batchesWritten.get(), writeFailures.get(), buffered);
+    }
+
+    // ===================================================================
+    // Drainer side
+    // ===================================================================
+
+    private final class Stripe implements Runnable {
+        final ArrayBlockingQueue<LogEvent> buffer;
+        final Thread thread;
+
+        Stripe(int capacity, String name) {
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Map<String, LogRow> pending = new LinkedHashMap<>();
+            List<LogEvent> scratch = new ArrayList<>(flushSize);
+
+            while (running || !buffer.isEmpty()) {
+                try {
+                    long deadline = System.currentTimeMillis() + flushIntervalMs;
+                    while (pending.size() < flushSize) {
+                        long wait = deadline - System.currentTimeMillis();
+                        if (wait <= 0) break;
+
+                        // Poll in short slices so shutdown is noticed without waiting a full interval
+                        LogEvent event = buffer.poll(Math.min(wait, SHUTDOWN_POLL_MS), TimeUnit.MILLISECONDS);
+                        if (event == null) {
+                            if (!running) break;
+                            continue;
+                        }
+
+                        merge(pending, event);
+                        buffer.drainTo(scratch, flushSize);
+                        for (LogEvent e : scratch) {
+                            merge(pending, e);
+                        }
+                        scratch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    // Forced shutdown - write what we have and leave the rest
+                    Thread.currentThread().interrupt();
+                    flush(pending);
+                    dropped.addAndGet(buffer.size());
+                    buffer.clear();
+                    return;
+                }
+
+                flush(pending);
+            }
+
+            flush(pending);
+        }
+    }
+
+    private void merge(Map<String, LogRow> pending, LogEvent event) {
+        LogRow row = pending.get(event.requestId);
+        if (row == null) {
+            pending.put(event.requestId, new LogRow(event));
+        } else {
+            row.apply(event);
+            coalesced.incrementAndGet();
+        }
+    }
+
+    private void flush(Map<String, LogRow> pending) {
+        if (pending.isEmpty()) return;
+
+        List<LogRow> rows = new ArrayList<>(pending.values());
+        pending.clear();
+
+        for (int from = 0; from < rows.size(); from += flushSize) {
+            List<LogRow> batch = rows.subList(from, Math.min(rows.size(), from + flushSize));
+            try {
+                writer.write(batch);
+                rowsWritten.addAndGet(batch.size());
+                batchesWritten.incrementAndGet();
+            } catch (SQLException | RuntimeException | LinkageError e) {
+                // LinkageError covers a Db class that failed to initialise - keep the drainer alive
+                writeFailures.incrementAndGet();
+                dropped.addAndGet(batch.size());
+                System.err.println("❌ Failed to write request log batch (" + batch.size() + " rows): " +
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A single producer-side event; only the fields relevant to its kind are set
+     */
+    private static final class LogEvent {
+        final String requestId;
+        final long eventTime = System.currentTimeMillis();
+        String requestType;
+        String userId;
+        String serverThread;
+        String status;
+        Long requestTime;
+        Long endTime;
+        Long responseTimeMs;
+        String errorMessage;
+
+        LogEvent(String requestId) {
+            this.requestId = requestId;
+        }
+    }
+
+    /**
+     * The coalesced state of one request_log row within a batch
+     * Null fields are left untouched when the row already exists
+     */
+    public static class LogRow {
+        public final String requestId;
+        public String requestType;
+        public String userId;
+        public String serverThread;
+        public String status;
+        public Long requestTime;
+        public Long endTime;
+        public Long responseTimeMs;
+        public String errorMessage;
+
+        private LogRow(LogEvent event) {
+            this.requestId = event.requestId;
+            apply(event);
+        }
+
+        private void apply(LogEvent event) {
+            if (event.requestType != null) requestType = event.requestType;
+            if (event.userId != null) userId = event.userId;
+            if (event.serverThread != null) serverThread = event.serverThread;
+            if (event.requestTime != null) requestTime = event.requestTime;
+            if (event.endTime != null) endTime = event.endTime;
+            if (event.responseTimeMs != null) responseTimeMs = event.responseTimeMs;
+            if (event.errorMessage != null) errorMessage = event.errorMessage;
+
+            // A late start event must never downgrade a finished request back to PROCESSING
+            if (event.status != null && (status == null || !"PROCESSING".equals(event.status))) {
+                status = event.status;
+            }
+        }
+    }
+
+    public static class Stats {
+        public final long accepted;
+        public final long dropped;
+        public final long coalesced;
+        public final long rowsWritten;
+        public final long batchesWritten;
+        public final long writeFailures;
+        public final int buffered;
+
+        public Stats(long accepted, long dropped, long coalesced, long rowsWritten,
+                     long batchesWritten, long writeFailures, int buffered) {
+            this.accepted = accepted;
+            this.dropped = dropped;
+            this.coalesced = coalesced;
+            this.rowsWritten = rowsWritten;
+            this.batchesWritten = batchesWritten;
+            this.writeFailures = writeFailures;
+            this.buffered = buffered;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("accepted=%d, dropped=%d, coalesced=%d, rows=%d, batches=%d, failures=%d, buffered=%d",
+                    accepted, dropped, coalesced, rowsWritten, batchesWritten, writeFailures, buffered);
+        }
+    }
+
+    /**
+     * Writes a batch as one multi-row INSERT ... ON DUPLICATE KEY UPDATE against request_log
+     * Falls back to row-by-row if the batch is rejected (e.g. one row breaks a foreign key)
+     */
+    static class JdbcBatchWriter implements BatchWriter {
+
+        private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP(3)), ?, ?, ?)";
+
+        private static final String UPSERT_PREFIX = "INSERT INTO request_log " +
+                "(request_id, request_type, user_id, server_thread, status, " +
+                "request_timestamp, processing_end, response_time_ms, error_message) VALUES ";
+
+        private static final String UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE " +
+                "user_id = COALESCE(VALUES(user_id), user_id), " +
+                "server_thread = COALESCE(VALUES(server_thread), server_thread), " +
+                "status = IF(VALUES(status) = 'PROCESSING', status, VALUES(status)), " +
+                "processing_end = COALESCE(VALUES(processing_end), processing_end), " +
+                "response_time_ms = COALESCE(VALUES(response_time_ms), response_time_ms), " +
+                "error_message = COALESCE(VALUES(error_message), error_message)";
+
+        @Override
+        public void write(List<LogRow> rows) throws SQLException {
+            try (Connection conn = Db.getConnection()) {
+                try {
+                    executeUpsert(conn, rows);
+                } catch (SQLException e) {
+                    if (rows.size() == 1) throw e;
+
+                    System.err.println("⚠ Request log batch rejected, retrying row by row: " + e.getMessage());
+                    for (LogRow row : rows) {
+                        try {
+                            executeUpsert(conn, List.of(row));
+                        } catch (SQLException rowError) {
+                            System.err.println("❌ Failed to log request " + row.requestId + ": " +
+                                    rowError.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+
+        private void executeUpsert(Connection conn, List<LogRow> rows) throws SQLException {
+            StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(ROW_PLACEHOLDER);
+            }
+            sql.append(UPSERT_SUFFIX);
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                int p = 1;
+                for (LogRow row : rows) {
+                    stmt.setString(p++, row.requestId);
+                    // request_type is NOT NULL; only used if the start event was dropped
+                    stmt.setString(p++, row.requestType != null ? row.requestType : "UNKNOWN");
+                    stmt.setString(p++, row.userId);
+                    stmt.setString(p++, row.serverThread);
+                    stmt.setString(p++, row.status);
+                    setTimestamp(stmt, p++, row.requestTime);
+                    setTimestamp(stmt, p++, row.endTime);
+                    if (row.responseTimeMs != null) {
+                        stmt.setLong(p++, row.responseTimeMs);
+                    } else {
+                        stmt.setNull(p++, Types.INTEGER);
+                    }
+                    stmt.setString(p++, row.errorMessage);
+                }
+                stmt.executeUpdate();
+            }
+        }
+
+        private static void setTimestamp(PreparedStatement stmt, int index, Long millis) throws SQLException {
+            if (millis != null) {
+                stmt.setTimestamp(index, new Timestamp(millis));
+            } else {
+                stmt.setNull(index, Types.TIMESTAMP);
+            }
+        }
+    }
+}
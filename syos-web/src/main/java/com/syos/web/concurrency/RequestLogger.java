@@ -3,25 +3,45 @@ package com.syos.web.concurrency;
 import com.syos.web.db.Db;
 import java.sql.*;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Logs all API requests for concurrency tracking and debugging
  * Helps prove that request queuing works under load
- * Thread-safe and non-blocking
+ * Thread-safe and non-blocking - writes go through a batched RequestLogPipeline
  */
 public class RequestLogger {
 
+    // Batched write pipeline, started lazily on first use
+    private static volatile RequestLogPipeline pipeline;
+
+    // Set by shutdown(): no pipeline is started again, later events are dropped
+    private static volatile boolean closed;
+
+    // Events dropped after shutdown when no pipeline had been started
+    private static final AtomicLong droppedAfterShutdown = new AtomicLong();
+
     /**
-     * Log a new request to the database
-     * This method is non-blocking - runs in background thread
-     *
-     * @param requestType Type of request (e.g., "LOGIN", "CREATE_BILL", "TRANSFER_STOCK")
-     * @param userId User ID making the request (can be null for login/register)
-     * @param ipAddress Client IP address
-     * @return Request ID for tracking this request
+     * The running pipeline (or the stopped one after shutdown, which drops events);
+     * null only after a shutdown that happened before any pipeline was started
      */
+    private static RequestLogPipeline pipeline() {
+        RequestLogPipeline p = pipeline;
+        if (p == null && !closed) {
+            synchronized (RequestLogger.class) {
+                p = pipeline;
+                if (p == null && !closed) {
+                    p = RequestLogPipeline.fromSystemProperties();
+                    pipeline = p;
+                }
+            }
+        }
+        return p;
+    }
+
     /**
      * Log a new request to the database
+     * This method is non-blocking - the row is written by the log pipeline
      *
      * @param requestType Type of request (e.g., "LOGIN", "CREATE_BILL")
      * @param userId User ID making the request (can be null)
@@ -33,49 +53,19 @@ public class RequestLogger {
         // Generate unique ID for this request
         String requestId = UUID.randomUUID().toString();
 
-        // Log to database asynchronously (don't block the main request thread)
-        new Thread(() -> {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-
-            try {
-                conn = Db.getConnection();
-
-                String sql = "INSERT INTO request_log " +
-                        "(request_id, request_type, user_id, server_thread, status) " +
-                        "VALUES (?, ?, ?, ?, 'PROCESSING')";
-
-                stmt = conn.prepareStatement(sql);
-                stmt.setString(1, requestId);
-                stmt.setString(2, requestType);
-                stmt.setString(3, userId);
-                stmt.setString(4, servletThread);  // ← Use the passed parameter, not Thread.currentThread()
-
-                stmt.executeUpdate();
-
-                System.out.println("✓ Request logged: " + requestType +
-                        " [" + requestId + "] on thread: " + servletThread);
-
-            } catch (SQLException e) {
-                System.err.println("❌ Failed to log request: " + e.getMessage());
-                e.printStackTrace();
-            } finally {
-                // Close resources
-                try {
-                    if (stmt != null) stmt.close();
-                    if (conn != null) conn.close();
-                } catch (SQLException e) {
-                    System.err.println("Error closing resources: " + e.getMessage());
-                }
-            }
-        }, "RequestLogger-" + requestId.substring(0, 8)).start();
+        RequestLogPipeline p = pipeline();
+        if (p != null) {
+            p.requestStarted(requestId, requestType, userId, servletThread);
+        } else {
+            droppedAfterShutdown.incrementAndGet();
+        }
 
         return requestId;
     }
 
     /**
      * Update request status when it completes
-     * This method is non-blocking - runs in background thread
+     * This method is non-blocking - the row is written by the log pipeline
      *
      * @param requestId Request ID returned from logRequest()
      * @param status Status: "COMPLETED" or "FAILED"
@@ -85,91 +75,55 @@ public class RequestLogger {
         // Calculate response time
         long responseTime = System.currentTimeMillis() - startTime;
 
-        // Update database asynchronously
-        new Thread(() -> {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-
-            try {
-                conn = Db.getConnection();
-
-                String sql = "UPDATE request_log SET " +
-                        "status = ?, " +
-                        "processing_end = CURRENT_TIMESTAMP(3), " +
-                        "response_time_ms = ? " +
-                        "WHERE request_id = ?";
-
-                stmt = conn.prepareStatement(sql);
-                stmt.setString(1, status);
-                stmt.setLong(2, responseTime);
-                stmt.setString(3, requestId);
-
-                int rowsUpdated = stmt.executeUpdate();
-
-                if (rowsUpdated > 0) {
-                    System.out.println("✓ Request " + status.toLowerCase() +
-                            ": " + requestId + " (" + responseTime + "ms)");
-                } else {
-                    System.err.println("⚠ Request ID not found: " + requestId);
-                }
-
-            } catch (SQLException e) {
-                System.err.println("❌ Failed to update request status: " + e.getMessage());
-                e.printStackTrace();
-            } finally {
-                // Close resources
-                try {
-                    if (stmt != null) stmt.close();
-                    if (conn != null) conn.close();
-                } catch (SQLException e) {
-                    System.err.println("Error closing resources: " + e.getMessage());
-                }
-            }
-        }).start();
+        RequestLogPipeline p = pipeline();
+        if (p != null) {
+            p.requestFinished(requestId, status, responseTime);
+        } else {
+            droppedAfterShutdown.incrementAndGet();
+        }
     }
 
     /**
      * Log an error message for a request
-     * This method is non-blocking - runs in background thread
+     * This method is non-blocking - the row is written by the log pipeline
      *
      * @param requestId Request ID
      * @param errorMessage Error message to log
      */
     public static void logError(String requestId, String errorMessage) {
-        new Thread(() -> {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-
-            try {
-                conn = Db.getConnection();
-
-                String sql = "UPDATE request_log SET " +
-                        "status = 'FAILED', " +
-                        "error_message = ?, " +
-                        "processing_end = CURRENT_TIMESTAMP(3) " +
-                        "WHERE request_id = ?";
-
-                stmt = conn.prepareStatement(sql);
-                stmt.setString(1, errorMessage);
-                stmt.setString(2, requestId);
-
-                stmt.executeUpdate();
+        RequestLogPipeline p = pipeline();
+        if (p != null) {
+            p.requestFailed(requestId, errorMessage);
+        } else {
+            droppedAfterShutdown.incrementAndGet();
+        }
+    }
 
-                System.out.println("✓ Error logged for request: " + requestId);
+    /**
+     * Get counters of the log pipeline (accepted, dropped, written...)
+     */
+    public static RequestLogPipeline.Stats getPipelineStats() {
+        RequestLogPipeline p = pipeline();
+        return p != null ? p.getStats() : new RequestLogPipeline.Stats(0, droppedAfterShutdown.get(), 0, 0, 0, 0, 0);
+    }
 
-            } catch (SQLException e) {
-                System.err.println("❌ Failed to log error: " + e.getMessage());
-                e.printStackTrace();
-            } finally {
-                // Close resources
-                try {
-                    if (stmt != null) stmt.close();
-                    if (conn != null) conn.close();
-                } catch (SQLException e) {
-                    System.err.println("Error closing resources: " + e.getMessage());
-                }
+    /**
+     * Flush buffered log events and stop the drainer threads
+     * Call this on application shutdown; requests still finishing afterwards are dropped
+     * (and counted) instead of starting a new pipeline
+     */
+    public static void shutdown() {
+        RequestLogPipeline p;
+        synchronized (RequestLogger.class) {
+            if (closed) {
+                return;
             }
-        }).start();
+            closed = true;
+            p = pipeline;
+        }
+        if (p != null) {
+            p.shutdown(Long.getLong("syos.requestLog.shutdownTimeoutMs", 5000L));
+        }
     }
 
     /**
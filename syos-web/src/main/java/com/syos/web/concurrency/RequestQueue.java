@@ -1,13 +1,15 @@
 package com.syos.web.concurrency;
 
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Thread-safe request queue for handling concurrent bill creation
  * Demonstrates explicit concurrency control for assignment
  */
-public class RequestQueue<T> {
+public class RequestQueue<T> implements WorkQueue<T> {
 
     private final BlockingQueue<T> queue;
     private final int maxSize;
@@ -26,6 +28,13 @@ public class RequestQueue<T> {
         System.out.println("📥 Request queued. Queue size: " + queue.size());
     }
 
+    /**
+     * Add request to queue, waiting at most the timeout if it is full
+     */
+    public boolean offer(T request, long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.offer(request, timeout, unit);
+    }
+
     /**
      * Get next request from queue (blocks if queue is empty)
      */
@@ -35,6 +44,27 @@ public class RequestQueue<T> {
         return request;
     }
 
+    /**
+     * Take the next request, waiting at most the timeout (null if none came)
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Move every waiting request to the collection (used when shutting down)
+     */
+    public int drainTo(Collection<? super T> target) {
+        return queue.drainTo(target);
+    }
+
+    /**
+     * Next request without removing it (null if empty)
+     */
+    public T peek() {
+        return queue.peek();
+    }
+
     /**
      * Get current queue size
      */
@@ -0,0 +1,163 @@
+package com.syos.web.concurrency;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Retries work that failed on a stock row lock conflict (see LockConflicts)
+ * Waits a random time up to baseDelay x 2^(retry-1), capped at maxDelay ("full jitter"),
+ * so bills that collided once don't collide again on the same schedule.
+ * Any other failure is thrown straight away.
+ */
+public class RetryPolicy {
+
+    /**
+     * One attempt at the work
+     */
+    public interface Attempt<T> {
+        T run() throws Exception;
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Sleeper sleeper;
+    private final LongUnaryOperator jitter;   // Random value in [0, bound]
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong succeededAfterRetry = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+    private final AtomicLong deadlocks = new AtomicLong();
+    private final AtomicLong lockWaitTimeouts = new AtomicLong();
+    private final AtomicLong versionConflicts = new AtomicLong();
+
+    /**
+     * @param maxAttempts Attempts in total, including the first (1 = no retries)
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, Thread::sleep,
+                bound -> ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                Sleeper sleeper, LongUnaryOperator jitter) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Max attempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.sleeper = sleeper;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Policy for bill processing
+     * (syos.billing.retry.maxAttempts, .baseDelayMs, .maxDelayMs; defaults 3 attempts, 20ms, 500ms)
+     */
+    public static RetryPolicy forBilling() {
+        return new RetryPolicy(
+                Integer.getInteger("syos.billing.retry.maxAttempts", 3),
+                Long.getLong("syos.billing.retry.baseDelayMs", 20L),
+                Long.getLong("syos.billing.retry.maxDelayMs", 500L));
+    }
+
+    /**
+     * Run the attempt, retrying lock conflicts while attempts remain and keepTrying holds
+     * (e.g. the caller is still waiting). The last failure is thrown when it gives up.
+     */
+    public <T> T execute(Attempt<T> attempt, BooleanSupplier keepTrying) throws Exception {
+        for (int attemptNo = 1; ; attemptNo++) {
+            try {
+                T result = attempt.run();
+                if (attemptNo > 1) {
+                    succeededAfterRetry.incrementAndGet();
+                }
+                return result;
+            } catch (Exception e) {
+                LockConflicts.Kind kind = LockConflicts.classify(e);
+                if (kind == null) {
+                    throw e;
+                }
+                count(kind);
+
+                if (attemptNo >= maxAttempts || !keepTrying.getAsBoolean()) {
+                    gaveUp.incrementAndGet();
+                    throw e;
+                }
+
+                long delay = backoffMillis(attemptNo);
+                System.out.println("🔁 " + kind + " on attempt " + attemptNo + ", retrying in " + delay + "ms");
+                retries.incrementAndGet();
+                try {
+                    sleeper.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    gaveUp.incrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Delay before the given retry (1 = first retry)
+     */
+    long backoffMillis(int retry) {
+        long ceiling = baseDelayMillis << Math.min(retry - 1, 30);
+        return jitter.applyAsLong(Math.min(maxDelayMillis, ceiling));
+    }
+
+    private void count(LockConflicts.Kind kind) {
+        switch (kind) {
+            case DEADLOCK:
+                deadlocks.incrementAndGet();
+                break;
+            case LOCK_WAIT_TIMEOUT:
+                lockWaitTimeouts.incrementAndGet();
+                break;
+            default:
+                versionConflicts.incrementAndGet();
+        }
+    }
+
+    public RetryStats getStats() {
+        return new RetryStats(retries.get(), succeededAfterRetry.get(), gaveUp.get(),
+                deadlocks.get(), lockWaitTimeouts.get(), versionConflicts.get());
+    }
+
+    public static class RetryStats {
+        public final long retries;
+        public final long succeededAfterRetry;
+        public final long gaveUp;
+        public final long deadlocks;
+        public final long lockWaitTimeouts;
+        public final long versionConflicts;
+
+        public RetryStats(long retries, long succeededAfterRetry, long gaveUp,
+                          long deadlocks, long lockWaitTimeouts, long versionConflicts) {
+            this.retries = retries;
+            this.succeededAfterRetry = succeededAfterRetry;
+            this.gaveUp = gaveUp;
+            this.deadlocks = deadlocks;
+            this.lockWaitTimeouts = lockWaitTimeouts;
+            this.versionConflicts = versionConflicts;
+        }
+
+        public RetryStats plus(RetryStats other) {
+            return new RetryStats(
+                    retries + other.retries,
+                    succeededAfterRetry + other.succeededAfterRetry,
+                    gaveUp + other.gaveUp,
+                    deadlocks + other.deadlocks,
+                    lockWaitTimeouts + other.lockWaitTimeouts,
+                    versionConflicts + other.versionConflicts);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.db.Db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind tracker for user_sessions.last_activity
+ * Lookups only record the latest activity time in memory; a single flusher
+ * thread writes every dirty session in one batched UPDATE per interval,
+ * so the persisted value lags by at most the flush interval
+ */
+public class SessionActivityTracker {
+
+    /**
+     * Persists activity timestamps (JDBC in production, in-memory in tests)
+     */
+    public interface ActivityWriter {
+        void writeActivity(Map<String, Long> lastActivity) throws SQLException;
+
+        void writeLogout(String sessionId, Long lastActivity) throws SQLException;
+    }
+
+    // sessionId -> latest activity time not yet written
+    private final ConcurrentHashMap<String, Long> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final ActivityWriter writer;
+    private final long flushIntervalMillis;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong sessionsWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    public SessionActivityTracker(long flushIntervalMillis, ActivityWriter writer) {
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.writer = writer;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SessionActivityFlusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tracker writing to user_sessions; the maximum lag comes from
+     * the syos.session.activityFlushMs system property (default 15 seconds)
+     */
+    public static SessionActivityTracker fromSystemProperties() {
+        return new SessionActivityTracker(
+                Long.getLong("syos.session.activityFlushMs", 15_000L),
+                new JdbcActivityWriter()
+        );
+    }
+
+    /**
+     * Record activity for a session (memory only, never blocks on the database)
+     */
+    public void recordActivity(String sessionId, long timestamp) {
+        dirty.merge(sessionId, timestamp, Math::max);
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * Write the session's pending activity together with its logout, right away
+     * Runs on the flusher thread so it can never be overtaken by an older batch
+     */
+    public void endSession(String sessionId) {
+        Long pending = dirty.remove(sessionId);
+        try {
+            flusher.execute(() -> {
+                try {
+                    writer.writeLogout(sessionId, pending);
+                    System.out.println("✓ Session invalidated: " + sessionId);
+                } catch (SQLException | RuntimeException | LinkageError e) {
+                    writeFailures.incrementAndGet();
+                    System.err.println("Failed to invalidate session: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            System.err.println("Session tracker stopped, logout not persisted: " + sessionId);
+        }
+    }
+
+    /**
+     * Write every dirty session now
+     */
+    public synchronized void flush() throws SQLException {
+        if (dirty.isEmpty()) return;
+
+        Map<String, Long> batch = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : dirty.entrySet()) {
+            // Only clear the entry if no newer activity arrived meanwhile
+            if (dirty.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        try {
+            writer.writeActivity(batch);
+            sessionsWritten.addAndGet(batch.size());
+            flushes.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            // Put the timestamps back so the next flush retries them
+            batch.forEach((id, ts) -> dirty.merge(id, ts, Math::max));
+            throw e;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException | LinkageError e) {
+            writeFailures.incrementAndGet();
+            System.err.println("Failed to update session activity: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write everything still pending and stop the flusher thread
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public String getStats() {
+        return String.format("recorded=%d, pending=%d, written=%d, flushes=%d, failures=%d",
+                recorded.get(), dirty.size(), sessionsWritten.get(), flushes.get(), writeFailures.get());
+    }
+
+    /**
+     * Batched UPDATE using a CASE expression, chunked to keep statements small
+     */
+    static class JdbcActivityWriter implements ActivityWriter {
+
+        private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+        @Override
+        public void writeActivity(Map<String, Long> lastActivity) throws SQLException {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(lastActivity.entrySet());
+
+            try (Connection conn = Db.getConnection()) {
+                for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+                    List<Map.Entry<String, Long>> chunk =
+                            entries.subList(from, Math.min(entries.size(), from + MAX_ROWS_PER_STATEMENT));
+
+                    StringBuilder sql = new StringBuilder("UPDATE user_sessions SET last_activity = CASE session_id");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        sql.append(" WHEN ? THEN ?");
+                    }
+                    sql.append(" ELSE last_activity END WHERE session_id IN (");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        sql.append(i == 0 ? "?" : ", ?");
+                    }
+                    sql.append(")");
+
+                    try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                        int p = 1;
+                        for (Map.Entry<String, Long> entry : chunk) {
+                            stmt.setString(p++, entry.getKey());
+                            stmt.setTimestamp(p++, new Timestamp(entry.getValue()));
+                        }
+                        for (Map.Entry<String, Long> entry : chunk) {
+                            stmt.setString(p++, entry.getKey());
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void writeLogout(String sessionId, Long lastActivity) throws SQLException {
+            // last_activity is assigned explicitly so ON UPDATE CURRENT_TIMESTAMP doesn't overwrite it
+            String sql = "UPDATE user_sessions SET is_active = 0, logout_time = CURRENT_TIMESTAMP, " +
+                    "last_activity = COALESCE(?, last_activity) WHERE session_id = ?";
+
+            try (Connection conn = Db.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                if (lastActivity != null) {
+                    stmt.setTimestamp(1, new Timestamp(lastActivity));
+                } else {
+                    stmt.setNull(1, Types.TIMESTAMP);
+                }
+                stmt.setString(2, sessionId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * Manages user sessions for concurrent access
  * Tracks active sessions in memory for fast access
  * Persists session data to database for audit trail
+ * (last_activity is written behind, see SessionActivityTracker)
  */
 public class SessionManager {
 
@@ -16,20 +17,42 @@ public class SessionManager {
     private static final ConcurrentHashMap<String, SessionData> activeSessions =
             new ConcurrentHashMap<>();
 
+    // Write-behind for user_sessions.last_activity
+    private static final SessionActivityTracker activityTracker =
+            SessionActivityTracker.fromSystemProperties();
+
     /**
      * Session data stored in memory
      */
     public static class SessionData {
         public final String userId;
         public final String roleId;
+        public final UserPrincipal principal;
         public volatile long lastActivity;
 
         public SessionData(String userId, String roleId) {
+            this(userId, roleId, null);
+        }
+
+        public SessionData(String userId, String roleId, String fullName) {
+            this(null, userId, roleId, fullName);
+        }
+
+        public SessionData(String sessionId, String userId, String roleId, String fullName) {
             this.userId = userId;
             this.roleId = roleId;
+            this.principal = new UserPrincipal(userId, parseRoleId(roleId), fullName, sessionId);
             this.lastActivity = System.currentTimeMillis();
         }
 
+        private static Integer parseRoleId(String roleId) {
+            try {
+                return roleId != null ? Integer.valueOf(roleId) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
         public void updateActivity() {
             this.lastActivity = System.currentTimeMillis();
         }
@@ -50,6 +73,17 @@ public class SessionManager {
     public static String createSession(String userId, String roleId,
                                        String ipAddress, String deviceInfo)
             throws SQLException {
+        return createSession(userId, roleId, null, ipAddress, deviceInfo);
+    }
+
+    /**
+     * Create a new session for a user
+     * @param fullName Display name kept in the session's principal
+     * @return Session ID
+     */
+    public static String createSession(String userId, String roleId, String fullName,
+                                       String ipAddress, String deviceInfo)
+            throws SQLException {
 
         String sessionId = UUID.randomUUID().toString();
 
@@ -68,7 +102,7 @@ public class SessionManager {
         }
 
         // Store in memory for fast access
-        activeSessions.put(sessionId, new SessionData(userId, roleId));
+        activeSessions.put(sessionId, new SessionData(sessionId, userId, roleId, fullName));
 
         System.out.println("✓ Session created: " + sessionId + " for user: " + userId);
         return sessionId;
@@ -81,25 +115,41 @@ public class SessionManager {
      */
     public static SessionData getSession(String sessionId) {
         SessionData session = activeSessions.get(sessionId);
-        if (session != null) {
-            session.updateActivity();
-
-            // Update last activity in database (async - don't wait)
-            new Thread(() -> {
-                try (Connection conn = Db.getConnection()) {
-                    String sql = "UPDATE user_sessions SET last_activity = CURRENT_TIMESTAMP " +
-                            "WHERE session_id = ?";
-                    PreparedStatement stmt = conn.prepareStatement(sql);
-                    stmt.setString(1, sessionId);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    System.err.println("Failed to update session activity: " + e.getMessage());
-                }
-            }).start();
-        }
+        recordActivity(sessionId, session);
         return session;
     }
 
+    /**
+     * Mark the session as used now (keeps it from expiring)
+     * @param sessionId Session ID
+     * @return false if the session is not active
+     */
+    public static boolean recordActivity(String sessionId) {
+        return recordActivity(sessionId, activeSessions.get(sessionId));
+    }
+
+    private static boolean recordActivity(String sessionId, SessionData session) {
+        if (session == null) {
+            return false;
+        }
+        session.updateActivity();
+
+        // Persisted by the write-behind tracker (batched, bounded lag)
+        activityTracker.recordActivity(sessionId, session.lastActivity);
+        return true;
+    }
+
+    /**
+     * Get the logged-in user of a session, without recording activity
+     * (called by AuthFilter on every request: a map read, no database write)
+     * @param sessionId Session ID
+     * @return UserPrincipal or null if the session is not active
+     */
+    public static UserPrincipal getPrincipal(String sessionId) {
+        SessionData session = activeSessions.get(sessionId);
+        return session != null ? session.principal : null;
+    }
+
     /**
      * Check if session exists and is active
      * @param sessionId Session ID
@@ -116,21 +166,8 @@ public class SessionManager {
     public static void invalidateSession(String sessionId) {
         activeSessions.remove(sessionId);
 
-        // Update database (async)
-        new Thread(() -> {
-            try (Connection conn = Db.getConnection()) {
-                String sql = "UPDATE user_sessions SET is_active = 0, " +
-                        "logout_time = CURRENT_TIMESTAMP WHERE session_id = ?";
-
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                stmt.setString(1, sessionId);
-                stmt.executeUpdate();
-
-                System.out.println("✓ Session invalidated: " + sessionId);
-            } catch (SQLException e) {
-                System.err.println("Failed to invalidate session: " + e.getMessage());
-            }
-        }).start();
+        // Flush pending activity and mark logged out (async, but not deferred)
+        activityTracker.endSession(sessionId);
     }
 
     /**
@@ -155,6 +192,14 @@ public class SessionManager {
      * Get statistics for monitoring
      */
     public static String getStats() {
-        return String.format("Active sessions: %d", activeSessions.size());
+        return String.format("Active sessions: %d | Activity writes: %s",
+                activeSessions.size(), activityTracker.getStats());
+    }
+
+    /**
+     * Write pending activity timestamps and stop the flusher (call on application shutdown)
+     */
+    public static void shutdown() {
+        activityTracker.shutdown();
     }
 }
\ No newline at end of file
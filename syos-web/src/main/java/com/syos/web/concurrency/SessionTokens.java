@@ -0,0 +1,209 @@
+package com.syos.web.concurrency;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Signed stateless login tokens, the alternative to HttpSession + SessionManager
+ * (enabled with -Dsyos.auth.mode=TOKEN)
+ *
+ * A token is base64url(payload) "." base64url(HMAC-SHA256(payload)), the payload being
+ * tokenId:roleId:expiresAt:userId:fullName (user ID and name base64url encoded).
+ * Every node started with the same syos.auth.tokenSecret verifies it on its own, so no
+ * sticky sessions are needed. Logouts go into a per-node denylist, kept only until the
+ * token would have expired anyway.
+ */
+public class SessionTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    // Mac is not thread-safe: one per request thread
+    private final ThreadLocal<Mac> macs;
+
+    // tokenId -> expiresAt of logged-out tokens
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Lazily read from the system properties; INSTANCE is null in HttpSession mode
+     */
+    private static class Holder {
+        static final SessionTokens INSTANCE = fromSystemProperties();
+    }
+
+    /**
+     * @param secret    HMAC key shared by all nodes (at least 32 bytes)
+     * @param ttlMillis How long a token stays valid after login
+     */
+    public SessionTokens(byte[] secret, long ttlMillis) {
+        this(secret, ttlMillis, System::currentTimeMillis);
+    }
+
+    SessionTokens(byte[] secret, long ttlMillis, LongSupplier clock) {
+        if (secret == null || secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("Token secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 not available", e);
+            }
+        });
+    }
+
+    /**
+     * The configured tokens, or null when logins use HttpSession (the default)
+     */
+    public static SessionTokens getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * syos.auth.mode (SESSION or TOKEN), syos.auth.tokenSecret, syos.auth.tokenTtlMinutes
+     */
+    static SessionTokens fromSystemProperties() {
+        String mode = System.getProperty("syos.auth.mode", "SESSION");
+        if (!"TOKEN".equalsIgnoreCase(mode)) {
+            return null;
+        }
+        String secret = System.getProperty("syos.auth.tokenSecret");
+        if (secret == null) {
+            throw new IllegalStateException("syos.auth.tokenSecret is required when syos.auth.mode=TOKEN");
+        }
+        long ttlMinutes = Long.getLong("syos.auth.tokenTtlMinutes", 30L);
+        System.out.println("🔑 Stateless login tokens enabled (valid for " + ttlMinutes + " min)");
+        return new SessionTokens(secret.getBytes(StandardCharsets.UTF_8), ttlMinutes * 60_000L);
+    }
+
+    /**
+     * Sign a token for a user who just logged in
+     */
+    public String issue(UserPrincipal principal) {
+        long expiresAt = clock.getAsLong() + ttlMillis;
+        String payload = UUID.randomUUID() + ":" + principal.getRoleId() + ":" + expiresAt + ":"
+                + encode(principal.getUserId()) + ":" + encode(principal.getFullName());
+        String body = encode(payload);
+        issued.incrementAndGet();
+        return body + "." + ENCODER.encodeToString(sign(body));
+    }
+
+    /**
+     * The user a token was issued to, or null if it is malformed, tampered with, expired or revoked
+     */
+    public UserPrincipal verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        String[] fields = open(token);
+        if (fields == null || revoked.containsKey(fields[0])) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        return new UserPrincipal(decode(fields[3]), Integer.valueOf(fields[1]), decode(fields[4]));
+    }
+
+    /**
+     * Refuse the token from now on (logout); invalid tokens are ignored
+     */
+    public void revoke(String token) {
+        String[] fields = open(token);
+        if (fields == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        revoked.put(fields[0], Long.parseLong(fields[2]));
+    }
+
+    /**
+     * Token lifetime, e.g. for the cookie's Max-Age
+     */
+    public long getTtlSeconds() {
+        return ttlMillis / 1000;
+    }
+
+    public TokenStats getStats() {
+        return new TokenStats(issued.get(), rejected.get(), revoked.size());
+    }
+
+    /**
+     * Checked payload fields (tokenId, roleId, expiresAt, userId, fullName), or null
+     */
+    private String[] open(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        String body = token.substring(0, dot);
+        try {
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(body), signature)) {
+                return null;
+            }
+            String[] fields = decode(body).split(":", 5);
+            if (fields.length != 5 || Long.parseLong(fields[2]) <= clock.getAsLong()) {
+                return null;
+            }
+            Integer.parseInt(fields[1]);
+            return fields;
+        } catch (IllegalArgumentException e) {    // Bad base64 or number (signed by us, so not expected)
+            return null;
+        }
+    }
+
+    private byte[] sign(String body) {
+        return macs.get().doFinal(body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String encode(String value) {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return new String(DECODER.decode(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Token counters for monitoring
+     */
+    public static class TokenStats {
+        public final long issued;
+        public final long rejected;
+        public final int revoked;
+
+        public TokenStats(long issued, long rejected, int revoked) {
+            this.issued = issued;
+            this.rejected = rejected;
+            this.revoked = revoked;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.application.dto.CreateBillRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the worker shard for a bill from its hottest product
+ * The hottest product is the one that has been on the most bills so far (ties go to the lower
+ * product code), so every bill selling a fast-moving product lands on the same shard and its
+ * inventory_locations rows are locked by one worker at a time instead of by all of them.
+ * Product codes come from clients before the bill is validated, so at most maxTrackedProducts
+ * codes are counted: when full, every count is halved and codes that drop to zero are forgotten.
+ */
+public class ShardRouter {
+
+    static final int DEFAULT_MAX_TRACKED_PRODUCTS = 10_000;
+
+    private final int shards;
+    private final int maxTrackedProducts;
+    private final Map<String, AtomicLong> billsPerProduct = new ConcurrentHashMap<>();
+
+    public ShardRouter(int shards) {
+        this(shards, DEFAULT_MAX_TRACKED_PRODUCTS);
+    }
+
+    /**
+     * @param maxTrackedProducts Product codes whose heat is counted at most
+     */
+    public ShardRouter(int shards, int maxTrackedProducts) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shards);
+        }
+        if (maxTrackedProducts <= 0) {
+            throw new IllegalArgumentException("maxTrackedProducts must be positive: " + maxTrackedProducts);
+        }
+        this.shards = shards;
+        this.maxTrackedProducts = maxTrackedProducts;
+    }
+
+    /**
+     * Shard for the bill; also counts its products towards their heat
+     */
+    public int shardFor(CreateBillRequest request) {
+        List<CreateBillRequest.BillItemRequest> items = request.getItems();
+        if (items == null || items.isEmpty()) {
+            return 0;
+        }
+
+        TreeSet<String> codes = new TreeSet<>();
+        for (CreateBillRequest.BillItemRequest item : items) {
+            if (item.getProductCode() != null) {
+                codes.add(item.getProductCode());
+            }
+        }
+        if (codes.isEmpty()) {
+            return 0;
+        }
+
+        // Codes are in order, so the first code with the top count wins ties
+        String hottest = null;
+        long hottestBills = -1;
+        for (String code : codes) {
+            AtomicLong bills = billsPerProduct.get(code);
+            long count = bills != null ? bills.get() : 0;
+            if (count > hottestBills) {
+                hottest = code;
+                hottestBills = count;
+            }
+            if (bills == null) {
+                bills = track(code);
+            }
+            if (bills != null) {
+                bills.incrementAndGet();
+            }
+        }
+        return shardOf(hottest);
+    }
+
+    /**
+     * Start counting a product code, making room first if needed (null if there is still none)
+     */
+    private AtomicLong track(String code) {
+        if (billsPerProduct.size() >= maxTrackedProducts) {
+            decay();
+            if (billsPerProduct.size() >= maxTrackedProducts) {
+                return null;
+            }
+        }
+        return billsPerProduct.computeIfAbsent(code, c -> new AtomicLong());
+    }
+
+    /**
+     * Halve every count and forget codes that reach zero
+     * Codes seen on a single bill (typos, made-up codes) go first; hot products keep their order
+     */
+    private synchronized void decay() {
+        if (billsPerProduct.size() < maxTrackedProducts) {
+            return;     // Another thread made room already
+        }
+        billsPerProduct.values().removeIf(bills -> bills.updateAndGet(n -> n / 2) == 0);
+    }
+
+    /**
+     * Product codes currently counted
+     */
+    public int getTrackedProducts() {
+        return billsPerProduct.size();
+    }
+
+    /**
+     * Shard that owns a product code
+     */
+    public int shardOf(String productCode) {
+        return Math.floorMod(productCode.hashCode(), shards);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+}
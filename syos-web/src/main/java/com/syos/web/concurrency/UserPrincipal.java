@@ -0,0 +1,60 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.domain.enums.Role;
+
+/**
+ * The logged-in user, as resolved once per request by AuthFilter
+ * Immutable: built at login and shared by every request of the session
+ */
+public final class UserPrincipal {
+
+    private final String userId;
+    private final int roleId;
+    private final String fullName;
+    private final String sessionId;
+
+    /**
+     * @param roleId   Role ID, or null for a customer
+     * @param fullName Display name, or null to show the user ID
+     */
+    public UserPrincipal(String userId, Integer roleId, String fullName) {
+        this(userId, roleId, fullName, null);
+    }
+
+    /**
+     * @param sessionId SessionManager session the user logged in with, or null (stateless token)
+     */
+    public UserPrincipal(String userId, Integer roleId, String fullName, String sessionId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        this.userId = userId;
+        this.roleId = roleId != null ? roleId : Role.CUSTOMER.getRoleId();
+        this.fullName = fullName != null ? fullName : userId;
+        this.sessionId = sessionId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public int getRoleId() {
+        return roleId;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    /**
+     * SessionManager session ID, null when the user is not tracked there
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public String toString() {
+        return userId + " (role " + roleId + ")";
+    }
+}
@@ -0,0 +1,45 @@
+package com.syos.web.concurrency;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking queue of work items taken by BillProcessingWorker
+ * (RequestQueue is plain FIFO, FairRequestQueue schedules across lanes)
+ */
+public interface WorkQueue<T> {
+
+    /**
+     * Add an item (blocks while there is no room for it)
+     */
+    void enqueue(T item) throws InterruptedException;
+
+    /**
+     * Add an item, waiting at most the timeout for room
+     * @return false if there was still no room
+     */
+    boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Take the next item (blocks while empty)
+     */
+    T dequeue() throws InterruptedException;
+
+    /**
+     * Take the next item, waiting at most the timeout for one
+     * @return null if the queue was still empty
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Move every waiting item to the collection without blocking
+     * @return Number of items moved
+     */
+    int drainTo(Collection<? super T> target);
+
+    int size();
+
+    boolean isEmpty();
+
+    int remainingCapacity();
+}
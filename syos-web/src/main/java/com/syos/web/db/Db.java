@@ -7,6 +7,11 @@ import java.sql.SQLException;
 
 public final class Db {
 
+    /**
+     * Most connections the pool hands out (also the default bill task concurrency)
+     */
+    public static final int MAX_POOL_SIZE = 40;
+
     private static HikariDataSource dataSource;
 
     static {
@@ -20,12 +25,13 @@ public final class Db {
             config.setJdbcUrl("jdbc:mysql://localhost:3306/syos_billing_Web" +
                     "?useSSL=false" +
                     "&allowPublicKeyRetrieval=true" +
+                    "&rewriteBatchedStatements=true" +  // executeBatch() sends one multi-row INSERT
                     "&serverTimezone=Asia/Colombo");  // ✅ FIXED!
             config.setUsername("root");
             config.setPassword("poojana3540");
 
             // Connection pool settings for concurrency
-            config.setMaximumPoolSize(40);      // 40 connections ready
+            config.setMaximumPoolSize(MAX_POOL_SIZE);  // 40 connections ready
             config.setMinimumIdle(10);           // Keep 10 always open
             config.setConnectionTimeout(30000); // 30 second timeout
             config.setIdleTimeout(600000);      // 10 minutes idle timeout
@@ -16,6 +16,7 @@ public class Product {
     private BigDecimal unitPrice;
     private String imageUrl;
     private Integer categoryId;
+    private String categoryName;  // Read-only, joined from product_categories
     private BigDecimal discountPercentage;
     private LocalDate discountStartDate;
     private LocalDate discountEndDate;
@@ -214,6 +215,14 @@ public class Product {
         this.updatedAt = LocalDateTime.now();
     }
 
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public void setCategoryName(String categoryName) {
+        this.categoryName = categoryName;
+    }
+
     public BigDecimal getDiscountPercentage() {
         return discountPercentage;
     }
@@ -2,15 +2,19 @@ package com.syos.web.infrastructure.persistence.dao;
 
 import com.syos.web.application.dto.BillDTO;
 import com.syos.web.application.dto.BillItemDTO;
+import com.syos.web.application.dto.StockAllocationDTO;
+import com.syos.web.concurrency.BillNumberAllocator;
 import com.syos.web.db.Db;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO for Bills
@@ -18,28 +22,76 @@ import java.util.List;
  */
 public class BillDao {
 
+    private static final int DUPLICATE_KEY = 1062;
+
     /**
      * Generate unique bill number (format: BILL-YYYYMMDD-XXXXXX)
+     * Served from a reserved in-memory block - no query per bill
      */
     private String generateBillNumber() throws SQLException {
-        String prefix = "BILL-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
+        return BillNumberAllocator.getInstance().next();
+    }
 
-        String sql = "SELECT COUNT(*) as count FROM bills WHERE bill_number LIKE ?";
+    /**
+     * Connection for a bill transaction (auto-commit off)
+     * The caller commits or rolls back and closes it
+     */
+    public Connection beginTransaction() throws SQLException {
+        Connection conn = Db.getConnection();
+        conn.setAutoCommit(false);
+        return conn;
+    }
 
-        try (Connection conn = Db.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Bill already created for a queue request ID (journal replay), or null
+     */
+    public String findBillNumberByRequestId(Connection conn, String requestId) throws SQLException {
+        String sql = "SELECT bill_number FROM bill_requests WHERE request_id = ?";
 
-            stmt.setString(1, prefix + "%");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, requestId);
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int count = rs.getInt("count") + 1;
-                    return prefix + String.format("%06d", count);
-                }
+                return rs.next() ? rs.getString("bill_number") : null;
             }
         }
+    }
+
+    /**
+     * Record which bill a queue request created, in the bill's transaction
+     * The primary key stops a concurrent replay of the same request from committing a second bill:
+     * the later one waits for the first to commit and then fails with a duplicate key (isDuplicateKey)
+     */
+    public void recordBillRequest(Connection conn, String requestId, String billNumber) throws SQLException {
+        String sql = "INSERT INTO bill_requests (request_id, bill_number) VALUES (?, ?)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, requestId);
+            stmt.setString(2, billNumber);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * MySQL duplicate key error (1062), e.g. a request ID already in bill_requests
+     */
+    public static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == DUPLICATE_KEY;
+    }
+
+    /**
+     * Full name of a user on the caller's connection (cashier name on the receipt)
+     */
+    public String findUserFullName(Connection conn, String userId) throws SQLException {
+        String sql = "SELECT full_name FROM users WHERE user_id = ?";
 
-        return prefix + "000001";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, userId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("full_name") : null;
+            }
+        }
     }
 
     /**
@@ -68,6 +120,44 @@ public class BillDao {
             LocalDate estimatedDeliveryDate
     ) throws SQLException {
 
+        try (Connection conn = Db.getConnection()) {
+            return createBill(conn, userId, userType, channel, paymentMethod,
+                    subtotal, discountAmount, totalAmount, amountPaid, changeAmount,
+                    deliveryAddress, deliveryCity, deliveryPostalCode, deliveryPhone,
+                    paymentMethodDetails, orderStatus, paymentStatus, trackingNumber,
+                    estimatedDeliveryDate, null);
+        }
+    }
+
+    /**
+     * Create a new bill on the caller's connection (part of a bill transaction)
+     * transactionDate is stored as given so the caller can build the bill without re-reading it;
+     * null falls back to NOW()
+     */
+    public String createBill(
+            Connection conn,
+            String userId,
+            String userType,
+            String channel,
+            String paymentMethod,
+            BigDecimal subtotal,
+            BigDecimal discountAmount,
+            BigDecimal totalAmount,
+            BigDecimal amountPaid,
+            BigDecimal changeAmount,
+            // Customer order fields
+            String deliveryAddress,
+            String deliveryCity,
+            String deliveryPostalCode,
+            String deliveryPhone,
+            String paymentMethodDetails,
+            String orderStatus,
+            String paymentStatus,
+            String trackingNumber,
+            LocalDate estimatedDeliveryDate,
+            LocalDateTime transactionDate
+    ) throws SQLException {
+
         String billNumber = generateBillNumber();
 
         System.out.println("🔍 DEBUG createBill:");
@@ -87,16 +177,15 @@ public class BillDao {
                     "delivery_address, delivery_city, delivery_postal_code, delivery_phone, " +
                     "payment_method_details, order_status, payment_status, " +
                     "tracking_number, estimated_delivery_date, transaction_date) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW())";
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, NOW()))";
         } else {
             // In-store - populate cashier fields (backward compatible)
             sql = "INSERT INTO bills (bill_number, cashier_id, channel, subtotal, discount_amount, " +
                     "total_amount, amount_paid, change_amount, transaction_date) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW())";
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, NOW()))";
         }
 
-        try (Connection conn = Db.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, billNumber);
             stmt.setString(2, userId);
@@ -123,6 +212,9 @@ public class BillDao {
                 stmt.setDate(17, estimatedDeliveryDate != null ? Date.valueOf(estimatedDeliveryDate) : null);
             }
 
+            int dateIndex = "ONLINE".equals(channel) ? 18 : 9;
+            stmt.setTimestamp(dateIndex, transactionDate != null ? Timestamp.valueOf(transactionDate) : null);
+
             int rowsAffected = stmt.executeUpdate();
 
             if (rowsAffected > 0) {
@@ -178,6 +270,38 @@ public class BillDao {
         }
     }
 
+    /**
+     * Add all items of a bill in one JDBC batch on the caller's connection
+     * Items keep their order; the generated bill_item_id of each is returned in the same order
+     */
+    public List<Long> addBillItems(Connection conn, String billNumber, List<BillItemDTO> items) throws SQLException {
+        String sql = "INSERT INTO bill_items (bill_number, product_code, quantity, price_at_sale, discount_applied) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+        List<Long> ids = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (BillItemDTO item : items) {
+                stmt.setString(1, billNumber);
+                stmt.setString(2, item.getProductCode());
+                stmt.setInt(3, item.getQuantity());
+                stmt.setBigDecimal(4, item.getUnitPrice());
+                stmt.setBigDecimal(5, BigDecimal.ZERO);
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                while (keys.next()) {
+                    ids.add(keys.getLong(1));
+                }
+            }
+        }
+
+        return ids;
+    }
+
     /**
      * 🆕 NEW - Get customer orders
      */
@@ -444,6 +568,15 @@ public class BillDao {
      * Get single bill with items
      */
     public BillDTO getBillByNumber(String billNumber) throws SQLException {
+        try (Connection conn = Db.getConnection()) {
+            return getBillByNumber(conn, billNumber);
+        }
+    }
+
+    /**
+     * Bill with its items on the caller's connection (e.g. inside the transaction that found it)
+     */
+    public BillDTO getBillByNumber(Connection conn, String billNumber) throws SQLException {
         String sql = "SELECT b.bill_number, b.transaction_date, b.total_amount, " +
                 "COALESCE(b.cashier_id, b.customer_id) as user_id, " +
                 "u.full_name, b.channel, b.subtotal, b.discount_amount, " +
@@ -453,8 +586,7 @@ public class BillDao {
                 "LEFT JOIN users u ON (b.cashier_id = u.user_id OR b.customer_id = u.user_id) " +
                 "WHERE b.bill_number = ?";
 
-        try (Connection conn = Db.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, billNumber);
 
@@ -480,7 +612,7 @@ public class BillDao {
                         bill.setEstimatedDeliveryDate(estimatedDate.toLocalDate());
                     }
 
-                    bill.setItems(getBillItems(billNumber));
+                    bill.setItems(getBillItems(conn, billNumber));
                     return bill;
                 }
             }
@@ -493,6 +625,15 @@ public class BillDao {
      * Get items for a bill
      */
     public List<BillItemDTO> getBillItems(String billNumber) throws SQLException {
+        try (Connection conn = Db.getConnection()) {
+            return getBillItems(conn, billNumber);
+        }
+    }
+
+    /**
+     * Items for a bill on the caller's connection
+     */
+    public List<BillItemDTO> getBillItems(Connection conn, String billNumber) throws SQLException {
         List<BillItemDTO> items = new ArrayList<>();
 
         String sql = "SELECT bi.bill_item_id, bi.product_code, p.name, bi.quantity, " +
@@ -501,8 +642,7 @@ public class BillDao {
                 "LEFT JOIN products p ON bi.product_code = p.product_code " +
                 "WHERE bi.bill_number = ?";
 
-        try (Connection conn = Db.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, billNumber);
 
@@ -565,6 +705,64 @@ public class BillDao {
         }
     }
 
+    /**
+     * Deduct stock for a whole basket with one call to deduct_stock_for_basket (set-based FEFO)
+     * Runs in the caller's transaction; duplicate product codes are added together
+     *
+     * @param quantities Quantity per product code
+     * @return The batch allocations made, ordered by product code then FEFO order
+     */
+    public List<StockAllocationDTO> deductStockForBasket(Connection conn, Map<String, Integer> quantities,
+                                                         String billNumber, String userId,
+                                                         String location) throws SQLException {
+        List<StockAllocationDTO> allocations = new ArrayList<>();
+        if (quantities.isEmpty()) {
+            return allocations;
+        }
+
+        String sql = "{CALL deduct_stock_for_basket(?, ?, ?, ?)}";
+
+        try (CallableStatement stmt = conn.prepareCall(sql)) {
+            stmt.setString(1, toBasketJson(quantities));
+            stmt.setString(2, location);  // SHELF or WEBSITE
+            stmt.setString(3, billNumber);
+            stmt.setString(4, userId);
+
+            boolean hasResults = stmt.execute();
+            if (hasResults) {
+                try (ResultSet rs = stmt.getResultSet()) {
+                    while (rs.next()) {
+                        allocations.add(new StockAllocationDTO(
+                                rs.getString("product_code"),
+                                rs.getInt("batch_id"),
+                                rs.getInt("quantity")
+                        ));
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error calling deduct_stock_for_basket: " + e.getMessage());
+            throw e;
+        }
+
+        return allocations;
+    }
+
+    /**
+     * Basket as the JSON array the procedure expects: [{"productCode":"P001","quantity":2}, ...]
+     */
+    static String toBasketJson(Map<String, Integer> quantities) {
+        JsonArray items = new JsonArray();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            JsonObject item = new JsonObject();
+            item.addProperty("productCode", entry.getKey());
+            item.addProperty("quantity", entry.getValue());
+            items.add(item);
+        }
+        return items.toString();
+    }
+
     /**
      * 🆕 Get all customer orders (for admin dashboard)
      */
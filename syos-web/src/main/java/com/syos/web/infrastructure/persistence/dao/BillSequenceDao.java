@@ -0,0 +1,92 @@
+package com.syos.web.infrastructure.persistence.dao;
+
+import com.syos.web.db.Db;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * DAO for per-day bill number reservations
+ * Handles database operations for bill_number_reservations table
+ * (one row per day holding the highest number handed out to any server)
+ */
+public class BillSequenceDao {
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * Atomically reserve the next block of bill numbers for a day
+     * Uses LAST_INSERT_ID(expr) so the new high-water mark is read back on the same connection
+     *
+     * @param day Business date (Asia/Colombo)
+     * @param blockSize How many numbers to reserve
+     * @return The highest number of the reserved block (block = [result - blockSize + 1, result])
+     */
+    public long reserveBlock(LocalDate day, int blockSize) throws SQLException {
+        String bump = "UPDATE bill_number_reservations " +
+                "SET reserved_up_to = LAST_INSERT_ID(reserved_up_to + ?) WHERE bill_date = ?";
+
+        String create = "INSERT INTO bill_number_reservations (bill_date, reserved_up_to) " +
+                "VALUES (?, LAST_INSERT_ID(? + ?)) " +
+                "ON DUPLICATE KEY UPDATE reserved_up_to = LAST_INSERT_ID(reserved_up_to + ?)";
+
+        try (Connection conn = Db.getConnection()) {
+            int rowsUpdated;
+            try (PreparedStatement stmt = conn.prepareStatement(bump)) {
+                stmt.setInt(1, blockSize);
+                stmt.setDate(2, Date.valueOf(day));
+                rowsUpdated = stmt.executeUpdate();
+            }
+
+            if (rowsUpdated == 0) {
+                // First block of the day: continue after any bill already numbered today
+                long seed = findHighestBillNumber(conn, day);
+
+                try (PreparedStatement stmt = conn.prepareStatement(create)) {
+                    stmt.setDate(1, Date.valueOf(day));
+                    stmt.setLong(2, seed);
+                    stmt.setInt(3, blockSize);
+                    stmt.setInt(4, blockSize);
+                    stmt.executeUpdate();
+                }
+            }
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        }
+
+        throw new SQLException("Failed to reserve bill numbers for " + day);
+    }
+
+    /**
+     * Highest sequence already used in bills for a day (0 if none)
+     * A backwards range scan on the bill_number primary key, not a COUNT
+     * Only runs once per day, when the reservation row is created
+     */
+    private long findHighestBillNumber(Connection conn, LocalDate day) throws SQLException {
+        String prefix = "BILL-" + day.format(DAY_FORMAT) + "-";
+        String sql = "SELECT bill_number FROM bills WHERE bill_number LIKE ? " +
+                "ORDER BY bill_number DESC LIMIT 1";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, prefix + "%");
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    try {
+                        return Long.parseLong(rs.getString("bill_number").substring(prefix.length()));
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+
+        return 0;
+    }
+}
@@ -8,7 +8,12 @@ import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import com.syos.web.application.dto.PromotionDTO;
 
@@ -93,6 +98,55 @@ public class ProductDao {
         return Optional.empty();
     }
 
+    /**
+     * Find several products in one query (for bill creation)
+     * Runs on the caller's connection so it can take part in a transaction
+     *
+     * @return Products keyed by product code; codes not found are absent
+     */
+    public Map<String, Product> findByProductCodes(Connection conn, Collection<String> productCodes) throws SQLException {
+        Map<String, Product> products = new HashMap<>();
+        if (productCodes.isEmpty()) {
+            return products;
+        }
+
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(productCodes));
+        String placeholders = String.join(", ", Collections.nCopies(codes.size(), "?"));
+
+        String sql = "SELECT " +
+                "    p.product_code, " +
+                "    p.name, " +
+                "    p.unit_price, " +
+                "    p.discount_percentage, " +
+                "    p.discount_start_date, " +
+                "    p.discount_end_date, " +
+                "    p.image_url, " +
+                "    p.category_id, " +
+                "    p.is_deleted, " +
+                "    pc.category_name, " +
+                "    COALESCE(SUM(CASE WHEN il.location = 'SHELF' THEN il.quantity ELSE 0 END), 0) as shelf_quantity, " +
+                "    COALESCE(SUM(CASE WHEN il.location = 'MAIN' THEN il.quantity ELSE 0 END), 0) as warehouse_quantity, " +
+                "    COALESCE(SUM(CASE WHEN il.location = 'WEBSITE' THEN il.quantity ELSE 0 END), 0) as website_quantity " +
+                "FROM products p " +
+                "LEFT JOIN product_categories pc ON p.category_id = pc.category_id " +
+                "LEFT JOIN inventory_locations il ON p.product_code = il.product_code " +
+                "WHERE p.product_code IN (" + placeholders + ") AND p.is_deleted = FALSE " +
+                "GROUP BY p.product_code, p.name, p.unit_price, p.discount_percentage, p.discount_start_date, p.discount_end_date, p.image_url, p.category_id, p.is_deleted, pc.category_name";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < codes.size(); i++) {
+                stmt.setString(i + 1, codes.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Product product = mapResultSetToProduct(rs);
+                    products.put(product.getProductCode(), product);
+                }
+            }
+        }
+        return products;
+    }
+
     /**
      * Find product by product code (for use cases)
      */
@@ -435,6 +489,7 @@ public class ProductDao {
                 endDate != null ? endDate.toLocalDate() : null,
                 isDeleted
         );
+        product.setCategoryName(rs.getString("category_name"));
 
         return product;
     }
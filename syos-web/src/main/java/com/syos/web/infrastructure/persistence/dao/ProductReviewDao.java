@@ -1,5 +1,6 @@
 package com.syos.web.infrastructure.persistence.dao;
 
+import com.syos.web.application.dto.ProductRatingDTO;
 import com.syos.web.application.dto.ReviewDTO;
 import com.syos.web.db.Db;
 import com.syos.web.domain.model.ProductReview;
@@ -7,7 +8,12 @@ import com.syos.web.domain.model.ProductReview;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -231,6 +237,44 @@ public class ProductReviewDao {
         return 0;
     }
 
+    /**
+     * Get average rating and review count for several products in one grouped query
+     * Products without reviews are absent from the map
+     */
+    public Map<String, ProductRatingDTO> getRatingSummaries(Collection<String> productCodes) throws SQLException {
+        Map<String, ProductRatingDTO> ratings = new HashMap<>();
+        if (productCodes.isEmpty()) {
+            return ratings;
+        }
+
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(productCodes));
+        String placeholders = String.join(", ", Collections.nCopies(codes.size(), "?"));
+
+        String sql = "SELECT product_code, AVG(rating) as avg_rating, COUNT(*) as count " +
+                "FROM product_reviews WHERE product_code IN (" + placeholders + ") " +
+                "GROUP BY product_code";
+
+        try (Connection conn = Db.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < codes.size(); i++) {
+                stmt.setString(i + 1, codes.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String productCode = rs.getString("product_code");
+                    ratings.put(productCode, new ProductRatingDTO(
+                            productCode,
+                            rs.getDouble("avg_rating"),
+                            rs.getInt("count")
+                    ));
+                }
+            }
+        }
+        return ratings;
+    }
+
     /**
      * Find review by user and product
      */
@@ -1,5 +1,6 @@
 package com.syos.web.infrastructure.persistence.dao;
 
+import com.syos.web.concurrency.LoginExecutor;
 import com.syos.web.db.Db;
 import org.mindrot.jbcrypt.BCrypt;
 
@@ -35,7 +36,10 @@ public class UserDao {
                 }
 
                 // BCrypt check: plain password vs stored hash
-                return BCrypt.checkpw(plainPassword, storedHash);
+                long hashStart = System.nanoTime();
+                boolean matches = BCrypt.checkpw(plainPassword, storedHash);
+                LoginExecutor.getInstance().recordHashMicros((System.nanoTime() - hashStart) / 1000);
+                return matches;
             }
 
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package com.syos.web.infrastructure.repositories;
 
 import com.syos.web.application.ports.IProductRepository;
+import com.syos.web.concurrency.ProductCatalogCache;
 import com.syos.web.domain.model.Product;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
 
@@ -16,21 +17,31 @@ import java.util.Optional;
 public class ProductRepositoryImpl implements IProductRepository {
 
     private final ProductDao productDao;
+    private final ProductCatalogCache catalogCache;
 
     // Constructor injection
-    public ProductRepositoryImpl(ProductDao productDao) {
+    public ProductRepositoryImpl(ProductDao productDao, ProductCatalogCache catalogCache) {
         this.productDao = productDao;
+        this.catalogCache = catalogCache;
+    }
+
+    // Catalog snapshot loaded from the given DAO (no scheduled refresh; invalidateCatalog reloads it)
+    public ProductRepositoryImpl(ProductDao productDao) {
+        this(productDao, new ProductCatalogCache(productDao::findAll, 0));
     }
 
-    // Default constructor (creates ProductDao internally)
+    // Default constructor (creates ProductDao internally, shares the catalog cache)
     public ProductRepositoryImpl() {
-        this.productDao = new ProductDao();
+        this(new ProductDao(), ProductCatalogCache.getInstance());
     }
 
+    /**
+     * All products from the shared catalog snapshot (unmodifiable)
+     */
     @Override
     public List<Product> findAll() {
         try {
-            return productDao.findAll();
+            return catalogCache.getProducts();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to fetch products: " + e.getMessage(), e);
         }
@@ -111,4 +122,9 @@ public class ProductRepositoryImpl implements IProductRepository {
             throw new RuntimeException("Failed to count products: " + e.getMessage(), e);
         }
     }
+
+    @Override
+    public void invalidateCatalog() {
+        catalogCache.invalidate();
+    }
 }
@@ -3,13 +3,14 @@ package com.syos.web.presentation.api.admin;
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.dto.BillDTO;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.persistence.dao.BillDao;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -40,8 +41,8 @@ public class ApiAdminOrdersServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // Check authentication
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
@@ -78,8 +79,8 @@ public class ApiAdminOrdersServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // Check authentication
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
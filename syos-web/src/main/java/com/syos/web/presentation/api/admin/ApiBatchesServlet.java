@@ -2,14 +2,15 @@ package com.syos.web.presentation.api.admin;
 
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.domain.model.StockBatch;
 import com.syos.web.infrastructure.persistence.dao.StockBatchDao;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.util.List;
@@ -34,8 +35,8 @@ public class ApiBatchesServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
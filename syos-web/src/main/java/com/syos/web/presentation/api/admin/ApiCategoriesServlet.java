@@ -2,6 +2,7 @@ package com.syos.web.presentation.api.admin;
 
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
+import com.syos.web.concurrency.ProductCatalogCache;
 import com.syos.web.db.Db;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -181,6 +182,9 @@ public class ApiCategoriesServlet extends HttpServlet {
                 int rowsAffected = stmt.executeUpdate();
 
                 if (rowsAffected > 0) {
+                    // Product search indexes category names
+                    ProductCatalogCache.getInstance().invalidate();
+
                     Map<String, Object> updatedCategory = new HashMap<>();
                     updatedCategory.put("categoryId", categoryId);
                     updatedCategory.put("categoryName", categoryName);
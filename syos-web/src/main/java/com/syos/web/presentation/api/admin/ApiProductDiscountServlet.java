@@ -3,13 +3,15 @@ package com.syos.web.presentation.api.admin;
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.dto.SetProductDiscountRequest;
+import com.syos.web.concurrency.ProductCatalogCache;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -36,8 +38,8 @@ public class ApiProductDiscountServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
@@ -57,6 +59,7 @@ public class ApiProductDiscountServlet extends HttpServlet {
             );
 
             if (success) {
+                ProductCatalogCache.getInstance().invalidate();
                 ApiResponse<Object> response = ApiResponse.success(
                         "Product discount set successfully",
                         null
@@ -88,8 +91,8 @@ public class ApiProductDiscountServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
@@ -109,6 +112,7 @@ public class ApiProductDiscountServlet extends HttpServlet {
             boolean success = productDao.removeProductDiscount(productCode);
 
             if (success) {
+                ProductCatalogCache.getInstance().invalidate();
                 ApiResponse<Object> response = ApiResponse.success(
                         "Product discount removed successfully",
                         null
@@ -2,16 +2,30 @@ package com.syos.web.presentation.api.admin;
 
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
+import com.syos.web.concurrency.AdmissionController;
+import com.syos.web.concurrency.BillJournal;
+import com.syos.web.concurrency.BillProcessingWorker;
 import com.syos.web.concurrency.BillQueueService;
+import com.syos.web.concurrency.FairRequestQueue;
+import com.syos.web.concurrency.GoogleTokenVerifier;
+import com.syos.web.concurrency.IdempotencyCache;
+import com.syos.web.concurrency.LatencyHistogram;
+import com.syos.web.concurrency.LoginExecutor;
+import com.syos.web.concurrency.ProductCatalogCache;
+import com.syos.web.concurrency.QueueTelemetry;
+import com.syos.web.concurrency.RetryPolicy;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -34,8 +48,8 @@ public class ApiQueueStatsServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // Check authentication
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
@@ -52,9 +66,172 @@ public class ApiQueueStatsServlet extends HttpServlet {
             statsMap.put("remainingCapacity", stats.remainingCapacity);
             statsMap.put("totalCapacity", stats.queueSize + stats.remainingCapacity);
             statsMap.put("numWorkers", stats.numWorkers);
+            statsMap.put("executionMode", stats.executionMode);
+            statsMap.put("inFlight", stats.inFlight);
             statsMap.put("utilizationPercent", calculateUtilization(stats));
             statsMap.put("status", getQueueStatus(stats));
 
+            // Per-lane scheduling (CASHIER / CUSTOMER)
+            List<Map<String, Object>> lanes = new ArrayList<>();
+            for (FairRequestQueue.LaneStats lane : BillQueueService.getInstance().getLaneStats()) {
+                Map<String, Object> laneMap = new HashMap<>();
+                laneMap.put("name", lane.name);
+                laneMap.put("capacity", lane.capacity);
+                laneMap.put("weight", lane.weight);
+                laneMap.put("depth", lane.depth);
+                laneMap.put("enqueued", lane.enqueued);
+                laneMap.put("dequeued", lane.dequeued);
+                laneMap.put("aged", lane.aged);
+                laneMap.put("oldestWaitMs", lane.oldestWaitMillis);
+                lanes.add(laneMap);
+            }
+            statsMap.put("lanes", lanes);
+
+            // Live telemetry (in memory, no database)
+            QueueTelemetry.Snapshot telemetry = BillQueueService.getInstance().getTelemetry();
+            Map<String, Object> telemetryMap = new HashMap<>();
+            telemetryMap.put("waitTime", histogramMap(telemetry.waitTime));
+            telemetryMap.put("processingTime", histogramMap(telemetry.processingTime));
+            telemetryMap.put("processed", telemetry.processed);
+            telemetryMap.put("throughputPerSecond1m", telemetry.throughputOneMinute);
+            telemetryMap.put("throughputPerSecond5m", telemetry.throughputFiveMinutes);
+            telemetryMap.put("throughputPerSecond15m", telemetry.throughputFifteenMinutes);
+            telemetryMap.put("oldestWaitMs", telemetry.oldestWaitMillis);
+
+            List<Map<String, Object>> workers = new ArrayList<>();
+            for (QueueTelemetry.WorkerStats worker : telemetry.workers) {
+                Map<String, Object> workerMap = new HashMap<>();
+                workerMap.put("name", worker.name);
+                workerMap.put("slots", worker.slots);
+                workerMap.put("processed", worker.processed);
+                workerMap.put("busyPercent", worker.busyPercent);
+                workerMap.put("idlePercent", 100.0 - worker.busyPercent);
+                workerMap.put("busyPercent1m", worker.busyPercentOneMinute);
+                workers.add(workerMap);
+            }
+            telemetryMap.put("workers", workers);
+
+            Map<String, Object> userTypes = new HashMap<>();
+            for (QueueTelemetry.UserTypeStats userType : telemetry.userTypes) {
+                Map<String, Object> userTypeMap = new HashMap<>();
+                userTypeMap.put("completed", userType.completed);
+                userTypeMap.put("failed", userType.failed);
+                userTypeMap.put("skipped", userType.skipped);
+                userTypeMap.put("errorPercent", userType.errorPercent);
+                userTypes.put(userType.userType, userTypeMap);
+            }
+            telemetryMap.put("userTypes", userTypes);
+            statsMap.put("telemetry", telemetryMap);
+
+            // Per-shard routing and stock lock conflicts (SHARDED mode only)
+            List<Map<String, Object>> shards = new ArrayList<>();
+            for (BillQueueService.ShardStats shard : BillQueueService.getInstance().getShardStats()) {
+                Map<String, Object> shardMap = new HashMap<>();
+                shardMap.put("shard", shard.shard);
+                shardMap.put("depth", shard.depth);
+                shardMap.put("routed", shard.routed);
+                shardMap.put("completed", shard.completed);
+                shardMap.put("failed", shard.failed);
+                shardMap.put("conflicts", shard.conflicts);
+                shardMap.put("skipped", shard.skipped);
+                shardMap.put("retries", shard.retries);
+                shardMap.put("gaveUp", shard.gaveUp);
+                shardMap.put("conflictPercent", calculateConflictRate(shard));
+                shards.add(shardMap);
+            }
+            statsMap.put("shards", shards);
+
+            // Lock conflict retries (deadlock, lock wait timeout, stock version conflict)
+            RetryPolicy.RetryStats retries = BillQueueService.getInstance().getRetryStats();
+            Map<String, Object> retryMap = new HashMap<>();
+            retryMap.put("retries", retries.retries);
+            retryMap.put("succeededAfterRetry", retries.succeededAfterRetry);
+            retryMap.put("gaveUp", retries.gaveUp);
+            retryMap.put("deadlocks", retries.deadlocks);
+            retryMap.put("lockWaitTimeouts", retries.lockWaitTimeouts);
+            retryMap.put("versionConflicts", retries.versionConflicts);
+            statsMap.put("retries", retryMap);
+
+            // Micro-batching (several bills per transaction)
+            BillProcessingWorker.BatchStats batching = BillQueueService.getInstance().getBatchStats();
+            Map<String, Object> batchingMap = new HashMap<>();
+            batchingMap.put("batches", batching.batches);
+            batchingMap.put("bills", batching.bills);
+            batchingMap.put("averageBatchSize", batching.getAverageBatchSize());
+            batchingMap.put("fallbacks", batching.fallbacks);
+            statsMap.put("batching", batchingMap);
+
+            // Write-ahead journal (only when syos.billing.journalDir is set)
+            BillJournal.JournalStats journal = BillQueueService.getInstance().getJournalStats();
+            if (journal != null) {
+                Map<String, Object> journalMap = new HashMap<>();
+                journalMap.put("appends", journal.appends);
+                journalMap.put("acks", journal.acks);
+                journalMap.put("syncs", journal.syncs);
+                journalMap.put("unacknowledged", journal.unacknowledged);
+                journalMap.put("segments", journal.segments);
+                statsMap.put("journal", journalMap);
+            }
+
+            // Idempotency-Key submissions (repeats attach to, or replay, the first)
+            IdempotencyCache.IdempotencyStats idempotency = BillQueueService.getInstance().getIdempotencyStats();
+            Map<String, Object> idempotencyMap = new HashMap<>();
+            idempotencyMap.put("entries", idempotency.entries);
+            idempotencyMap.put("submitted", idempotency.submitted);
+            idempotencyMap.put("attached", idempotency.attached);
+            idempotencyMap.put("replayed", idempotency.replayed);
+            statsMap.put("idempotency", idempotencyMap);
+
+            // Admission control (503 + Retry-After when the wait would exceed the timeout)
+            AdmissionController.AdmissionStats admission = BillQueueService.getInstance().getAdmissionStats();
+            Map<String, Object> admissionMap = new HashMap<>();
+            admissionMap.put("admitted", admission.admitted);
+            admissionMap.put("rejected", admission.rejected);
+            admissionMap.put("abandoned", admission.abandoned);
+            admissionMap.put("averageServiceMs", admission.averageServiceMillis);
+            statsMap.put("admission", admissionMap);
+
+            // Password logins (BCrypt on the login pool)
+            LoginExecutor.LoginStats login = LoginExecutor.getInstance().getStats();
+            Map<String, Object> loginMap = new HashMap<>();
+            loginMap.put("threads", login.threads);
+            loginMap.put("active", login.active);
+            loginMap.put("queued", login.queued);
+            loginMap.put("submitted", login.submitted);
+            loginMap.put("rejected", login.rejected);
+            loginMap.put("queueWait", histogramMap(login.queueWait));
+            loginMap.put("hashTime", histogramMap(login.hashTime));
+            loginMap.put("trackedFailures", login.attempts.tracked);
+            loginMap.put("blocked", login.attempts.blocked);
+            loginMap.put("refusedWhenFull", login.attempts.refusedWhenFull);
+            statsMap.put("login", loginMap);
+
+            // Google sign-in (verified token cache and locally held signing keys)
+            GoogleTokenVerifier.VerifierStats google = GoogleTokenVerifier.getInstance().getStats();
+            Map<String, Object> googleMap = new HashMap<>();
+            googleMap.put("hits", google.hits);
+            googleMap.put("misses", google.misses);
+            googleMap.put("rejected", google.rejected);
+            googleMap.put("keyRefreshes", google.keyRefreshes);
+            googleMap.put("refreshFailures", google.refreshFailures);
+            googleMap.put("keyCount", google.keyCount);
+            googleMap.put("cachedTokens", google.cachedTokens);
+            statsMap.put("googleLogin", googleMap);
+
+            // Product catalog cache
+            ProductCatalogCache.CacheStats catalog = ProductCatalogCache.getInstance().getStats();
+            Map<String, Object> catalogMap = new HashMap<>();
+            catalogMap.put("hits", catalog.hits);
+            catalogMap.put("misses", catalog.misses);
+            catalogMap.put("refreshes", catalog.refreshes);
+            catalogMap.put("refreshFailures", catalog.refreshFailures);
+            catalogMap.put("invalidations", catalog.invalidations);
+            catalogMap.put("lastRefreshMs", catalog.lastRefreshMillis);
+            catalogMap.put("averageRefreshMs", catalog.averageRefreshMillis);
+            catalogMap.put("productCount", catalog.productCount);
+            catalogMap.put("snapshotAgeMs", catalog.snapshotAgeMillis);
+            statsMap.put("catalogCache", catalogMap);
+
             ApiResponse<Map<String, Object>> response = ApiResponse.success(
                     "Queue statistics retrieved successfully",
                     statsMap
@@ -77,6 +254,24 @@ public class ApiQueueStatsServlet extends HttpServlet {
         return (double) stats.queueSize / total * 100;
     }
 
+    private Map<String, Object> histogramMap(LatencyHistogram.Snapshot histogram) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("count", histogram.count);
+        map.put("meanMs", histogram.meanMillis);
+        map.put("p50Ms", histogram.p50Millis);
+        map.put("p90Ms", histogram.p90Millis);
+        map.put("p99Ms", histogram.p99Millis);
+        map.put("p999Ms", histogram.p999Millis);
+        map.put("maxMs", histogram.maxMillis);
+        return map;
+    }
+
+    private double calculateConflictRate(BillQueueService.ShardStats shard) {
+        long processed = shard.completed + shard.failed;
+        if (processed == 0) return 0.0;
+        return (double) shard.conflicts / processed * 100;
+    }
+
     private String getQueueStatus(BillQueueService.QueueStats stats) {
         double utilization = calculateUtilization(stats);
         if (utilization < 25) return "LOW";
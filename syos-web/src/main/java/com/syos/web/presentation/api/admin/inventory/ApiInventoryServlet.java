@@ -6,13 +6,14 @@ import com.syos.web.application.dto.InventorySummaryDTO;
 import com.syos.web.application.ports.IInventoryLocationRepository;
 import com.syos.web.application.usecases.GetInventoryUseCase;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.repositories.InventoryLocationRepositoryImpl;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 
@@ -44,8 +45,8 @@ public class ApiInventoryServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         // Get query parameters
         String location = req.getParameter("location");
@@ -8,14 +8,15 @@ import com.syos.web.application.ports.IProductRepository;
 import com.syos.web.application.ports.IStockBatchRepository;
 import com.syos.web.application.usecases.ReceiveStockUseCase;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.repositories.ProductRepositoryImpl;
 import com.syos.web.infrastructure.repositories.StockBatchRepositoryImpl;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -45,8 +46,8 @@ public class ApiReceiveStockServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         String requestId = RequestLogger.logRequest(
                 "RECEIVE_STOCK",
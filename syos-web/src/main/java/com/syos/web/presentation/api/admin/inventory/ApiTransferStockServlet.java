@@ -7,13 +7,14 @@ import com.syos.web.application.dto.TransferStockResponse;
 import com.syos.web.application.ports.IProductRepository;
 import com.syos.web.application.usecases.TransferStockUseCase;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.repositories.ProductRepositoryImpl;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -42,8 +43,8 @@ public class ApiTransferStockServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         String requestId = RequestLogger.logRequest(
                 "TRANSFER_STOCK",
@@ -5,14 +5,15 @@ import com.syos.web.application.dto.*;
 import com.syos.web.application.ports.IProductRepository;
 import com.syos.web.application.usecases.*;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.repositories.ProductRepositoryImpl;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;  // 🆕 ADD THIS IMPORT
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.io.BufferedReader;
@@ -65,8 +66,8 @@ public class ApiProductsServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         String pathInfo = req.getPathInfo(); // null, "", "/" or "/{productCode}"
 
@@ -94,8 +95,8 @@ public class ApiProductsServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         String requestId = RequestLogger.logRequest(
                 "CREATE_PRODUCT",
@@ -147,8 +148,8 @@ public class ApiProductsServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         String requestId = RequestLogger.logRequest(
                 "UPDATE_PRODUCT",
@@ -199,8 +200,8 @@ public class ApiProductsServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : "anonymous";
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : "anonymous";
 
         String requestId = RequestLogger.logRequest(
                 "DELETE_PRODUCT",
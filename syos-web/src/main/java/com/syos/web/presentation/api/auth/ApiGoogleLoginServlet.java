@@ -1,13 +1,14 @@
 package com.syos.web.presentation.api.auth;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.gson.Gson;
+import com.syos.web.concurrency.GoogleTokenVerifier;
 import com.syos.web.concurrency.SessionManager;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.persistence.dao.UserDao;
+import com.syos.web.presentation.util.TokenCookie;
 
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,7 +16,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,7 +25,6 @@ public class ApiGoogleLoginServlet extends HttpServlet {
     private final UserDao dao = new UserDao();
     private final Gson gson = new Gson();
     private static final int DEFAULT_ROLE_ID = 3; // Customer role
-    private static final String GOOGLE_CLIENT_ID = "997091192220-ulfhf1i9i9uc7qikfupkbgb4u67pjk28.apps.googleusercontent.com";
 
     @Override
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) {
@@ -55,17 +55,10 @@ public class ApiGoogleLoginServlet extends HttpServlet {
                 return;
             }
 
-            // Verify the Google ID token
-            GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(
-                    new NetHttpTransport(),
-                    GsonFactory.getDefaultInstance()
-            )
-                    .setAudience(Collections.singletonList(GOOGLE_CLIENT_ID))
-                    .build();
+            // Verify the Google ID token (shared verifier, keys held locally)
+            GoogleIdToken.Payload payload = GoogleTokenVerifier.getInstance().verify(credential);
 
-            GoogleIdToken idToken = verifier.verify(credential);
-
-            if (idToken == null) {
+            if (payload == null) {
                 resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 resp.getWriter().write(gson.toJson(Map.of(
                         "success", false,
@@ -75,8 +68,6 @@ public class ApiGoogleLoginServlet extends HttpServlet {
                 return;
             }
 
-            GoogleIdToken.Payload payload = idToken.getPayload();
-
             String googleId = payload.getSubject();
             String email = payload.getEmail();
             String name = (String) payload.get("name");
@@ -99,20 +90,9 @@ public class ApiGoogleLoginServlet extends HttpServlet {
                 // User exists, log them in
                 UserDao.UserDetails userDetails = dao.getUserDetails(existingUserId);
 
-                // Create session with SessionManager
-                String sessionId = SessionManager.createSession(
-                        existingUserId,
-                        String.valueOf(userDetails.getRoleId()),
-                        req.getRemoteAddr(),
-                        req.getHeader("User-Agent")
-                );
-
-                HttpSession session = req.getSession();
-                session.setAttribute("sessionId", sessionId);
-                session.setAttribute("username", existingUserId);
-                session.setAttribute("roleId", userDetails.getRoleId());
-                session.setAttribute("fullName", userDetails.getFullName());
-                session.setMaxInactiveInterval(30 * 60);
+                // Create session with SessionManager (or a token)
+                String sessionId = startSession(req, resp, existingUserId,
+                        userDetails.getRoleId(), userDetails.getFullName());
 
                 resp.setStatus(HttpServletResponse.SC_OK);
                 resp.getWriter().write(gson.toJson(Map.of(
@@ -146,19 +126,7 @@ public class ApiGoogleLoginServlet extends HttpServlet {
 
             if (created) {
                 // Create session for new user
-                String sessionId = SessionManager.createSession(
-                        newUserId,
-                        String.valueOf(DEFAULT_ROLE_ID),
-                        req.getRemoteAddr(),
-                        req.getHeader("User-Agent")
-                );
-
-                HttpSession session = req.getSession();
-                session.setAttribute("sessionId", sessionId);
-                session.setAttribute("username", newUserId);
-                session.setAttribute("roleId", DEFAULT_ROLE_ID);
-                session.setAttribute("fullName", name);
-                session.setMaxInactiveInterval(30 * 60);
+                String sessionId = startSession(req, resp, newUserId, DEFAULT_ROLE_ID, name);
 
                 resp.setStatus(HttpServletResponse.SC_CREATED);
                 resp.getWriter().write(gson.toJson(Map.of(
@@ -191,6 +159,34 @@ public class ApiGoogleLoginServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Log the user in: a signed token cookie in stateless mode, otherwise SessionManager + HttpSession
+     * @return Session ID (or the token)
+     */
+    private String startSession(HttpServletRequest req, HttpServletResponse resp,
+                                String userId, int roleId, String fullName) throws SQLException {
+        SessionTokens tokens = SessionTokens.getInstance();
+        if (tokens != null) {
+            return TokenCookie.issue(req, resp, tokens, new UserPrincipal(userId, roleId, fullName));
+        }
+
+        String sessionId = SessionManager.createSession(
+                userId,
+                String.valueOf(roleId),
+                fullName,
+                req.getRemoteAddr(),
+                req.getHeader("User-Agent")
+        );
+
+        HttpSession session = req.getSession();
+        session.setAttribute("sessionId", sessionId);
+        session.setAttribute("username", userId);
+        session.setAttribute("roleId", roleId);
+        session.setAttribute("fullName", fullName);
+        session.setMaxInactiveInterval(30 * 60);
+        return sessionId;
+    }
+
     private String generateUserId(String email) {
         if (email == null || email.isBlank()) {
             return "google_" + UUID.randomUUID().toString().substring(0, 8);
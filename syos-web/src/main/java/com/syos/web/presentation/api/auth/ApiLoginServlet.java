@@ -5,8 +5,15 @@ import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.dto.LoginRequest;
 import com.syos.web.application.dto.UserDTO;
 import com.syos.web.application.usecases.LoginUseCase;
+import com.syos.web.concurrency.AdmissionRejectedException;
+import com.syos.web.concurrency.LoginAttemptCache;
+import com.syos.web.concurrency.LoginExecutor;
 import com.syos.web.concurrency.SessionManager;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.util.AsyncBillResponder;
+import com.syos.web.presentation.util.TokenCookie;
 
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -15,15 +22,35 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
-
-@WebServlet("/api/auth/login")
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Password login
+ * BCrypt runs on the LoginExecutor, so the container thread is released while the hash is
+ * checked; repeated wrong passwords for a user from one IP get 429 before BCrypt runs.
+ * Each login reserves its attempt before it is queued, so parallel guesses are counted too.
+ */
+@WebServlet(urlPatterns = "/api/auth/login", asyncSupported = true)
 public class ApiLoginServlet extends HttpServlet {
 
-    private final LoginUseCase loginUseCase = new LoginUseCase();
+    private static final long RESPONSE_TIMEOUT_MS = 10_000;
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final LoginUseCase loginUseCase;
     private final Gson gson = new Gson();
 
+    public ApiLoginServlet() {
+        this(new LoginUseCase());
+    }
+
+    ApiLoginServlet(LoginUseCase loginUseCase) {
+        this.loginUseCase = loginUseCase;
+    }
+
     @Override
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         addCors(resp);
@@ -39,20 +66,112 @@ public class ApiLoginServlet extends HttpServlet {
         String requestId = RequestLogger.logRequest("LOGIN", null, req.getRemoteAddr(), Thread.currentThread().getName());
         long startTime = System.currentTimeMillis();
 
+        LoginAttemptCache.Attempt attempt = null;
         try {
             // Parse JSON request with GSON
             LoginRequest loginRequest = gson.fromJson(req.getReader(), LoginRequest.class);
+            LoginExecutor logins = LoginExecutor.getInstance();
+            LoginAttemptCache attempts = logins.getAttempts();
 
-            // Execute use case (same as before)
-            ApiResponse<UserDTO> response = loginUseCase.execute(loginRequest);
+            // Too many wrong passwords (or guesses in progress) from this IP: refuse without running BCrypt
+            String username = loginRequest != null ? loginRequest.getUsername() : null;
+            if (username != null) {
+                attempt = attempts.tryBeginAttempt(username, req.getRemoteAddr());
+            }
+            if (username != null && attempt == null) {
+                long blockedMillis = attempts.retryAfterMillis(username, req.getRemoteAddr());
+                int retryAfterSeconds = (int) Math.ceil(blockedMillis / 1000.0);
+                resp.setStatus(SC_TOO_MANY_REQUESTS);
+                resp.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+                resp.getWriter().write(gson.toJson(Map.of(
+                        "success", false,
+                        "message", "Too many failed login attempts. Try again in " + retryAfterSeconds + " seconds."
+                )));
+                RequestLogger.updateStatus(requestId, "FAILED", startTime);
+                return;
+            }
+
+            // Execute use case on the login pool (BCrypt), not on this container thread
+            CompletableFuture<ApiResponse<UserDTO>> future = logins.submit(() -> loginUseCase.execute(loginRequest));
+            LoginAttemptCache.Attempt reserved = attempt;
+
+            if (!req.isAsyncSupported()) {
+                // No async context (e.g. an extra filter without async-supported): wait here
+                writeResult(req, resp, loginRequest, future.join(), reserved, requestId, startTime);
+                return;
+            }
+
+            AsyncBillResponder.respond(req, resp, future, RESPONSE_TIMEOUT_MS, new AsyncBillResponder.Callbacks<>() {
+                @Override
+                public void completed(HttpServletResponse resp, ApiResponse<UserDTO> response) throws IOException {
+                    try {
+                        writeResult(req, resp, loginRequest, response, reserved, requestId, startTime);
+                    } catch (SQLException e) {
+                        failed(resp, e);
+                    }
+                }
+
+                @Override
+                public void failed(HttpServletResponse resp, Throwable cause) throws IOException {
+                    cancel(reserved);
+                    writeError(resp, cause, requestId, startTime);
+                }
+
+                @Override
+                public void timedOut(HttpServletResponse resp) throws IOException {
+                    // The check may still finish; if it does not, the reservation must not stay behind
+                    cancel(reserved);
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.setHeader("Retry-After", "1");
+                    resp.getWriter().write(gson.toJson(Map.of(
+                            "success", false,
+                            "message", "Login is taking too long, please try again."
+                    )));
+                    RequestLogger.updateStatus(requestId, "FAILED", startTime);
+                }
+            });
+
+        } catch (AdmissionRejectedException e) {
+            // Login pool full: tell the client when to come back
+            cancel(attempt);
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write(gson.toJson(Map.of(
+                    "success", false,
+                    "message", "Too many logins in progress, please try again."
+            )));
+            RequestLogger.updateStatus(requestId, "FAILED", startTime);
+
+        } catch (Exception e) {
+            cancel(attempt);
+            writeError(resp, e, requestId, startTime);
+        }
+    }
 
-            if (response.isSuccess()) {
-                UserDTO userData = response.getData();
+    /**
+     * Start the session (or token) and write the login result; wrong passwords count towards the block
+     */
+    private void writeResult(HttpServletRequest req, HttpServletResponse resp, LoginRequest loginRequest,
+                             ApiResponse<UserDTO> response, LoginAttemptCache.Attempt attempt,
+                             String requestId, long startTime) throws IOException, SQLException {
+        if (response.isSuccess()) {
+            UserDTO userData = response.getData();
+            if (attempt != null) {
+                attempt.succeeded();
+            }
 
+            String sessionId;
+            SessionTokens tokens = SessionTokens.getInstance();
+            if (tokens != null) {
+                // Stateless mode: signed token cookie, nothing kept on this node
+                sessionId = TokenCookie.issue(req, resp, tokens, new UserPrincipal(
+                        loginRequest.getUsername(), userData.getRoleId(), userData.getFullName()));
+            } else {
                 // 🆕 ADD: Create session with SessionManager
-                String sessionId = SessionManager.createSession(
+                sessionId = SessionManager.createSession(
                         loginRequest.getUsername(),
                         String.valueOf(userData.getRoleId()),
+                        userData.getFullName(),
                         req.getRemoteAddr(),
                         req.getHeader("User-Agent")
                 );
@@ -63,51 +182,66 @@ public class ApiLoginServlet extends HttpServlet {
                 session.setAttribute("username", loginRequest.getUsername());
                 session.setAttribute("roleId", userData.getRoleId());
                 session.setAttribute("fullName", userData.getFullName());
+            }
 
-                // Build JSON response
-                Map<String, Object> responseData = new HashMap<>();
-                responseData.put("success", true);
-                responseData.put("sessionId", sessionId);
-                responseData.put("username", loginRequest.getUsername());
-                responseData.put("roleId", userData.getRoleId());
-                responseData.put("fullName", userData.getFullName());
-                responseData.put("email", userData.getEmail());
-
-                resp.setStatus(HttpServletResponse.SC_OK);
-                resp.getWriter().write(gson.toJson(responseData));
-
-                // 🆕 ADD: Log success
-                RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
-
+            // Build JSON response
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("success", true);
+            responseData.put("sessionId", sessionId);
+            responseData.put("username", loginRequest.getUsername());
+            responseData.put("roleId", userData.getRoleId());
+            responseData.put("fullName", userData.getFullName());
+            responseData.put("email", userData.getEmail());
+
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.getWriter().write(gson.toJson(responseData));
+
+            // 🆕 ADD: Log success
+            RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
+
+        } else {
+            int statusCode = response.getMessage().contains("required")
+                    ? HttpServletResponse.SC_BAD_REQUEST
+                    : HttpServletResponse.SC_UNAUTHORIZED;
+            if (attempt != null && statusCode == HttpServletResponse.SC_UNAUTHORIZED) {
+                attempt.failed();
             } else {
-                int statusCode = response.getMessage().contains("required")
-                        ? HttpServletResponse.SC_BAD_REQUEST
-                        : HttpServletResponse.SC_UNAUTHORIZED;
-
-                resp.setStatus(statusCode);
-                resp.getWriter().write(gson.toJson(Map.of(
-                        "success", false,
-                        "message", response.getMessage()
-                )));
-
-                // 🆕 ADD: Log failure
-                RequestLogger.updateStatus(requestId, "FAILED", startTime);
+                cancel(attempt);
             }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.setStatus(statusCode);
             resp.getWriter().write(gson.toJson(Map.of(
                     "success", false,
-                    "message", "Server error: " + e.getMessage()
+                    "message", response.getMessage()
             )));
 
-            // 🆕 ADD: Log error
+            // 🆕 ADD: Log failure
             RequestLogger.updateStatus(requestId, "FAILED", startTime);
         }
     }
 
+    private static void cancel(LoginAttemptCache.Attempt attempt) {
+        if (attempt != null) {
+            attempt.cancelled();
+        }
+    }
+
+    private void writeError(HttpServletResponse resp, Throwable e, String requestId, long startTime) throws IOException {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        e.printStackTrace();
+
+        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        resp.getWriter().write(gson.toJson(Map.of(
+                "success", false,
+                "message", "Server error: " + e.getMessage()
+        )));
+
+        // 🆕 ADD: Log error
+        RequestLogger.updateStatus(requestId, "FAILED", startTime);
+    }
+
     private static void addCors(HttpServletResponse resp) {
         resp.setHeader("Access-Control-Allow-Origin", "http://localhost:5173");
         resp.setHeader("Vary", "Origin");
@@ -3,6 +3,10 @@ package com.syos.web.presentation.api.auth;
 import com.google.gson.Gson;
 import com.syos.web.concurrency.SessionManager;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
+import com.syos.web.presentation.util.TokenCookie;
 
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -29,7 +33,9 @@ public class ApiLogoutServlet extends HttpServlet {
         addCors(resp);
         resp.setContentType("application/json; charset=UTF-8");
 
-        HttpSession session = req.getSession(false);
+        // Stateless mode has no HttpSession to end, only the token
+        SessionTokens tokens = SessionTokens.getInstance();
+        HttpSession session = tokens == null ? req.getSession(false) : null;
 
         // Get userId FIRST before invalidating session
         String userId = null;
@@ -38,6 +44,9 @@ public class ApiLogoutServlet extends HttpServlet {
         if (session != null) {
             userId = (String) session.getAttribute("username");
             sessionId = (String) session.getAttribute("sessionId");
+        } else if (tokens != null) {
+            UserPrincipal principal = AuthFilter.getPrincipal(req);
+            userId = principal != null ? principal.getUserId() : null;
         }
 
         // NOW log with the userId (fixes "Request ID not found" error)
@@ -45,6 +54,12 @@ public class ApiLogoutServlet extends HttpServlet {
         long startTime = System.currentTimeMillis();
 
         try {
+            if (tokens != null) {
+                // Refused by this node until it expires, and dropped by the browser
+                tokens.revoke(TokenCookie.read(req));
+                TokenCookie.clear(req, resp);
+            }
+
             if (session != null) {
                 // Invalidate session in SessionManager
                 if (sessionId != null) {
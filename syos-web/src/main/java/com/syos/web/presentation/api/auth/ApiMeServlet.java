@@ -3,12 +3,13 @@ package com.syos.web.presentation.api.auth;
 import com.google.gson.Gson;
 import com.syos.web.concurrency.SessionManager;  // 🆕 ADD
 import com.syos.web.concurrency.RequestLogger;   // 🆕 ADD
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
 
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.util.Map;
@@ -29,15 +30,15 @@ public class ApiMeServlet extends HttpServlet {
         addCors(resp);
         resp.setContentType("application/json; charset=UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = session != null ? (String) session.getAttribute("username") : null;
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
 
         // 🆕 ADD: Log request
         String requestId = RequestLogger.logRequest("CHECK_AUTH", null, req.getRemoteAddr(), Thread.currentThread().getName());
         long startTime = System.currentTimeMillis();
 
         try {
-            if (session == null) {
+            // No session, or logged out / expired in SessionManager
+            if (principal == null) {
                 resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 resp.getWriter().write(gson.toJson(Map.of("loggedIn", false)));
 
@@ -46,44 +47,17 @@ public class ApiMeServlet extends HttpServlet {
                 return;
             }
 
-            String sessionId = (String) session.getAttribute("sessionId");
-            String username = (String) session.getAttribute("username");
-
-            // 🆕 ADD: Verify session is still valid
-            if (sessionId != null) {
-                SessionManager.SessionData sessionData = SessionManager.getSession(sessionId);
-                if (sessionData == null) {
-                    // Session expired
-                    session.invalidate();
-                    resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                    resp.getWriter().write(gson.toJson(Map.of("loggedIn", false)));
-
-                    RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
-                    return;
-                }
+            // Record activity (write-behind, see SessionActivityTracker); stateless tokens have none
+            if (principal.getSessionId() != null) {
+                SessionManager.recordActivity(principal.getSessionId());
             }
 
-            if (username == null) {
-                resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                resp.getWriter().write(gson.toJson(Map.of("loggedIn", false)));
-
-                RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
-                return;
-            }
-
-            // Get user info from session
-            String fullName = (String) session.getAttribute("fullName");
-            Integer roleId = (Integer) session.getAttribute("roleId");
-
-            if (fullName == null) fullName = username;
-            if (roleId == null) roleId = 3;
-
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.getWriter().write(gson.toJson(Map.of(
                     "loggedIn", true,
-                    "username", username,
-                    "fullName", fullName,
-                    "roleId", roleId
+                    "username", principal.getUserId(),
+                    "fullName", principal.getFullName(),
+                    "roleId", principal.getRoleId()
             )));
 
             // 🆕 ADD: Log success
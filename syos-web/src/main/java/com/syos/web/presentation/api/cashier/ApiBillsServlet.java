@@ -7,33 +7,36 @@ import com.syos.web.application.dto.CreateBillRequest;
 import com.syos.web.application.usecases.CreateBillUseCase;
 import com.syos.web.concurrency.RequestLogger;
 import com.syos.web.concurrency.BillQueueService;
+import com.syos.web.concurrency.AdmissionRejectedException;
 import com.syos.web.concurrency.BillQueueResponse;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.persistence.dao.BillDao;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
+import com.syos.web.presentation.filters.AuthFilter;
+import com.syos.web.presentation.util.AsyncBillResponder;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Bills Servlet - For Cashiers
  * POST /api/cashier/bills        → Create bill (WITH QUEUE!)
  * GET  /api/cashier/bills        → Get cashier's own bills
  * GET  /api/cashier/bills/{id}   → Get bill details
+ * An Idempotency-Key header on POST makes retries (e.g. after a 408) return the same bill
  */
-@WebServlet("/api/cashier/bills/*")
+@WebServlet(urlPatterns = "/api/cashier/bills/*", asyncSupported = true)
 public class ApiBillsServlet extends HttpServlet {
 
+    private static final long RESPONSE_TIMEOUT_MS = 30_000;
+
     private final Gson gson = GsonConfig.getGson();
     private CreateBillUseCase createBillUseCase;
     private BillDao billDao;
@@ -58,8 +61,8 @@ public class ApiBillsServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : null;
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : null;
 
         if (userId == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized: Please login");
@@ -90,50 +93,66 @@ public class ApiBillsServlet extends HttpServlet {
 
             // 🆕 SUBMIT TO QUEUE (instead of direct execution!)
             CompletableFuture<BillQueueResponse> future =
-                    BillQueueService.getInstance().submitBillRequest(request, userId);
-
-
-            // Wait for result with timeout (30 seconds)
-            BillQueueResponse queueResponse = future.get(30, TimeUnit.SECONDS);
-
-            if (queueResponse.isSuccess()) {
-                // Success response
-                ApiResponse<BillDTO> response = ApiResponse.success(
-                        queueResponse.getMessage(),
-                        queueResponse.getBillDTO()
-                );
-
-                RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
-
-                System.out.println("✅ [" + Thread.currentThread().getName() + "] Bill created successfully in " +
-                        queueResponse.getProcessingTimeMs() + "ms");
+                    BillQueueService.getInstance().submitBillRequest(request, userId, "CASHIER", RESPONSE_TIMEOUT_MS,
+                            req.getHeader("Idempotency-Key"));
+
+            // Release the container thread; the response is written when the bill is done
+            AsyncBillResponder.respond(req, resp, future, RESPONSE_TIMEOUT_MS, new AsyncBillResponder.Callbacks<>() {
+                @Override
+                public void completed(HttpServletResponse resp, BillQueueResponse queueResponse) throws IOException {
+                    if (queueResponse.isSuccess()) {
+                        // Success response
+                        ApiResponse<BillDTO> response = ApiResponse.success(
+                                queueResponse.getMessage(),
+                                queueResponse.getBillDTO()
+                        );
+
+                        RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
+
+                        System.out.println("✅ [" + Thread.currentThread().getName() + "] Bill created successfully in " +
+                                queueResponse.getProcessingTimeMs() + "ms");
+
+                        resp.setStatus(HttpServletResponse.SC_CREATED);
+                        resp.getWriter().write(gson.toJson(response));
+                    } else {
+                        // Queue processing failed
+                        RequestLogger.logError(requestId, queueResponse.getErrorMessage());
+                        ApiResponse<Object> errorResponse = ApiResponse.error(queueResponse.getErrorMessage());
+                        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        resp.getWriter().write(gson.toJson(errorResponse));
+                    }
+                }
 
-                resp.setStatus(HttpServletResponse.SC_CREATED);
-                resp.getWriter().write(gson.toJson(response));
-            } else {
-                // Queue processing failed
-                RequestLogger.logError(requestId, queueResponse.getErrorMessage());
-                ApiResponse<Object> errorResponse = ApiResponse.error(queueResponse.getErrorMessage());
-                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write(gson.toJson(errorResponse));
-            }
+                @Override
+                public void failed(HttpServletResponse resp, Throwable cause) throws IOException {
+                    if (cause instanceof AdmissionRejectedException) {
+                        // Still queued when bill processing shut down: safe to send again
+                        writeRejected(resp, requestId, (AdmissionRejectedException) cause);
+                        return;
+                    }
+
+                    // Processing error in worker thread
+                    RequestLogger.logError(requestId, "Processing error: " + cause.getMessage());
+                    ApiResponse<Object> errorResponse = ApiResponse.error("Failed to create bill: " + cause.getMessage());
+                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    resp.getWriter().write(gson.toJson(errorResponse));
+                    System.err.println("❌ [" + Thread.currentThread().getName() + "] Processing error: " + cause.getMessage());
+                }
 
-        } catch (TimeoutException e) {
-            // Request took too long (> 30 seconds)
-            RequestLogger.logError(requestId, "Request timeout: " + e.getMessage());
-            ApiResponse<Object> errorResponse = ApiResponse.error("Request processing timeout. Server is busy, please try again.");
-            resp.setStatus(HttpServletResponse.SC_REQUEST_TIMEOUT);
-            resp.getWriter().write(gson.toJson(errorResponse));
-            System.err.println("⏱️ [" + Thread.currentThread().getName() + "] Request timeout: " + requestId);
+                @Override
+                public void timedOut(HttpServletResponse resp) throws IOException {
+                    // Request took too long (> 30 seconds)
+                    RequestLogger.logError(requestId, "Request timeout after " + RESPONSE_TIMEOUT_MS + "ms");
+                    ApiResponse<Object> errorResponse = ApiResponse.error("Request processing timeout. Server is busy, please try again.");
+                    resp.setStatus(HttpServletResponse.SC_REQUEST_TIMEOUT);
+                    resp.getWriter().write(gson.toJson(errorResponse));
+                    System.err.println("⏱️ Request timeout: " + requestId);
+                }
+            });
 
-        } catch (ExecutionException e) {
-            // Processing error in worker thread
-            RequestLogger.logError(requestId, "Processing error: " + e.getCause().getMessage());
-            ApiResponse<Object> errorResponse = ApiResponse.error("Failed to create bill: " + e.getCause().getMessage());
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write(gson.toJson(errorResponse));
-            System.err.println("❌ [" + Thread.currentThread().getName() + "] Processing error: " + e.getCause().getMessage());
-            e.printStackTrace();
+        } catch (AdmissionRejectedException e) {
+            // Too busy to answer within the timeout: tell the client when to come back
+            writeRejected(resp, requestId, e);
 
         } catch (IllegalArgumentException e) {
             RequestLogger.logError(requestId, e.getMessage());
@@ -159,8 +178,8 @@ public class ApiBillsServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        String userId = (session != null) ? (String) session.getAttribute("username") : null;
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        String userId = principal != null ? principal.getUserId() : null;
 
         if (userId == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized: Please login");
@@ -235,4 +254,17 @@ public class ApiBillsServlet extends HttpServlet {
     protected void doOptions(HttpServletRequest req, HttpServletResponse resp) {
         resp.setStatus(HttpServletResponse.SC_OK);
     }
+
+    /**
+     * 503 with Retry-After: the bill was not processed and can be sent again
+     */
+    private void writeRejected(HttpServletResponse resp, String requestId, AdmissionRejectedException e)
+            throws IOException {
+        RequestLogger.logError(requestId, "Rejected: " + e.getMessage());
+        ApiResponse<Object> errorResponse = ApiResponse.error("Server is busy, please try again in " +
+                e.getRetryAfterSeconds() + " seconds.");
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        resp.getWriter().write(gson.toJson(errorResponse));
+    }
 }
\ No newline at end of file
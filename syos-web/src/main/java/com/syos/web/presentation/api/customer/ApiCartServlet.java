@@ -3,13 +3,14 @@ package com.syos.web.presentation.api.customer;
 import com.google.gson.Gson;
 import com.syos.web.application.dto.*;
 import com.syos.web.application.usecases.*;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.domain.model.ShoppingCart;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -45,15 +46,15 @@ public class ApiCartServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             CartResponseDTO cart = getCartUseCase.execute(userId);
@@ -80,15 +81,15 @@ public class ApiCartServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             String requestBody = readRequestBody(req);
@@ -123,15 +124,15 @@ public class ApiCartServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             String pathInfo = req.getPathInfo();
@@ -170,15 +171,15 @@ public class ApiCartServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             String pathInfo = req.getPathInfo();
@@ -4,22 +4,22 @@ import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.dto.BillDTO;
 import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.concurrency.AdmissionRejectedException;
 import com.syos.web.concurrency.BillQueueResponse;
 import com.syos.web.concurrency.BillQueueService;
 import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
+import com.syos.web.presentation.util.AsyncBillResponder;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * 🛒 Customer Checkout Servlet
@@ -27,10 +27,13 @@ import java.util.concurrent.TimeoutException;
  *
  * 🔥 USES THE SAME BILLQUEUE AS CASHIERS! 🔥
  * Both cashiers and customers share the same queue and workers for fair processing
+ * An Idempotency-Key header makes a retried checkout return the same order instead of a second one
  */
-@WebServlet("/api/customer/checkout")
+@WebServlet(urlPatterns = "/api/customer/checkout", asyncSupported = true)
 public class ApiCheckoutServlet extends HttpServlet {
 
+    private static final long RESPONSE_TIMEOUT_MS = 30_000;
+
     private final Gson gson = GsonConfig.getGson();
 
     @Override
@@ -65,15 +68,15 @@ public class ApiCheckoutServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // Check authentication
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
         String requestId = RequestLogger.logRequest(
                 "CUSTOMER_CHECKOUT",
                 userId,
@@ -104,73 +107,86 @@ public class ApiCheckoutServlet extends HttpServlet {
 
             // 🔥 SUBMIT TO SHARED QUEUE (same as cashiers!)
             CompletableFuture<BillQueueResponse> future =
-                    BillQueueService.getInstance().submitBillRequest(request, userId, "CUSTOMER");
-
-            // Wait for result with timeout (30 seconds)
-            BillQueueResponse queueResponse = future.get(30, TimeUnit.SECONDS);
-
-            if (queueResponse.isSuccess()) {
-                // Success - Order created
-                BillDTO order = queueResponse.getBillDTO();
-
-                ApiResponse<BillDTO> response = ApiResponse.success(
-                        "Order placed successfully! 🎉",
-                        order
-                );
-
-                RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
-
-                System.out.println("✅ [" + Thread.currentThread().getName() +
-                        "] Customer order created: " + order.getBillNumber() +
-                        " (processed in " + queueResponse.getProcessingTimeMs() + "ms)");
-
-                resp.setStatus(HttpServletResponse.SC_CREATED);
-                resp.getWriter().write(gson.toJson(response));
-
-            } else {
-                // Queue processing failed
-                RequestLogger.logError(requestId, queueResponse.getErrorMessage());
-
-                ApiResponse<Object> errorResponse = ApiResponse.error(
-                        "Failed to process checkout: " + queueResponse.getErrorMessage()
-                );
-
-                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write(gson.toJson(errorResponse));
-            }
-
-        } catch (TimeoutException e) {
-            // Request took too long (> 30 seconds)
-            RequestLogger.logError(requestId, "Checkout timeout: " + e.getMessage());
-
-            ApiResponse<Object> errorResponse = ApiResponse.error(
-                    "⏱️ Checkout is taking longer than expected. " +
-                    "Your order may still be processing. Please check your orders page."
-            );
-
-            resp.setStatus(HttpServletResponse.SC_REQUEST_TIMEOUT);
-            resp.getWriter().write(gson.toJson(errorResponse));
-
-            System.err.println("⏱️ [" + Thread.currentThread().getName() +
-                    "] Customer checkout timeout: " + requestId);
-
-        } catch (ExecutionException e) {
-            // Processing error in worker thread
-            RequestLogger.logError(requestId, "Processing error: " + e.getCause().getMessage());
-
-            String errorMessage = e.getCause() != null ?
-                    e.getCause().getMessage() : e.getMessage();
-
-            ApiResponse<Object> errorResponse = ApiResponse.error(
-                    "Failed to process checkout: " + errorMessage
-            );
-
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write(gson.toJson(errorResponse));
-
-            System.err.println("❌ [" + Thread.currentThread().getName() +
-                    "] Customer checkout error: " + errorMessage);
-            e.printStackTrace();
+                    BillQueueService.getInstance().submitBillRequest(request, userId, "CUSTOMER", RESPONSE_TIMEOUT_MS,
+                            req.getHeader("Idempotency-Key"));
+
+            // Release the container thread; the response is written when the order is done
+            AsyncBillResponder.respond(req, resp, future, RESPONSE_TIMEOUT_MS, new AsyncBillResponder.Callbacks<>() {
+                @Override
+                public void completed(HttpServletResponse resp, BillQueueResponse queueResponse) throws IOException {
+                    if (queueResponse.isSuccess()) {
+                        // Success - Order created
+                        BillDTO order = queueResponse.getBillDTO();
+
+                        ApiResponse<BillDTO> response = ApiResponse.success(
+                                "Order placed successfully! 🎉",
+                                order
+                        );
+
+                        RequestLogger.updateStatus(requestId, "COMPLETED", startTime);
+
+                        System.out.println("✅ [" + Thread.currentThread().getName() +
+                                "] Customer order created: " + order.getBillNumber() +
+                                " (processed in " + queueResponse.getProcessingTimeMs() + "ms)");
+
+                        resp.setStatus(HttpServletResponse.SC_CREATED);
+                        resp.getWriter().write(gson.toJson(response));
+
+                    } else {
+                        // Queue processing failed
+                        RequestLogger.logError(requestId, queueResponse.getErrorMessage());
+
+                        ApiResponse<Object> errorResponse = ApiResponse.error(
+                                "Failed to process checkout: " + queueResponse.getErrorMessage()
+                        );
+
+                        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        resp.getWriter().write(gson.toJson(errorResponse));
+                    }
+                }
+
+                @Override
+                public void failed(HttpServletResponse resp, Throwable cause) throws IOException {
+                    if (cause instanceof AdmissionRejectedException) {
+                        // Still queued when bill processing shut down: safe to send again
+                        writeRejected(resp, requestId, (AdmissionRejectedException) cause);
+                        return;
+                    }
+
+                    // Processing error in worker thread
+                    RequestLogger.logError(requestId, "Processing error: " + cause.getMessage());
+
+                    ApiResponse<Object> errorResponse = ApiResponse.error(
+                            "Failed to process checkout: " + cause.getMessage()
+                    );
+
+                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    resp.getWriter().write(gson.toJson(errorResponse));
+
+                    System.err.println("❌ [" + Thread.currentThread().getName() +
+                            "] Customer checkout error: " + cause.getMessage());
+                }
+
+                @Override
+                public void timedOut(HttpServletResponse resp) throws IOException {
+                    // Request took too long (> 30 seconds)
+                    RequestLogger.logError(requestId, "Checkout timeout after " + RESPONSE_TIMEOUT_MS + "ms");
+
+                    ApiResponse<Object> errorResponse = ApiResponse.error(
+                            "⏱️ Checkout is taking longer than expected. " +
+                            "Your order may still be processing. Please check your orders page."
+                    );
+
+                    resp.setStatus(HttpServletResponse.SC_REQUEST_TIMEOUT);
+                    resp.getWriter().write(gson.toJson(errorResponse));
+
+                    System.err.println("⏱️ Customer checkout timeout: " + requestId);
+                }
+            });
+
+        } catch (AdmissionRejectedException e) {
+            // Too busy to answer within the timeout: tell the client when to come back
+            writeRejected(resp, requestId, e);
 
         } catch (IllegalArgumentException e) {
             // Validation error
@@ -180,18 +196,6 @@ public class ApiCheckoutServlet extends HttpServlet {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             resp.getWriter().write(gson.toJson(errorResponse));
 
-        } catch (InterruptedException e) {
-            // Thread interrupted
-            Thread.currentThread().interrupt();
-            RequestLogger.logError(requestId, "Request interrupted");
-
-            ApiResponse<Object> errorResponse = ApiResponse.error(
-                    "Request was interrupted. Please try again."
-            );
-
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write(gson.toJson(errorResponse));
-
         } catch (Exception e) {
             // Unexpected error
             RequestLogger.logError(requestId, "Checkout failed: " + e.getMessage());
@@ -221,5 +225,18 @@ public class ApiCheckoutServlet extends HttpServlet {
         }
         return sb.toString();
     }
+
+    /**
+     * 503 with Retry-After: the bill was not processed and can be sent again
+     */
+    private void writeRejected(HttpServletResponse resp, String requestId, AdmissionRejectedException e)
+            throws IOException {
+        RequestLogger.logError(requestId, "Rejected: " + e.getMessage());
+        ApiResponse<Object> errorResponse = ApiResponse.error("Server is busy, please try again in " +
+                e.getRetryAfterSeconds() + " seconds.");
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        resp.getWriter().write(gson.toJson(errorResponse));
+    }
 }
 
@@ -4,12 +4,13 @@ import com.google.gson.Gson;
 import com.syos.web.application.dto.AddressDTO;
 import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.usecases.ManageAddressesUseCase;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -42,15 +43,15 @@ public class ApiCustomerAddressesServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             List<AddressDTO> addresses = manageAddressesUseCase.getUserAddresses(userId);
@@ -77,15 +78,15 @@ public class ApiCustomerAddressesServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             String pathInfo = req.getPathInfo();
@@ -139,15 +140,15 @@ public class ApiCustomerAddressesServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             String pathInfo = req.getPathInfo();
@@ -186,15 +187,15 @@ public class ApiCustomerAddressesServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String userId = (String) session.getAttribute("username");
+        String userId = principal.getUserId();
 
         try {
             String pathInfo = req.getPathInfo();
@@ -3,13 +3,14 @@ package com.syos.web.presentation.api.customer;
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.dto.BillDTO;
+import com.syos.web.concurrency.UserPrincipal;
 import com.syos.web.infrastructure.persistence.dao.BillDao;
+import com.syos.web.presentation.filters.AuthFilter;
 import com.syos.web.presentation.util.GsonConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -42,20 +43,20 @@ public class ApiCustomerOrdersServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // Check authentication
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String customerId = (String) session.getAttribute("username");
+        String customerId = principal.getUserId();
         String pathInfo = req.getPathInfo();
 
         System.out.println("🔍 DEBUG ApiCustomerOrdersServlet.doGet:");
         System.out.println("   Session username: '" + customerId + "'");
-        System.out.println("   Session ID: " + session.getId());
+        System.out.println("   Principal: " + principal);
         System.out.println("   Path info: " + (pathInfo == null ? "NULL (listing all orders)" : pathInfo));
 
         try {
@@ -125,15 +126,15 @@ public class ApiCustomerOrdersServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // Check authentication
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
+        UserPrincipal principal = AuthFilter.getPrincipal(req);
+        if (principal == null) {
             ApiResponse<Object> error = ApiResponse.error("Unauthorized - Please login");
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write(gson.toJson(error));
             return;
         }
 
-        String customerId = (String) session.getAttribute("username");
+        String customerId = principal.getUserId();
         String pathInfo = req.getPathInfo();
 
         // Validate path format: /{billNumber}/cancel
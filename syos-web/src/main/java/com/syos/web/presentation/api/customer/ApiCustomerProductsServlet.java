@@ -3,7 +3,12 @@ package com.syos.web.presentation.api.customer;
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
 import com.syos.web.application.dto.ProductDTO;
+import com.syos.web.application.dto.ProductRatingDTO;
 import com.syos.web.application.dto.ReviewDTO;
+import com.syos.web.application.query.ProductPage;
+import com.syos.web.application.query.ProductQuery;
+import com.syos.web.application.query.ProductQueryEngine;
+import com.syos.web.application.query.ProductSort;
 import com.syos.web.domain.model.Product;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
 import com.syos.web.infrastructure.persistence.dao.ProductReviewDao;
@@ -19,7 +24,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Customer Products Servlet
@@ -27,7 +31,7 @@ import java.util.stream.Collectors;
  *
  * GET /api/customer/products              → Browse all products (with filters)
  * GET /api/customer/products/{code}       → Get product details with reviews
- * GET /api/customer/products/search       → Search products
+ * GET /api/customer/products/suggest?q=   → Typeahead suggestions (name or category prefix)
  */
 @WebServlet("/api/customer/products/*")
 public class ApiCustomerProductsServlet extends HttpServlet {
@@ -50,8 +54,9 @@ public class ApiCustomerProductsServlet extends HttpServlet {
         try {
             String pathInfo = req.getPathInfo();
 
-            // Check if requesting single product
-            if (pathInfo != null && !pathInfo.equals("/") && !pathInfo.isEmpty()) {
+            if ("/suggest".equals(pathInfo)) {
+                handleSuggest(req, resp);
+            } else if (pathInfo != null && !pathInfo.equals("/") && !pathInfo.isEmpty()) {
                 String productCode = pathInfo.substring(1);
                 handleGetProductDetails(productCode, req, resp);
             } else {
@@ -76,9 +81,10 @@ public class ApiCustomerProductsServlet extends HttpServlet {
         String search = req.getParameter("search");
         String minPriceStr = req.getParameter("minPrice");
         String maxPriceStr = req.getParameter("maxPrice");
-        String sortBy = req.getParameter("sortBy"); // price_asc, price_desc, name_asc, discount_desc
+        String sortBy = req.getParameter("sortBy"); // price_asc, price_desc, name_asc, discount_desc, relevance
         String pageStr = req.getParameter("page");
         String limitStr = req.getParameter("limit");
+        String after = req.getParameter("after"); // nextCursor of the previous page (keyset paging)
 
         // Parse parameters
         Integer categoryId = categoryIdStr != null ? Integer.parseInt(categoryIdStr) : null;
@@ -87,62 +93,31 @@ public class ApiCustomerProductsServlet extends HttpServlet {
         int page = pageStr != null ? Integer.parseInt(pageStr) : 1;
         int limit = limitStr != null ? Integer.parseInt(limitStr) : 20;
 
-        // Get all products
-        List<Product> allProducts = productDao.findAll();
-
-        // Filter products
-        List<Product> filteredProducts = allProducts.stream()
-                .filter(p -> !p.isDeleted()) // Only active products
-                .filter(p -> categoryId == null || (p.getCategoryId() != null && p.getCategoryId().equals(categoryId)))
-                .filter(p -> search == null || p.getName().toLowerCase().contains(search.toLowerCase()))
-                .filter(p -> {
-                    // Calculate current price (with discount if any)
-                    BigDecimal currentPrice = p.hasActiveDiscount() ? p.getDiscountedPrice() : p.getUnitPrice();
-                    return (minPrice == null || currentPrice.compareTo(minPrice) >= 0) &&
-                            (maxPrice == null || currentPrice.compareTo(maxPrice) <= 0);
-                })
-                .collect(Collectors.toList());
-
-        // Sort products
-        if (sortBy != null) {
-            switch (sortBy) {
-                case "price_asc":
-                    filteredProducts.sort((p1, p2) -> {
-                        BigDecimal price1 = p1.hasActiveDiscount() ? p1.getDiscountedPrice() : p1.getUnitPrice();
-                        BigDecimal price2 = p2.hasActiveDiscount() ? p2.getDiscountedPrice() : p2.getUnitPrice();
-                        return price1.compareTo(price2);
-                    });
-                    break;
-                case "price_desc":
-                    filteredProducts.sort((p1, p2) -> {
-                        BigDecimal price1 = p1.hasActiveDiscount() ? p1.getDiscountedPrice() : p1.getUnitPrice();
-                        BigDecimal price2 = p2.hasActiveDiscount() ? p2.getDiscountedPrice() : p2.getUnitPrice();
-                        return price2.compareTo(price1);
-                    });
-                    break;
-                case "name_asc":
-                    filteredProducts.sort((p1, p2) -> p1.getName().compareToIgnoreCase(p2.getName()));
-                    break;
-                case "discount_desc":
-                    filteredProducts.sort((p1, p2) -> {
-                        BigDecimal d1 = p1.getDiscountPercentage() != null ? p1.getDiscountPercentage() : BigDecimal.ZERO;
-                        BigDecimal d2 = p2.getDiscountPercentage() != null ? p2.getDiscountPercentage() : BigDecimal.ZERO;
-                        return d2.compareTo(d1);
-                    });
-                    break;
-            }
-        }
-
-        // Pagination
-        int totalItems = filteredProducts.size();
+        // Filter, sort and page over the sorted catalog indexes
+        ProductQuery query = new ProductQuery();
+        query.setCategoryId(categoryId);
+        query.setSearch(search);
+        query.setMinPrice(minPrice);
+        query.setMaxPrice(maxPrice);
+        // Search results default to best match first
+        query.setSort(sortBy == null && search != null && !search.isEmpty()
+                ? ProductSort.RELEVANCE : ProductSort.fromParam(sortBy));
+        query.setLimit(limit);
+        query.setPage(page);
+        query.setAfter(after);
+
+        ProductPage result = ProductQueryEngine.getInstance().execute(query);
+        List<Product> paginatedProducts = result.getProducts();
+
+        int totalItems = result.getTotalItems();
         int totalPages = (int) Math.ceil((double) totalItems / limit);
-        int startIndex = (page - 1) * limit;
-        int endIndex = Math.min(startIndex + limit, totalItems);
 
-        List<Product> paginatedProducts = filteredProducts.subList(
-                Math.max(0, startIndex),
-                Math.min(totalItems, endIndex)
-        );
+        // Ratings for the whole page in one query
+        List<String> pageCodes = new ArrayList<>();
+        for (Product product : paginatedProducts) {
+            pageCodes.add(product.getProductCode());
+        }
+        Map<String, ProductRatingDTO> ratings = reviewDao.getRatingSummaries(pageCodes);
 
         // Convert to DTOs with additional info
         List<Map<String, Object>> productDTOs = new ArrayList<>();
@@ -164,8 +139,9 @@ public class ApiCustomerProductsServlet extends HttpServlet {
             dto.put("categoryId", product.getCategoryId());
 
             // Get rating info
-            double avgRating = reviewDao.getAverageRating(product.getProductCode());
-            int reviewCount = reviewDao.getReviewCount(product.getProductCode());
+            ProductRatingDTO rating = ratings.get(product.getProductCode());
+            double avgRating = rating != null ? rating.getAverageRating() : 0.0;
+            int reviewCount = rating != null ? rating.getReviewCount() : 0;
             dto.put("averageRating", Math.round(avgRating * 10.0) / 10.0); // Round to 1 decimal
             dto.put("reviewCount", reviewCount);
 
@@ -186,6 +162,7 @@ public class ApiCustomerProductsServlet extends HttpServlet {
         pagination.put("totalPages", totalPages);
         pagination.put("totalItems", totalItems);
         pagination.put("itemsPerPage", limit);
+        pagination.put("nextCursor", result.getNextCursor());
         responseData.put("pagination", pagination);
 
         ApiResponse<Map<String, Object>> response = ApiResponse.success(
@@ -197,6 +174,36 @@ public class ApiCustomerProductsServlet extends HttpServlet {
         resp.getWriter().write(gson.toJson(response));
     }
 
+    /**
+     * Handle typeahead suggestions from the in-memory search index
+     */
+    private void handleSuggest(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        String q = req.getParameter("q");
+        String limitStr = req.getParameter("limit");
+        int limit = limitStr != null ? Math.min(Math.max(Integer.parseInt(limitStr), 1), 20) : 8;
+
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        if (q != null && !q.trim().isEmpty()) {
+            for (Product product : ProductQueryEngine.getInstance().suggest(q, limit)) {
+                Map<String, Object> suggestion = new HashMap<>();
+                suggestion.put("productCode", product.getProductCode());
+                suggestion.put("name", product.getName());
+                suggestion.put("categoryName", product.getCategoryName());
+                suggestion.put("price", product.hasActiveDiscount() ? product.getDiscountedPrice() : product.getUnitPrice());
+                suggestion.put("imageUrl", product.getImageUrl());
+                suggestions.add(suggestion);
+            }
+        }
+
+        ApiResponse<List<Map<String, Object>>> response = ApiResponse.success(
+                "Suggestions retrieved successfully",
+                suggestions
+        );
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.getWriter().write(gson.toJson(response));
+    }
+
     /**
      * Handle getting single product details with reviews
      */
@@ -12,7 +12,7 @@ import java.io.IOException;
  * CORS Filter - Enable Cross-Origin Resource Sharing
  * Allows frontend (localhost:5173) to communicate with backend (localhost:8081)
  */
-@WebFilter("/*")
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class CorsFilter implements Filter {
 
     @Override
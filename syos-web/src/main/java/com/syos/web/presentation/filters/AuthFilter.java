@@ -2,6 +2,10 @@ package com.syos.web.presentation.filters;
 
 import com.google.gson.Gson;
 import com.syos.web.application.dto.ApiResponse;
+import com.syos.web.concurrency.SessionManager;
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.util.TokenCookie;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -9,9 +13,31 @@ import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 
+/**
+ * Resolves the logged-in user once per request and rejects /api/* calls without one
+ * Servlets read the result with getPrincipal(req) instead of looking in the HttpSession again
+ * With syos.auth.mode=TOKEN the user comes from a signed token instead (see SessionTokens)
+ */
 public class AuthFilter implements Filter {
 
+    /**
+     * Request attribute holding the UserPrincipal
+     */
+    public static final String PRINCIPAL_ATTRIBUTE = "com.syos.web.principal";
+
     private final Gson gson = new Gson();
+    private final SessionTokens tokens;
+
+    public AuthFilter() {
+        this(SessionTokens.getInstance());
+    }
+
+    /**
+     * @param tokens Stateless tokens, or null to use the HttpSession
+     */
+    AuthFilter(SessionTokens tokens) {
+        this.tokens = tokens;
+    }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
@@ -36,10 +62,9 @@ public class AuthFilter implements Filter {
         }
 
         // Check session
-        HttpSession session = req.getSession(false);
-        boolean loggedIn = (session != null && session.getAttribute("username") != null);
+        UserPrincipal principal = resolve(req, tokens);
 
-        if (!loggedIn) {
+        if (principal == null) {
             // Return JSON 401 for all unauthorized API requests
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.setContentType("application/json; charset=UTF-8");
@@ -51,6 +76,49 @@ public class AuthFilter implements Filter {
         }
 
         // User is authenticated, continue with request
+        req.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
         chain.doFilter(request, response);
     }
+
+    /**
+     * The logged-in user of this request, or null if not logged in
+     * Resolved at most once per request: later calls read the request attribute
+     */
+    public static UserPrincipal getPrincipal(HttpServletRequest req) {
+        Object cached = req.getAttribute(PRINCIPAL_ATTRIBUTE);
+        if (cached instanceof UserPrincipal) {
+            return (UserPrincipal) cached;
+        }
+
+        UserPrincipal principal = resolve(req, SessionTokens.getInstance());
+        if (principal != null) {
+            req.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
+        }
+        return principal;
+    }
+
+    private static UserPrincipal resolve(HttpServletRequest req, SessionTokens tokens) {
+        if (tokens != null) {
+            // Stateless: the signature is the proof, no session is looked up or created
+            return tokens.verify(TokenCookie.read(req));
+        }
+
+        HttpSession session = req.getSession(false);
+        if (session == null) {
+            return null;
+        }
+
+        // Logged in through SessionManager: its principal, built at login (null once logged out or expired)
+        String sessionId = (String) session.getAttribute("sessionId");
+        if (sessionId != null) {
+            return SessionManager.getPrincipal(sessionId);
+        }
+
+        String username = (String) session.getAttribute("username");
+        if (username == null) {
+            return null;
+        }
+        return new UserPrincipal(username, (Integer) session.getAttribute("roleId"),
+                (String) session.getAttribute("fullName"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.syos.web.presentation.listeners;
+
+import com.syos.web.concurrency.BillQueueService;
+import com.syos.web.concurrency.GoogleTokenVerifier;
+import com.syos.web.concurrency.LoginExecutor;
+import com.syos.web.concurrency.ProductCatalogCache;
+import com.syos.web.concurrency.RequestLogger;
+import com.syos.web.concurrency.SessionManager;
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.db.Db;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Application lifecycle hooks
+ * Drains bill processing, flushes background pipelines and closes the connection pool
+ * when the web app is undeployed or Tomcat stops
+ */
+@WebListener
+public class AppLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Fail now, not on the first request, if stateless tokens are misconfigured
+        SessionTokens.getInstance();
+
+        // Start loading Google's signing keys before the first Google login
+        GoogleTokenVerifier.getInstance();
+
+        System.out.println("✅ SYOS web application started");
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        System.out.println("🛑 SYOS web application stopping...");
+
+        // Finish (or hand back with 503) queued bills while the database is still there
+        BillQueueService.ShutdownReport bills = BillQueueService.shutdownInstance();
+        if (bills != null) {
+            System.out.println("🧾 Bills at shutdown: " + bills.drained + " drained, " + bills.rejected + " rejected");
+        }
+
+        // Write out any request log events still buffered
+        RequestLogger.shutdown();
+
+        // Persist last_activity of sessions still waiting for the next flush
+        SessionManager.shutdown();
+
+        // Let logins already checking a password finish
+        LoginExecutor.shutdownInstance();
+
+        // Stop the scheduled refreshes
+        GoogleTokenVerifier.shutdownInstance();
+        ProductCatalogCache.getInstance().shutdown();
+
+        // Last: everything above may still need a connection
+        Db.close();
+    }
+}
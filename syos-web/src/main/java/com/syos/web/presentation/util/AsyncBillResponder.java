@@ -0,0 +1,100 @@
+package com.syos.web.presentation.util;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finishes a queued bill request asynchronously (Servlet AsyncContext)
+ * The container thread returns as soon as the bill is queued; the response is written
+ * when the future completes, or by the AsyncListener on timeout. Also used for logins
+ * running on the LoginExecutor.
+ * Whichever comes first writes the response, the other is ignored. On timeout the future
+ * is cancelled so a bill still waiting in the queue is not processed for nobody.
+ */
+public final class AsyncBillResponder {
+
+    /**
+     * Writes the response for each outcome (and updates the request log)
+     */
+    public interface Callbacks<T> {
+        void completed(HttpServletResponse resp, T result) throws IOException;
+
+        void failed(HttpServletResponse resp, Throwable cause) throws IOException;
+
+        void timedOut(HttpServletResponse resp) throws IOException;
+    }
+
+    private AsyncBillResponder() {}
+
+    public static <T> void respond(HttpServletRequest req, HttpServletResponse resp,
+                                   CompletableFuture<T> future,
+                                   long timeoutMillis, Callbacks<T> callbacks) {
+        AsyncContext async = req.startAsync(req, resp);
+        async.setTimeout(timeoutMillis);
+        AtomicBoolean answered = new AtomicBoolean();
+
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (answered.compareAndSet(false, true)) {
+                    // Still queued: the worker will skip it
+                    future.cancel(false);
+                    finish(async, () -> callbacks.timedOut(resp));
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                // Client went away; nothing left to write to
+                if (answered.compareAndSet(false, true)) {
+                    future.cancel(false);
+                    System.err.println("⚠️ Async response failed: " + event.getThrowable());
+                    async.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        future.whenComplete((result, error) -> {
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                finish(async, () -> callbacks.failed(resp, cause));
+            } else {
+                finish(async, () -> callbacks.completed(resp, result));
+            }
+        });
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private static void finish(AsyncContext async, Write write) {
+        try {
+            write.run();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Failed to write async response: " + e.getMessage());
+        } finally {
+            async.complete();
+        }
+    }
+}
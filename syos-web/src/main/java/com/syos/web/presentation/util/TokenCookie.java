@@ -0,0 +1,66 @@
+package com.syos.web.presentation.util;
+
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Carries stateless login tokens (see SessionTokens) between the browser and the API
+ * Browsers get an HttpOnly cookie; other clients may send "Authorization: Bearer <token>"
+ */
+public final class TokenCookie {
+
+    public static final String NAME = "SYOS_TOKEN";
+    private static final String BEARER = "Bearer ";
+
+    private TokenCookie() {}
+
+    /**
+     * Sign a token for the user and set it as the login cookie
+     * @return The token
+     */
+    public static String issue(HttpServletRequest req, HttpServletResponse resp,
+                               SessionTokens tokens, UserPrincipal principal) {
+        String token = tokens.issue(principal);
+        resp.addCookie(cookie(req, token, (int) tokens.getTtlSeconds()));
+        return token;
+    }
+
+    /**
+     * The token sent with the request (Authorization header first, then the cookie), or null
+     */
+    public static String read(HttpServletRequest req) {
+        String header = req.getHeader("Authorization");
+        if (header != null && header.startsWith(BEARER)) {
+            return header.substring(BEARER.length()).trim();
+        }
+        Cookie[] cookies = req.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove the login cookie (logout)
+     */
+    public static void clear(HttpServletRequest req, HttpServletResponse resp) {
+        resp.addCookie(cookie(req, "", 0));
+    }
+
+    private static Cookie cookie(HttpServletRequest req, String value, int maxAgeSeconds) {
+        Cookie cookie = new Cookie(NAME, value);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(req.isSecure());
+        cookie.setPath(req.getContextPath().isEmpty() ? "/" : req.getContextPath());
+        cookie.setMaxAge(maxAgeSeconds);
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
+}
@@ -0,0 +1,34 @@
+package com.syos.web.application.dto;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductRatingDTOTest {
+
+    @Test
+    public void testDefaultConstructor() {
+        ProductRatingDTO dto = new ProductRatingDTO();
+        assertNull(dto.getProductCode());
+        assertEquals(0.0, dto.getAverageRating());
+        assertEquals(0, dto.getReviewCount());
+    }
+
+    @Test
+    public void testFullConstructor() {
+        ProductRatingDTO dto = new ProductRatingDTO("P001", 4.5, 12);
+        assertEquals("P001", dto.getProductCode());
+        assertEquals(4.5, dto.getAverageRating());
+        assertEquals(12, dto.getReviewCount());
+    }
+
+    @Test
+    public void testSetters() {
+        ProductRatingDTO dto = new ProductRatingDTO();
+        dto.setProductCode("P002");
+        dto.setAverageRating(3.25);
+        dto.setReviewCount(4);
+        assertEquals("P002", dto.getProductCode());
+        assertEquals(3.25, dto.getAverageRating());
+        assertEquals(4, dto.getReviewCount());
+    }
+}
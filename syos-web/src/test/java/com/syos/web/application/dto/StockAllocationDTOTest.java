@@ -0,0 +1,34 @@
+package com.syos.web.application.dto;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockAllocationDTOTest {
+
+    @Test
+    public void testDefaultConstructor() {
+        StockAllocationDTO dto = new StockAllocationDTO();
+        assertNull(dto.getProductCode());
+        assertEquals(0, dto.getBatchId());
+        assertEquals(0, dto.getQuantity());
+    }
+
+    @Test
+    public void testFullConstructor() {
+        StockAllocationDTO dto = new StockAllocationDTO("P001", 7, 3);
+        assertEquals("P001", dto.getProductCode());
+        assertEquals(7, dto.getBatchId());
+        assertEquals(3, dto.getQuantity());
+    }
+
+    @Test
+    public void testSetters() {
+        StockAllocationDTO dto = new StockAllocationDTO();
+        dto.setProductCode("P002");
+        dto.setBatchId(11);
+        dto.setQuantity(5);
+        assertEquals("P002", dto.getProductCode());
+        assertEquals(11, dto.getBatchId());
+        assertEquals(5, dto.getQuantity());
+    }
+}
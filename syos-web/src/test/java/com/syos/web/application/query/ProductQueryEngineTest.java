@@ -0,0 +1,313 @@
+package com.syos.web.application.query;
+
+import com.syos.web.domain.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductQueryEngineTest {
+
+    private final AtomicReference<List<Product>> catalog = new AtomicReference<>(sampleCatalog());
+    private final ProductQueryEngine engine = new ProductQueryEngine(catalog::get,
+            Clock.fixed(Instant.parse("2026-01-15T10:00:00Z"), ZoneId.of("UTC")));
+
+    private static Product product(String code, String name, String price, Integer categoryId) {
+        Product product = new Product(code, name, new BigDecimal(price));
+        product.setCategoryId(categoryId);
+        return product;
+    }
+
+    private static List<Product> sampleCatalog() {
+        List<Product> products = new ArrayList<>();
+        products.add(product("P001", "Milk", "250.00", 1));
+        products.add(product("P002", "bread", "120.00", 2));
+        products.add(product("P003", "Butter", "480.00", 1));
+        products.add(product("P004", "Cheese", "900.00", 1));
+        Product discounted = product("P005", "Yogurt", "200.00", 1);
+        discounted.setDiscountPercentage(new BigDecimal("50"));  // 100.00 after discount
+        products.add(discounted);
+        Product deleted = product("P006", "Old Milk", "10.00", 1);
+        deleted.setDeleted(true);
+        products.add(deleted);
+        return products;
+    }
+
+    private static List<String> codes(ProductPage page) {
+        return page.getProducts().stream().map(Product::getProductCode).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCatalogOrderSkipsDeleted() throws SQLException {
+        ProductPage page = engine.execute(new ProductQuery());
+
+        assertEquals(List.of("P001", "P002", "P003", "P004", "P005"), codes(page));
+        assertEquals(5, page.getTotalItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testSortByDiscountedPrice() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setSort(ProductSort.PRICE_ASC);
+
+        assertEquals(List.of("P005", "P002", "P001", "P003", "P004"), codes(engine.execute(query)));
+
+        query.setSort(ProductSort.PRICE_DESC);
+        assertEquals(List.of("P004", "P003", "P001", "P002", "P005"), codes(engine.execute(query)));
+    }
+
+    @Test
+    public void testSortByNameIgnoresCase() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setSort(ProductSort.NAME_ASC);
+
+        assertEquals(List.of("P002", "P003", "P004", "P001", "P005"), codes(engine.execute(query)));
+    }
+
+    @Test
+    public void testFiltersCombine() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setCategoryId(1);
+        query.setMinPrice(new BigDecimal("100"));
+        query.setMaxPrice(new BigDecimal("500"));
+        query.setSort(ProductSort.PRICE_ASC);
+
+        ProductPage page = engine.execute(query);
+        assertEquals(List.of("P005", "P001", "P003"), codes(page));
+        assertEquals(3, page.getTotalItems());
+
+        query.setSearch("BUT");
+        page = engine.execute(query);
+        assertEquals(List.of("P003"), codes(page));
+        assertEquals(1, page.getTotalItems());
+    }
+
+    @Test
+    public void testSearchMatchesWordPrefixesByRelevance() throws SQLException {
+        List<Product> products = sampleCatalog();
+        products.add(product("P007", "Chocolate Milkshake", "300.00", 2));
+        products.add(product("P008", "Milk Powder", "700.00", 1));
+        catalog.set(products);
+
+        ProductQuery query = new ProductQuery();
+        query.setSearch("milk");
+        query.setSort(ProductSort.RELEVANCE);
+
+        ProductPage page = engine.execute(query);
+        // Deleted "Old Milk" is not searchable
+        assertEquals(List.of("P001", "P008", "P007"), codes(page));
+        assertEquals(3, page.getTotalItems());
+
+        query.setCategoryId(2);
+        assertEquals(List.of("P007"), codes(engine.execute(query)));
+    }
+
+    @Test
+    public void testRelevancePaging() throws SQLException {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            products.add(product(String.format("P%03d", i), (i % 2 == 0 ? "Tea " : "Green Tea ") + i, "100.00", 1));
+        }
+        catalog.set(products);
+
+        ProductQuery query = new ProductQuery();
+        query.setSearch("tea");
+        query.setSort(ProductSort.RELEVANCE);
+        query.setLimit(7);
+
+        Set<String> seen = new HashSet<>();
+        ProductPage page = engine.execute(query);
+        while (true) {
+            for (Product product : page.getProducts()) {
+                assertTrue(seen.add(product.getProductCode()));
+            }
+            if (page.getNextCursor() == null) break;
+            query.setAfter(page.getNextCursor());
+            page = engine.execute(query);
+        }
+        assertEquals(30, seen.size());
+    }
+
+    @Test
+    public void testSuggest() throws SQLException {
+        List<Product> suggestions = engine.suggest("b", 5);
+
+        assertEquals(List.of("P002", "P003"), suggestions.stream().map(Product::getProductCode).collect(Collectors.toList()));
+        assertTrue(engine.suggest("old", 5).isEmpty());
+    }
+
+    @Test
+    public void testPriceRangeWithOtherSort() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setMinPrice(new BigDecimal("120"));
+        query.setMaxPrice(new BigDecimal("480"));
+        query.setSort(ProductSort.NAME_ASC);
+
+        ProductPage page = engine.execute(query);
+        assertEquals(List.of("P002", "P003", "P001"), codes(page));
+        assertEquals(3, page.getTotalItems());
+    }
+
+    @Test
+    public void testUnknownCategoryIsEmpty() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setCategoryId(99);
+
+        ProductPage page = engine.execute(query);
+        assertTrue(page.getProducts().isEmpty());
+        assertEquals(0, page.getTotalItems());
+    }
+
+    @Test
+    public void testPageNumberPaging() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setLimit(2);
+        query.setPage(3);
+
+        ProductPage page = engine.execute(query);
+        assertEquals(List.of("P005"), codes(page));
+        assertEquals(5, page.getTotalItems());
+    }
+
+    @Test
+    public void testKeysetPagingVisitsEveryProductOnce() throws SQLException {
+        for (ProductSort sort : ProductSort.values()) {
+            ProductQuery query = new ProductQuery();
+            query.setSort(sort);
+            query.setLimit(2);
+
+            List<String> seen = new ArrayList<>();
+            String cursor = null;
+            do {
+                query.setAfter(cursor);
+                ProductPage page = engine.execute(query);
+                seen.addAll(codes(page));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(5, seen.size(), "sort " + sort);
+            assertEquals(5, new HashSet<>(seen).size(), "sort " + sort);
+        }
+    }
+
+    @Test
+    public void testCursorSurvivesCatalogChange() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setSort(ProductSort.PRICE_ASC);
+        query.setLimit(2);
+
+        ProductPage first = engine.execute(query);
+        assertEquals(List.of("P005", "P002"), codes(first));
+
+        // A cheaper product appears before the cursor - the next page neither repeats nor skips
+        List<Product> updated = new ArrayList<>(catalog.get());
+        updated.add(product("P007", "Salt", "50.00", 2));
+        catalog.set(updated);
+
+        query.setAfter(first.getNextCursor());
+        assertEquals(List.of("P001", "P003"), codes(engine.execute(query)));
+    }
+
+    @Test
+    public void testCursorFromOtherSortIsRejected() throws SQLException {
+        ProductQuery query = new ProductQuery();
+        query.setSort(ProductSort.PRICE_ASC);
+        query.setLimit(1);
+        String cursor = engine.execute(query).getNextCursor();
+
+        query.setSort(ProductSort.NAME_ASC);
+        query.setAfter(cursor);
+        assertThrows(IllegalArgumentException.class, () -> engine.execute(query));
+
+        query.setAfter("not a cursor!");
+        assertThrows(IllegalArgumentException.class, () -> engine.execute(query));
+    }
+
+    @Test
+    public void testLargeCatalogPaging() throws SQLException {
+        List<Product> large = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            large.add(product(String.format("P%06d", i), "Item " + i, String.valueOf(i % 1000), i % 50));
+        }
+        catalog.set(large);
+
+        ProductQuery query = new ProductQuery();
+        query.setSort(ProductSort.PRICE_DESC);
+        query.setCategoryId(7);
+        query.setLimit(50);
+
+        ProductPage page = engine.execute(query);
+        assertEquals(50, page.getProducts().size());
+        assertEquals(2000, page.getTotalItems());
+
+        Set<String> seen = new HashSet<>(codes(page));
+        query.setAfter(page.getNextCursor());
+        for (Product product : engine.execute(query).getProducts()) {
+            assertTrue(seen.add(product.getProductCode()));
+        }
+    }
+
+    @Test
+    public void testNarrowPriceRangeWithOtherSortOnLargeCatalog() throws SQLException {
+        List<Product> large = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            large.add(product(String.format("P%06d", i), "Item " + i, String.valueOf(i % 1000), i % 50));
+        }
+        catalog.set(large);
+
+        ProductQuery query = new ProductQuery();
+        query.setSort(ProductSort.NAME_ASC);
+        query.setMinPrice(new BigDecimal("10"));
+        query.setMaxPrice(new BigDecimal("12"));
+        query.setLimit(100);
+
+        List<String> expected = large.stream()
+                .filter(p -> p.getUnitPrice().intValue() >= 10 && p.getUnitPrice().intValue() <= 12)
+                .sorted((a, b) -> a.getName().toLowerCase().compareTo(b.getName().toLowerCase()))
+                .map(Product::getProductCode)
+                .collect(Collectors.toList());
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            query.setAfter(cursor);
+            ProductPage page = engine.execute(query);
+            assertEquals(300, page.getTotalItems());
+            seen.addAll(codes(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(expected, seen);
+
+        query.setAfter(null);
+        query.setPage(3);
+        assertEquals(expected.subList(200, 300), codes(engine.execute(query)));
+    }
+
+    @Test
+    public void testSortFromParam() {
+        assertEquals(ProductSort.PRICE_ASC, ProductSort.fromParam("price_asc"));
+        assertEquals(ProductSort.DISCOUNT_DESC, ProductSort.fromParam("discount_desc"));
+        assertEquals(ProductSort.RELEVANCE, ProductSort.fromParam("relevance"));
+        assertEquals(ProductSort.CATALOG, ProductSort.fromParam(null));
+        assertEquals(ProductSort.CATALOG, ProductSort.fromParam("bogus"));
+    }
+
+    @Test
+    public void testQueryRejectsBadPaging() {
+        ProductQuery query = new ProductQuery();
+        assertThrows(IllegalArgumentException.class, () -> query.setLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> query.setPage(0));
+    }
+}
@@ -0,0 +1,160 @@
+package com.syos.web.application.query;
+
+import com.syos.web.domain.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductSearchIndexTest {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    private static Product product(String code, String name, String categoryName) {
+        Product product = new Product(code, name, new BigDecimal("100.00"));
+        product.setCategoryName(categoryName);
+        return product;
+    }
+
+    private static List<Product> sampleCatalog() {
+        List<Product> products = new ArrayList<>();
+        products.add(product("P001", "Fresh Milk 1L", "Dairy"));
+        products.add(product("P002", "Milk Powder", "Dairy"));
+        products.add(product("P003", "Chocolate Milkshake", "Beverages"));
+        products.add(product("P004", "Butter", "Dairy"));
+        products.add(product("P005", "Millet Flour", "Grains"));
+        products.add(product("P006", "Coca-Cola 1.5L", "Beverages"));
+        return products;
+    }
+
+    private static List<String> codes(List<Product> products) {
+        return products.stream().map(Product::getProductCode).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(List.of("coca", "cola", "1", "5l"), ProductSearchIndex.tokenize("Coca-Cola 1.5L"));
+        assertEquals(List.of(), ProductSearchIndex.tokenize("  --  "));
+        assertEquals(List.of(), ProductSearchIndex.tokenize(null));
+    }
+
+    @Test
+    public void testPrefixMatchesWordStarts() {
+        index.sync(sampleCatalog());
+
+        assertEquals(List.of("P001", "P002", "P003", "P005"), codes(index.search("mil", 10)).stream().sorted().collect(Collectors.toList()));
+        assertEquals(List.of("P006"), codes(index.search("COLA", 10)));
+        // Substrings inside a word are not word starts
+        assertTrue(index.search("ilk", 10).isEmpty());
+    }
+
+    @Test
+    public void testRankingPrefersExactAndLeadingWords() {
+        index.sync(sampleCatalog());
+
+        List<String> ranked = codes(index.search("milk", 10));
+        // Name starts with "milk" > exact word later in the name > prefix of a longer word
+        assertEquals(List.of("P002", "P001", "P003"), ranked);
+    }
+
+    @Test
+    public void testCategoryNamesAreSearchable() {
+        index.sync(sampleCatalog());
+
+        // Same score: shorter names first
+        assertEquals(List.of("P004", "P002", "P001"), codes(index.search("dairy", 10)));
+        Map<String, Integer> scores = index.match("be");
+        assertTrue(scores.containsKey("P003"));
+        assertTrue(scores.containsKey("P006"));
+        assertEquals(2, scores.size());
+    }
+
+    @Test
+    public void testAllTermsMustMatch() {
+        index.sync(sampleCatalog());
+
+        assertEquals(List.of("P001"), codes(index.search("fresh mi", 10)));
+        assertEquals(List.of("P003"), codes(index.search("milk bev", 10)));
+        assertTrue(index.search("milk grains", 10).isEmpty());
+    }
+
+    @Test
+    public void testTopResultsMatchFullRanking() {
+        String[] words = {"milk", "milky", "mild", "mint", "tea", "team", "teak", "fresh", "fruit"};
+        String[] categories = {"Dairy", "Drinks", "Fresh Produce"};
+        Random random = new Random(7);
+        List<Product> catalog = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = random.nextInt(4); w >= 0; w--) {
+                name.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            catalog.add(product(String.format("P%04d", i), name.toString().trim(), categories[random.nextInt(categories.length)]));
+        }
+        index.sync(catalog);
+
+        for (String query : List.of("m", "mil", "milk", "t", "tea", "fr", "d", "milk te", "fresh mi")) {
+            Map<String, Integer> scores = index.match(query);
+            Comparator<Product> ranking = Comparator.<Product>comparingInt(p -> scores.get(p.getProductCode())).reversed()
+                    .thenComparingInt(p -> String.join(" ", ProductSearchIndex.tokenize(p.getName())).length())
+                    .thenComparing(Product::getProductCode);
+            List<String> expected = catalog.stream()
+                    .filter(p -> scores.containsKey(p.getProductCode()))
+                    .sorted(ranking)
+                    .limit(10)
+                    .map(Product::getProductCode)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, codes(index.search(query, 10)), "Query: " + query);
+        }
+    }
+
+    @Test
+    public void testLimit() {
+        index.sync(sampleCatalog());
+
+        assertEquals(2, index.search("m", 2).size());
+        assertThrows(IllegalArgumentException.class, () -> index.search("m", 0));
+    }
+
+    @Test
+    public void testSyncAppliesChangesIncrementally() {
+        List<Product> catalog = sampleCatalog();
+        index.sync(catalog);
+        int tokens = index.getTokenCount();
+
+        List<Product> next = new ArrayList<>(sampleCatalog());
+        next.set(3, product("P004", "Salted Butter", "Dairy"));  // renamed
+        next.remove(5);                                           // removed
+        next.add(product("P007", "Oat Milk", "Dairy"));           // added
+        Product deleted = product("P008", "Old Bread", "Bakery");
+        deleted.setDeleted(true);
+        next.add(deleted);
+        index.sync(next);
+
+        assertEquals(6, index.getProductCount());
+        assertEquals(List.of("P004"), codes(index.search("salt", 10)));
+        assertTrue(index.search("cola", 10).isEmpty());
+        assertTrue(index.search("bread", 10).isEmpty());
+        assertTrue(codes(index.search("milk", 10)).contains("P007"));
+        assertNotEquals(tokens, index.getTokenCount());
+    }
+
+    @Test
+    public void testUnchangedTextKeepsLatestProduct() {
+        index.sync(sampleCatalog());
+
+        List<Product> next = sampleCatalog();
+        next.get(3).setUnitPrice(new BigDecimal("999.00"));
+        index.sync(next);
+
+        assertSame(next.get(3), index.search("butter", 1).get(0));
+    }
+}
@@ -7,14 +7,18 @@ import com.syos.web.infrastructure.persistence.dao.BillDao;
 import com.syos.web.infrastructure.persistence.dao.ProductDao;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,11 +31,15 @@ public class CreateBillUseCaseTest {
     @Mock
     private ProductDao productDao;
 
+    @Mock
+    private Connection connection;
+
     private CreateBillUseCase createBillUseCase;
 
     @BeforeEach
-    public void setUp() {
+    public void setUp() throws SQLException {
         MockitoAnnotations.openMocks(this);
+        when(billDao.beginTransaction()).thenReturn(connection);
         createBillUseCase = new CreateBillUseCase(billDao, productDao);
     }
 
@@ -52,14 +60,13 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
         assertNotNull(result);
-        verify(billDao).createBill(eq("U001"), eq("CASHIER"), eq("IN_STORE"), eq("CASH"), any(), any(), any(), eq(new BigDecimal("200")), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao).createBill(any(Connection.class), eq("U001"), eq("CASHIER"), eq("IN_STORE"), eq("CASH"), any(), any(), any(), eq(new BigDecimal("200")), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -83,14 +90,13 @@ public class CreateBillUseCaseTest {
         product.setWebsiteQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), eq("123 Street"), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), eq("123 Street"), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001", "CUSTOMER");
 
         assertNotNull(result);
-        verify(billDao).createBill(eq("U001"), eq("CUSTOMER"), eq("ONLINE"), eq("CARD"), any(), any(), any(), any(), any(), eq("123 Street"), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao).createBill(any(Connection.class), eq("U001"), eq("CUSTOMER"), eq("ONLINE"), eq("CARD"), any(), any(), any(), any(), any(), eq("123 Street"), any(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -108,7 +114,7 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> createBillUseCase.execute(request, "U001"));
         assertTrue(exception.getMessage().contains("Insufficient stock"));
@@ -122,7 +128,7 @@ public class CreateBillUseCaseTest {
         request.setItems(Collections.singletonList(item));
         request.setPaymentMethod("CASH");
 
-        when(productDao.findByProductCode("P999")).thenReturn(Optional.empty());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of());
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> createBillUseCase.execute(request, "U001"));
         assertEquals("Product not found: P999", exception.getMessage());
@@ -144,7 +150,7 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> createBillUseCase.execute(request, "U001"));
         assertTrue(exception.getMessage().contains("Amount paid"));
@@ -170,14 +176,13 @@ public class CreateBillUseCaseTest {
         when(product.getDiscountedPrice()).thenReturn(new BigDecimal("80"));
         when(product.getDiscountPercentage()).thenReturn(new BigDecimal("20"));
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
         assertNotNull(result);
-        verify(billDao).createBill(anyString(), anyString(), anyString(), anyString(), eq(new BigDecimal("160")), eq(new BigDecimal("40")), eq(new BigDecimal("160")), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao).createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), eq(new BigDecimal("160")), eq(new BigDecimal("40")), eq(new BigDecimal("160")), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -195,8 +200,8 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenThrow(new SQLException("DB Error"));
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenThrow(new SQLException("DB Error"));
 
         Exception exception = assertThrows(RuntimeException.class, () -> createBillUseCase.execute(request, "U001"));
         assertTrue(exception.getMessage().contains("Failed to create bill"));
@@ -215,7 +220,7 @@ public class CreateBillUseCaseTest {
         product.setProductCode("P001");
         product.setDeleted(true);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> createBillUseCase.execute(request, "U001"));
         assertTrue(exception.getMessage().contains("no longer available"));
@@ -248,16 +253,14 @@ public class CreateBillUseCaseTest {
         product2.setShelfQuantity(10);
         product2.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product1));
-        when(productDao.findByProductCode("P002")).thenReturn(Optional.of(product2));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product1, "P002", product2));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
         assertNotNull(result);
-        verify(productDao, times(1)).findByProductCode("P001");
-        verify(productDao, times(1)).findByProductCode("P002");
+        verify(productDao, times(1)).findByProductCodes(eq(connection), eq(Arrays.asList("P001", "P002")));
+        verify(productDao, never()).findByProductCode(anyString());
     }
 
     @Test
@@ -275,14 +278,13 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
         assertNotNull(result);
-        verify(billDao).createBill(anyString(), anyString(), anyString(), eq("CARD"), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao).createBill(any(Connection.class), anyString(), anyString(), anyString(), eq("CARD"), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -301,14 +303,13 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
         assertNotNull(result);
-        verify(billDao).createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), eq(new BigDecimal("100")), eq(BigDecimal.ZERO), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao).createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), eq(new BigDecimal("100")), eq(BigDecimal.ZERO), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -327,9 +328,8 @@ public class CreateBillUseCaseTest {
         product.setShelfQuantity(150);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
@@ -356,9 +356,8 @@ public class CreateBillUseCaseTest {
         product.setWebsiteQuantity(10);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), eq("0771234567"), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), eq("0771234567"), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001", "CUSTOMER");
 
@@ -385,14 +384,13 @@ public class CreateBillUseCaseTest {
         when(product.getDiscountedPrice()).thenReturn(new BigDecimal("50"));
         when(product.getDiscountPercentage()).thenReturn(new BigDecimal("50"));
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
-        when(billDao.createBill(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
-        when(billDao.getBillByNumber("B001")).thenReturn(new BillDTO());
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
 
         BillDTO result = createBillUseCase.execute(request, "U001");
 
         assertNotNull(result);
-        verify(billDao).createBill(anyString(), anyString(), anyString(), anyString(), eq(new BigDecimal("50")), eq(new BigDecimal("50")), eq(new BigDecimal("50")), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao).createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), eq(new BigDecimal("50")), eq(new BigDecimal("50")), eq(new BigDecimal("50")), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -414,9 +412,296 @@ public class CreateBillUseCaseTest {
         product.setWebsiteQuantity(3);
         product.setDeleted(false);
 
-        when(productDao.findByProductCode("P001")).thenReturn(Optional.of(product));
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> createBillUseCase.execute(request, "U001", "CUSTOMER"));
         assertTrue(exception.getMessage().contains("Insufficient stock"));
     }
+
+    @Test
+    public void testExecuteCommitsSingleTransaction() throws SQLException {
+        CreateBillRequest request = new CreateBillRequest();
+        CreateBillRequest.BillItemRequest item = new CreateBillRequest.BillItemRequest();
+        item.setProductCode("P001");
+        item.setQuantity(2);
+        request.setItems(Collections.singletonList(item));
+        request.setPaymentMethod("CASH");
+        request.setAmountPaid(new BigDecimal("200"));
+
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setName("Product 1");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+        product.setDeleted(false);
+
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
+        when(billDao.addBillItems(eq(connection), eq("B001"), anyList())).thenReturn(List.of(42L));
+        when(billDao.findUserFullName(connection, "U001")).thenReturn("Cashier One");
+
+        BillDTO result = createBillUseCase.execute(request, "U001");
+
+        InOrder inOrder = inOrder(billDao, connection);
+        inOrder.verify(billDao).addBillItems(eq(connection), eq("B001"), anyList());
+        inOrder.verify(billDao).deductStockForBasket(connection, Map.of("P001", 2), "B001", "U001", "SHELF");
+        inOrder.verify(connection).commit();
+        verify(connection, never()).rollback();
+        verify(connection).close();
+        verify(billDao, never()).getBillByNumber(any(Connection.class), anyString());
+
+        assertEquals("B001", result.getBillNumber());
+        assertEquals("Cashier One", result.getCashierName());
+        assertEquals(new BigDecimal("200"), result.getTotalAmount());
+        assertNotNull(result.getBillDate());
+        assertEquals(1, result.getItems().size());
+        assertEquals(42L, result.getItems().get(0).getBillItemId());
+        assertEquals("Product 1", result.getItems().get(0).getProductName());
+    }
+
+    @Test
+    public void testExecuteRollsBackWhenStockDeductionFails() throws SQLException {
+        CreateBillRequest request = new CreateBillRequest();
+        CreateBillRequest.BillItemRequest item = new CreateBillRequest.BillItemRequest();
+        item.setProductCode("P001");
+        item.setQuantity(1);
+        request.setItems(Collections.singletonList(item));
+        request.setPaymentMethod("CASH");
+
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+        product.setDeleted(false);
+
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
+        when(billDao.deductStockForBasket(connection, Map.of("P001", 1), "B001", "U001", "SHELF"))
+                .thenThrow(new SQLException("Insufficient stock for sale: P001", "45000"));
+
+        Exception exception = assertThrows(RuntimeException.class, () -> createBillUseCase.execute(request, "U001"));
+        assertTrue(exception.getMessage().contains("Failed to create bill"));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(connection).close();
+    }
+
+    @Test
+    public void testExecuteRollsBackOnValidationError() throws SQLException {
+        CreateBillRequest request = new CreateBillRequest();
+        CreateBillRequest.BillItemRequest item = new CreateBillRequest.BillItemRequest();
+        item.setProductCode("P999");
+        request.setItems(Collections.singletonList(item));
+        request.setPaymentMethod("CASH");
+
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of());
+
+        assertThrows(IllegalArgumentException.class, () -> createBillUseCase.execute(request, "U001"));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(billDao, never()).createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testExecuteDeductsWholeBasketInOneCall() throws SQLException {
+        CreateBillRequest request = new CreateBillRequest();
+        CreateBillRequest.BillItemRequest item1 = new CreateBillRequest.BillItemRequest("P009", 1);
+        CreateBillRequest.BillItemRequest item2 = new CreateBillRequest.BillItemRequest("P001", 2);
+        CreateBillRequest.BillItemRequest item3 = new CreateBillRequest.BillItemRequest("P009", 3);
+        request.setItems(Arrays.asList(item1, item2, item3));
+        request.setPaymentMethod("CARD");
+        request.setChannel("ONLINE");
+        request.setDeliveryAddress("123 Street");
+        request.setDeliveryCity("City");
+        request.setDeliveryPostalCode("12345");
+
+        Product product1 = new Product();
+        product1.setProductCode("P009");
+        product1.setUnitPrice(new BigDecimal("10"));
+        product1.setWebsiteQuantity(10);
+
+        Product product2 = new Product();
+        product2.setProductCode("P001");
+        product2.setUnitPrice(new BigDecimal("20"));
+        product2.setWebsiteQuantity(10);
+
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P009", product1, "P001", product2));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
+
+        BillDTO result = createBillUseCase.execute(request, "U001", "CUSTOMER");
+
+        // Items keep the basket lines, stock is deducted per product in a single call
+        assertEquals(3, result.getItems().size());
+        assertEquals("P009", result.getItems().get(0).getProductCode());
+        verify(billDao, times(1)).deductStockForBasket(connection, Map.of("P009", 4, "P001", 2), "B001", "U001", "WEBSITE");
+        verify(billDao, never()).deductStockForSale(anyString(), anyInt(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testExecuteRecordsRequestId() throws SQLException {
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(Collections.singletonList(new CreateBillRequest.BillItemRequest("P001", 1)));
+        request.setPaymentMethod("CASH");
+        request.setAmountPaid(new BigDecimal("100"));
+
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
+
+        BillDTO result = createBillUseCase.execute(request, "U001", "CASHIER", "req-1");
+
+        assertEquals("B001", result.getBillNumber());
+        InOrder inOrder = inOrder(billDao, connection);
+        inOrder.verify(billDao).findBillNumberByRequestId(connection, "req-1");
+        inOrder.verify(billDao).recordBillRequest(connection, "req-1", "B001");
+        inOrder.verify(connection).commit();
+    }
+
+    @Test
+    public void testExecuteReplayedRequestReturnsExistingBill() throws SQLException {
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(Collections.singletonList(new CreateBillRequest.BillItemRequest("P001", 1)));
+        request.setPaymentMethod("CASH");
+        request.setAmountPaid(new BigDecimal("100"));
+
+        BillDTO existing = new BillDTO();
+        existing.setBillNumber("B001");
+        when(billDao.findBillNumberByRequestId(connection, "req-1")).thenReturn("B001");
+        when(billDao.getBillByNumber(connection, "B001")).thenReturn(existing);
+
+        BillDTO result = createBillUseCase.execute(request, "U001", "CASHIER", "req-1");
+
+        // Already committed before the crash: no second bill, no stock deducted
+        assertSame(existing, result);
+        verify(billDao, never()).createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(billDao, never()).deductStockForBasket(any(), any(), any(), any(), any());
+        verify(billDao, never()).recordBillRequest(any(), any(), any());
+        // Read on the transaction's connection, not a second pooled one
+        verify(billDao, never()).getBillByNumber(anyString());
+    }
+
+    @Test
+    public void testExecuteDuplicateRequestIdReturnsCommittedBill() throws SQLException {
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B002");
+
+        // A concurrent run of the same request committed B001 while this one was creating B002
+        doThrow(new SQLException("Duplicate entry 'req-1' for key 'PRIMARY'", "23000", 1062))
+                .when(billDao).recordBillRequest(connection, "req-1", "B002");
+        BillDTO existing = new BillDTO();
+        existing.setBillNumber("B001");
+        when(billDao.findBillNumberByRequestId(connection, "req-1")).thenReturn(null, "B001");
+        when(billDao.getBillByNumber(connection, "B001")).thenReturn(existing);
+
+        BillDTO result = createBillUseCase.execute(cashBill("P001", 1), "U001", "CASHIER", "req-1");
+
+        // B002 is rolled back; the caller gets the bill that was created
+        assertSame(existing, result);
+        InOrder inOrder = inOrder(billDao, connection);
+        inOrder.verify(billDao).recordBillRequest(connection, "req-1", "B002");
+        inOrder.verify(connection).rollback();
+        inOrder.verify(billDao).getBillByNumber(connection, "B001");
+        inOrder.verify(connection).commit();
+    }
+
+    @Test
+    public void testExecuteOtherSQLErrorIsNotReplayed() throws SQLException {
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001");
+        doThrow(new SQLException("Table 'bill_requests' doesn't exist", "42S02", 1146))
+                .when(billDao).recordBillRequest(connection, "req-1", "B001");
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> createBillUseCase.execute(cashBill("P001", 1), "U001", "CASHIER", "req-1"));
+
+        assertInstanceOf(SQLException.class, e.getCause());
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(billDao, times(1)).findBillNumberByRequestId(connection, "req-1");
+    }
+
+    private static CreateBillRequest cashBill(String productCode, int quantity) {
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(Collections.singletonList(new CreateBillRequest.BillItemRequest(productCode, quantity)));
+        request.setPaymentMethod("CASH");
+        return request;
+    }
+
+    @Test
+    public void testExecuteBatchIsolatesFailingBill() throws SQLException {
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setName("Product 1");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+        when(productDao.findByProductCodes(any(), anyCollection())).thenAnswer(invocation ->
+                ((java.util.Collection<?>) invocation.getArgument(1)).contains("P001")
+                        ? Map.of("P001", product) : Map.of());
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001", "B002");
+        Savepoint first = mock(Savepoint.class);
+        Savepoint second = mock(Savepoint.class);
+        Savepoint third = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(first, second, third);
+
+        CreateBillUseCase.BatchItem ok = new CreateBillUseCase.BatchItem(cashBill("P001", 1), "U001", "CASHIER", null);
+        CreateBillUseCase.BatchItem missing = new CreateBillUseCase.BatchItem(cashBill("P404", 1), "U002", "CASHIER", null);
+        CreateBillUseCase.BatchItem keyed = new CreateBillUseCase.BatchItem(cashBill("P001", 2), "U003", "CASHIER", "U003:key-1");
+        CreateBillUseCase.BatchItem invalid = new CreateBillUseCase.BatchItem(new CreateBillRequest(), "U004", "CASHIER", null);
+
+        createBillUseCase.executeBatch(Arrays.asList(ok, missing, keyed, invalid));
+
+        // One transaction, one commit; only the missing product's bill is rolled back
+        verify(billDao, times(1)).beginTransaction();
+        verify(connection, times(1)).commit();
+        verify(connection).rollback(second);
+        verify(connection, never()).rollback();
+        verify(connection).releaseSavepoint(first);
+        verify(connection).releaseSavepoint(third);
+        verify(billDao).recordBillRequest(connection, "U003:key-1", "B002");
+
+        assertEquals("B001", ok.getBill().getBillNumber());
+        assertNull(ok.getError());
+        assertNull(missing.getBill());
+        assertTrue(missing.getError().getMessage().contains("Product not found"));
+        assertEquals("B002", keyed.getBill().getBillNumber());
+        assertNull(invalid.getBill());
+        assertNotNull(invalid.getError());
+    }
+
+    @Test
+    public void testExecuteBatchDeadlockFailsWholeBatch() throws SQLException {
+        Product product = new Product();
+        product.setProductCode("P001");
+        product.setUnitPrice(new BigDecimal("100"));
+        product.setShelfQuantity(10);
+        when(productDao.findByProductCodes(any(), anyCollection())).thenReturn(Map.of("P001", product));
+        when(billDao.createBill(any(Connection.class), anyString(), anyString(), anyString(), anyString(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn("B001", "B002");
+        when(billDao.deductStockForBasket(any(), any(), eq("B002"), any(), any()))
+                .thenThrow(new SQLException("Deadlock found when trying to get lock", "40001", 1213));
+
+        CreateBillUseCase.BatchItem first = new CreateBillUseCase.BatchItem(cashBill("P001", 1), "U001", "CASHIER", null);
+        CreateBillUseCase.BatchItem second = new CreateBillUseCase.BatchItem(cashBill("P001", 1), "U002", "CASHIER", null);
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> createBillUseCase.executeBatch(Arrays.asList(first, second)));
+
+        // The deadlock took the whole transaction with it: nothing of the batch exists
+        assertInstanceOf(SQLException.class, e.getCause());
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertNull(first.getBill());
+        assertNull(second.getBill());
+    }
 }
@@ -45,6 +45,7 @@ public class CreateProductUseCaseTest {
 
         assertNotNull(result);
         verify(productRepository).save(any(Product.class));
+        verify(productRepository).invalidateCatalog();
     }
 
     @Test
@@ -34,6 +34,7 @@ public class DeleteProductUseCaseTest {
         assertTrue(result);
         verify(productRepository).existsByProductCode(productCode);
         verify(productRepository).deleteByProductCode(productCode);
+        verify(productRepository).invalidateCatalog();
     }
 
     @Test
@@ -65,6 +66,7 @@ public class DeleteProductUseCaseTest {
 
         verify(productRepository).existsByProductCode(productCode);
         verify(productRepository, never()).deleteByProductCode(anyString());
+        verify(productRepository, never()).invalidateCatalog();
     }
 
     @Test
@@ -105,6 +107,7 @@ public class DeleteProductUseCaseTest {
 
         verify(productRepository, times(1)).existsByProductCode(productCode);
         verify(productRepository, times(1)).deleteByProductCode(productCode);
+        verify(productRepository, times(1)).invalidateCatalog();
         verifyNoMoreInteractions(productRepository);
     }
 
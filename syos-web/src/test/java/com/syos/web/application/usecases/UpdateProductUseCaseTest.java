@@ -48,6 +48,7 @@ public class UpdateProductUseCaseTest {
         assertEquals("Updated Product", result.getName());
         verify(productRepository).findByProductCode("P001");
         verify(productRepository).update(any(Product.class));
+        verify(productRepository).invalidateCatalog();
     }
 
     @Test
@@ -61,6 +62,7 @@ public class UpdateProductUseCaseTest {
 
         assertThrows(IllegalArgumentException.class, () -> updateProductUseCase.execute(request));
         verify(productRepository, never()).update(any(Product.class));
+        verify(productRepository, never()).invalidateCatalog();
     }
 
     @Test
@@ -250,6 +252,7 @@ public class UpdateProductUseCaseTest {
 
         verify(productRepository, times(1)).findByProductCode("P001");
         verify(productRepository, times(1)).update(any(Product.class));
+        verify(productRepository, times(1)).invalidateCatalog();
         verifyNoMoreInteractions(productRepository);
     }
 
@@ -0,0 +1,79 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testPredictsRoundsOfWorkAhead() {
+        AdmissionController admission = new AdmissionController(4, 100);
+
+        assertEquals(100, admission.predictWaitMillis(0));
+        assertEquals(100, admission.predictWaitMillis(3));
+        assertEquals(200, admission.predictWaitMillis(4));
+        assertEquals(1100, admission.predictWaitMillis(40));
+    }
+
+    @Test
+    public void testServiceTimeIsSmoothed() {
+        AdmissionController admission = new AdmissionController(1, 100);
+
+        admission.recordServiceTime(600);
+        assertEquals(200, admission.getAverageServiceMillis());
+
+        for (int i = 0; i < 50; i++) {
+            admission.recordServiceTime(50);
+        }
+        assertEquals(50, admission.getAverageServiceMillis());
+    }
+
+    @Test
+    public void testAdmitsWithinBudget() {
+        AdmissionController admission = new AdmissionController(2, 100);
+
+        assertDoesNotThrow(() -> admission.check(10, 600));
+        assertEquals(0, admission.getStats().rejected);
+    }
+
+    @Test
+    public void testRejectsWithRetryAfter() {
+        AdmissionController admission = new AdmissionController(2, 500);
+
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> admission.check(20, 3000));
+
+        assertEquals(5500, e.getPredictedWaitMillis());
+        assertEquals(6, e.getRetryAfterSeconds());
+        assertEquals(1, admission.getStats().rejected);
+    }
+
+    @Test
+    public void testRetryAfterIsBounded() {
+        AdmissionController admission = new AdmissionController(1, 1);
+
+        assertEquals(1, assertThrows(AdmissionRejectedException.class,
+                () -> admission.reject("full", 0)).getRetryAfterSeconds());
+        assertEquals(60, assertThrows(AdmissionRejectedException.class,
+                () -> admission.reject("full", 10 * 60_000)).getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testStats() {
+        AdmissionController admission = new AdmissionController(1, 100);
+        admission.recordAdmitted();
+        admission.recordAdmitted();
+        admission.recordAbandoned();
+
+        AdmissionController.AdmissionStats stats = admission.getStats();
+        assertEquals(2, stats.admitted);
+        assertEquals(1, stats.abandoned);
+        assertEquals(100, stats.averageServiceMillis);
+    }
+
+    @Test
+    public void testInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(0, 100));
+    }
+}
@@ -0,0 +1,179 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.application.dto.CreateBillRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BillJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static BillRequest request(String requestId, String productCode) {
+        CreateBillRequest billRequest = new CreateBillRequest();
+        billRequest.setItems(Collections.singletonList(new CreateBillRequest.BillItemRequest(productCode, 2)));
+        billRequest.setPaymentMethod("CASH");
+        return new BillRequest(requestId, billRequest, "U001", "CASHIER", 1000, true);
+    }
+
+    private static List<String> requestIds(List<BillJournal.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (BillJournal.Entry entry : entries) {
+            ids.add(entry.requestId);
+        }
+        return ids;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testUnacknowledgedRequestsAreRecovered() throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            assertTrue(journal.getPending().isEmpty());
+            journal.append(request("req-1", "P001"));
+            journal.append(request("req-2", "P002"));
+        }
+
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            List<BillJournal.Entry> pending = journal.getPending();
+            assertEquals(List.of("req-1", "req-2"), requestIds(pending));
+
+            BillJournal.Entry first = pending.get(0);
+            assertEquals("U001", first.userId);
+            assertEquals("CASHIER", first.userType);
+            assertEquals("CASH", first.billRequest.getPaymentMethod());
+            assertEquals("P001", first.billRequest.getItems().get(0).getProductCode());
+            assertEquals(2, first.billRequest.getItems().get(0).getQuantity());
+        }
+    }
+
+    @Test
+    public void testAcknowledgedRequestsAreNotReplayed() throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            journal.append(request("req-1", "P001"));
+            journal.append(request("req-2", "P002"));
+            journal.acknowledge("req-1");
+            journal.acknowledge("unknown");
+        }
+
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            assertEquals(List.of("req-2"), requestIds(journal.getPending()));
+
+            // The replayed request is acknowledged this run: nothing left for the next
+            journal.acknowledge("req-2");
+        }
+
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            assertTrue(journal.getPending().isEmpty());
+            assertEquals(1, journal.getStats().segments);
+        }
+    }
+
+    @Test
+    public void testCorruptTailIsSkipped() throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            journal.append(request("req-1", "P001"));
+            journal.append(request("req-2", "P002"));
+        }
+
+        // Flip a byte in the second record's payload, as a torn write would
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            int second = 9 + header.getInt(0);
+            java.nio.ByteBuffer junk = java.nio.ByteBuffer.wrap(new byte[]{0x7f});
+            channel.write(junk, second + 20);
+        }
+
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            assertEquals(List.of("req-1"), requestIds(journal.getPending()));
+        }
+    }
+
+    @Test
+    public void testSegmentsRollAndAreDeletedOnceAcknowledged() throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 512)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(request("req-" + i, "P001"));
+            }
+            assertTrue(journal.getStats().segments > 1);
+
+            for (int i = 0; i < 10; i++) {
+                journal.acknowledge("req-" + i);
+            }
+
+            BillJournal.JournalStats stats = journal.getStats();
+            assertEquals(10, stats.appends);
+            assertEquals(10, stats.acks);
+            assertEquals(0, stats.unacknowledged);
+            assertTrue(stats.segments <= 2, "Only the segment still being written is kept");
+        }
+        assertTrue(segmentFiles().size() <= 2);
+    }
+
+    @Test
+    public void testRecordLargerThanSegmentIsRefused() throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 64)) {
+            assertThrows(IOException.class, () -> journal.append(request("req-1", "P001")));
+            assertEquals(0, journal.getStats().unacknowledged);
+        }
+    }
+
+    @Test
+    public void testAppendAfterCloseFails() throws Exception {
+        BillJournal journal = new BillJournal(dir, 64 * 1024);
+        journal.close();
+
+        assertThrows(IOException.class, () -> journal.append(request("req-1", "P001")));
+    }
+
+    @Test
+    public void testConcurrentAppendsShareFlushes() throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 1024 * 1024)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        try {
+                            journal.append(request("req-" + thread + "-" + i, "P001"));
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join(10_000);
+            }
+
+            BillJournal.JournalStats stats = journal.getStats();
+            assertEquals(200, stats.appends);
+            assertEquals(200, stats.unacknowledged);
+            assertTrue(stats.syncs >= 1 && stats.syncs <= stats.appends);
+        }
+
+        try (BillJournal journal = new BillJournal(dir, 1024 * 1024)) {
+            assertEquals(200, journal.getPending().size());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BillNumberAllocatorTest {
+
+    /**
+     * In-memory stand-in for bill_number_reservations
+     */
+    private static class FakeBlockSource implements BillNumberAllocator.BlockSource {
+        final Map<LocalDate, Long> reservedUpTo = new HashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public synchronized long reserve(LocalDate day, int blockSize) {
+            calls.incrementAndGet();
+            long last = reservedUpTo.getOrDefault(day, 0L) + blockSize;
+            reservedUpTo.put(day, last);
+            return last;
+        }
+    }
+
+    /**
+     * Clock that can be moved forward by the test
+     */
+    private static class MutableClock extends Clock {
+        volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return BillNumberAllocator.BUSINESS_ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static Instant colombo(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, BillNumberAllocator.BUSINESS_ZONE).toInstant();
+    }
+
+    @Test
+    public void testNumbersAreSequentialWithinBlock() throws SQLException {
+        FakeBlockSource source = new FakeBlockSource();
+        BillNumberAllocator allocator = new BillNumberAllocator(source,
+                10, new MutableClock(colombo(2026, 1, 17, 10, 0)));
+
+        assertEquals("BILL-20260117-000001", allocator.next());
+        assertEquals("BILL-20260117-000002", allocator.next());
+        assertEquals("BILL-20260117-000003", allocator.next());
+        assertEquals(1, source.calls.get());
+    }
+
+    @Test
+    public void testDatabaseOnlyTouchedOncePerBlock() throws SQLException {
+        FakeBlockSource source = new FakeBlockSource();
+        BillNumberAllocator allocator = new BillNumberAllocator(source,
+                10, new MutableClock(colombo(2026, 1, 17, 10, 0)));
+
+        for (int i = 0; i < 25; i++) {
+            allocator.next();
+        }
+
+        assertEquals(3, source.calls.get());
+        assertEquals(25, allocator.getAllocatedCount());
+        assertEquals("BILL-20260117-000026", allocator.next());
+    }
+
+    @Test
+    public void testRestartSkipsUnusedNumbersInsteadOfReusing() throws SQLException {
+        FakeBlockSource source = new FakeBlockSource();
+        MutableClock clock = new MutableClock(colombo(2026, 1, 17, 10, 0));
+
+        BillNumberAllocator beforeRestart = new BillNumberAllocator(source, 10, clock);
+        beforeRestart.next();
+        beforeRestart.next();
+
+        BillNumberAllocator afterRestart = new BillNumberAllocator(source, 10, clock);
+        assertEquals("BILL-20260117-000011", afterRestart.next());
+    }
+
+    @Test
+    public void testRollsOverAtColomboMidnight() throws SQLException {
+        FakeBlockSource source = new FakeBlockSource();
+        MutableClock clock = new MutableClock(colombo(2026, 1, 17, 23, 59));
+        BillNumberAllocator allocator = new BillNumberAllocator(source, 100, clock);
+
+        assertEquals("BILL-20260117-000001", allocator.next());
+
+        // 00:00 in Colombo is still the previous day in UTC
+        clock.now = colombo(2026, 1, 18, 0, 0);
+        assertEquals("BILL-20260118-000001", allocator.next());
+        assertEquals("BILL-20260118-000002", allocator.next());
+    }
+
+    @Test
+    public void testConcurrentWorkersNeverGetDuplicates() throws Exception {
+        FakeBlockSource source = new FakeBlockSource();
+        BillNumberAllocator allocator = new BillNumberAllocator(source,
+                7, new MutableClock(colombo(2026, 1, 17, 10, 0)));
+
+        int threads = 20;
+        int perThread = 500;
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    numbers.add(allocator.next());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(threads * perThread, numbers.size());
+    }
+
+    @Test
+    public void testReservationFailurePropagates() {
+        BillNumberAllocator allocator = new BillNumberAllocator((day, size) -> {
+            throw new SQLException("database down");
+        }, 10, new MutableClock(colombo(2026, 1, 17, 10, 0)));
+
+        assertThrows(SQLException.class, allocator::next);
+    }
+
+    @Test
+    public void testFormatPadsToSixDigits() {
+        assertEquals("BILL-20260117-000042", BillNumberAllocator.format(LocalDate.of(2026, 1, 17), 42));
+    }
+
+    @Test
+    public void testInvalidBlockSizeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BillNumberAllocator(new FakeBlockSource(), 0, Clock.systemUTC()));
+    }
+}
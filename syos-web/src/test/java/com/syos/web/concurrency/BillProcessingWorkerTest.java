@@ -0,0 +1,187 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.application.dto.BillDTO;
+import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.application.usecases.CreateBillUseCase;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BillProcessingWorkerTest {
+
+    /**
+     * Use case without a database: a batch is handled by the given action, single bills always succeed
+     */
+    private static class BatchingUseCase extends CreateBillUseCase {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final List<String> singles = new CopyOnWriteArrayList<>();
+        Consumer<List<BatchItem>> onBatch = items -> {
+        };
+
+        BatchingUseCase() {
+            super(null, null);
+        }
+
+        @Override
+        public void executeBatch(List<BatchItem> items) {
+            batchSizes.add(items.size());
+            onBatch.accept(items);
+        }
+
+        @Override
+        public BillDTO execute(CreateBillRequest request, String userId, String userType, String requestId) {
+            singles.add(userId);
+            return bill("SINGLE-" + userId);
+        }
+
+        @Override
+        public BillDTO execute(CreateBillRequest request, String userId, String userType) {
+            return execute(request, userId, userType, null);
+        }
+    }
+
+    private static BillDTO bill(String billNumber) {
+        BillDTO bill = new BillDTO();
+        bill.setBillNumber(billNumber);
+        return bill;
+    }
+
+    private static BillRequest request(String userId) {
+        return new BillRequest(new CreateBillRequest(), userId, "CASHIER", 30_000);
+    }
+
+    private static BillProcessingWorker worker(BatchingUseCase useCase, WorkQueue<BillRequest> queue,
+                                               int batchSize) {
+        return new BillProcessingWorker(queue, "BillWorker-1", useCase,
+                new RetryPolicy(1, 1, 1), new QueueTelemetry(), batchSize, 20);
+    }
+
+    @Test
+    public void testBatchCompletesEachRequest() throws Exception {
+        BatchingUseCase useCase = new BatchingUseCase();
+        List<BillRequest> batch = List.of(request("u1"), request("u2"), request("u3"));
+        useCase.onBatch = items -> items.forEach(item -> item.complete(bill("B-" + items.indexOf(item))));
+
+        List<BillProcessingWorker.Outcome> outcomes =
+                worker(useCase, new RequestQueue<>(10), 10).processBatch(batch);
+
+        assertEquals(List.of(BillProcessingWorker.Outcome.COMPLETED, BillProcessingWorker.Outcome.COMPLETED,
+                BillProcessingWorker.Outcome.COMPLETED), outcomes);
+        assertEquals(List.of(3), useCase.batchSizes);
+        assertEquals("B-1", batch.get(1).getFuture().get(1, TimeUnit.SECONDS).getBillDTO().getBillNumber());
+        assertTrue(useCase.singles.isEmpty());
+    }
+
+    @Test
+    public void testFailedBillGetsItsOwnError() throws Exception {
+        BatchingUseCase useCase = new BatchingUseCase();
+        List<BillRequest> batch = List.of(request("u1"), request("u2"));
+        useCase.onBatch = items -> {
+            items.get(0).complete(bill("B-0"));
+            items.get(1).fail(new IllegalArgumentException("Insufficient stock"));
+        };
+
+        List<BillProcessingWorker.Outcome> outcomes =
+                worker(useCase, new RequestQueue<>(10), 10).processBatch(batch);
+
+        assertEquals(List.of(BillProcessingWorker.Outcome.COMPLETED, BillProcessingWorker.Outcome.FAILED), outcomes);
+        assertTrue(batch.get(0).getFuture().get(1, TimeUnit.SECONDS).isSuccess());
+        BillQueueResponse failed = batch.get(1).getFuture().get(1, TimeUnit.SECONDS);
+        assertFalse(failed.isSuccess());
+        assertEquals("Insufficient stock", failed.getErrorMessage());
+    }
+
+    @Test
+    public void testLockConflictIsRetriedAlone() throws Exception {
+        BatchingUseCase useCase = new BatchingUseCase();
+        List<BillRequest> batch = List.of(request("u1"), request("u2"));
+        useCase.onBatch = items -> {
+            items.get(0).complete(bill("B-0"));
+            items.get(1).fail(new RuntimeException("Failed to create bill",
+                    new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        };
+
+        worker(useCase, new RequestQueue<>(10), 10).processBatch(batch);
+
+        assertEquals(List.of("u2"), useCase.singles);
+        assertEquals("SINGLE-u2", batch.get(1).getFuture().get(1, TimeUnit.SECONDS).getBillDTO().getBillNumber());
+    }
+
+    @Test
+    public void testFailedTransactionFallsBackToSingleBills() throws Exception {
+        BatchingUseCase useCase = new BatchingUseCase();
+        List<BillRequest> batch = List.of(request("u1"), request("u2"));
+        List<CreateBillUseCase.BatchItem> seen = new ArrayList<>();
+        useCase.onBatch = items -> {
+            seen.addAll(items);
+            throw new RuntimeException("Failed to create bill batch: Deadlock");
+        };
+
+        BillProcessingWorker worker = worker(useCase, new RequestQueue<>(10), 10);
+        worker.processBatch(batch);
+
+        assertEquals(2, seen.size());
+        assertEquals(List.of("u1", "u2"), useCase.singles);
+        assertTrue(batch.get(0).getFuture().get(1, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, worker.getBatchStats().fallbacks);
+        assertEquals(0, worker.getBatchStats().batches);
+    }
+
+    @Test
+    public void testAbandonedRequestsAreLeftOut() throws Exception {
+        BatchingUseCase useCase = new BatchingUseCase();
+        BillRequest cancelled = request("u1");
+        cancelled.getFuture().cancel(false);
+        List<BillRequest> batch = List.of(cancelled, request("u2"));
+
+        List<BillProcessingWorker.Outcome> outcomes =
+                worker(useCase, new RequestQueue<>(10), 10).processBatch(batch);
+
+        // One left: no batch transaction for a single bill
+        assertEquals(List.of(BillProcessingWorker.Outcome.SKIPPED, BillProcessingWorker.Outcome.COMPLETED), outcomes);
+        assertTrue(useCase.batchSizes.isEmpty());
+        assertEquals(List.of("u2"), useCase.singles);
+    }
+
+    @Test
+    public void testWorkerCollectsQueuedRequestsIntoBatches() throws Exception {
+        BatchingUseCase useCase = new BatchingUseCase();
+        useCase.onBatch = items -> items.forEach(item -> item.complete(bill("B")));
+        RequestQueue<BillRequest> queue = new RequestQueue<>(10);
+        List<BillRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            BillRequest request = request("u" + i);
+            requests.add(request);
+            queue.enqueue(request);
+        }
+
+        BillProcessingWorker worker = worker(useCase, queue, 3);
+        Thread thread = new Thread(worker, "BillWorker-1");
+        thread.start();
+        for (BillRequest request : requests) {
+            assertTrue(request.getFuture().get(5, TimeUnit.SECONDS).isSuccess());
+        }
+        worker.stop();
+        thread.interrupt();
+        thread.join(5000);
+
+        assertEquals(List.of(3, 2), useCase.batchSizes);
+        BillProcessingWorker.BatchStats stats = worker.getBatchStats();
+        assertEquals(2, stats.batches);
+        assertEquals(5, stats.bills);
+        assertEquals(2.5, stats.getAverageBatchSize(), 0.001);
+    }
+
+    @Test
+    public void testInvalidBatchSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> worker(new BatchingUseCase(), new RequestQueue<>(10), 0));
+    }
+}
@@ -1,19 +1,62 @@
 package com.syos.web.concurrency;
 
+import com.syos.web.application.dto.BillDTO;
 import com.syos.web.application.dto.CreateBillRequest;
+import com.syos.web.application.usecases.CreateBillUseCase;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class BillQueueServiceTest {
 
     private BillQueueService service;
+    private BillQueueService tasksService;
+
+    /**
+     * Use case that waits for the test to release it, no database
+     */
+    private static class GatedUseCase extends CreateBillUseCase {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+
+        GatedUseCase() {
+            super(null, null);
+        }
+
+        @Override
+        public BillDTO execute(CreateBillRequest request, String userId, String userType) {
+            calls.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            BillDTO bill = new BillDTO();
+            bill.setBillNumber("BILL-" + userId);
+            return bill;
+        }
+    }
 
     @BeforeEach
     public void setUp() throws Exception {
@@ -30,6 +73,9 @@ public class BillQueueServiceTest {
         if (service != null) {
             service.shutdown();
         }
+        if (tasksService != null) {
+            tasksService.shutdown();
+        }
     }
 
     @Test
@@ -71,4 +117,451 @@ public class BillQueueServiceTest {
         // After shutdown, we can't easily test if it's "off" without more introspection,
         // but we verify no exceptions occur.
     }
+
+    @Test
+    public void testTasksModeCompletesRequests() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        useCase.release.countDown();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 4, useCase);
+
+        BillQueueResponse response = tasksService.submitBillRequest(new CreateBillRequest(), "user1")
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(response.isSuccess());
+        assertEquals("BILL-user1", response.getBillDTO().getBillNumber());
+        assertEquals("TASKS", tasksService.getStats().executionMode);
+    }
+
+    @Test
+    public void testTasksModeBoundsConcurrency() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 2, useCase);
+
+        List<CompletableFuture<BillQueueResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(tasksService.submitBillRequest(new CreateBillRequest(), "user" + i));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (useCase.running.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        BillQueueService.QueueStats stats = tasksService.getStats();
+        assertEquals(2, stats.inFlight);
+        assertEquals(2, stats.numWorkers);
+        // The rest wait in the queue, not in the executor
+        assertEquals(3, stats.queueSize);
+
+        useCase.release.countDown();
+        for (CompletableFuture<BillQueueResponse> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(2, useCase.maxRunning.get());
+    }
+
+    @Test
+    public void testTaskExecutorRunsTasks() throws Exception {
+        ExecutorService executor = BillQueueService.newTaskExecutor();
+        try {
+            CountDownLatch ran = new CountDownLatch(1);
+            executor.execute(ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWorkersModeStats() {
+        BillQueueService.QueueStats stats = service.getStats();
+        assertEquals("WORKERS", stats.executionMode);
+        assertEquals(0, stats.inFlight);
+    }
+
+    @Test
+    public void testRejectsWhenPredictedWaitExceedsBudget() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase);
+        tasksService.submitBillRequest(new CreateBillRequest(), "user1");
+
+        // Default estimate 200ms per bill: one bill ahead leaves no room for a 100ms budget
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> tasksService.submitBillRequest(new CreateBillRequest(), "user2", "CASHIER", 100));
+        assertTrue(e.getRetryAfterSeconds() >= 1);
+        assertEquals(1, tasksService.getAdmissionStats().rejected);
+        assertEquals(1, tasksService.getAdmissionStats().admitted);
+
+        useCase.release.countDown();
+    }
+
+    @Test
+    public void testRejectsWhenQueueStaysFull() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        // Two slots per lane, one bill at a time
+        tasksService = new BillQueueService(4, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase);
+        for (int i = 0; i < 3; i++) {
+            tasksService.submitBillRequest(new CreateBillRequest(), "user" + i);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tasksService.getStats().queueSize != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThrows(AdmissionRejectedException.class,
+                () -> tasksService.submitBillRequest(new CreateBillRequest(), "user3", "CASHIER", 1000));
+
+        useCase.release.countDown();
+    }
+
+    @Test
+    public void testAbandonedRequestIsSkipped() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase);
+
+        CompletableFuture<BillQueueResponse> first = tasksService.submitBillRequest(new CreateBillRequest(), "user1");
+        CompletableFuture<BillQueueResponse> second = tasksService.submitBillRequest(new CreateBillRequest(), "user2");
+        // The caller of the second bill gives up while it is still queued
+        second.cancel(false);
+        useCase.release.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        CompletableFuture<BillQueueResponse> third = tasksService.submitBillRequest(new CreateBillRequest(), "user3");
+        assertTrue(third.get(5, TimeUnit.SECONDS).isSuccess());
+
+        assertEquals(1, useCase.maxRunning.get());
+        assertEquals(2, useCase.calls.get(), "The abandoned bill was never created");
+        assertEquals(1, tasksService.getAdmissionStats().abandoned);
+    }
+
+    private static CreateBillRequest billFor(String... productCodes) {
+        List<CreateBillRequest.BillItemRequest> items = new ArrayList<>();
+        for (String code : productCodes) {
+            items.add(new CreateBillRequest.BillItemRequest(code, 1));
+        }
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(items);
+        return request;
+    }
+
+    @Test
+    public void testShardedModeRoutesHotProductToOneShard() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        useCase.release.countDown();
+        tasksService = new BillQueueService(40, 4, BillQueueService.ExecutionMode.SHARDED, 4, useCase);
+
+        List<CompletableFuture<BillQueueResponse>> futures = new ArrayList<>();
+        futures.add(tasksService.submitBillRequest(billFor("MILK"), "user0"));
+        futures.add(tasksService.submitBillRequest(billFor("BREAD", "MILK"), "user1"));
+        futures.add(tasksService.submitBillRequest(billFor("MILK", "TEA"), "user2"));
+        futures.add(tasksService.submitBillRequest(billFor("EGGS", "MILK", "SUGAR"), "user3"));
+        for (CompletableFuture<BillQueueResponse> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).isSuccess());
+        }
+
+        int milkShard = new ShardRouter(4).shardOf("MILK");
+        List<BillQueueService.ShardStats> shards = tasksService.getShardStats();
+        assertEquals(4, shards.size());
+        for (BillQueueService.ShardStats shard : shards) {
+            assertEquals(shard.shard == milkShard ? 4 : 0, shard.routed);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tasksService.getShardStats().get(milkShard).completed < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, tasksService.getShardStats().get(milkShard).completed);
+
+        BillQueueService.QueueStats stats = tasksService.getStats();
+        assertEquals("SHARDED", stats.executionMode);
+        assertEquals(4, stats.numWorkers);
+        assertEquals(0, stats.queueSize);
+        assertEquals(80, stats.remainingCapacity, "40 in the lanes, 10 per shard");
+    }
+
+    @Test
+    public void testShardedModeCountsLockConflicts() throws Exception {
+        CreateBillUseCase useCase = new CreateBillUseCase(null, null) {
+            @Override
+            public BillDTO execute(CreateBillRequest request, String userId, String userType) {
+                throw new RuntimeException("Failed to create bill: Deadlock found",
+                        new SQLException("Deadlock found when trying to get lock", "40001", 1213));
+            }
+        };
+        tasksService = new BillQueueService(10, 2, BillQueueService.ExecutionMode.SHARDED, 2, useCase);
+
+        BillQueueResponse response = tasksService.submitBillRequest(billFor("MILK"), "user1")
+                .get(5, TimeUnit.SECONDS);
+        assertFalse(response.isSuccess());
+
+        BillQueueService.ShardStats shard = tasksService.getShardStats().get(new ShardRouter(2).shardOf("MILK"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (shard.failed == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            shard = tasksService.getShardStats().get(shard.shard);
+        }
+        assertEquals(1, shard.failed);
+        assertEquals(1, shard.conflicts);
+        assertEquals(0, shard.completed);
+        // Three attempts by default
+        assertEquals(2, shard.retries);
+        assertEquals(1, shard.gaveUp);
+        assertEquals(2, tasksService.getRetryStats().retries);
+        assertEquals(3, tasksService.getRetryStats().deadlocks);
+    }
+
+    @Test
+    public void testConflictIsRetriedUntilTheBillGoesThrough() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CreateBillUseCase useCase = new CreateBillUseCase(null, null) {
+            @Override
+            public BillDTO execute(CreateBillRequest request, String userId, String userType) {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new RuntimeException("Failed to create bill: Concurrent modification detected",
+                            new SQLException("Concurrent modification detected", "45000", 1644));
+                }
+                BillDTO bill = new BillDTO();
+                bill.setBillNumber("BILL-" + userId);
+                return bill;
+            }
+        };
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase);
+
+        BillQueueResponse response = tasksService.submitBillRequest(billFor("MILK"), "user1")
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(response.isSuccess());
+        RetryPolicy.RetryStats retries = tasksService.getRetryStats();
+        assertEquals(1, retries.retries);
+        assertEquals(1, retries.succeededAfterRetry);
+        assertEquals(0, retries.gaveUp);
+        assertEquals(1, retries.versionConflicts);
+    }
+
+    @Test
+    public void testTelemetryRecordsProcessedBills() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        useCase.release.countDown();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 2, useCase);
+
+        tasksService.submitBillRequest(new CreateBillRequest(), "user1").get(5, TimeUnit.SECONDS);
+        tasksService.submitBillRequest(new CreateBillRequest(), "user2", "CUSTOMER").get(5, TimeUnit.SECONDS);
+
+        // Recorded just after the future completes; the worker's count is written last
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tasksService.getTelemetry().workers.get(0).processed < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        QueueTelemetry.Snapshot telemetry = tasksService.getTelemetry();
+        assertEquals(2, telemetry.processed);
+        assertEquals(2, telemetry.waitTime.count);
+        assertEquals(2, telemetry.userTypes.size());
+        assertEquals(1, telemetry.workers.size());
+        assertEquals("BillDispatcher", telemetry.workers.get(0).name);
+        assertEquals(2, telemetry.workers.get(0).slots);
+        assertEquals(0, telemetry.oldestWaitMillis);
+    }
+
+    @Test
+    public void testShutdownDrainsQueuedBills() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase);
+        List<CompletableFuture<BillQueueResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(tasksService.submitBillRequest(new CreateBillRequest(), "user" + i));
+        }
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            useCase.release.countDown();
+        }).start();
+        BillQueueService.ShutdownReport report = tasksService.shutdown(5000);
+
+        assertEquals(3, report.drained);
+        assertEquals(0, report.rejected);
+        for (CompletableFuture<BillQueueResponse> future : futures) {
+            assertTrue(future.get(1, TimeUnit.SECONDS).isSuccess());
+        }
+    }
+
+    @Test
+    public void testShutdownRejectsWhatCannotDrainInTime() throws Exception {
+        GatedUseCase useCase = new GatedUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.WORKERS, 1, useCase);
+        List<CompletableFuture<BillQueueResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(tasksService.submitBillRequest(new CreateBillRequest(), "user" + i));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (useCase.running.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        BillQueueService.ShutdownReport report = tasksService.shutdown(100);
+
+        // The bill in flight finishes; the two still queued are handed back
+        assertEquals(1, report.drained);
+        assertEquals(2, report.rejected);
+        assertTrue(futures.get(0).get(5, TimeUnit.SECONDS).isSuccess());
+        for (CompletableFuture<BillQueueResponse> future : futures.subList(1, 3)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+            AdmissionRejectedException rejected = assertInstanceOf(AdmissionRejectedException.class, e.getCause());
+            assertEquals(BillQueueService.SHUTDOWN_RETRY_AFTER_SECONDS, rejected.getRetryAfterSeconds());
+        }
+        assertEquals(0, tasksService.getStats().queueSize);
+    }
+
+    @Test
+    public void testRejectsSubmissionsAfterShutdown() {
+        GatedUseCase useCase = new GatedUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase);
+        BillQueueService.ShutdownReport report = tasksService.shutdown(1000);
+
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> tasksService.submitBillRequest(new CreateBillRequest(), "user1"));
+        assertEquals(BillQueueService.SHUTDOWN_RETRY_AFTER_SECONDS, e.getRetryAfterSeconds());
+        assertSame(report, tasksService.shutdown(1000));
+        assertEquals(0, useCase.calls.get());
+    }
+
+    @Test
+    public void testShutdownInstance() {
+        assertNotNull(BillQueueService.shutdownInstance());
+        service = null;
+        assertNull(BillQueueService.shutdownInstance());
+    }
+
+    @Test
+    public void testOtherModesHaveNoShards() {
+        assertTrue(service.getShardStats().isEmpty());
+    }
+
+    /**
+     * Use case that records the request IDs it is given (journaled bills pass theirs through)
+     */
+    private static class RecordingUseCase extends CreateBillUseCase {
+        final List<String> requestIds = new CopyOnWriteArrayList<>();
+
+        RecordingUseCase() {
+            super(null, null);
+        }
+
+        @Override
+        public BillDTO execute(CreateBillRequest request, String userId, String userType, String requestId) {
+            requestIds.add(requestId);
+            BillDTO bill = new BillDTO();
+            bill.setBillNumber("BILL-" + requestId);
+            return bill;
+        }
+    }
+
+    @Test
+    public void testJournaledBillIsAcknowledged(@TempDir Path dir) throws Exception {
+        RecordingUseCase useCase = new RecordingUseCase();
+        BillJournal journal = new BillJournal(dir, 64 * 1024);
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase, journal);
+
+        BillQueueResponse response = tasksService.submitBillRequest(new CreateBillRequest(), "user1")
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(response.isSuccess());
+        assertEquals(1, useCase.requestIds.size());
+        assertNotNull(useCase.requestIds.get(0));
+        BillJournal.JournalStats stats = tasksService.getJournalStats();
+        assertEquals(1, stats.appends);
+        assertEquals(1, stats.acks);
+        assertEquals(0, stats.unacknowledged);
+    }
+
+    @Test
+    public void testJournalIsReplayedOnStart(@TempDir Path dir) throws Exception {
+        try (BillJournal journal = new BillJournal(dir, 64 * 1024)) {
+            journal.append(new BillRequest("req-1", new CreateBillRequest(), "user1", "CASHIER", 1000, true));
+            journal.append(new BillRequest("req-2", new CreateBillRequest(), "user2", "CUSTOMER", 1000, true));
+            journal.acknowledge("req-2");
+        }
+
+        RecordingUseCase useCase = new RecordingUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase,
+                new BillJournal(dir, 64 * 1024));
+
+        // Replayed with its original ID, so an already committed bill is not created twice
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tasksService.getJournalStats().acks < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("req-1"), useCase.requestIds);
+        assertEquals(0, tasksService.getJournalStats().unacknowledged);
+    }
+
+    @Test
+    public void testJournalOffByDefault() {
+        assertNull(service.getJournalStats());
+    }
+
+    @Test
+    public void testIdempotencyKeyCreatesOneBill() throws Exception {
+        RecordingUseCase useCase = new RecordingUseCase();
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase, null);
+
+        BillQueueResponse first = tasksService.submitBillRequest(new CreateBillRequest(), "user1", "CASHIER",
+                1000, "key-1").get(5, TimeUnit.SECONDS);
+        BillQueueResponse retry = tasksService.submitBillRequest(new CreateBillRequest(), "user1", "CASHIER",
+                1000, "key-1").get(5, TimeUnit.SECONDS);
+
+        // Keys are per user: the database key carries the user ID
+        assertEquals(List.of("user1:key-1"), useCase.requestIds);
+        assertSame(first, retry);
+        assertEquals(1, tasksService.getIdempotencyStats().replayed);
+
+        tasksService.submitBillRequest(new CreateBillRequest(), "user2", "CASHIER", 1000, "key-1")
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("user1:key-1", "user2:key-1"), useCase.requestIds);
+    }
+
+    @Test
+    public void testRetryAfterCallerTimedOutGetsTheBillBeingCreated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingUseCase useCase = new RecordingUseCase() {
+            @Override
+            public BillDTO execute(CreateBillRequest request, String userId, String userType, String requestId) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.execute(request, userId, userType, requestId);
+            }
+        };
+        tasksService = new BillQueueService(10, 1, BillQueueService.ExecutionMode.TASKS, 1, useCase, null);
+
+        // The caller's timeout fires while the worker is inside the bill's transaction
+        CompletableFuture<BillQueueResponse> first = tasksService.submitBillRequest(new CreateBillRequest(),
+                "user1", "CASHIER", 5000, "key-1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        first.cancel(false);
+
+        CompletableFuture<BillQueueResponse> retry = tasksService.submitBillRequest(new CreateBillRequest(),
+                "user1", "CASHIER", 5000, "key-1");
+        assertFalse(retry.isDone());
+        release.countDown();
+
+        // The bill was created after all: the retry gets it rather than a second bill or an error
+        BillQueueResponse response = retry.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isSuccess());
+        assertEquals("BILL-user1:key-1", response.getBillDTO().getBillNumber());
+        assertEquals(List.of("user1:key-1"), useCase.requestIds);
+    }
+
+    @Test
+    public void testInvalidIdempotencyKey() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.submitBillRequest(new CreateBillRequest(), "user1", "CASHIER", 1000, "has spaces"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.submitBillRequest(new CreateBillRequest(), "user1", "CASHIER", 1000, "x".repeat(65)));
+    }
 }
@@ -0,0 +1,257 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FairRequestQueueTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Items are "LANE:id"
+     */
+    private FairRequestQueue<String> queue(int cashierCapacity, int cashierWeight,
+                                           int customerCapacity, int customerWeight, long maxWaitMillis) {
+        return new FairRequestQueue<>(
+                List.of(new FairRequestQueue.Lane("CASHIER", cashierCapacity, cashierWeight),
+                        new FairRequestQueue.Lane("CUSTOMER", customerCapacity, customerWeight)),
+                item -> item.substring(0, item.indexOf(':')),
+                maxWaitMillis,
+                nanos::get
+        );
+    }
+
+    private static List<String> lanesOf(List<String> items) {
+        List<String> lanes = new ArrayList<>();
+        for (String item : items) {
+            lanes.add(item.startsWith("CASHIER") ? "C" : "O");
+        }
+        return lanes;
+    }
+
+    private static List<String> drain(FairRequestQueue<String> queue, int n) throws InterruptedException {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            items.add(queue.dequeue());
+        }
+        return items;
+    }
+
+    @Test
+    public void testWeightedDequeueInterleaves() throws Exception {
+        FairRequestQueue<String> queue = queue(20, 4, 20, 1, 60_000);
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue("CUSTOMER:" + i);
+            queue.enqueue("CASHIER:" + i);
+        }
+
+        List<String> order = lanesOf(drain(queue, 10));
+
+        assertEquals(List.of("C", "C", "O", "C", "C", "C", "C", "O", "C", "C"), order);
+    }
+
+    @Test
+    public void testFifoWithinLane() throws Exception {
+        FairRequestQueue<String> queue = queue(10, 4, 10, 1, 60_000);
+        queue.enqueue("CASHIER:1");
+        queue.enqueue("CASHIER:2");
+        queue.enqueue("CASHIER:3");
+
+        assertEquals(List.of("CASHIER:1", "CASHIER:2", "CASHIER:3"), drain(queue, 3));
+    }
+
+    @Test
+    public void testOnlyWaitingLaneIsServed() throws Exception {
+        FairRequestQueue<String> queue = queue(10, 4, 10, 1, 60_000);
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue("CUSTOMER:" + i);
+        }
+
+        assertEquals(List.of("O", "O", "O", "O", "O"), lanesOf(drain(queue, 5)));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testFullLaneBlocksOnlyItsOwnProducers() throws Exception {
+        FairRequestQueue<String> queue = queue(5, 4, 2, 1, 60_000);
+        queue.enqueue("CUSTOMER:1");
+        queue.enqueue("CUSTOMER:2");
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch added = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                blocked.countDown();
+                queue.enqueue("CUSTOMER:3");
+                added.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        assertFalse(added.await(100, TimeUnit.MILLISECONDS), "Customer lane is full");
+
+        // The cashier lane still has room
+        queue.enqueue("CASHIER:1");
+        assertEquals(3, queue.size());
+        assertEquals(4, queue.remainingCapacity());
+
+        // Cashiers are served first; freeing a customer slot then lets the blocked producer in
+        assertEquals("CASHIER:1", queue.dequeue());
+        assertFalse(added.await(100, TimeUnit.MILLISECONDS));
+        assertEquals("CUSTOMER:1", queue.dequeue());
+        assertTrue(added.await(5, TimeUnit.SECONDS));
+        producer.join(5000);
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testAgingServesStarvedLaneFirst() throws Exception {
+        FairRequestQueue<String> queue = queue(100, 100, 10, 1, 1000);
+        queue.enqueue("CUSTOMER:old");
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < 50; i++) {
+            queue.enqueue("CASHIER:" + i);
+        }
+
+        // Weights alone would serve ~100 cashier bills first
+        assertEquals("CASHIER:0", queue.dequeue());
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        queue.enqueue("CASHIER:late");
+
+        // Both heads have waited past max wait; the online order longer
+        assertEquals("CUSTOMER:old", queue.dequeue());
+
+        FairRequestQueue.LaneStats customer = queue.getLaneStats().get(1);
+        assertEquals("CUSTOMER", customer.name);
+        assertEquals(1, customer.aged);
+        assertEquals(1, customer.dequeued);
+        assertEquals(0, customer.depth);
+    }
+
+    @Test
+    public void testUnknownLaneUsesFirstLane() throws Exception {
+        FairRequestQueue<String> queue = queue(10, 4, 10, 1, 60_000);
+        queue.enqueue("MANAGER:1");
+
+        FairRequestQueue.LaneStats cashier = queue.getLaneStats().get(0);
+        assertEquals(1, cashier.depth);
+        assertEquals("MANAGER:1", queue.dequeue());
+    }
+
+    @Test
+    public void testLaneStats() throws Exception {
+        FairRequestQueue<String> queue = queue(10, 4, 5, 1, 60_000);
+        queue.enqueue("CASHIER:1");
+        queue.enqueue("CASHIER:2");
+        queue.enqueue("CUSTOMER:1");
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        queue.dequeue();
+
+        List<FairRequestQueue.LaneStats> stats = queue.getLaneStats();
+        FairRequestQueue.LaneStats cashier = stats.get(0);
+        assertEquals(10, cashier.capacity);
+        assertEquals(4, cashier.weight);
+        assertEquals(1, cashier.depth);
+        assertEquals(2, cashier.enqueued);
+        assertEquals(1, cashier.dequeued);
+        assertEquals(250, cashier.oldestWaitMillis);
+
+        FairRequestQueue.LaneStats customer = stats.get(1);
+        assertEquals(1, customer.depth);
+        assertEquals(0, customer.dequeued);
+        assertEquals(250, customer.oldestWaitMillis);
+    }
+
+    @Test
+    public void testInvalidLanes() {
+        assertThrows(IllegalArgumentException.class, () -> new FairRequestQueue.Lane("CASHIER", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new FairRequestQueue.Lane("CASHIER", 1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new FairRequestQueue<String>(List.of(), item -> item, 1000));
+    }
+
+    @Test
+    public void testOfferGivesUpWhenLaneStaysFull() throws Exception {
+        FairRequestQueue<String> queue = queue(1, 4, 1, 1, 60_000);
+        assertTrue(queue.offer("CUSTOMER:1", 0, TimeUnit.MILLISECONDS));
+
+        assertFalse(queue.offer("CUSTOMER:2", 50, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer("CASHIER:1", 0, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testOfferWaitsForRoom() throws Exception {
+        FairRequestQueue<String> queue = queue(1, 4, 1, 1, 60_000);
+        queue.enqueue("CUSTOMER:1");
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.dequeue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        assertTrue(queue.offer("CUSTOMER:2", 5, TimeUnit.SECONDS));
+        consumer.join(5000);
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testDrainToEmptiesAllLanes() throws Exception {
+        FairRequestQueue<String> queue = queue(2, 4, 2, 1, 60_000);
+        queue.enqueue("CASHIER:1");
+        queue.enqueue("CUSTOMER:1");
+        queue.enqueue("CASHIER:2");
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(3, queue.drainTo(drained));
+
+        assertEquals(List.of("CASHIER:1", "CASHIER:2", "CUSTOMER:1"), drained);
+        assertTrue(queue.isEmpty());
+        assertEquals(4, queue.remainingCapacity());
+        assertEquals(2, queue.getLaneStats().get(0).dequeued);
+    }
+
+    @Test
+    public void testPollFollowsWeights() throws Exception {
+        FairRequestQueue<String> queue = queue(10, 4, 10, 1, 60_000);
+        queue.enqueue("CUSTOMER:1");
+        queue.enqueue("CASHIER:1");
+
+        assertEquals("CASHIER:1", queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals("CUSTOMER:1", queue.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPollWaitsForAnItem() throws Exception {
+        FairRequestQueue<String> queue = queue(10, 4, 10, 1, 60_000);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.enqueue("CASHIER:1");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        assertEquals("CASHIER:1", queue.poll(5, TimeUnit.SECONDS));
+        producer.join(5000);
+        assertEquals(1, queue.getLaneStats().get(0).dequeued);
+    }
+}
@@ -0,0 +1,200 @@
+package com.syos.web.concurrency;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GoogleTokenVerifierTest {
+
+    private static final String CLIENT_ID = "test-client.apps.googleusercontent.com";
+    private static final KeyPair GOOGLE_KEY = generateKey();
+    private static final KeyPair OTHER_KEY = generateKey();
+
+    @TempDir
+    Path tempDir;
+
+    private Path certsFile;
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private GoogleTokenVerifier verifier;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        certsFile = tempDir.resolve("certs.json");
+        Files.writeString(certsFile, jwks("key-1", GOOGLE_KEY));
+        verifier = new GoogleTokenVerifier(CLIENT_ID, GoogleTokenVerifier.fileSource(certsFile),
+                0, 60_000, 100, now::get);
+    }
+
+    @Test
+    public void testVerifiesTokenSignedByGoogleKey() throws Exception {
+        GoogleIdToken.Payload payload = verifier.verify(token("key-1", GOOGLE_KEY, CLIENT_ID, 3600));
+
+        assertNotNull(payload);
+        assertEquals("google-sub-1", payload.getSubject());
+        assertEquals("user@example.com", payload.getEmail());
+        assertEquals(1, verifier.getStats().keyRefreshes);
+        assertEquals(1, verifier.getStats().keyCount);
+    }
+
+    @Test
+    public void testSameTokenServedFromCache() throws Exception {
+        String token = token("key-1", GOOGLE_KEY, CLIENT_ID, 3600);
+        GoogleIdToken.Payload first = verifier.verify(token);
+
+        // Key file gone: a cached token needs neither keys nor a signature check
+        Files.delete(certsFile);
+        GoogleIdToken.Payload second = verifier.verify(token);
+
+        assertSame(first, second);
+        assertEquals(1, verifier.getStats().hits);
+        assertEquals(1, verifier.getStats().misses);
+    }
+
+    @Test
+    public void testCachedTokenExpiresAfterTtl() throws Exception {
+        String token = token("key-1", GOOGLE_KEY, CLIENT_ID, 3600);
+        verifier.verify(token);
+        now.addAndGet(60_000);
+
+        assertNotNull(verifier.verify(token));
+        assertEquals(0, verifier.getStats().hits);
+        assertEquals(2, verifier.getStats().misses);
+    }
+
+    @Test
+    public void testCacheNeverOutlivesToken() throws Exception {
+        String token = token("key-1", GOOGLE_KEY, CLIENT_ID, 10);
+        assertNotNull(verifier.verify(token));
+
+        // Past exp plus the allowed clock skew
+        now.addAndGet(10_000 + 301_000);
+
+        assertNull(verifier.verify(token));
+        assertEquals(0, verifier.getStats().hits);
+    }
+
+    @Test
+    public void testRejectsTokenForOtherClient() throws Exception {
+        assertNull(verifier.verify(token("key-1", GOOGLE_KEY, "someone-else", 3600)));
+        assertEquals(1, verifier.getStats().rejected);
+        assertEquals(0, verifier.getStats().cachedTokens);
+    }
+
+    @Test
+    public void testRejectsTokenSignedByOtherKey() throws Exception {
+        assertNull(verifier.verify(token("key-1", OTHER_KEY, CLIENT_ID, 3600)));
+        assertNull(verifier.verify(token("key-2", OTHER_KEY, CLIENT_ID, 3600)));
+    }
+
+    @Test
+    public void testRejectsTamperedAndMalformedTokens() throws Exception {
+        String token = token("key-1", GOOGLE_KEY, CLIENT_ID, 3600);
+        String[] parts = token.split("\\.");
+        String otherPayload = token("key-1", GOOGLE_KEY, "someone-else", 3600).split("\\.")[1];
+
+        assertNull(verifier.verify(parts[0] + "." + otherPayload + "." + parts[2]));
+        assertNull(verifier.verify("not-a-token"));
+    }
+
+    @Test
+    public void testRefreshPicksUpRotatedKey() throws Exception {
+        String rotated = token("key-2", OTHER_KEY, CLIENT_ID, 3600);
+        assertNull(verifier.verify(rotated));
+
+        Files.writeString(certsFile, jwks("key-2", OTHER_KEY));
+        verifier.refreshKeys();
+
+        assertNotNull(verifier.verify(rotated));
+    }
+
+    @Test
+    public void testUnknownKeyIdTriggersRefresh() throws Exception {
+        assertNotNull(verifier.verify(token("key-1", GOOGLE_KEY, CLIENT_ID, 3600)));
+
+        // Google rotated before the next scheduled refresh
+        Files.writeString(certsFile, jwks("key-2", OTHER_KEY));
+
+        assertNotNull(verifier.verify(token("key-2", OTHER_KEY, CLIENT_ID, 3600)));
+        assertEquals(2, verifier.getStats().keyRefreshes);
+    }
+
+    @Test
+    public void testUnknownKeyIdRefreshAtMostOncePerMinute() throws Exception {
+        String rotated = token("key-2", OTHER_KEY, CLIENT_ID, 3600);
+        assertNull(verifier.verify(rotated));
+        assertEquals(2, verifier.getStats().keyRefreshes);
+
+        Files.writeString(certsFile, jwks("key-2", OTHER_KEY));
+        assertNull(verifier.verify(rotated));
+        assertEquals(2, verifier.getStats().keyRefreshes);
+
+        now.addAndGet(60_000);
+        assertNotNull(verifier.verify(rotated));
+        assertEquals(3, verifier.getStats().keyRefreshes);
+    }
+
+    @Test
+    public void testFailedRefreshKeepsPreviousKeys() throws Exception {
+        verifier.refreshKeys();
+        Files.writeString(certsFile, "{\"keys\": []}");
+
+        assertThrows(IOException.class, () -> verifier.refreshKeys());
+        assertNotNull(verifier.verify(token("key-1", GOOGLE_KEY, CLIENT_ID, 3600)));
+    }
+
+    private String token(String keyId, KeyPair key, String audience, long validSeconds) throws Exception {
+        JsonWebSignature.Header header = new JsonWebSignature.Header();
+        header.setAlgorithm("RS256");
+        header.setKeyId(keyId);
+        GoogleIdToken.Payload payload = new GoogleIdToken.Payload();
+        payload.setIssuer("https://accounts.google.com");
+        payload.setAudience(audience);
+        payload.setSubject("google-sub-1");
+        payload.setEmail("user@example.com");
+        payload.setEmailVerified(true);
+        payload.setIssuedAtTimeSeconds(now.get() / 1000);
+        payload.setExpirationTimeSeconds(now.get() / 1000 + validSeconds);
+        return JsonWebSignature.signUsingRsaSha256(key.getPrivate(), GsonFactory.getDefaultInstance(), header, payload);
+    }
+
+    private static String jwks(String keyId, KeyPair key) {
+        RSAPublicKey publicKey = (RSAPublicKey) key.getPublic();
+        return "{\"keys\": [{\"kid\": \"" + keyId + "\", \"kty\": \"RSA\", \"alg\": \"RS256\", \"use\": \"sig\", "
+                + "\"n\": \"" + base64Url(publicKey.getModulus()) + "\", "
+                + "\"e\": \"" + base64Url(publicKey.getPublicExponent()) + "\"}]}";
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0 && bytes.length > 1) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static KeyPair generateKey() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
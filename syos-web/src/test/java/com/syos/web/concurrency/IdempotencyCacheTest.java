@@ -0,0 +1,199 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.application.dto.CreateBillRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+    private final IdempotencyCache cache = new IdempotencyCache(100, Runnable::run);
+    private final AtomicInteger submissions = new AtomicInteger();
+    private final List<BillRequest> queued = new ArrayList<>();
+
+    /**
+     * Stands in for BillQueueService: every call queues a new bill
+     */
+    private final Supplier<BillRequest> submitter = () -> {
+        submissions.incrementAndGet();
+        BillRequest request = new BillRequest(new CreateBillRequest(), "user1", "CASHIER");
+        queued.add(request);
+        return request;
+    };
+
+    @Test
+    public void testDuplicateAttachesToBillInFlight() throws Exception {
+        CompletableFuture<BillQueueResponse> first = cache.submit("user1:key-1", submitter);
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        assertEquals(1, submissions.get());
+        assertFalse(retry.isDone());
+
+        BillQueueResponse response = BillQueueResponse.success("Bill created successfully", null, 5);
+        queued.get(0).complete(response);
+
+        assertSame(response, first.get());
+        assertSame(response, retry.get());
+        assertEquals(1, cache.getStats().attached);
+    }
+
+    @Test
+    public void testDuplicateAfterCompletionGetsSameResult() throws Exception {
+        cache.submit("user1:key-1", submitter);
+        BillQueueResponse response = BillQueueResponse.success("Bill created successfully", null, 5);
+        queued.get(0).complete(response);
+
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        assertTrue(retry.isDone());
+        assertSame(response, retry.get());
+        assertEquals(1, submissions.get());
+        assertEquals(1, cache.getStats().replayed);
+    }
+
+    @Test
+    public void testDifferentKeysAreIndependent() {
+        cache.submit("user1:key-1", submitter);
+        cache.submit("user1:key-2", submitter);
+        cache.submit("user2:key-1", submitter);
+
+        assertEquals(3, submissions.get());
+        assertEquals(3, cache.getStats().entries);
+    }
+
+    @Test
+    public void testOneCallerGivingUpDoesNotCancelTheBill() {
+        CompletableFuture<BillQueueResponse> first = cache.submit("user1:key-1", submitter);
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        first.cancel(false);
+        assertFalse(queued.get(0).getFuture().isCancelled());
+        assertFalse(retry.isDone());
+
+        // The last one waiting times out too: the worker can skip the bill
+        retry.cancel(false);
+        assertTrue(queued.get(0).getFuture().isCancelled());
+    }
+
+    @Test
+    public void testSkippedBillIsSubmittedAgain() {
+        cache.submit("user1:key-1", submitter).cancel(false);
+        queued.get(0).completeExceptionally(new CancellationException("Caller stopped waiting"));
+
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        assertEquals(2, submissions.get());
+        assertFalse(retry.isDone());
+    }
+
+    @Test
+    public void testRetryWaitsForBillStillBeingCreated() throws Exception {
+        // The caller timed out while the worker was inside the bill's transaction
+        cache.submit("user1:key-1", submitter).cancel(false);
+
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+        assertEquals(1, submissions.get());
+        assertFalse(retry.isDone());
+
+        // The worker commits after all: the retry gets that bill, not a second one
+        BillQueueResponse response = BillQueueResponse.success("Bill created successfully", null, 5);
+        queued.get(0).complete(response);
+
+        assertSame(response, retry.get());
+        assertEquals(1, submissions.get());
+    }
+
+    @Test
+    public void testRetryOfAbandonedBillRunsAgainIfWorkerSkippedIt() {
+        cache.submit("user1:key-1", submitter).cancel(false);
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        queued.get(0).completeExceptionally(new CancellationException("Caller stopped waiting"));
+
+        assertEquals(2, submissions.get());
+        assertFalse(retry.isDone());
+        BillQueueResponse response = BillQueueResponse.success("Bill created successfully", null, 5);
+        queued.get(1).complete(response);
+        assertSame(response, retry.join());
+    }
+
+    @Test
+    public void testFailedBillIsSubmittedAgain() {
+        cache.submit("user1:key-1", submitter);
+        queued.get(0).complete(BillQueueResponse.error("Insufficient stock", 3));
+
+        cache.submit("user1:key-1", submitter);
+
+        // Nothing was created, so the retry may go ahead (e.g. after a restock)
+        assertEquals(2, submissions.get());
+    }
+
+    @Test
+    public void testRejectedSubmissionIsForgotten() {
+        AdmissionRejectedException rejected = new AdmissionRejectedException("Queue full", 2000, 2);
+        assertThrows(AdmissionRejectedException.class, () -> cache.submit("user1:key-1", () -> {
+            throw rejected;
+        }));
+
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        assertEquals(1, submissions.get());
+        assertFalse(retry.isDone());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedCompletedEntriesAreDropped() {
+        IdempotencyCache small = new IdempotencyCache(2);
+        small.submit("user1:a", submitter);
+        small.submit("user1:b", submitter);
+        queued.forEach(future -> future.complete(BillQueueResponse.success("ok", null, 1)));
+
+        small.submit("user1:a", submitter);     // Touch a: b is now the oldest
+        small.submit("user1:c", submitter);
+
+        assertEquals(2, small.getStats().entries);
+        small.submit("user1:a", submitter);
+        assertEquals(3, submissions.get(), "a is still cached");
+        small.submit("user1:b", submitter);
+        assertEquals(4, submissions.get(), "b was dropped");
+    }
+
+    @Test
+    public void testBillsInFlightAreNotDropped() {
+        IdempotencyCache small = new IdempotencyCache(1);
+        CompletableFuture<BillQueueResponse> first = small.submit("user1:a", submitter);
+        small.submit("user1:b", submitter);
+
+        CompletableFuture<BillQueueResponse> retry = small.submit("user1:a", submitter);
+
+        assertEquals(2, submissions.get());
+        queued.get(0).complete(BillQueueResponse.success("ok", null, 1));
+        assertTrue(first.isDone());
+        assertTrue(retry.isDone());
+    }
+
+    @Test
+    public void testFailureReachesEveryCaller() {
+        CompletableFuture<BillQueueResponse> first = cache.submit("user1:key-1", submitter);
+        CompletableFuture<BillQueueResponse> retry = cache.submit("user1:key-1", submitter);
+
+        queued.get(0).completeExceptionally(new IllegalStateException("DB down"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, retry::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(first.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(0));
+    }
+}
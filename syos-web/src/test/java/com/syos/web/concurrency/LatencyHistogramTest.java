@@ -0,0 +1,89 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+
+        assertEquals(0, snapshot.count);
+        assertEquals(0.0, snapshot.p99Millis);
+        assertEquals(0.0, snapshot.meanMillis);
+    }
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordMillis(ms);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(500.5, snapshot.meanMillis, 0.001);
+        assertEquals(500, snapshot.p50Millis, 500 * 0.07);
+        assertEquals(900, snapshot.p90Millis, 900 * 0.07);
+        assertEquals(990, snapshot.p99Millis, 990 * 0.07);
+        assertEquals(1000.0, snapshot.maxMillis);
+        assertTrue(snapshot.p999Millis <= snapshot.maxMillis);
+    }
+
+    @Test
+    public void testBucketsCoverEveryValueInOrder() {
+        List<Long> values = new ArrayList<>();
+        for (long v = 0; v < 100_000; v = v * 3 / 2 + 1) {
+            values.add(v);
+        }
+        values.add(Long.MAX_VALUE);
+
+        int previous = -1;
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= previous);
+            assertTrue(value <= LatencyHistogram.upperBoundOf(bucket) || bucket == LatencyHistogram.bucketOf(Long.MAX_VALUE));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBoundOf(bucket - 1));
+            }
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(7);
+        histogram.recordMicros(-5);   // Clock went backwards: counted as 0
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(2, snapshot.count);
+        assertEquals(0.007, snapshot.maxMillis, 1e-9);
+        assertEquals(0.007, snapshot.p99Millis, 1e-9);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.recordMicros(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.getSnapshot().count);
+    }
+}
@@ -0,0 +1,47 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockConflictsTest {
+
+    @Test
+    public void testDeadlockAndLockWaitTimeout() {
+        assertTrue(LockConflicts.isConflict(new SQLException("Deadlock found", "40001", 1213)));
+        assertTrue(LockConflicts.isConflict(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+    }
+
+    @Test
+    public void testVersionConflictFromProcedure() {
+        assertTrue(LockConflicts.isConflict(
+                new SQLException("Concurrent modification detected", "45000", 1644)));
+    }
+
+    @Test
+    public void testConflictWrappedByUseCase() {
+        SQLException cause = new SQLException("Deadlock found", "40001", 1213);
+
+        assertTrue(LockConflicts.isConflict(new RuntimeException("Failed to create bill: Deadlock found", cause)));
+    }
+
+    @Test
+    public void testBusinessFailuresAreNotConflicts() {
+        assertFalse(LockConflicts.isConflict(new SQLException("Insufficient stock for sale: P001", "45000")));
+        assertFalse(LockConflicts.isConflict(new IllegalArgumentException("Product not found: P001")));
+        assertFalse(LockConflicts.isConflict(null));
+    }
+
+    @Test
+    public void testClassify() {
+        assertEquals(LockConflicts.Kind.DEADLOCK,
+                LockConflicts.classify(new SQLException("Deadlock found", "40001", 1213)));
+        assertEquals(LockConflicts.Kind.LOCK_WAIT_TIMEOUT,
+                LockConflicts.classify(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        assertEquals(LockConflicts.Kind.VERSION_CONFLICT,
+                LockConflicts.classify(new RuntimeException("Concurrent modification detected")));
+        assertNull(LockConflicts.classify(new SQLException("Insufficient stock for sale: P001", "45000")));
+    }
+}
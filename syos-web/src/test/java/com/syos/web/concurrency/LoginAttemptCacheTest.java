@@ -0,0 +1,116 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginAttemptCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final LoginAttemptCache cache = new LoginAttemptCache(3, 60_000, 100, now::get);
+
+    @Test
+    public void testBlockedAfterMaxFailures() {
+        recordFailures(cache, "cashier1", "10.0.0.1", 2);
+        LoginAttemptCache.Attempt third = cache.tryBeginAttempt("cashier1", "10.0.0.1");
+        assertNotNull(third);
+
+        third.failed();
+        now.addAndGet(10_000);
+
+        assertNull(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+        assertEquals(50_000, cache.retryAfterMillis("cashier1", "10.0.0.1"));
+        assertEquals(1, cache.getStats().blocked);
+    }
+
+    @Test
+    public void testAttemptsInProgressCountTowardsLimit() {
+        List<LoginAttemptCache.Attempt> inProgress = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            inProgress.add(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+        }
+
+        // No failure recorded yet, but a fourth parallel guess must not reach BCrypt
+        assertNull(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+        assertEquals(1000, cache.retryAfterMillis("cashier1", "10.0.0.1"));
+
+        inProgress.get(0).cancelled();
+        assertNotNull(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+    }
+
+    @Test
+    public void testAttemptSettlesOnlyOnce() {
+        LoginAttemptCache.Attempt attempt = cache.tryBeginAttempt("cashier1", "10.0.0.1");
+        attempt.failed();
+        attempt.failed();
+        attempt.cancelled();
+
+        recordFailures(cache, "cashier1", "10.0.0.1", 1);
+        assertNotNull(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+    }
+
+    @Test
+    public void testOtherIpAndUserNotBlocked() {
+        recordFailures(cache, "cashier1", "10.0.0.1", 3);
+
+        assertNotNull(cache.tryBeginAttempt("cashier1", "10.0.0.2"));
+        assertNotNull(cache.tryBeginAttempt("cashier2", "10.0.0.1"));
+    }
+
+    @Test
+    public void testBlockEndsWithWindow() {
+        recordFailures(cache, "cashier1", "10.0.0.1", 3);
+        now.addAndGet(60_000);
+
+        // A new window starts counting from one
+        recordFailures(cache, "cashier1", "10.0.0.1", 1);
+        assertNotNull(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+    }
+
+    @Test
+    public void testSuccessClearsFailures() {
+        recordFailures(cache, "cashier1", "10.0.0.1", 2);
+        cache.tryBeginAttempt("cashier1", "10.0.0.1").succeeded();
+        recordFailures(cache, "cashier1", "10.0.0.1", 1);
+
+        assertNotNull(cache.tryBeginAttempt("cashier1", "10.0.0.1"));
+        assertEquals(1, cache.getStats().tracked);
+    }
+
+    @Test
+    public void testRefusesNewPairsWhenFull() {
+        LoginAttemptCache small = new LoginAttemptCache(3, 60_000, 2, now::get);
+        recordFailures(small, "a", "ip", 1);
+        now.addAndGet(10_000);
+        recordFailures(small, "b", "ip", 1);
+
+        // Full: a new pair is refused instead of going uncounted
+        assertNull(small.tryBeginAttempt("c", "ip"));
+        assertEquals(50_000, small.retryAfterMillis("c", "ip"));
+        assertEquals(2, small.getStats().tracked);
+        assertEquals(1, small.getStats().refusedWhenFull);
+
+        // Pairs already tracked keep their own count
+        assertNotNull(small.tryBeginAttempt("a", "ip"));
+
+        // Expired pairs make room again
+        now.addAndGet(60_000);
+        assertNotNull(small.tryBeginAttempt("c", "ip"));
+    }
+
+    @Test
+    public void testRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new LoginAttemptCache(0, 60_000, 100));
+        assertThrows(IllegalArgumentException.class, () -> new LoginAttemptCache(3, 0, 100));
+    }
+
+    private static void recordFailures(LoginAttemptCache cache, String userId, String ip, int times) {
+        for (int i = 0; i < times; i++) {
+            cache.tryBeginAttempt(userId, ip).failed();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginExecutorTest {
+
+    private final LoginExecutor executor = new LoginExecutor(1, 1, new LoginAttemptCache(5, 60_000, 100));
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRunsLoginOnLoginThread() throws Exception {
+        String thread = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(thread.startsWith("LoginWorker-"));
+        LoginExecutor.LoginStats stats = executor.getStats();
+        assertEquals(1, stats.submitted);
+        assertEquals(1, stats.queueWait.count);
+    }
+
+    @Test
+    public void testRejectsWhenQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = executor.submit(() -> {
+            started.countDown();
+            return awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = executor.submit(() -> true);
+
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> executor.submit(() -> true));
+
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(1, executor.getStats().rejected);
+        assertEquals(1, executor.getStats().queued);
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLoginExceptionCompletesFuture() {
+        CompletableFuture<Object> future = executor.submit(() -> {
+            throw new IllegalStateException("database down");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testRecordsHashTime() {
+        executor.recordHashMicros(80_000);
+
+        assertEquals(1, executor.getStats().hashTime.count);
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
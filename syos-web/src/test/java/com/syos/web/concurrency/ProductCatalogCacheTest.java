@@ -0,0 +1,163 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.domain.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductCatalogCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicReference<List<Product>> catalog = new AtomicReference<>(List.of(product("P001")));
+
+    private ProductCatalogCache cache;
+
+    private static Product product(String code) {
+        return new Product(code, "Product " + code, new BigDecimal("100.00"));
+    }
+
+    private List<Product> load() {
+        loads.incrementAndGet();
+        return new ArrayList<>(catalog.get());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testFirstReadLoadsThenServesSnapshot() throws SQLException {
+        cache = new ProductCatalogCache(this::load, 0);
+
+        assertEquals(1, cache.getProducts().size());
+        assertEquals(1, cache.getProducts().size());
+        assertEquals("P001", cache.getProduct("P001").getProductCode());
+
+        assertEquals(1, loads.get());
+        ProductCatalogCache.CacheStats stats = cache.getStats();
+        assertEquals(1, stats.misses);
+        assertEquals(2, stats.hits);
+        assertEquals(1, stats.refreshes);
+        assertEquals(1, stats.productCount);
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() throws SQLException {
+        cache = new ProductCatalogCache(this::load, 0);
+
+        List<Product> products = cache.getProducts();
+        assertThrows(UnsupportedOperationException.class, () -> products.add(product("P002")));
+    }
+
+    @Test
+    public void testInvalidateRebuildsSnapshot() throws SQLException {
+        cache = new ProductCatalogCache(this::load, 0);
+        List<Product> before = cache.getProducts();
+
+        catalog.set(List.of(product("P001"), product("P002")));
+        cache.invalidate();
+
+        assertEquals(1, before.size(), "Readers holding the old snapshot are unaffected");
+        assertEquals(2, cache.getProducts().size());
+        assertNotNull(cache.getProduct("P002"));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().invalidations);
+    }
+
+    @Test
+    public void testInvalidateBeforeFirstReadDoesNotLoad() {
+        cache = new ProductCatalogCache(this::load, 0);
+
+        cache.invalidate();
+
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void testFailedInvalidateDropsStaleSnapshot() throws SQLException {
+        AtomicInteger calls = new AtomicInteger();
+        cache = new ProductCatalogCache(() -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new SQLException("DB down");
+            }
+            return List.of(product("P00" + calls.get()));
+        }, 0);
+
+        assertNotNull(cache.getProduct("P001"));
+        cache.invalidate();
+
+        assertEquals(1, cache.getStats().refreshFailures);
+        assertEquals(0, cache.getStats().productCount);
+        // Next read loads again instead of serving the stale catalog
+        assertNotNull(cache.getProduct("P003"));
+    }
+
+    @Test
+    public void testFirstLoadFailurePropagates() {
+        cache = new ProductCatalogCache(() -> {
+            throw new SQLException("DB down");
+        }, 0);
+
+        assertThrows(SQLException.class, () -> cache.getProducts());
+    }
+
+    @Test
+    public void testReadersDoNotWaitForRefresh() throws Exception {
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache = new ProductCatalogCache(() -> {
+            if (calls.incrementAndGet() > 1) {
+                refreshStarted.countDown();
+                try {
+                    releaseRefresh.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of(product("P001"), product("P002"));
+            }
+            return List.of(product("P001"));
+        }, 0);
+        cache.getProducts();
+
+        Thread writer = new Thread(cache::invalidate);
+        writer.start();
+        assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+        // Refresh in progress: readers still get the previous snapshot immediately
+        assertEquals(1, cache.getProducts().size());
+
+        releaseRefresh.countDown();
+        writer.join(5000);
+        assertEquals(2, cache.getProducts().size());
+    }
+
+    @Test
+    public void testScheduledRefresh() throws Exception {
+        cache = new ProductCatalogCache(this::load, 50);
+        cache.getProducts();
+
+        catalog.set(List.of(product("P001"), product("P002")));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getProducts().size() != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, cache.getProducts().size());
+        assertTrue(cache.getStats().refreshes >= 2);
+    }
+}
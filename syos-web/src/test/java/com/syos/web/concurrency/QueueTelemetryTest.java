@@ -0,0 +1,95 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueueTelemetryTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final QueueTelemetry telemetry = new QueueTelemetry(nanos::get);
+
+    private static QueueTelemetry.UserTypeStats userType(QueueTelemetry.Snapshot snapshot, String name) {
+        return snapshot.userTypes.stream().filter(s -> s.userType.equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void testRecordsWaitAndProcessingTime() {
+        telemetry.recordProcessed("BillWorker-1", "CASHIER", BillProcessingWorker.Outcome.COMPLETED,
+                40, TimeUnit.MILLISECONDS.toNanos(120));
+
+        QueueTelemetry.Snapshot snapshot = telemetry.getSnapshot(0);
+        assertEquals(1, snapshot.waitTime.count);
+        assertEquals(40.0, snapshot.waitTime.maxMillis);
+        assertEquals(1, snapshot.processingTime.count);
+        assertEquals(120.0, snapshot.processingTime.maxMillis);
+        assertEquals(1, snapshot.processed);
+    }
+
+    @Test
+    public void testErrorRateByUserType() {
+        telemetry.recordProcessed("W", "CASHIER", BillProcessingWorker.Outcome.COMPLETED, 1, 1000);
+        telemetry.recordProcessed("W", "CASHIER", BillProcessingWorker.Outcome.COMPLETED, 1, 1000);
+        telemetry.recordProcessed("W", "CASHIER", BillProcessingWorker.Outcome.COMPLETED, 1, 1000);
+        telemetry.recordProcessed("W", "CASHIER", BillProcessingWorker.Outcome.CONFLICT, 1, 1000);
+        telemetry.recordProcessed("W", "CUSTOMER", BillProcessingWorker.Outcome.FAILED, 1, 1000);
+        telemetry.recordProcessed("W", "CUSTOMER", BillProcessingWorker.Outcome.SKIPPED, 30_000, 0);
+
+        QueueTelemetry.Snapshot snapshot = telemetry.getSnapshot(0);
+        QueueTelemetry.UserTypeStats cashier = userType(snapshot, "CASHIER");
+        assertEquals(3, cashier.completed);
+        assertEquals(1, cashier.failed);
+        assertEquals(25.0, cashier.errorPercent, 1e-9);
+
+        QueueTelemetry.UserTypeStats customer = userType(snapshot, "CUSTOMER");
+        assertEquals(1, customer.failed);
+        assertEquals(1, customer.skipped);
+        assertEquals(100.0, customer.errorPercent, 1e-9);
+
+        // Skipped requests waited but were never processed
+        assertEquals(6, snapshot.waitTime.count);
+        assertEquals(5, snapshot.processingTime.count);
+    }
+
+    @Test
+    public void testWorkerBusyShare() {
+        telemetry.registerWorker("BillWorker-1", 1);
+        telemetry.registerWorker("BillWorker-2", 1);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        telemetry.recordProcessed("BillWorker-1", "CASHIER", BillProcessingWorker.Outcome.COMPLETED,
+                0, TimeUnit.SECONDS.toNanos(4));
+
+        QueueTelemetry.Snapshot snapshot = telemetry.getSnapshot(0);
+        assertEquals(2, snapshot.workers.size());
+        QueueTelemetry.WorkerStats busy = snapshot.workers.get(0);
+        assertEquals("BillWorker-1", busy.name);
+        assertEquals(1, busy.processed);
+        assertEquals(40.0, busy.busyPercent, 1e-9);
+        assertEquals(0.0, snapshot.workers.get(1).busyPercent);
+    }
+
+    @Test
+    public void testSharedSlotsScaleBusyShare() {
+        telemetry.registerWorker("BillDispatcher", 4);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        telemetry.recordProcessed("BillDispatcher", "CASHIER", BillProcessingWorker.Outcome.COMPLETED,
+                0, TimeUnit.SECONDS.toNanos(10));
+
+        assertEquals(25.0, telemetry.getSnapshot(0).workers.get(0).busyPercent, 1e-9);
+    }
+
+    @Test
+    public void testThroughputAndOldestWait() {
+        for (int i = 0; i < 20; i++) {
+            telemetry.recordProcessed("W", "CASHIER", BillProcessingWorker.Outcome.COMPLETED, 0, 1000);
+        }
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+        QueueTelemetry.Snapshot snapshot = telemetry.getSnapshot(750);
+        assertEquals(4.0, snapshot.throughputOneMinute, 1e-9);
+        assertEquals(750, snapshot.oldestWaitMillis);
+    }
+}
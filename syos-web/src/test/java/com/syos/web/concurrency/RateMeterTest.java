@@ -0,0 +1,65 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateMeterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final RateMeter meter = new RateMeter(nanos::get);
+
+    private void advanceSeconds(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void testNoRateBeforeFirstTick() {
+        meter.mark(100);
+
+        assertEquals(0.0, meter.getOneMinuteRate());
+        assertEquals(100, meter.getCount());
+    }
+
+    @Test
+    public void testFirstTickSetsRate() {
+        meter.mark(50);
+        advanceSeconds(5);
+
+        assertEquals(10.0, meter.getOneMinuteRate(), 1e-9);
+        assertEquals(10.0, meter.getFiveMinuteRate(), 1e-9);
+        assertEquals(10.0, meter.getFifteenMinuteRate(), 1e-9);
+    }
+
+    @Test
+    public void testRatesDecayAtDifferentSpeeds() {
+        meter.mark(50);
+        advanceSeconds(5);
+        meter.getOneMinuteRate();
+
+        // A minute with nothing processed
+        advanceSeconds(60);
+
+        double oneMinute = meter.getOneMinuteRate();
+        double fiveMinutes = meter.getFiveMinuteRate();
+        double fifteenMinutes = meter.getFifteenMinuteRate();
+        assertEquals(10.0 / Math.E, oneMinute, 0.01);
+        assertTrue(oneMinute < fiveMinutes);
+        assertTrue(fiveMinutes < fifteenMinutes);
+        assertTrue(fifteenMinutes < 10.0);
+    }
+
+    @Test
+    public void testSteadyRateConverges() {
+        for (int i = 0; i < 200; i++) {
+            meter.mark(25);
+            advanceSeconds(5);
+        }
+
+        assertEquals(5.0, meter.getOneMinuteRate(), 0.01);
+        assertEquals(5.0, meter.getFiveMinuteRate(), 0.05);
+    }
+}
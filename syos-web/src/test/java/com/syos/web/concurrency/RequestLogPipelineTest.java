@@ -0,0 +1,215 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestLogPipelineTest {
+
+    private final List<List<RequestLogPipeline.LogRow>> batches =
+            Collections.synchronizedList(new ArrayList<>());
+
+    private RequestLogPipeline pipeline;
+
+    @AfterEach
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown(2000);
+        }
+    }
+
+    private RequestLogPipeline.BatchWriter recordingWriter() {
+        return rows -> batches.add(new ArrayList<>(rows));
+    }
+
+    private List<RequestLogPipeline.LogRow> allRows() {
+        List<RequestLogPipeline.LogRow> rows = new ArrayList<>();
+        synchronized (batches) {
+            for (List<RequestLogPipeline.LogRow> batch : batches) {
+                rows.addAll(batch);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testStartAndCompletionCoalesceIntoOneRow() {
+        pipeline = new RequestLogPipeline(100, 50, 10_000, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, recordingWriter());
+
+        pipeline.requestStarted("req-1", "CREATE_BILL", "cashier1", "http-1");
+        pipeline.requestFinished("req-1", "COMPLETED", 42);
+
+        assertTrue(pipeline.shutdown(2000));
+
+        List<RequestLogPipeline.LogRow> rows = allRows();
+        assertEquals(1, rows.size());
+        RequestLogPipeline.LogRow row = rows.get(0);
+        assertEquals("req-1", row.requestId);
+        assertEquals("CREATE_BILL", row.requestType);
+        assertEquals("cashier1", row.userId);
+        assertEquals("COMPLETED", row.status);
+        assertEquals(42L, row.responseTimeMs);
+        assertNotNull(row.requestTime);
+        assertNotNull(row.endTime);
+        assertEquals(1, pipeline.getStats().coalesced);
+    }
+
+    @Test
+    public void testErrorEventMarksRowFailed() {
+        pipeline = new RequestLogPipeline(100, 50, 10_000, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, recordingWriter());
+
+        pipeline.requestStarted("req-2", "CHECKOUT", null, "http-2");
+        pipeline.requestFailed("req-2", "Insufficient stock");
+        pipeline.shutdown(2000);
+
+        RequestLogPipeline.LogRow row = allRows().get(0);
+        assertEquals("FAILED", row.status);
+        assertEquals("Insufficient stock", row.errorMessage);
+    }
+
+    @Test
+    public void testFlushesWhenBatchSizeReached() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        pipeline = new RequestLogPipeline(100, 5, 60_000, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, rows -> {
+                    batches.add(new ArrayList<>(rows));
+                    written.countDown();
+                });
+
+        for (int i = 0; i < 5; i++) {
+            pipeline.requestStarted("req-" + i, "LOGIN", null, "http");
+        }
+
+        // Interval is a minute, so only the size trigger can flush this quickly
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(5, batches.get(0).size());
+    }
+
+    @Test
+    public void testFlushesOnInterval() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        pipeline = new RequestLogPipeline(100, 1000, 50, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, rows -> written.countDown());
+
+        pipeline.requestStarted("req-1", "LOGIN", null, "http");
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDropNewestCountsRejectedEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new RequestLogPipeline(2, 1, 10, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, rows -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        // First event is picked up by the (now stalled) drainer, the next two fill the buffer
+        pipeline.requestStarted("req-0", "LOGIN", null, "http");
+        Thread.sleep(100);
+        for (int i = 1; i <= 5; i++) {
+            pipeline.requestStarted("req-" + i, "LOGIN", null, "http");
+        }
+
+        RequestLogPipeline.Stats stats = pipeline.getStats();
+        assertEquals(3, stats.dropped);
+        assertEquals(3, stats.accepted);
+        release.countDown();
+    }
+
+    @Test
+    public void testDropOldestKeepsNewestEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new RequestLogPipeline(2, 10, 10, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_OLDEST, rows -> {
+                    batches.add(new ArrayList<>(rows));
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        pipeline.requestStarted("req-0", "LOGIN", null, "http");
+        Thread.sleep(100);
+        for (int i = 1; i <= 4; i++) {
+            pipeline.requestStarted("req-" + i, "LOGIN", null, "http");
+        }
+        release.countDown();
+        pipeline.shutdown(2000);
+
+        List<String> ids = new ArrayList<>();
+        for (RequestLogPipeline.LogRow row : allRows()) {
+            ids.add(row.requestId);
+        }
+        assertTrue(ids.contains("req-3"));
+        assertTrue(ids.contains("req-4"));
+        assertFalse(ids.contains("req-1"));
+        assertEquals(2, pipeline.getStats().dropped);
+    }
+
+    @Test
+    public void testWriterFailureDoesNotStopDrainer() throws Exception {
+        CountDownLatch secondBatch = new CountDownLatch(2);
+        pipeline = new RequestLogPipeline(100, 1, 10, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, rows -> {
+                    secondBatch.countDown();
+                    throw new SQLException("database down");
+                });
+
+        pipeline.requestStarted("req-1", "LOGIN", null, "http");
+        pipeline.requestStarted("req-2", "LOGIN", null, "http");
+
+        assertTrue(secondBatch.await(5, TimeUnit.SECONDS));
+        pipeline.shutdown(2000);
+        assertEquals(2, pipeline.getStats().writeFailures);
+    }
+
+    @Test
+    public void testEventsAfterShutdownAreDropped() {
+        pipeline = new RequestLogPipeline(100, 10, 10, 2,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, recordingWriter());
+        pipeline.shutdown(2000);
+
+        pipeline.requestStarted("late", "LOGIN", null, "http");
+
+        assertEquals(1, pipeline.getStats().dropped);
+        assertTrue(allRows().isEmpty());
+    }
+
+    @Test
+    public void testShutdownDrainsEveryStripe() {
+        pipeline = new RequestLogPipeline(1000, 100, 10_000, 4,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, recordingWriter());
+
+        for (int i = 0; i < 200; i++) {
+            pipeline.requestStarted("req-" + i, "LOGIN", null, "http");
+            pipeline.requestFinished("req-" + i, "COMPLETED", i);
+        }
+
+        assertTrue(pipeline.shutdown(5000));
+        assertEquals(200, allRows().size());
+        assertEquals(200, pipeline.getStats().rowsWritten);
+        assertEquals(0, pipeline.getStats().buffered);
+    }
+
+    @Test
+    public void testInvalidSettingsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RequestLogPipeline(0, 10, 10, 1,
+                RequestLogPipeline.OverflowPolicy.DROP_NEWEST, recordingWriter()));
+    }
+}
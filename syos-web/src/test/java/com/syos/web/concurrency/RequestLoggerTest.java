@@ -0,0 +1,24 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestLoggerTest {
+
+    @Test
+    public void testEventsAfterShutdownAreDroppedWithoutRestartingPipeline() {
+        String requestId = RequestLogger.logRequest("LOGIN", null, "127.0.0.1", "test-thread");
+        RequestLogger.shutdown();
+        long droppedBefore = RequestLogger.getPipelineStats().dropped;
+
+        // A login finishing on another pool after the application stopped
+        RequestLogger.updateStatus(requestId, "COMPLETED", System.currentTimeMillis());
+        RequestLogger.logError(requestId, "late");
+        RequestLogger.logRequest("LOGIN", null, "127.0.0.1", "test-thread");
+
+        assertEquals(droppedBefore + 3, RequestLogger.getPipelineStats().dropped);
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(t -> t.getName().startsWith("RequestLogDrainer-") && t.isAlive()));
+    }
+}
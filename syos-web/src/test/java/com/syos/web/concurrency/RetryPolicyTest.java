@@ -0,0 +1,115 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryPolicyTest {
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    /**
+     * No real sleeping; jitter always picks the ceiling
+     */
+    private RetryPolicy policy(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, 20, 100, sleeps::add, bound -> bound);
+    }
+
+    private static RuntimeException deadlock() {
+        return new RuntimeException("Failed to create bill: Deadlock found",
+                new SQLException("Deadlock found when trying to get lock", "40001", 1213));
+    }
+
+    @Test
+    public void testSucceedsWithoutRetry() throws Exception {
+        RetryPolicy policy = policy(3);
+
+        assertEquals("BILL-1", policy.execute(() -> "BILL-1", () -> true));
+
+        RetryPolicy.RetryStats stats = policy.getStats();
+        assertEquals(0, stats.retries);
+        assertEquals(0, stats.succeededAfterRetry);
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void testRetriesConflictWithBackoff() throws Exception {
+        RetryPolicy policy = policy(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = policy.execute(() -> {
+            if (attempts.incrementAndGet() < 4) {
+                throw deadlock();
+            }
+            return "BILL-1";
+        }, () -> true);
+
+        assertEquals("BILL-1", result);
+        assertEquals(List.of(20L, 40L, 80L), sleeps);
+        RetryPolicy.RetryStats stats = policy.getStats();
+        assertEquals(3, stats.retries);
+        assertEquals(1, stats.succeededAfterRetry);
+        assertEquals(0, stats.gaveUp);
+        assertEquals(3, stats.deadlocks);
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        RetryPolicy policy = policy(3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        SQLException e = assertThrows(SQLException.class, () -> policy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new SQLException("Lock wait timeout exceeded", "HY000", 1205);
+        }, () -> true));
+
+        assertTrue(e.getMessage().contains("Lock wait timeout"));
+        assertEquals(3, attempts.get());
+        RetryPolicy.RetryStats stats = policy.getStats();
+        assertEquals(2, stats.retries);
+        assertEquals(1, stats.gaveUp);
+        assertEquals(3, stats.lockWaitTimeouts);
+    }
+
+    @Test
+    public void testOtherFailuresAreNotRetried() {
+        RetryPolicy policy = policy(3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalArgumentException.class, () -> policy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("Insufficient stock for P001");
+        }, () -> true));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, policy.getStats().gaveUp);
+    }
+
+    @Test
+    public void testStopsWhenCallerGaveUp() {
+        RetryPolicy policy = policy(5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RuntimeException.class, () -> policy.execute(() -> {
+            attempts.incrementAndGet();
+            throw deadlock();
+        }, () -> false));
+
+        assertEquals(1, attempts.get());
+        assertEquals(1, policy.getStats().gaveUp);
+    }
+
+    @Test
+    public void testBackoffIsCappedAndJittered() {
+        RetryPolicy capped = policy(10);
+        assertEquals(100, capped.backoffMillis(8));
+
+        RetryPolicy random = new RetryPolicy(10, 20, 100, sleeps::add, bound -> bound / 2);
+        assertEquals(20, random.backoffMillis(2));
+    }
+}
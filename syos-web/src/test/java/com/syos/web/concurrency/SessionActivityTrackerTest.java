@@ -0,0 +1,138 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionActivityTrackerTest {
+
+    private final List<Map<String, Long>> activityBatches = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Long> logouts = Collections.synchronizedMap(new HashMap<>());
+
+    private SessionActivityTracker tracker;
+
+    private class RecordingWriter implements SessionActivityTracker.ActivityWriter {
+        @Override
+        public void writeActivity(Map<String, Long> lastActivity) {
+            activityBatches.add(new HashMap<>(lastActivity));
+        }
+
+        @Override
+        public void writeLogout(String sessionId, Long lastActivity) {
+            logouts.put(sessionId, lastActivity);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (tracker != null) {
+            tracker.shutdown();
+        }
+    }
+
+    @Test
+    public void testRepeatedActivityCoalescesToLatestTimestamp() throws SQLException {
+        tracker = new SessionActivityTracker(60_000, new RecordingWriter());
+
+        tracker.recordActivity("s1", 1000);
+        tracker.recordActivity("s1", 3000);
+        tracker.recordActivity("s1", 2000);
+        tracker.recordActivity("s2", 500);
+
+        assertEquals(2, tracker.getPendingCount());
+        tracker.flush();
+
+        assertEquals(1, activityBatches.size());
+        assertEquals(3000L, activityBatches.get(0).get("s1"));
+        assertEquals(500L, activityBatches.get(0).get("s2"));
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    @Test
+    public void testNothingWrittenWithoutActivity() throws SQLException {
+        tracker = new SessionActivityTracker(60_000, new RecordingWriter());
+        tracker.flush();
+        assertTrue(activityBatches.isEmpty());
+    }
+
+    @Test
+    public void testPeriodicFlushBoundsLag() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        tracker = new SessionActivityTracker(50, new SessionActivityTracker.ActivityWriter() {
+            @Override
+            public void writeActivity(Map<String, Long> lastActivity) {
+                flushed.countDown();
+            }
+
+            @Override
+            public void writeLogout(String sessionId, Long lastActivity) {
+            }
+        });
+
+        tracker.recordActivity("s1", System.currentTimeMillis());
+
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEndSessionWritesPendingActivityImmediately() throws Exception {
+        tracker = new SessionActivityTracker(60_000, new RecordingWriter());
+
+        tracker.recordActivity("s1", 4242);
+        tracker.endSession("s1");
+
+        // Logout is not deferred to the next interval
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!logouts.containsKey("s1") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4242L, logouts.get("s1"));
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    @Test
+    public void testFailedFlushKeepsTimestampsForRetry() {
+        tracker = new SessionActivityTracker(60_000, new SessionActivityTracker.ActivityWriter() {
+            @Override
+            public void writeActivity(Map<String, Long> lastActivity) throws SQLException {
+                throw new SQLException("database down");
+            }
+
+            @Override
+            public void writeLogout(String sessionId, Long lastActivity) {
+            }
+        });
+
+        tracker.recordActivity("s1", 1000);
+
+        assertThrows(SQLException.class, () -> tracker.flush());
+        assertEquals(1, tracker.getPendingCount());
+    }
+
+    @Test
+    public void testShutdownFlushesPendingActivity() {
+        tracker = new SessionActivityTracker(60_000, new RecordingWriter());
+        tracker.recordActivity("s1", 1000);
+
+        tracker.shutdown();
+
+        assertEquals(1, activityBatches.size());
+        tracker = null;
+    }
+
+    @Test
+    public void testInvalidIntervalRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SessionActivityTracker(0, new RecordingWriter()));
+    }
+}
@@ -0,0 +1,111 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTokensTest {
+
+    private static final byte[] SECRET = "test-secret-that-is-32-bytes-long!!".getBytes(StandardCharsets.UTF_8);
+    private static final long TTL = 30 * 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final SessionTokens tokens = new SessionTokens(SECRET, TTL, now::get);
+
+    @Test
+    public void testIssuedTokenVerifies() {
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, "Cashier: One"));
+
+        UserPrincipal principal = tokens.verify(token);
+
+        assertEquals("cashier1", principal.getUserId());
+        assertEquals(2, principal.getRoleId());
+        assertEquals("Cashier: One", principal.getFullName());
+    }
+
+    @Test
+    public void testOtherNodeWithSameSecretVerifies() {
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, null));
+
+        SessionTokens otherNode = new SessionTokens(SECRET.clone(), TTL, now::get);
+
+        assertEquals("cashier1", otherNode.verify(token).getUserId());
+    }
+
+    @Test
+    public void testDifferentSecretRejects() {
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, null));
+
+        SessionTokens other = new SessionTokens("another-secret-that-is-32-bytes-long".getBytes(StandardCharsets.UTF_8),
+                TTL, now::get);
+
+        assertNull(other.verify(token));
+    }
+
+    @Test
+    public void testTamperedTokenRejected() {
+        String token = tokens.issue(new UserPrincipal("customer1", 3, null));
+        String forged = tokens.issue(new UserPrincipal("manager1", 1, null));
+
+        // Manager payload with the customer's signature
+        String swapped = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertNull(tokens.verify(swapped));
+        assertEquals(1, tokens.getStats().rejected);
+    }
+
+    @Test
+    public void testMalformedTokensRejected() {
+        assertNull(tokens.verify(null));
+        assertNull(tokens.verify(""));
+        assertNull(tokens.verify("no-dot"));
+        assertNull(tokens.verify(".sig"));
+        assertNull(tokens.verify("!!!.***"));
+    }
+
+    @Test
+    public void testExpiredTokenRejected() {
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, null));
+
+        now.addAndGet(TTL - 1);
+        assertNotNull(tokens.verify(token));
+        now.addAndGet(1);
+        assertNull(tokens.verify(token));
+    }
+
+    @Test
+    public void testRevokedTokenRejected() {
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, null));
+        String other = tokens.issue(new UserPrincipal("cashier1", 2, null));
+
+        tokens.revoke(token);
+
+        assertNull(tokens.verify(token));
+        assertNotNull(tokens.verify(other), "only the logged-out token is refused");
+    }
+
+    @Test
+    public void testDenylistDropsExpiredTokens() {
+        tokens.revoke(tokens.issue(new UserPrincipal("cashier1", 2, null)));
+        assertEquals(1, tokens.getStats().revoked);
+
+        now.addAndGet(TTL);
+        tokens.revoke(tokens.issue(new UserPrincipal("cashier2", 2, null)));
+
+        assertEquals(1, tokens.getStats().revoked);
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionTokens("short".getBytes(), TTL));
+        assertThrows(IllegalArgumentException.class, () -> new SessionTokens(SECRET, 0));
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertNull(SessionTokens.fromSystemProperties());
+    }
+}
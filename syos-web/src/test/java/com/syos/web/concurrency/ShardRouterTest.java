@@ -0,0 +1,85 @@
+package com.syos.web.concurrency;
+
+import com.syos.web.application.dto.CreateBillRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    private static CreateBillRequest bill(String... productCodes) {
+        List<CreateBillRequest.BillItemRequest> items = new ArrayList<>();
+        for (String code : productCodes) {
+            items.add(new CreateBillRequest.BillItemRequest(code, 1));
+        }
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(items);
+        return request;
+    }
+
+    @Test
+    public void testBillsSharingHotProductGoToSameShard() {
+        ShardRouter router = new ShardRouter(8);
+        router.shardFor(bill("MILK"));
+        router.shardFor(bill("MILK", "EGGS"));
+
+        // MILK has been on more bills than BREAD or TEA, whatever order they come in
+        int shard = router.shardOf("MILK");
+        assertEquals(shard, router.shardFor(bill("BREAD", "MILK")));
+        assertEquals(shard, router.shardFor(bill("TEA", "MILK", "BREAD")));
+    }
+
+    @Test
+    public void testTieGoesToLowerProductCode() {
+        ShardRouter router = new ShardRouter(8);
+
+        assertEquals(router.shardOf("A100"), router.shardFor(bill("B200", "A100")));
+    }
+
+    @Test
+    public void testDuplicateLinesCountOnce() {
+        ShardRouter router = new ShardRouter(8);
+        router.shardFor(bill("EGGS", "EGGS", "EGGS"));
+        router.shardFor(bill("MILK"));
+
+        // One bill each: the tie goes to EGGS
+        assertEquals(router.shardOf("EGGS"), router.shardFor(bill("MILK", "EGGS")));
+    }
+
+    @Test
+    public void testBillWithoutItemsUsesFirstShard() {
+        ShardRouter router = new ShardRouter(4);
+
+        assertEquals(0, router.shardFor(new CreateBillRequest()));
+        assertEquals(0, router.shardFor(bill()));
+    }
+
+    @Test
+    public void testShardInRange() {
+        ShardRouter router = new ShardRouter(3);
+        for (int i = 0; i < 100; i++) {
+            int shard = router.shardFor(bill("P" + i));
+            assertTrue(shard >= 0 && shard < 3);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(0));
+    }
+
+    @Test
+    public void testMadeUpCodesDoNotGrowWithoutBound() {
+        ShardRouter router = new ShardRouter(4, 100);
+        for (int i = 0; i < 5; i++) {
+            router.shardFor(bill("MILK"));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            router.shardFor(bill("JUNK-" + i));
+        }
+
+        assertTrue(router.getTrackedProducts() <= 100);
+        // MILK survives the junk codes and is still the hottest product
+        assertEquals(router.shardOf("MILK"), router.shardFor(bill("A000", "MILK")));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(4, 0));
+    }
+}
@@ -0,0 +1,46 @@
+package com.syos.web.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserPrincipalTest {
+
+    @Test
+    public void testFields() {
+        UserPrincipal principal = new UserPrincipal("manager1", 1, "Manager One");
+
+        assertEquals("manager1", principal.getUserId());
+        assertEquals(1, principal.getRoleId());
+        assertEquals("Manager One", principal.getFullName());
+        assertNull(principal.getSessionId());
+    }
+
+    @Test
+    public void testCarriesSessionId() {
+        UserPrincipal principal = new UserPrincipal("cashier1", 2, "Cashier One", "session-1");
+
+        assertEquals("session-1", principal.getSessionId());
+    }
+
+    @Test
+    public void testSessionDataPrincipalKnowsItsSession() {
+        SessionManager.SessionData session = new SessionManager.SessionData("session-1", "cashier1", "2", null);
+
+        assertEquals("session-1", session.principal.getSessionId());
+        assertFalse(SessionManager.recordActivity("no-such-session"));
+    }
+
+    @Test
+    public void testDefaultsToCustomerAndUserId() {
+        UserPrincipal principal = new UserPrincipal("customer@test.com", null, null);
+
+        assertEquals(3, principal.getRoleId());
+        assertEquals("customer@test.com", principal.getFullName());
+    }
+
+    @Test
+    public void testUserIdIsRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new UserPrincipal(null, 1, "Nobody"));
+    }
+}
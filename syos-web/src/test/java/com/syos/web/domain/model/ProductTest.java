@@ -53,6 +53,12 @@ public class ProductTest {
         assertEquals(1, product.getCategoryId());
     }
 
+    @Test
+    public void testSetAndGetCategoryName() {
+        product.setCategoryName("Dairy");
+        assertEquals("Dairy", product.getCategoryName());
+    }
+
     @Test
     public void testSetAndGetShelfQuantity() {
         product.setShelfQuantity(50);
@@ -2,7 +2,15 @@ package com.syos.web.infrastructure.persistence.dao;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 public class BillDaoTest {
 
@@ -50,5 +58,23 @@ public class BillDaoTest {
             }
         });
     }
+
+    @Test
+    public void testToBasketJson() {
+        Map<String, Integer> basket = new LinkedHashMap<>();
+        basket.put("P001", 2);
+        basket.put("P002", 5);
+
+        assertEquals("[{\"productCode\":\"P001\",\"quantity\":2},{\"productCode\":\"P002\",\"quantity\":5}]",
+                BillDao.toBasketJson(basket));
+    }
+
+    @Test
+    public void testDeductStockForEmptyBasket() throws SQLException {
+        Connection conn = mock(Connection.class);
+
+        assertTrue(billDao.deductStockForBasket(conn, Map.of(), "B001", "U001", "SHELF").isEmpty());
+        verifyNoInteractions(conn);
+    }
 }
 
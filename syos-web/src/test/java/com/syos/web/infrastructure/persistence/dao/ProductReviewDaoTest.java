@@ -2,6 +2,9 @@ package com.syos.web.infrastructure.persistence.dao;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+
+import java.util.Collections;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ProductReviewDaoTest {
@@ -240,5 +243,9 @@ public class ProductReviewDaoTest {
             }
         });
     }
-}
 
+    @Test
+    public void testGetRatingSummariesEmpty() throws Exception {
+        assertTrue(reviewDao.getRatingSummaries(Collections.emptyList()).isEmpty());
+    }
+}
@@ -2,13 +2,16 @@ package com.syos.web.infrastructure.repositories;
 
 import com.syos.web.application.ports.IProductRepository;
 import com.syos.web.domain.model.Product;
+import com.syos.web.infrastructure.persistence.dao.ProductDao;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 public class ProductRepositoryImplTest {
 
@@ -302,5 +305,16 @@ public class ProductRepositoryImplTest {
     public void testRepositoryImplementsInterface() {
         assertTrue(repository instanceof IProductRepository);
     }
-}
 
+    @Test
+    public void testFindAllUsesInjectedDao() throws Exception {
+        ProductDao productDao = mock(ProductDao.class);
+        Product product = mock(Product.class);
+        when(productDao.findAll()).thenReturn(List.of(product));
+        ProductRepositoryImpl injected = new ProductRepositoryImpl(productDao);
+
+        assertEquals(List.of(product), injected.findAll());
+        assertEquals(List.of(product), injected.findAll());
+        verify(productDao, times(1)).findAll();
+    }
+}
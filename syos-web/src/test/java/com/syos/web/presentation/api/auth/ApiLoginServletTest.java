@@ -1,6 +1,9 @@
 package com.syos.web.presentation.api.auth;
 
 import com.google.gson.Gson;
+import com.syos.web.application.usecases.LoginUseCase;
+import com.syos.web.concurrency.LoginExecutor;
+import com.syos.web.infrastructure.persistence.dao.UserDao;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -13,6 +16,11 @@ import java.io.BufferedReader;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -58,6 +66,80 @@ public class ApiLoginServletTest {
         verify(mockResponse).setContentType("application/json; charset=UTF-8");
     }
 
+    @Test
+    public void testDoPostBlockedAfterRepeatedFailures() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            LoginExecutor.getInstance().getAttempts().tryBeginAttempt("blocked@test.com", "10.9.9.9").failed();
+        }
+        String jsonInput = "{\"username\":\"blocked@test.com\",\"password\":\"guess\"}";
+        when(mockRequest.getReader()).thenReturn(new BufferedReader(new StringReader(jsonInput)));
+        when(mockRequest.getRemoteAddr()).thenReturn("10.9.9.9");
+
+        servlet.doPost(mockRequest, mockResponse);
+
+        verify(mockResponse).setStatus(429);
+        verify(mockResponse).setHeader(eq("Retry-After"), anyString());
+        assertTrue(responseWriter.toString().contains("Too many failed login attempts"));
+    }
+
+    @Test
+    public void testParallelBadLoginsReachBCryptOnlyMaxFailuresTimes() throws Exception {
+        int maxFailures = 5;
+        int extra = 3;
+        AtomicInteger passwordChecks = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        UserDao userDao = mock(UserDao.class);
+        when(userDao.isValidUser(anyString(), anyString())).thenAnswer(invocation -> {
+            passwordChecks.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+        ApiLoginServlet guarded = new ApiLoginServlet(new LoginUseCase(userDao));
+
+        String jsonInput = "{\"username\":\"burst@test.com\",\"password\":\"guess\"}";
+        List<HttpServletResponse> responses = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger tooMany = new AtomicInteger();
+        for (int i = 0; i < maxFailures + extra; i++) {
+            HttpServletRequest request = mock(HttpServletRequest.class);
+            HttpServletResponse response = mock(HttpServletResponse.class);
+            when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonInput)));
+            when(request.getRemoteAddr()).thenReturn("10.8.8.8");
+            when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+            doAnswer(invocation -> {
+                if ((int) invocation.getArgument(0) == 429) {
+                    tooMany.incrementAndGet();
+                }
+                return null;
+            }).when(response).setStatus(anyInt());
+            responses.add(response);
+            threads.add(new Thread(() -> {
+                try {
+                    guarded.doPost(request, response);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        // Every attempt beyond maxFailures is refused while the first ones are still checking
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (tooMany.get() < extra && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5_000);
+        }
+
+        assertEquals(extra, tooMany.get());
+        assertEquals(maxFailures, passwordChecks.get());
+        for (HttpServletResponse response : responses) {
+            verify(response, atMostOnce()).setStatus(401);
+        }
+    }
+
     @Test
     public void testDoPostWithNullUsername() throws Exception {
         String jsonInput = "{\"username\":null,\"password\":\"password123\"}";
@@ -1,5 +1,7 @@
 package com.syos.web.presentation.api.auth;
 
+import com.syos.web.concurrency.UserPrincipal;
+import com.syos.web.presentation.filters.AuthFilter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -54,6 +56,19 @@ public class ApiMeServletTest {
         verify(mockResponse).setContentType("application/json; charset=UTF-8");
     }
 
+    @Test
+    public void testDoGetUsesPrincipalFromFilter() throws Exception {
+        when(mockRequest.getAttribute(AuthFilter.PRINCIPAL_ATTRIBUTE))
+                .thenReturn(new UserPrincipal("cashier1", 2, "Cashier One", "ended-session"));
+
+        servlet.doGet(mockRequest, mockResponse);
+
+        // Activity goes to SessionManager by session ID; the HttpSession is not read again
+        verify(mockRequest, never()).getSession(false);
+        verify(mockResponse).setStatus(HttpServletResponse.SC_OK);
+        assertTrue(responseWriter.toString().contains("Cashier One"));
+    }
+
     @Test
     public void testDoGetWithNullSession() throws Exception {
         when(mockRequest.getSession(false)).thenReturn(null);
@@ -1,17 +1,21 @@
 package com.syos.web.presentation.filters;
 
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -237,6 +241,82 @@ public class AuthFilterTest {
         verify(mockFilterChain, never()).doFilter(any(), any());
     }
 
+    @Test
+    public void testDoFilterSetsPrincipalForServlets() throws IOException, ServletException {
+        when(mockRequest.getContextPath()).thenReturn("");
+        when(mockRequest.getRequestURI()).thenReturn("/api/bills");
+        when(mockRequest.getSession(false)).thenReturn(mockSession);
+        when(mockSession.getAttribute("username")).thenReturn("cashier1");
+        when(mockSession.getAttribute("roleId")).thenReturn(2);
+        when(mockSession.getAttribute("fullName")).thenReturn("Cashier One");
+
+        authFilter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        ArgumentCaptor<Object> principal = ArgumentCaptor.forClass(Object.class);
+        verify(mockRequest).setAttribute(eq(AuthFilter.PRINCIPAL_ATTRIBUTE), principal.capture());
+        UserPrincipal user = (UserPrincipal) principal.getValue();
+        assertEquals("cashier1", user.getUserId());
+        assertEquals(2, user.getRoleId());
+        assertEquals("Cashier One", user.getFullName());
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+    }
+
+    @Test
+    public void testGetPrincipalReadsRequestAttribute() {
+        UserPrincipal user = new UserPrincipal("cashier1", 2, "Cashier One");
+        when(mockRequest.getAttribute(AuthFilter.PRINCIPAL_ATTRIBUTE)).thenReturn(user);
+
+        assertSame(user, AuthFilter.getPrincipal(mockRequest));
+        verify(mockRequest, never()).getSession(anyBoolean());
+    }
+
+    @Test
+    public void testDoFilterRejectsSessionEndedInSessionManager() throws IOException, ServletException {
+        when(mockRequest.getContextPath()).thenReturn("");
+        when(mockRequest.getRequestURI()).thenReturn("/api/cart");
+        when(mockRequest.getSession(false)).thenReturn(mockSession);
+        when(mockSession.getAttribute("username")).thenReturn("testuser");
+        when(mockSession.getAttribute("sessionId")).thenReturn("logged-out-session");
+
+        authFilter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockResponse).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        verify(mockFilterChain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    public void testTokenModeAcceptsSignedToken() throws IOException, ServletException {
+        SessionTokens tokens = new SessionTokens(
+                "test-secret-that-is-32-bytes-long!!".getBytes(StandardCharsets.UTF_8), 60_000L);
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, "Cashier One"));
+        when(mockRequest.getContextPath()).thenReturn("");
+        when(mockRequest.getRequestURI()).thenReturn("/api/bills");
+        when(mockRequest.getHeader("Authorization")).thenReturn("Bearer " + token);
+
+        new AuthFilter(tokens).doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+        verify(mockRequest, never()).getSession(anyBoolean());
+    }
+
+    @Test
+    public void testTokenModeRejectsRevokedToken() throws IOException, ServletException {
+        SessionTokens tokens = new SessionTokens(
+                "test-secret-that-is-32-bytes-long!!".getBytes(StandardCharsets.UTF_8), 60_000L);
+        String token = tokens.issue(new UserPrincipal("cashier1", 2, "Cashier One"));
+        tokens.revoke(token);
+        when(mockRequest.getContextPath()).thenReturn("");
+        when(mockRequest.getRequestURI()).thenReturn("/api/bills");
+        when(mockRequest.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(mockRequest.getSession(false)).thenReturn(mockSession);
+        when(mockSession.getAttribute("username")).thenReturn("cashier1");
+
+        new AuthFilter(tokens).doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockResponse).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        verify(mockFilterChain, never()).doFilter(any(), any());
+    }
+
     @Test
     public void testMultipleAuthFilters() {
         AuthFilter filter1 = new AuthFilter();
@@ -0,0 +1,117 @@
+package com.syos.web.presentation.util;
+
+import com.syos.web.concurrency.BillQueueResponse;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AsyncBillResponderTest {
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private AsyncContext async;
+    private final List<String> outcomes = new ArrayList<>();
+    private final CompletableFuture<BillQueueResponse> future = new CompletableFuture<>();
+
+    private final AsyncBillResponder.Callbacks<BillQueueResponse> callbacks = new AsyncBillResponder.Callbacks<>() {
+        @Override
+        public void completed(HttpServletResponse resp, BillQueueResponse result) {
+            outcomes.add("completed:" + (result.isSuccess() ? result.getMessage() : result.getErrorMessage()));
+        }
+
+        @Override
+        public void failed(HttpServletResponse resp, Throwable cause) {
+            outcomes.add("failed:" + cause.getMessage());
+        }
+
+        @Override
+        public void timedOut(HttpServletResponse resp) {
+            outcomes.add("timedOut");
+        }
+    };
+
+    @BeforeEach
+    public void setUp() {
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        async = mock(AsyncContext.class);
+        when(request.startAsync(request, response)).thenReturn(async);
+    }
+
+    private AsyncListener listener() {
+        ArgumentCaptor<AsyncListener> captor = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(async).addListener(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void testReturnsBeforeTheBillIsDone() {
+        AsyncBillResponder.respond(request, response, future, 30_000, callbacks);
+
+        verify(async).setTimeout(30_000);
+        verify(async, never()).complete();
+        assertTrue(outcomes.isEmpty());
+    }
+
+    @Test
+    public void testWritesResultOnCompletion() {
+        AsyncBillResponder.respond(request, response, future, 30_000, callbacks);
+
+        future.complete(BillQueueResponse.success("Bill created successfully", null, 5));
+
+        assertEquals(List.of("completed:Bill created successfully"), outcomes);
+        verify(async).complete();
+    }
+
+    @Test
+    public void testFailureIsUnwrapped() {
+        AsyncBillResponder.respond(request, response, future.thenApply(r -> r), 30_000, callbacks);
+
+        future.completeExceptionally(new IllegalStateException("DB down"));
+
+        assertEquals(List.of("failed:DB down"), outcomes);
+        verify(async).complete();
+    }
+
+    @Test
+    public void testTimeoutWinsOverLateCompletion() throws Exception {
+        AsyncBillResponder.respond(request, response, future, 30_000, callbacks);
+
+        listener().onTimeout(new AsyncEvent(async));
+        future.complete(BillQueueResponse.success("Bill created successfully", null, 5));
+
+        assertEquals(List.of("timedOut"), outcomes);
+        verify(async, times(1)).complete();
+    }
+
+    @Test
+    public void testTimeoutCancelsQueuedBill() throws Exception {
+        AsyncBillResponder.respond(request, response, future, 30_000, callbacks);
+
+        listener().onTimeout(new AsyncEvent(async));
+
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void testAlreadyCompletedFutureIsWrittenImmediately() {
+        future.complete(BillQueueResponse.error("Insufficient stock", 3));
+
+        AsyncBillResponder.respond(request, response, future, 30_000, callbacks);
+
+        assertEquals(List.of("completed:Insufficient stock"), outcomes);
+        verify(async).complete();
+    }
+}
@@ -0,0 +1,70 @@
+package com.syos.web.presentation.util;
+
+import com.syos.web.concurrency.SessionTokens;
+import com.syos.web.concurrency.UserPrincipal;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TokenCookieTest {
+
+    private final SessionTokens tokens =
+            new SessionTokens("test-secret-that-is-32-bytes-long!!".getBytes(StandardCharsets.UTF_8), 60_000L);
+    private final HttpServletRequest request = mock(HttpServletRequest.class);
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+    @Test
+    public void testIssueSetsHttpOnlyCookie() {
+        when(request.getContextPath()).thenReturn("");
+
+        String token = TokenCookie.issue(request, response, tokens, new UserPrincipal("cashier1", 2, null));
+
+        ArgumentCaptor<Cookie> cookie = ArgumentCaptor.forClass(Cookie.class);
+        verify(response).addCookie(cookie.capture());
+        assertEquals(TokenCookie.NAME, cookie.getValue().getName());
+        assertEquals(token, cookie.getValue().getValue());
+        assertTrue(cookie.getValue().isHttpOnly());
+        assertEquals(60, cookie.getValue().getMaxAge());
+        assertEquals("/", cookie.getValue().getPath());
+    }
+
+    @Test
+    public void testReadPrefersBearerHeader() {
+        when(request.getHeader("Authorization")).thenReturn("Bearer header-token");
+        when(request.getCookies()).thenReturn(new Cookie[]{new Cookie(TokenCookie.NAME, "cookie-token")});
+
+        assertEquals("header-token", TokenCookie.read(request));
+    }
+
+    @Test
+    public void testReadCookie() {
+        when(request.getCookies()).thenReturn(new Cookie[]{
+                new Cookie("JSESSIONID", "abc"), new Cookie(TokenCookie.NAME, "cookie-token")});
+
+        assertEquals("cookie-token", TokenCookie.read(request));
+    }
+
+    @Test
+    public void testReadWithoutToken() {
+        assertNull(TokenCookie.read(request));
+    }
+
+    @Test
+    public void testClearExpiresCookie() {
+        when(request.getContextPath()).thenReturn("/syos");
+
+        TokenCookie.clear(request, response);
+
+        ArgumentCaptor<Cookie> cookie = ArgumentCaptor.forClass(Cookie.class);
+        verify(response).addCookie(cookie.capture());
+        assertEquals(0, cookie.getValue().getMaxAge());
+        assertEquals("/syos", cookie.getValue().getPath());
+    }
+}